@@ -0,0 +1,128 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvEvent;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+
+/**
+ * Compares evaluating every range of a package with the {@link AffectedVersionMatcher} against
+ * looking up the versions in an {@link AffectedRangeIndex}
+ *
+ * The synthetic package has 1,000 vulnerabilities each with a <code>SEMVER</code> range of one to
+ * three introduced and fixed pairs, and 1,000 versions are looked up.
+ *
+ * @author Gary O'Neall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AffectedRangeBenchmark {
+
+	static final int NUM_VULNERABILITIES = 1_000;
+	static final int NUM_VERSIONS = 1_000;
+
+	private List<OsvAffected> affectedList;
+	private String[] versions;
+	private AffectedVersionMatcher matcher;
+	private AffectedRangeIndex index;
+
+	private static String randomVersion(Random random) {
+		return random.nextInt(10) + "." + random.nextInt(20) + "." + random.nextInt(20);
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		OsvPackage osvPackage = new OsvPackage("linux", "npm", null);
+		affectedList = new ArrayList<>();
+		for (int i = 0; i < NUM_VULNERABILITIES; i++) {
+			List<OsvEvent> events = new ArrayList<>();
+			int numPairs = random.nextInt(3) + 1;
+			for (int j = 0; j < numPairs; j++) {
+				String a = randomVersion(random);
+				String b = randomVersion(random);
+				boolean aFirst = VersionScheme.SEMVER.compare(a, b) < 0;
+				OsvEvent introduced = new OsvEvent();
+				introduced.setIntroduced(aFirst ? a : b);
+				OsvEvent fixed = new OsvEvent();
+				fixed.setFixed(aFirst ? b : a);
+				events.add(introduced);
+				events.add(fixed);
+			}
+			OsvRange range = new OsvRange();
+			range.setType(OsvRangeType.SEMVER);
+			range.setEvents(events);
+			List<OsvRange> ranges = new ArrayList<>();
+			ranges.add(range);
+			OsvAffected affected = new OsvAffected();
+			affected.setOsvPackage(osvPackage);
+			affected.setRanges(ranges);
+			affectedList.add(affected);
+		}
+		versions = new String[NUM_VERSIONS];
+		for (int i = 0; i < NUM_VERSIONS; i++) {
+			versions[i] = randomVersion(random);
+		}
+		matcher = new AffectedVersionMatcher();
+		index = buildIndex();
+	}
+
+	@Benchmark
+	public AffectedRangeIndex buildIndex() {
+		AffectedRangeIndex.Builder builder = new AffectedRangeIndex.Builder();
+		for (int i = 0; i < affectedList.size(); i++) {
+			builder.add(i, affectedList.get(i));
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public int linearScan() {
+		int retval = 0;
+		for (String version:versions) {
+			BitSet affected = new BitSet();
+			for (int i = 0; i < affectedList.size(); i++) {
+				if (matcher.isAffected(affectedList.get(i), version)) {
+					affected.set(i);
+				}
+			}
+			retval += affected.cardinality();
+		}
+		return retval;
+	}
+
+	@Benchmark
+	public int intervalIndex() {
+		int retval = 0;
+		for (String version:versions) {
+			retval += index.affected(version).cardinality();
+		}
+		return retval;
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the string keyed relationship maps with recursive traversal previously used to find
+ * the relevant packages against the {@link DependencyGraph}
+ *
+ * The synthetic graph has one million edges between 100,000 elements arranged in layers so that
+ * the recursive traversal does not overflow the stack.
+ *
+ * @author Gary O'Neall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DependencyGraphBenchmark {
+
+	static final int NUM_ELEMENTS = 100_000;
+	static final int NUM_EDGES = 1_000_000;
+	static final int NUM_LAYERS = 50;
+
+	private String[] ids;
+	private int[] edgeFrom;
+	private int[] edgeTo;
+	private List<String> roots;
+	private Map<String, List<String>> edgeMap;
+	private DependencyGraph graph;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		ids = new String[NUM_ELEMENTS];
+		for (int i = 0; i < NUM_ELEMENTS; i++) {
+			ids[i] = "SPDXRef-Package-" + i;
+		}
+		// edges only go from one layer to the next layer
+		int layerSize = NUM_ELEMENTS / NUM_LAYERS;
+		edgeFrom = new int[NUM_EDGES];
+		edgeTo = new int[NUM_EDGES];
+		for (int i = 0; i < NUM_EDGES; i++) {
+			int layer = random.nextInt(NUM_LAYERS - 1);
+			edgeFrom[i] = layer * layerSize + random.nextInt(layerSize);
+			edgeTo[i] = (layer + 1) * layerSize + random.nextInt(layerSize);
+		}
+		roots = new ArrayList<>();
+		for (int i = 0; i < layerSize; i += 100) {
+			roots.add(ids[i]);
+		}
+		edgeMap = buildMap();
+		graph = buildGraph();
+	}
+
+	private Map<String, List<String>> buildMap() {
+		Map<String, List<String>> retval = new HashMap<>();
+		for (int i = 0; i < NUM_EDGES; i++) {
+			retval.computeIfAbsent(ids[edgeFrom[i]], id -> new ArrayList<>()).add(ids[edgeTo[i]]);
+		}
+		return retval;
+	}
+
+	private DependencyGraph buildGraph() {
+		DependencyGraph.Builder builder = new DependencyGraph.Builder();
+		for (int i = 0; i < NUM_EDGES; i++) {
+			builder.addEdge(ids[edgeFrom[i]], ids[edgeTo[i]]);
+		}
+		return builder.build();
+	}
+
+	private static void collectRecursive(String id, Map<String, List<String>> edgeMap, Set<String> visited) {
+		if (!visited.add(id)) {
+			return;
+		}
+		for (String relatedId:edgeMap.getOrDefault(id, Collections.emptyList())) {
+			collectRecursive(relatedId, edgeMap, visited);
+		}
+	}
+
+	@Benchmark
+	public Map<String, List<String>> buildHashMap() {
+		return buildMap();
+	}
+
+	@Benchmark
+	public DependencyGraph buildDependencyGraph() {
+		return buildGraph();
+	}
+
+	@Benchmark
+	public Set<String> traverseHashMap() {
+		Set<String> visited = new HashSet<>();
+		for (String root:roots) {
+			collectRecursive(root, edgeMap, visited);
+		}
+		return visited;
+	}
+
+	@Benchmark
+	public BitSet traverseDependencyGraph() {
+		return graph.reachableFrom(roots);
+	}
+}
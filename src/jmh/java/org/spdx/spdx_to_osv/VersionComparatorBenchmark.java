@@ -0,0 +1,96 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares sorting versions by parsing the version strings on every comparison against comparing
+ * the cached and pre-parsed {@link VersionScheme} keys
+ *
+ * The synthetic versions are 100,000 random versions in the style of the ecosystem including
+ * pre-releases.
+ *
+ * @author Gary O'Neall
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VersionComparatorBenchmark {
+
+	static final int NUM_VERSIONS = 100_000;
+	static final String[] PRE_RELEASES = {"alpha", "beta", "rc"};
+
+	@Param({"npm", "PyPI", "Maven"})
+	public String ecosystem;
+
+	private VersionScheme scheme;
+	private String[] versions;
+	private long[][] keys;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		scheme = VersionScheme.forEcosystem(ecosystem);
+		versions = new String[NUM_VERSIONS];
+		for (int i = 0; i < NUM_VERSIONS; i++) {
+			String release = random.nextInt(5) + "." + random.nextInt(30) + "." + random.nextInt(100);
+			if (random.nextInt(4) > 0) {
+				versions[i] = release;
+			} else {
+				String pre = PRE_RELEASES[random.nextInt(PRE_RELEASES.length)];
+				int preNumber = random.nextInt(10) + 1;
+				switch (ecosystem) {
+					case "PyPI": versions[i] = release + pre.charAt(0) + preNumber; break;
+					case "Maven": versions[i] = release + "-" + pre + "-" + preNumber; break;
+					default: versions[i] = release + "-" + pre + "." + preNumber;
+				}
+			}
+		}
+		keys = new long[NUM_VERSIONS][];
+		for (int i = 0; i < NUM_VERSIONS; i++) {
+			keys[i] = scheme.key(versions[i]);
+		}
+	}
+
+	@Benchmark
+	public String[] sortParsingEachComparison() {
+		String[] sorted = versions.clone();
+		Arrays.sort(sorted, (a, b) -> VersionScheme.compareKeys(scheme.parse(a), scheme.parse(b)));
+		return sorted;
+	}
+
+	@Benchmark
+	public String[] sortCachedKeys() {
+		String[] sorted = versions.clone();
+		Arrays.sort(sorted, scheme);
+		return sorted;
+	}
+
+	@Benchmark
+	public long[][] sortPreParsedKeys() {
+		long[][] sorted = keys.clone();
+		Arrays.sort(sorted, VersionScheme::compareKeys);
+		return sorted;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+/**
+ * Limits the number of concurrent requests to a service adapting the limit to the observed latency and errors
+ *
+ * The limit follows an additive increase / multiplicative decrease (AIMD) scheme.  Each successful request
+ * whose latency is within the tolerance of the long term average latency adds <code>1/limit</code> to the
+ * limit, so the limit grows by about one per round trip while the limit is being used.  A dropped request
+ * (429, 5xx or I/O error) multiplies the limit by the drop backoff and a rising latency - the short term
+ * average exceeding the long term average by more than the tolerance - multiplies the limit by the latency
+ * backoff.  After a decrease, further decreases are ignored until the requests in flight at the time of the
+ * decrease have completed so that a single overload is not penalized once per request in flight.
+ *
+ * @author Gary O'Neall
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	public static final int DEFAULT_INITIAL_LIMIT = 8;
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	static final double DROP_BACKOFF = 0.5;
+	static final double LATENCY_BACKOFF = 0.9;
+	static final double LATENCY_TOLERANCE = 1.5;
+	static final double SHORT_SMOOTHING = 0.2;
+	static final double LONG_SMOOTHING = 0.02;
+
+	/**
+	 * Outcome of a request
+	 */
+	public enum Outcome {
+		SUCCESS,
+		/**
+		 * The service was overloaded or unavailable (e.g. 429, 5xx or an I/O error)
+		 */
+		DROPPED,
+		/**
+		 * The request failed for a reason unrelated to load (e.g. 4xx) - the limit is not changed
+		 */
+		IGNORED
+	}
+
+	private final int minLimit;
+	private final int maxLimit;
+	private double limit;
+	private int inFlight = 0;
+	private double shortLatency = -1;
+	private double longLatency = -1;
+	private long numCompleted = 0;
+	private long noDecreaseUntil = 0;
+
+	/**
+	 * @param maxLimit maximum concurrency
+	 */
+	public AdaptiveConcurrencyLimiter(int maxLimit) {
+		this(Math.min(DEFAULT_INITIAL_LIMIT, maxLimit), DEFAULT_MIN_LIMIT, maxLimit);
+	}
+
+	/**
+	 * @param initialLimit concurrency before any requests complete
+	 * @param minLimit minimum concurrency
+	 * @param maxLimit maximum concurrency
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Invalid concurrency limits");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = initialLimit;
+	}
+
+	/**
+	 * Wait until a request may be started
+	 * @throws InterruptedException
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (inFlight >= getLimit()) {
+			wait();
+		}
+		inFlight++;
+	}
+
+	/**
+	 * Record the completion of a request started with {@link #acquire()}
+	 * @param latencyNanos time taken by the request
+	 * @param outcome outcome of the request
+	 */
+	public synchronized void release(long latencyNanos, Outcome outcome) {
+		inFlight--;
+		numCompleted++;
+		if (Outcome.DROPPED.equals(outcome)) {
+			decrease(DROP_BACKOFF);
+		} else if (Outcome.SUCCESS.equals(outcome)) {
+			double latency = latencyNanos;
+			if (longLatency < 0) {
+				shortLatency = latency;
+				longLatency = latency;
+			} else {
+				shortLatency += SHORT_SMOOTHING * (latency - shortLatency);
+				longLatency += LONG_SMOOTHING * (latency - longLatency);
+			}
+			if (shortLatency > longLatency * LATENCY_TOLERANCE) {
+				decrease(LATENCY_BACKOFF);
+			} else if (inFlight + 1 >= getLimit() / 2) {
+				// only grow when the limit is being used
+				limit = Math.min(maxLimit, limit + 1.0 / limit);
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * @param backoff factor to multiply the limit by
+	 */
+	private void decrease(double backoff) {
+		if (numCompleted <= noDecreaseUntil) {
+			return;
+		}
+		limit = Math.max(minLimit, limit * backoff);
+		noDecreaseUntil = numCompleted + inFlight;	// the requests in flight were started at the old limit
+	}
+
+	/**
+	 * @return the current concurrency limit
+	 */
+	public synchronized int getLimit() {
+		return (int)limit;
+	}
+
+	/**
+	 * @return the number of requests in flight
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return the maximum concurrency
+	 */
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+}
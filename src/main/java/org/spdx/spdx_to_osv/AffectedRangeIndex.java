@@ -0,0 +1,394 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvEvent;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+
+/**
+ * Index of the versions affected by the vulnerabilities of a package
+ *
+ * The events of each <code>SEMVER</code> and <code>ECOSYSTEM</code> range are converted once into intervals
+ * of version keys following the same rules as the {@link AffectedVersionMatcher}.  The intervals for each
+ * {@link VersionScheme} are held in a static interval tree - an array sorted by the start of the interval where
+ * each element is the root of the elements on either side and also records the greatest end in that subtree -
+ * so finding every interval covering a version takes logarithmic time plus the number of intervals found rather
+ * than evaluating every range.  The affected <code>versions</code> lists of all of the affected packages are
+ * merged into one sorted array of the distinct versions with the records listing each version, so a version is
+ * found with a single binary search rather than checking the list of every affected package.
+ *
+ * @author Gary O'Neall
+ */
+public class AffectedRangeIndex {
+
+	/**
+	 * Intervals of versions sorted by start - a null start is before all versions and a null end is after
+	 * all versions
+	 */
+	static class IntervalTree {
+		private final long[][] starts;
+		private final long[][] ends;
+		private final boolean[] endInclusive;
+		private final int[] records;
+		private final long[][] maxEnds;
+		private final boolean[] maxEndInclusive;
+
+		/**
+		 * @param intervals intervals to index - sorted by this constructor
+		 */
+		IntervalTree(List<Interval> intervals) {
+			Collections.sort(intervals, (a, b) -> compareStarts(a.start, b.start));
+			int size = intervals.size();
+			starts = new long[size][];
+			ends = new long[size][];
+			endInclusive = new boolean[size];
+			records = new int[size];
+			maxEnds = new long[size][];
+			maxEndInclusive = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				Interval interval = intervals.get(i);
+				starts[i] = interval.start;
+				ends[i] = interval.end;
+				endInclusive[i] = interval.endInclusive;
+				records[i] = interval.record;
+			}
+			computeMaxEnds(0, size);
+		}
+
+		/**
+		 * Record the greatest end of each subtree at its root
+		 * @param from first index of the subtree
+		 * @param to index after the subtree
+		 * @return the root index of the subtree or -1 if empty
+		 */
+		private int computeMaxEnds(int from, int to) {
+			if (from >= to) {
+				return -1;
+			}
+			int mid = (from + to) >>> 1;
+			maxEnds[mid] = ends[mid];
+			maxEndInclusive[mid] = endInclusive[mid];
+			for (int child:new int[] {computeMaxEnds(from, mid), computeMaxEnds(mid + 1, to)}) {
+				if (child >= 0 && compareEnds(maxEnds[child], maxEndInclusive[child], maxEnds[mid], maxEndInclusive[mid]) > 0) {
+					maxEnds[mid] = maxEnds[child];
+					maxEndInclusive[mid] = maxEndInclusive[child];
+				}
+			}
+			return mid;
+		}
+
+		/**
+		 * @param version key of the version
+		 * @param found set with the records of the intervals covering the version
+		 */
+		void find(long[] version, BitSet found) {
+			find(version, 0, starts.length, found);
+		}
+
+		private void find(long[] version, int from, int to, BitSet found) {
+			if (from >= to) {
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			if (!isBeforeEnd(version, maxEnds[mid], maxEndInclusive[mid])) {
+				return;	// every interval in the subtree ends before the version
+			}
+			find(version, from, mid, found);
+			if (Objects.isNull(starts[mid]) || VersionScheme.compareKeys(starts[mid], version) <= 0) {
+				if (isBeforeEnd(version, ends[mid], endInclusive[mid])) {
+					found.set(records[mid]);
+				}
+				// the intervals after mid start after the version if mid does
+				find(version, mid + 1, to, found);
+			}
+		}
+
+		int size() {
+			return starts.length;
+		}
+	}
+
+	/**
+	 * Interval of version keys affected by a vulnerability record
+	 */
+	static class Interval {
+		final int record;
+		final long[] start;
+		final long[] end;
+		final boolean endInclusive;
+
+		/**
+		 * @param record index of the vulnerability record
+		 * @param start first version affected - null for all versions before the end
+		 * @param end end of the affected versions - null for all versions after the start
+		 * @param endInclusive true if the end version is affected
+		 */
+		Interval(int record, long[] start, long[] end, boolean endInclusive) {
+			this.record = record;
+			this.start = start;
+			this.end = end;
+			this.endInclusive = endInclusive;
+		}
+	}
+
+	/**
+	 * Builds an index from the affected packages
+	 */
+	public static class Builder {
+		private final Map<VersionScheme, List<Interval>> intervals = new LinkedHashMap<>();
+		private final Map<String, List<Integer>> versionRecords = new HashMap<>();
+		private final BitSet records = new BitSet();
+
+		/**
+		 * @param record index of the vulnerability record
+		 * @param affected affected package in the record
+		 * @return this builder
+		 */
+		public Builder add(int record, OsvAffected affected) {
+			records.set(record);
+			List<String> affectedVersions = affected.getVersions();
+			if (Objects.nonNull(affectedVersions)) {
+				for (String version:affectedVersions) {
+					if (Objects.nonNull(version)) {
+						List<Integer> versionRecordList = versionRecords.computeIfAbsent(version, v -> new ArrayList<>(1));
+						if (versionRecordList.isEmpty() || versionRecordList.get(versionRecordList.size() - 1) != record) {
+							versionRecordList.add(record);
+						}
+					}
+				}
+			}
+			if (Objects.nonNull(affected.getRanges())) {
+				for (OsvRange range:affected.getRanges()) {
+					VersionScheme scheme = rangeScheme(range.getType(), affected.getOsvPackage());
+					if (Objects.nonNull(scheme)) {
+						addRange(record, range, scheme);
+					}
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Convert the events of a range into intervals
+		 * @param record index of the vulnerability record
+		 * @param range affected range
+		 * @param scheme order of the versions in the range
+		 */
+		private void addRange(int record, OsvRange range, VersionScheme scheme) {
+			if (Objects.isNull(range.getEvents())) {
+				return;
+			}
+			List<OsvEvent> events = new ArrayList<>(range.getEvents().size());
+			List<long[]> keys = new ArrayList<>(range.getEvents().size());
+			long[] limit = null;	// versions must be below the greatest limit
+			for (OsvEvent event:range.getEvents()) {
+				if (Objects.nonNull(event.getLimit())) {
+					long[] limitKey = scheme.key(event.getLimit());
+					if (Objects.isNull(limit) || VersionScheme.compareKeys(limitKey, limit) > 0) {
+						limit = limitKey;
+					}
+				} else if (Objects.nonNull(event.getIntroduced()) || Objects.nonNull(event.getFixed()) ||
+						Objects.nonNull(event.getLastAffected())) {
+					events.add(event);
+				}
+			}
+			// sort the events by version with the introduced version 0 first
+			List<Integer> order = new ArrayList<>(events.size());
+			for (int i = 0; i < events.size(); i++) {
+				OsvEvent event = events.get(i);
+				String version = Objects.nonNull(event.getIntroduced()) ? event.getIntroduced() :
+						Objects.nonNull(event.getFixed()) ? event.getFixed() : event.getLastAffected();
+				keys.add(AffectedVersionMatcher.ZERO_VERSION.equals(version) && Objects.nonNull(event.getIntroduced()) ?
+						null : scheme.key(version));
+				order.add(i);
+			}
+			order.sort((a, b) -> compareStarts(keys.get(a), keys.get(b)));
+			List<Interval> schemeIntervals = intervals.computeIfAbsent(scheme, s -> new ArrayList<>());
+			boolean open = false;
+			long[] start = null;
+			for (int i:order) {
+				OsvEvent event = events.get(i);
+				if (Objects.nonNull(event.getIntroduced())) {
+					if (!open) {
+						open = true;
+						start = keys.get(i);
+					}
+				} else if (open) {
+					addInterval(schemeIntervals, record, start, keys.get(i), Objects.isNull(event.getFixed()), limit);
+					open = false;
+				}
+			}
+			if (open) {
+				addInterval(schemeIntervals, record, start, null, false, limit);
+			}
+		}
+
+		/**
+		 * Add an interval ending no later than the limit if it is not empty
+		 */
+		private static void addInterval(List<Interval> schemeIntervals, int record, long[] start, long[] end,
+				boolean endInclusive, long[] limit) {
+			if (Objects.nonNull(limit) && compareEnds(limit, false, end, endInclusive) < 0) {
+				end = limit;
+				endInclusive = false;
+			}
+			if (Objects.nonNull(start) && Objects.nonNull(end)) {
+				int compare = VersionScheme.compareKeys(start, end);
+				if (compare > 0 || (compare == 0 && !endInclusive)) {
+					return;
+				}
+			}
+			schemeIntervals.add(new Interval(record, start, end, endInclusive));
+		}
+
+		/**
+		 * @return the index of the affected packages added
+		 */
+		public AffectedRangeIndex build() {
+			Map<VersionScheme, IntervalTree> trees = new LinkedHashMap<>();
+			for (Map.Entry<VersionScheme, List<Interval>> entry:intervals.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					trees.put(entry.getKey(), new IntervalTree(entry.getValue()));
+				}
+			}
+			String[] versions = versionRecords.keySet().toArray(new String[versionRecords.size()]);
+			Arrays.sort(versions);
+			int[] versionOffsets = new int[versions.length + 1];
+			int numVersionRecords = 0;
+			for (int i = 0; i < versions.length; i++) {
+				versionOffsets[i] = numVersionRecords;
+				numVersionRecords += versionRecords.get(versions[i]).size();
+			}
+			versionOffsets[versions.length] = numVersionRecords;
+			int[] recordArray = new int[numVersionRecords];
+			for (int i = 0; i < versions.length; i++) {
+				int offset = versionOffsets[i];
+				for (int record:versionRecords.get(versions[i])) {
+					recordArray[offset++] = record;
+				}
+			}
+			return new AffectedRangeIndex(trees, versions, versionOffsets, recordArray, records);
+		}
+	}
+
+	private final Map<VersionScheme, IntervalTree> trees;
+	/**
+	 * Distinct versions listed in the affected <code>versions</code> in sorted order
+	 */
+	private final String[] versions;
+	/**
+	 * Offset in the version records of the records listing each version followed by the number of version records
+	 */
+	private final int[] versionOffsets;
+	private final int[] versionRecords;
+	private final BitSet records;
+
+	private AffectedRangeIndex(Map<VersionScheme, IntervalTree> trees, String[] versions, int[] versionOffsets,
+			int[] versionRecords, BitSet records) {
+		this.trees = trees;
+		this.versions = versions;
+		this.versionOffsets = versionOffsets;
+		this.versionRecords = versionRecords;
+		this.records = records;
+	}
+
+	/**
+	 * @param type range type
+	 * @param osvPackage affected package
+	 * @return the scheme ordering the versions in the range or null if the range is not evaluated
+	 */
+	static VersionScheme rangeScheme(OsvRangeType type, OsvPackage osvPackage) {
+		if (OsvRangeType.SEMVER.equals(type)) {
+			return VersionScheme.SEMVER;
+		} else if (OsvRangeType.ECOSYSTEM.equals(type)) {
+			return VersionScheme.forEcosystem(Objects.isNull(osvPackage) ? null : osvPackage.getEcosystem());
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * @param a first start - null before all versions
+	 * @param b second start - null before all versions
+	 * @return comparison of the starts
+	 */
+	static int compareStarts(long[] a, long[] b) {
+		if (Objects.isNull(a)) {
+			return Objects.isNull(b) ? 0 : -1;
+		} else if (Objects.isNull(b)) {
+			return 1;
+		}
+		return VersionScheme.compareKeys(a, b);
+	}
+
+	/**
+	 * @return comparison of the ends - null after all versions and an inclusive end after an exclusive end
+	 */
+	static int compareEnds(long[] a, boolean aInclusive, long[] b, boolean bInclusive) {
+		if (Objects.isNull(a)) {
+			return Objects.isNull(b) ? 0 : 1;
+		} else if (Objects.isNull(b)) {
+			return -1;
+		}
+		int compare = VersionScheme.compareKeys(a, b);
+		return compare != 0 ? compare : Boolean.compare(aInclusive, bInclusive);
+	}
+
+	/**
+	 * @return true if the version is before the end of an interval
+	 */
+	private static boolean isBeforeEnd(long[] version, long[] end, boolean endInclusive) {
+		if (Objects.isNull(end)) {
+			return true;
+		}
+		int compare = VersionScheme.compareKeys(version, end);
+		return compare < 0 || (compare == 0 && endInclusive);
+	}
+
+	/**
+	 * @param version version of the package - null for any version
+	 * @return the records listing the version in the affected versions or with a range including the version
+	 */
+	public BitSet affected(String version) {
+		if (Objects.isNull(version)) {
+			return (BitSet)records.clone();
+		}
+		BitSet retval = new BitSet();
+		int versionIndex = Arrays.binarySearch(versions, version);
+		if (versionIndex >= 0) {
+			for (int i = versionOffsets[versionIndex]; i < versionOffsets[versionIndex + 1]; i++) {
+				retval.set(versionRecords[i]);
+			}
+		}
+		for (Map.Entry<VersionScheme, IntervalTree> entry:trees.entrySet()) {
+			entry.getValue().find(entry.getKey().key(version), retval);
+		}
+		return retval;
+	}
+
+	/**
+	 * @return the number of intervals indexed
+	 */
+	public int getNumIntervals() {
+		int retval = 0;
+		for (IntervalTree tree:trees.values()) {
+			retval += tree.size();
+		}
+		return retval;
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvEvent;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+/**
+ * Decides locally whether a package version is affected by a vulnerability
+ *
+ * A version is affected if it is listed in the affected <code>versions</code> or falls within one of the
+ * <code>SEMVER</code> or <code>ECOSYSTEM</code> ranges.  The events of a range are evaluated in version order
+ * as described in the OSV schema - the version is affected from an <code>introduced</code> event up to a
+ * <code>fixed</code> event or through a <code>last_affected</code> event, and must be below any <code>limit</code>.
+ * <code>SEMVER</code> ranges are ordered by SemVer 2.0 precedence.  <code>ECOSYSTEM</code> ranges are ordered
+ * by the comparator for the package ecosystem - by default the {@link VersionScheme} for the ecosystem.
+ * <code>GIT</code> ranges are not evaluated.
+ *
+ * @author Gary O'Neall
+ */
+public class AffectedVersionMatcher {
+
+	/**
+	 * Introduced version meaning all versions
+	 */
+	static final String ZERO_VERSION = "0";
+
+	/**
+	 * SemVer 2.0 precedence - a leading <code>v</code> is ignored, missing minor or patch numbers are 0 and
+	 * build metadata is ignored
+	 */
+	public static final Comparator<String> SEMVER_ORDER = VersionScheme.SEMVER;
+
+	/**
+	 * Order for versions of an unknown scheme - numeric parts are compared numerically and other parts
+	 * lexically, with a version followed by non-numeric parts (e.g. <code>1.0-beta</code>) before the version
+	 */
+	public static final Comparator<String> GENERIC_ORDER = VersionScheme.GENERIC;
+
+	/**
+	 * Range event with the key of its version
+	 */
+	private static class KeyedEvent<K> {
+		final OsvEvent event;
+		final K key;
+
+		KeyedEvent(OsvEvent event, K key) {
+			this.event = event;
+			this.key = key;
+		}
+	}
+
+	private final Function<String, Comparator<String>> ecosystemOrder;
+
+	/**
+	 * Create a matcher ordering ecosystem ranges with the {@link VersionScheme} for the ecosystem
+	 */
+	public AffectedVersionMatcher() {
+		this(VersionScheme::forEcosystem);
+	}
+
+	/**
+	 * @param ecosystemOrder version order for an OSV ecosystem used for <code>ECOSYSTEM</code> ranges
+	 */
+	public AffectedVersionMatcher(Function<String, Comparator<String>> ecosystemOrder) {
+		Objects.requireNonNull(ecosystemOrder, "Ecosystem order can not be null");
+		this.ecosystemOrder = ecosystemOrder;
+	}
+
+	/**
+	 * @param vulnerability vulnerability record
+	 * @param osvPackage package - matched by ecosystem and name or by purl
+	 * @param version version of the package - null for any version
+	 * @return true if the version of the package is affected by the vulnerability
+	 */
+	public boolean affects(OsvVulnerability vulnerability, OsvPackage osvPackage, String version) {
+		if (Objects.isNull(vulnerability.getAffected())) {
+			return false;
+		}
+		for (OsvAffected affected:vulnerability.getAffected()) {
+			if (isSamePackage(affected.getOsvPackage(), osvPackage) && isAffected(affected, version)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param vulnerabilities vulnerability records
+	 * @param osvPackage package - matched by ecosystem and name or by purl
+	 * @param version version of the package - null for any version
+	 * @return the vulnerabilities affecting the version of the package
+	 */
+	public List<OsvVulnerability> filter(List<OsvVulnerability> vulnerabilities, OsvPackage osvPackage, String version) {
+		List<OsvVulnerability> retval = new ArrayList<>();
+		for (OsvVulnerability vulnerability:vulnerabilities) {
+			if (affects(vulnerability, osvPackage, version)) {
+				retval.add(vulnerability);
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param affectedPackage package in an affected entry
+	 * @param osvPackage package queried
+	 * @return true if the packages match by ecosystem and name, by name if the queried package has no ecosystem,
+	 * or by purl
+	 */
+	static boolean isSamePackage(OsvPackage affectedPackage, OsvPackage osvPackage) {
+		if (Objects.isNull(affectedPackage) || Objects.isNull(affectedPackage.getName())) {
+			return false;
+		}
+		if (Objects.nonNull(osvPackage.getPurl()) && Objects.nonNull(affectedPackage.getPurl()) &&
+				LocalOsvDatabase.normalizePurl(osvPackage.getPurl()).equals(
+						LocalOsvDatabase.normalizePurl(affectedPackage.getPurl()))) {
+			return true;
+		}
+		if (Objects.isNull(osvPackage.getName())) {
+			return false;
+		}
+		if (Objects.isNull(osvPackage.getEcosystem())) {
+			return osvPackage.getName().equals(affectedPackage.getName());
+		}
+		return LocalOsvDatabase.packageKey(osvPackage.getEcosystem(), osvPackage.getName()).equals(
+				LocalOsvDatabase.packageKey(affectedPackage.getEcosystem(), affectedPackage.getName()));
+	}
+
+	/**
+	 * @param affected affected package
+	 * @param version version of the package - null for any version
+	 * @return true if the version is listed in the affected versions or is within one of the affected ranges
+	 */
+	public boolean isAffected(OsvAffected affected, String version) {
+		if (Objects.isNull(version)) {
+			return true;
+		}
+		if (Objects.nonNull(affected.getVersions()) && affected.getVersions().contains(version)) {
+			return true;
+		}
+		if (Objects.isNull(affected.getRanges())) {
+			return false;
+		}
+		for (OsvRange range:affected.getRanges()) {
+			Comparator<String> order = rangeOrder(range.getType(), affected.getOsvPackage());
+			if (Objects.nonNull(order) && isInRange(range, version, order)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param type range type
+	 * @param osvPackage affected package
+	 * @return the order of the versions in the range or null if the range is not evaluated
+	 */
+	private Comparator<String> rangeOrder(OsvRangeType type, OsvPackage osvPackage) {
+		if (OsvRangeType.SEMVER.equals(type)) {
+			return SEMVER_ORDER;
+		} else if (OsvRangeType.ECOSYSTEM.equals(type)) {
+			return ecosystemOrder.apply(Objects.isNull(osvPackage) ? null : osvPackage.getEcosystem());
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * @param range range of versions
+	 * @param version version to check
+	 * @param order order of the versions - the versions are parsed once if the order is a {@link VersionScheme}
+	 * @return true if the version is within the range
+	 */
+	static boolean isInRange(OsvRange range, String version, Comparator<String> order) {
+		if (order instanceof VersionScheme) {
+			VersionScheme scheme = (VersionScheme) order;
+			return isInRange(range, scheme.key(version), scheme::key, VersionScheme::compareKeys);
+		}
+		return isInRange(range, version, Function.identity(), order);
+	}
+
+	/**
+	 * @param range range of versions
+	 * @param version key of the version to check
+	 * @param keyOf key for a version
+	 * @param order order of the keys
+	 * @return true if the version is within the range
+	 */
+	private static <K> boolean isInRange(OsvRange range, K version, Function<String, K> keyOf, Comparator<K> order) {
+		if (Objects.isNull(range.getEvents()) || range.getEvents().isEmpty()) {
+			return false;
+		}
+		List<KeyedEvent<K>> events = new ArrayList<>(range.getEvents().size());
+		boolean hasLimit = false;
+		boolean belowLimit = false;
+		for (OsvEvent event:range.getEvents()) {
+			if (Objects.nonNull(event.getLimit())) {
+				hasLimit = true;
+				if (order.compare(version, keyOf.apply(event.getLimit())) < 0) {
+					belowLimit = true;
+				}
+			} else if (Objects.nonNull(eventVersion(event))) {
+				String eventVersion = eventVersion(event);
+				// the introduced version 0 is before all versions
+				events.add(new KeyedEvent<>(event, ZERO_VERSION.equals(event.getIntroduced()) ? null :
+					keyOf.apply(eventVersion)));
+			}
+		}
+		if (hasLimit && !belowLimit) {
+			return false;
+		}
+		events.sort((a, b) -> Objects.isNull(a.key) ? (Objects.isNull(b.key) ? 0 : -1) :
+				Objects.isNull(b.key) ? 1 : order.compare(a.key, b.key));
+		boolean affected = false;
+		for (KeyedEvent<K> keyed:events) {
+			OsvEvent event = keyed.event;
+			if (Objects.nonNull(event.getIntroduced())) {
+				if (Objects.isNull(keyed.key) || order.compare(version, keyed.key) >= 0) {
+					affected = true;
+				}
+			} else if (Objects.nonNull(event.getFixed())) {
+				if (order.compare(version, keyed.key) >= 0) {
+					affected = false;
+				}
+			} else if (order.compare(version, keyed.key) > 0) {
+				affected = false;
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * @param event range event
+	 * @return the introduced, fixed or last affected version of the event
+	 */
+	private static String eventVersion(OsvEvent event) {
+		if (Objects.nonNull(event.getIntroduced())) {
+			return event.getIntroduced();
+		} else if (Objects.nonNull(event.getFixed())) {
+			return event.getFixed();
+		} else {
+			return event.getLastAffected();
+		}
+	}
+}
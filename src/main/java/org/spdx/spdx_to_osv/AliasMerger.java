@@ -0,0 +1,353 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Merges vulnerability records which describe the same issue in different databases (e.g. GHSA-, PYSEC- and CVE-
+ * records which refer to each other through their <code>aliases</code>)
+ *
+ * The ID's and aliases are mapped to dense integer indexes and grouped with a union-find (disjoint set) structure
+ * using path halving and union by size, so grouping is near linear in the total number of ID's and aliases.
+ * Aliases are treated as symmetric and transitive - if A lists B and C lists B then A, B and C are one group.
+ *
+ * Each group is replaced by a single canonical record - a copy of the record whose ID is first in the primary ID
+ * order with the ID's of all other records and aliases in the group as its aliases.  The <code>affected</code>,
+ * <code>severity</code> and <code>references</code> entries and the <code>database_specific</code> properties of
+ * the other records are added to the canonical record, so a package listed as affected by only one of the databases
+ * is still matched.
+ *
+ * @author Gary O'Neall
+ */
+public class AliasMerger {
+
+	/**
+	 * Default database prefixes in order of preference for the primary ID
+	 */
+	public static final List<String> DEFAULT_PRIMARY_ID_PREFIXES = Collections.unmodifiableList(Arrays.asList("CVE", "GHSA"));
+
+	/**
+	 * Array properties containing the distinct entries of all records in a group
+	 */
+	private static final List<String> UNION_PROPERTIES = Collections.unmodifiableList(Arrays.asList("affected", "severity", "references"));
+	private static final String DATABASE_SPECIFIC_PROPERTY = "database_specific";
+
+	private final Comparator<String> primaryIdOrder;
+
+	/**
+	 * Create a merger preferring the {@link #DEFAULT_PRIMARY_ID_PREFIXES}
+	 */
+	public AliasMerger() {
+		this(preferPrefixes(DEFAULT_PRIMARY_ID_PREFIXES));
+	}
+
+	/**
+	 * @param primaryIdOrder order of the vulnerability ID's - the first record ID in a group is the primary ID
+	 */
+	public AliasMerger(Comparator<String> primaryIdOrder) {
+		Objects.requireNonNull(primaryIdOrder, "Primary ID order can not be null");
+		this.primaryIdOrder = primaryIdOrder;
+	}
+
+	/**
+	 * @param prefixes database prefixes (e.g. <code>CVE</code> or <code>GHSA</code>) in order of preference
+	 * @return order of vulnerability ID's by the first matching prefix then by the ID - ID's not matching any prefix are last
+	 */
+	public static Comparator<String> preferPrefixes(List<String> prefixes) {
+		Objects.requireNonNull(prefixes, "Prefixes can not be null");
+		List<String> dashedPrefixes = new ArrayList<>(prefixes.size());
+		for (String prefix:prefixes) {
+			dashedPrefixes.add(prefix.endsWith("-") ? prefix : prefix + "-");
+		}
+		Comparator<String> byPrefix = Comparator.comparingInt(id -> {
+			for (int i = 0; i < dashedPrefixes.size(); i++) {
+				if (id.startsWith(dashedPrefixes.get(i))) {
+					return i;
+				}
+			}
+			return dashedPrefixes.size();
+		});
+		return byPrefix.thenComparing(Comparator.naturalOrder());
+	}
+
+	/**
+	 * Group the vulnerabilities which are aliases of each other
+	 * @param vulnerabilities vulnerabilities to group - vulnerabilities without an ID are never grouped
+	 * @return the group number of each vulnerability - groups are numbered from 0 in order of their first vulnerability
+	 */
+	public int[] group(List<OsvVulnerability> vulnerabilities) {
+		Map<String, Integer> idToIndex = new HashMap<>();
+		int[] parent = new int[Math.max(16, vulnerabilities.size())];
+		int[] size = new int[parent.length];
+		int numIds = 0;
+		int[] vulnIndexes = new int[vulnerabilities.size()];
+		for (int i = 0; i < vulnerabilities.size(); i++) {
+			OsvVulnerability vulnerability = vulnerabilities.get(i);
+			if (Objects.isNull(vulnerability.getId())) {
+				vulnIndexes[i] = -1;
+				continue;
+			}
+			List<String> ids = new ArrayList<>();
+			ids.add(vulnerability.getId());
+			if (Objects.nonNull(vulnerability.getAliases())) {
+				ids.addAll(vulnerability.getAliases());
+			}
+			int first = -1;
+			for (String id:ids) {
+				if (Objects.isNull(id)) {
+					continue;
+				}
+				Integer index = idToIndex.get(id);
+				if (Objects.isNull(index)) {
+					index = numIds++;
+					if (index == parent.length) {
+						parent = Arrays.copyOf(parent, parent.length * 2);
+						size = Arrays.copyOf(size, size.length * 2);
+					}
+					parent[index] = index;
+					size[index] = 1;
+					idToIndex.put(id, index);
+				}
+				if (first < 0) {
+					first = index;
+				} else {
+					union(parent, size, first, index);
+				}
+			}
+			vulnIndexes[i] = first;
+		}
+		int[] retval = new int[vulnerabilities.size()];
+		int[] rootGroup = new int[numIds];
+		Arrays.fill(rootGroup, -1);
+		int numGroups = 0;
+		for (int i = 0; i < retval.length; i++) {
+			if (vulnIndexes[i] < 0) {
+				retval[i] = numGroups++;
+			} else {
+				int root = find(parent, vulnIndexes[i]);
+				if (rootGroup[root] < 0) {
+					rootGroup[root] = numGroups++;
+				}
+				retval[i] = rootGroup[root];
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param parent parent of each index
+	 * @param index index to find the root for
+	 * @return the root of the set containing the index
+	 */
+	private static int find(int[] parent, int index) {
+		while (parent[index] != index) {
+			parent[index] = parent[parent[index]];	// path halving
+			index = parent[index];
+		}
+		return index;
+	}
+
+	/**
+	 * Merge the sets containing two indexes
+	 * @param parent parent of each index
+	 * @param size size of the set for each root
+	 * @param a index in the first set
+	 * @param b index in the second set
+	 */
+	private static void union(int[] parent, int[] size, int a, int b) {
+		int rootA = find(parent, a);
+		int rootB = find(parent, b);
+		if (rootA == rootB) {
+			return;
+		}
+		if (size[rootA] < size[rootB]) {
+			int swap = rootA;
+			rootA = rootB;
+			rootB = swap;
+		}
+		parent[rootB] = rootA;
+		size[rootA] += size[rootB];
+	}
+
+	/**
+	 * @param vulnerabilities vulnerabilities to merge
+	 * @return one canonical vulnerability for each group of aliases in order of the first vulnerability in each group
+	 */
+	public List<OsvVulnerability> merge(List<OsvVulnerability> vulnerabilities) {
+		return merge(vulnerabilities, group(vulnerabilities));
+	}
+
+	/**
+	 * @param vulnerabilities vulnerabilities to merge
+	 * @param groups the group number of each vulnerability as returned by {@link #group(List)}
+	 * @return one canonical vulnerability for each group in order of the group numbers
+	 */
+	public List<OsvVulnerability> merge(List<OsvVulnerability> vulnerabilities, int[] groups) {
+		if (groups.length != vulnerabilities.size()) {
+			throw new IllegalArgumentException("Expected a group number for each vulnerability");
+		}
+		List<List<OsvVulnerability>> members = new ArrayList<>();
+		for (int i = 0; i < groups.length; i++) {
+			if (groups[i] == members.size()) {
+				members.add(new ArrayList<>(1));
+			}
+			members.get(groups[i]).add(vulnerabilities.get(i));
+		}
+		List<OsvVulnerability> retval = new ArrayList<>(members.size());
+		for (List<OsvVulnerability> group:members) {
+			retval.add(canonical(group));
+		}
+		return retval;
+	}
+
+	/**
+	 * @param group vulnerabilities which are aliases of each other
+	 * @return the group's primary vulnerability if it is the only member, otherwise a copy of the primary vulnerability
+	 * with the ID's of the other members and all of the aliases as its aliases and the distinct affected, severity,
+	 * references and database specific entries of all members
+	 */
+	public OsvVulnerability canonical(List<OsvVulnerability> group) {
+		if (group.isEmpty()) {
+			throw new IllegalArgumentException("Can not merge an empty group");
+		}
+		OsvVulnerability primary = group.get(0);
+		for (OsvVulnerability vulnerability:group) {
+			if (Objects.nonNull(vulnerability.getId()) && (Objects.isNull(primary.getId()) ||
+					primaryIdOrder.compare(vulnerability.getId(), primary.getId()) < 0)) {
+				primary = vulnerability;
+			}
+		}
+		if (group.size() == 1) {
+			return primary;
+		}
+		TreeSet<String> aliases = new TreeSet<>(primaryIdOrder);
+		TreeSet<String> related = new TreeSet<>(primaryIdOrder);
+		for (OsvVulnerability vulnerability:group) {
+			if (Objects.nonNull(vulnerability.getId())) {
+				aliases.add(vulnerability.getId());
+			}
+			if (Objects.nonNull(vulnerability.getAliases())) {
+				for (String alias:vulnerability.getAliases()) {
+					if (Objects.nonNull(alias)) {
+						aliases.add(alias);
+					}
+				}
+			}
+			if (Objects.nonNull(vulnerability.getRelated())) {
+				for (String relatedId:vulnerability.getRelated()) {
+					if (Objects.nonNull(relatedId)) {
+						related.add(relatedId);
+					}
+				}
+			}
+		}
+		aliases.remove(primary.getId());
+		related.removeAll(aliases);
+		related.remove(primary.getId());
+		// copy so that cached records are not modified
+		JsonObject json = OsvApi.GSON.toJsonTree(primary).getAsJsonObject();
+		List<JsonObject> members = new ArrayList<>(group.size() - 1);
+		for (OsvVulnerability vulnerability:group) {
+			if (vulnerability != primary) {
+				members.add(OsvApi.GSON.toJsonTree(vulnerability).getAsJsonObject());
+			}
+		}
+		for (String property:UNION_PROPERTIES) {
+			unionArray(json, members, property);
+		}
+		for (JsonObject member:members) {
+			unionObject(json, member, DATABASE_SPECIFIC_PROPERTY);
+		}
+		OsvVulnerability retval = OsvApi.GSON.fromJson(json, OsvVulnerability.class);
+		retval.setAliases(new ArrayList<>(aliases));
+		if (!related.isEmpty() || Objects.nonNull(primary.getRelated())) {
+			retval.setRelated(new ArrayList<>(related));
+		}
+		return retval;
+	}
+
+	/**
+	 * Add the elements of the members' array property not already in the canonical array property
+	 * @param canonical JSON of the canonical record
+	 * @param members JSON of the other records in the group
+	 * @param property name of the array property
+	 */
+	private static void unionArray(JsonObject canonical, List<JsonObject> members, String property) {
+		JsonArray canonicalArray = null;
+		// the elements are all serialized by the same Gson so equal elements have equal serializations
+		Set<String> seen = null;
+		for (JsonObject member:members) {
+			JsonElement memberElements = member.get(property);
+			if (Objects.isNull(memberElements) || !memberElements.isJsonArray()) {
+				continue;
+			}
+			if (Objects.isNull(canonicalArray)) {
+				JsonElement canonicalElements = canonical.get(property);
+				if (Objects.isNull(canonicalElements) || !canonicalElements.isJsonArray()) {
+					canonicalElements = new JsonArray();
+					canonical.add(property, canonicalElements);
+				}
+				canonicalArray = canonicalElements.getAsJsonArray();
+				seen = new HashSet<>();
+				for (JsonElement element:canonicalArray) {
+					seen.add(element.toString());
+				}
+			}
+			for (JsonElement element:memberElements.getAsJsonArray()) {
+				if (seen.add(element.toString())) {
+					canonicalArray.add(element);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the properties of a member's object property not already in the canonical object property - the
+	 * canonical values are kept for properties in both
+	 * @param canonical JSON of the canonical record
+	 * @param member JSON of another record in the group
+	 * @param property name of the object property
+	 */
+	private static void unionObject(JsonObject canonical, JsonObject member, String property) {
+		JsonElement memberObject = member.get(property);
+		if (Objects.isNull(memberObject) || !memberObject.isJsonObject()) {
+			return;
+		}
+		JsonElement canonicalObject = canonical.get(property);
+		if (Objects.isNull(canonicalObject) || !canonicalObject.isJsonObject()) {
+			canonicalObject = new JsonObject();
+			canonical.add(property, canonicalObject);
+		}
+		for (Map.Entry<String, JsonElement> entry:memberObject.getAsJsonObject().entrySet()) {
+			if (!canonicalObject.getAsJsonObject().has(entry.getKey())) {
+				canonicalObject.getAsJsonObject().add(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return the order of the vulnerability ID's used to select the primary ID
+	 */
+	public Comparator<String> getPrimaryIdOrder() {
+		return primaryIdOrder;
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker which stops calls to a failing service so that callers fail fast rather than each waiting
+ * for a timeout
+ *
+ * The breaker starts <code>CLOSED</code> and records the outcome of the most recent calls in a sliding window.
+ * Once at least the minimum number of calls have been recorded and the failure rate reaches the threshold the
+ * breaker is <code>OPEN</code> and no calls are permitted.  After the open duration the breaker is
+ * <code>HALF_OPEN</code> and permits a single trial call - the breaker closes if the trial succeeds and opens
+ * again if it fails.
+ *
+ * @author Gary O'Neall
+ */
+public class CircuitBreaker {
+
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	public static final int DEFAULT_MIN_CALLS = 10;
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+	public static final long DEFAULT_OPEN_MILLIS = 30000;
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	private final boolean[] window;
+	private final int minCalls;
+	private final double failureRateThreshold;
+	private final long openNanos;
+	private final LongSupplier clock;
+	private State state = State.CLOSED;
+	private int windowPosition = 0;
+	private int numRecorded = 0;
+	private int numFailures = 0;
+	private long openedAt = 0;
+	private boolean trialInFlight = false;
+
+	/**
+	 * Create a circuit breaker with the default settings
+	 */
+	public CircuitBreaker() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+	}
+
+	/**
+	 * @param windowSize number of most recent calls used to compute the failure rate
+	 * @param minCalls minimum number of recorded calls before the breaker may open
+	 * @param failureRateThreshold failure rate (0 to 1) at which the breaker opens
+	 * @param openMillis time the breaker stays open before permitting a trial call
+	 */
+	public CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, long openMillis) {
+		this(windowSize, minCalls, failureRateThreshold, openMillis, System::nanoTime);
+	}
+
+	/**
+	 * @param windowSize number of most recent calls used to compute the failure rate
+	 * @param minCalls minimum number of recorded calls before the breaker may open
+	 * @param failureRateThreshold failure rate (0 to 1) at which the breaker opens
+	 * @param openMillis time the breaker stays open before permitting a trial call
+	 * @param clock source of the current time in nanoseconds
+	 */
+	CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, long openMillis, LongSupplier clock) {
+		if (windowSize < 1 || minCalls < 1 || minCalls > windowSize) {
+			throw new IllegalArgumentException("Invalid circuit breaker window");
+		}
+		if (failureRateThreshold <= 0 || failureRateThreshold > 1 || openMillis < 0) {
+			throw new IllegalArgumentException("Invalid circuit breaker threshold");
+		}
+		this.window = new boolean[windowSize];
+		this.minCalls = minCalls;
+		this.failureRateThreshold = failureRateThreshold;
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+		this.clock = clock;
+	}
+
+	/**
+	 * Check whether a call may be made - a permitted call must be followed by {@link #recordSuccess()},
+	 * {@link #recordFailure()} or {@link #recordCancelled()}
+	 * @return true if the call is permitted
+	 */
+	public synchronized boolean tryAcquire() {
+		if (State.OPEN.equals(state) && clock.getAsLong() - openedAt >= openNanos) {
+			state = State.HALF_OPEN;
+		}
+		switch (state) {
+			case CLOSED: return true;
+			case HALF_OPEN:
+				if (trialInFlight) {
+					return false;
+				}
+				trialInFlight = true;
+				return true;
+			default: return false;
+		}
+	}
+
+	/**
+	 * Record a successful call
+	 */
+	public synchronized void recordSuccess() {
+		if (State.HALF_OPEN.equals(state)) {
+			trialInFlight = false;
+			state = State.CLOSED;
+			resetWindow();
+		} else if (State.CLOSED.equals(state)) {
+			record(false);
+		}
+	}
+
+	/**
+	 * Record a failed call
+	 */
+	public synchronized void recordFailure() {
+		if (State.HALF_OPEN.equals(state)) {
+			trialInFlight = false;
+			open();
+		} else if (State.CLOSED.equals(state)) {
+			record(true);
+			if (numRecorded >= minCalls && numFailures >= failureRateThreshold * numRecorded) {
+				open();
+			}
+		}
+	}
+
+	/**
+	 * Record a call which was cancelled by the caller - the call is not counted but a trial call may be made again
+	 */
+	public synchronized void recordCancelled() {
+		if (State.HALF_OPEN.equals(state)) {
+			trialInFlight = false;
+		}
+	}
+
+	/**
+	 * @param failure true if the call failed
+	 */
+	private void record(boolean failure) {
+		if (numRecorded == window.length) {
+			if (window[windowPosition]) {
+				numFailures--;
+			}
+		} else {
+			numRecorded++;
+		}
+		window[windowPosition] = failure;
+		if (failure) {
+			numFailures++;
+		}
+		windowPosition = (windowPosition + 1) % window.length;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAt = clock.getAsLong();
+		resetWindow();
+	}
+
+	private void resetWindow() {
+		windowPosition = 0;
+		numRecorded = 0;
+		numFailures = 0;
+	}
+
+	/**
+	 * @return the current state
+	 */
+	public synchronized State getState() {
+		if (State.OPEN.equals(state) && clock.getAsLong() - openedAt >= openNanos) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+}
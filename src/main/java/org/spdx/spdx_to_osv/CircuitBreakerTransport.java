@@ -0,0 +1,126 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Transport which fails fast with a {@link CircuitOpenException} while the {@link CircuitBreaker} for an
+ * endpoint is open
+ *
+ * Endpoints are identified as in {@link RetryingTransport}.  I/O errors and 5xx responses are failures - 
+ * any other response, including 429 which is handled by retrying and limiting the concurrency, shows the 
+ * service is available.  Requests which are cancelled (see {@link RequestCancellation}) or interrupted are
+ * not counted as failures.
+ *
+ * @author Gary O'Neall
+ */
+public class CircuitBreakerTransport implements HttpTransport {
+
+	/**
+	 * A single request
+	 */
+	@FunctionalInterface
+	private interface Request {
+		HttpResponse execute() throws IOException;
+	}
+
+	private final HttpTransport delegate;
+	private final Supplier<CircuitBreaker> breakerFactory;
+	private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 */
+	public CircuitBreakerTransport(HttpTransport delegate) {
+		this(delegate, CircuitBreaker::new);
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param breakerFactory creates the circuit breaker for each endpoint
+	 */
+	public CircuitBreakerTransport(HttpTransport delegate, Supplier<CircuitBreaker> breakerFactory) {
+		Objects.requireNonNull(delegate, "Delegate transport can not be null");
+		Objects.requireNonNull(breakerFactory, "Circuit breaker factory can not be null");
+		this.delegate = delegate;
+		this.breakerFactory = breakerFactory;
+	}
+
+	@Override
+	public HttpResponse get(URL url, String accept) throws IOException {
+		return execute(url, () -> delegate.get(url, accept));
+	}
+
+	@Override
+	public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+		return execute(url, () -> delegate.post(url, contentType, accept, body));
+	}
+
+	/**
+	 * @param url URL for the request
+	 * @param request request to execute if permitted by the circuit breaker for the endpoint
+	 * @return the response
+	 * @throws IOException
+	 * @throws CircuitOpenException if the circuit breaker is open
+	 */
+	private HttpResponse execute(URL url, Request request) throws IOException {
+		String endpoint = RetryingTransport.endpoint(url);
+		CircuitBreaker breaker = breakers.computeIfAbsent(endpoint, e -> breakerFactory.get());
+		if (!breaker.tryAcquire()) {
+			throw new CircuitOpenException("Circuit breaker is open for "+endpoint+" after repeated failures");
+		}
+		HttpResponse response;
+		try {
+			response = request.execute();
+		} catch (IOException | RuntimeException e) {
+			if (isCancelled(e)) {
+				breaker.recordCancelled();
+			} else {
+				breaker.recordFailure();
+			}
+			throw e;
+		}
+		if (response.getStatusCode() >= 500) {
+			breaker.recordFailure();
+		} else {
+			breaker.recordSuccess();
+		}
+		return response;
+	}
+
+	/**
+	 * @param e exception thrown by a request
+	 * @return true if the request failed because it was cancelled or interrupted rather than because of the service
+	 */
+	static boolean isCancelled(Exception e) {
+		return RequestCancellation.isCurrentCancelled() ||
+				(e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException));
+	}
+
+	/**
+	 * @return the circuit breaker state for each endpoint which has been used
+	 */
+	public Map<String, CircuitBreaker.State> getStates() {
+		Map<String, CircuitBreaker.State> retval = new TreeMap<>();
+		breakers.forEach((endpoint, breaker) -> retval.put(endpoint, breaker.getState()));
+		return retval;
+	}
+
+	/**
+	 * @return the transport used to execute the requests
+	 */
+	public HttpTransport getDelegate() {
+		return delegate;
+	}
+}
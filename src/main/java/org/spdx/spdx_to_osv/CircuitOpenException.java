@@ -0,0 +1,29 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+
+/**
+ * Exception when a request is not sent because the circuit breaker for the endpoint is open
+ * 
+ * @author Gary O'Neall
+ *
+ */
+public class CircuitOpenException extends IOException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 */
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+
+}
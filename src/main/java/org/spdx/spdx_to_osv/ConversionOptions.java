@@ -0,0 +1,93 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+/**
+ * Options for a single conversion of an SPDX document to OSV
+ *
+ * The options are passed to each conversion rather than configured globally, so concurrent conversions in
+ * the same JVM can use different options.
+ *
+ * @author Gary O'Neall
+ */
+public class ConversionOptions {
+
+	private int numThreads = OsvQueryExecutor.DEFAULT_NUM_THREADS;
+	private AliasMerger aliasMerger = null;
+	private VulnerabilitySource vulnerabilitySource = null;
+	private boolean packageQueries = false;
+
+	public ConversionOptions() {
+		// default options
+	}
+
+	/**
+	 * @param numThreads maximum number of concurrent OSV queries
+	 */
+	public ConversionOptions(int numThreads) {
+		setNumThreads(numThreads);
+	}
+
+	/**
+	 * @return the maximum number of concurrent OSV queries
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * @param numThreads the maximum number of concurrent OSV queries
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1");
+		}
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @return the merger for vulnerabilities which are aliases of each other in the output or null if they are not merged
+	 */
+	public AliasMerger getAliasMerger() {
+		return aliasMerger;
+	}
+
+	/**
+	 * @param aliasMerger the merger for vulnerabilities which are aliases of each other in the output - null to not merge
+	 */
+	public void setAliasMerger(AliasMerger aliasMerger) {
+		this.aliasMerger = aliasMerger;
+	}
+
+	/**
+	 * @return the source used in place of the OSV API for the vulnerability queries or null if the OSV API is queried
+	 */
+	public VulnerabilitySource getVulnerabilitySource() {
+		return vulnerabilitySource;
+	}
+
+	/**
+	 * @param vulnerabilitySource source used in place of the OSV API for the vulnerability queries - null to query
+	 * the OSV API.  The source is owned by the caller and is not closed by the conversion.
+	 */
+	public void setVulnerabilitySource(VulnerabilitySource vulnerabilitySource) {
+		this.vulnerabilitySource = vulnerabilitySource;
+	}
+
+	/**
+	 * @return true if each package is queried once for all of its versions and the versions are matched locally
+	 */
+	public boolean isPackageQueries() {
+		return packageQueries;
+	}
+
+	/**
+	 * @param packageQueries true to query each package once for all of its versions and match the versions locally
+	 * using a {@link PackageQuerySource}
+	 */
+	public void setPackageQueries(boolean packageQueries) {
+		this.packageQueries = packageQueries;
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact directed graph of SPDX element relationships
+ *
+ * Element ID's are mapped to dense integer indexes and the edges are stored in compressed sparse row (CSR)
+ * form - <code>targets[offsets[i]..offsets[i+1]-1]</code> are the elements related to element <code>i</code>.
+ * Traversal is iterative so that deep dependency chains can not overflow the stack.
+ *
+ * @author Gary O'Neall
+ */
+public class DependencyGraph {
+
+	/**
+	 * Collects elements and edges for a {@link DependencyGraph}
+	 */
+	public static class Builder {
+		private Map<String, Integer> idToIndex = new HashMap<>();
+		private String[] ids = new String[16];
+		private int[] edgeFrom = new int[16];
+		private int[] edgeTo = new int[16];
+		private int numEdges = 0;
+
+		/**
+		 * @param id SPDX element ID
+		 * @return the index for the element, adding the element if it is not already in the graph
+		 */
+		public int addElement(String id) {
+			Objects.requireNonNull(id, "Element ID can not be null");
+			Integer index = idToIndex.get(id);
+			if (Objects.isNull(index)) {
+				index = idToIndex.size();
+				if (index == ids.length) {
+					ids = Arrays.copyOf(ids, ids.length * 2);
+				}
+				ids[index] = id;
+				idToIndex.put(id, index);
+			}
+			return index;
+		}
+
+		/**
+		 * Add a directed edge, adding the elements if needed
+		 * @param fromId ID of the element the edge starts at
+		 * @param toId ID of the element the edge ends at
+		 */
+		public void addEdge(String fromId, String toId) {
+			int from = addElement(fromId);
+			int to = addElement(toId);
+			if (numEdges == edgeFrom.length) {
+				edgeFrom = Arrays.copyOf(edgeFrom, numEdges * 2);
+				edgeTo = Arrays.copyOf(edgeTo, numEdges * 2);
+			}
+			edgeFrom[numEdges] = from;
+			edgeTo[numEdges] = to;
+			numEdges++;
+		}
+
+		/**
+		 * @return a graph containing all the elements and edges added to the builder
+		 */
+		public DependencyGraph build() {
+			int numElements = idToIndex.size();
+			int[] offsets = new int[numElements + 1];
+			for (int i = 0; i < numEdges; i++) {
+				offsets[edgeFrom[i] + 1]++;
+			}
+			for (int i = 0; i < numElements; i++) {
+				offsets[i + 1] += offsets[i];
+			}
+			int[] targets = new int[numEdges];
+			int[] next = Arrays.copyOf(offsets, numElements);
+			for (int i = 0; i < numEdges; i++) {
+				targets[next[edgeFrom[i]]++] = edgeTo[i];
+			}
+			return new DependencyGraph(idToIndex, Arrays.copyOf(ids, numElements), offsets, targets);
+		}
+	}
+
+	private Map<String, Integer> idToIndex;
+	private String[] ids;
+	private int[] offsets;
+	private int[] targets;
+
+	private DependencyGraph(Map<String, Integer> idToIndex, String[] ids, int[] offsets, int[] targets) {
+		this.idToIndex = idToIndex;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	/**
+	 * @param id SPDX element ID
+	 * @return the index of the element or -1 if the element is not in the graph
+	 */
+	public int indexOf(String id) {
+		Integer index = idToIndex.get(id);
+		return Objects.isNull(index) ? -1 : index;
+	}
+
+	/**
+	 * @param index index of an element
+	 * @return the SPDX element ID
+	 */
+	public String getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * @return the number of elements in the graph
+	 */
+	public int getNumElements() {
+		return ids.length;
+	}
+
+	/**
+	 * @return the number of edges in the graph
+	 */
+	public int getNumEdges() {
+		return targets.length;
+	}
+
+	/**
+	 * @param startIds ID's of the elements to start from - ID's not in the graph are ignored
+	 * @return the indexes of all elements reachable from the start elements including the start elements in the graph
+	 */
+	public BitSet reachableFrom(Iterable<String> startIds) {
+		BitSet visited = new BitSet(ids.length);
+		int[] stack = new int[16];
+		int top = 0;
+		for (String startId:startIds) {
+			int start = indexOf(startId);
+			if (start < 0 || visited.get(start)) {
+				continue;
+			}
+			visited.set(start);
+			stack[top++] = start;
+			while (top > 0) {
+				int element = stack[--top];
+				for (int i = offsets[element]; i < offsets[element + 1]; i++) {
+					int target = targets[i];
+					if (!visited.get(target)) {
+						visited.set(target);
+						if (top == stack.length) {
+							stack = Arrays.copyOf(stack, stack.length * 2);
+						}
+						stack[top++] = target;
+					}
+				}
+			}
+		}
+		return visited;
+	}
+}
@@ -64,25 +64,42 @@ public class ExternalRefParser {
      * @throws SwhException
      */
     public ExternalRefParser(ExternalRef externalRef, boolean useMavenGroupInPkgName) throws InvalidSPDXAnalysisException, InvalidExternalRefPattern, IOException, SwhException {
-        this.useMavenGroupInPkgName = useMavenGroupInPkgName;
+        this(externalRef.getReferenceType().getIndividualURI(), externalRef.getReferenceLocator(), useMavenGroupInPkgName);
     	this.externalRef = externalRef;
+    }
+    
+    /**
+     * Parse an external reference which is not stored in an SPDX model store (e.g. read directly from an SPDX JSON file)
+     * @param referenceType Reference type URI or, for listed reference types, the reference type name (e.g. purl)
+     * @param referenceLocator Reference locator
+     * @param useMavenGroupInPkgName flag to indicate if the maven group name should be included in the package name (e.g. org.spdx.spdx.spdx-java-tools)
+     * @throws InvalidSPDXAnalysisException
+     * @throws InvalidExternalRefPattern
+     * @throws IOException
+     * @throws SwhException
+     */
+    public ExternalRefParser(String referenceType, String referenceLocator, boolean useMavenGroupInPkgName) throws InvalidSPDXAnalysisException, InvalidExternalRefPattern, IOException, SwhException {
+        this.useMavenGroupInPkgName = useMavenGroupInPkgName;
+        this.externalRef = null;
+        // Listed reference types are either the full URI or just the name
+        String referenceTypeName = referenceType.substring(referenceType.lastIndexOf('/') + 1);
         // Parse the PackageNameVersion
-        if (externalRef.getReferenceType().getIndividualURI().endsWith("/cpe22Type")) {
-            parseCpe(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/cpe23Type")) {
-            parseCpe(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/maven-central")) {
-            parseMavenCentral(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/npm")) {
-            parseNpm(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/nuget")) {
-            parseNuget(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/bower")) {
-            parseBower(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/purl")) {
-            paserPurl(externalRef.getReferenceLocator());
-        } else if (externalRef.getReferenceType().getIndividualURI().endsWith("/swh")) {
-            parseSwh(externalRef.getReferenceLocator());
+        if ("cpe22Type".equals(referenceTypeName)) {
+            parseCpe(referenceLocator);
+        } else if ("cpe23Type".equals(referenceTypeName)) {
+            parseCpe(referenceLocator);
+        } else if ("maven-central".equals(referenceTypeName)) {
+            parseMavenCentral(referenceLocator);
+        } else if ("npm".equals(referenceTypeName)) {
+            parseNpm(referenceLocator);
+        } else if ("nuget".equals(referenceTypeName)) {
+            parseNuget(referenceLocator);
+        } else if ("bower".equals(referenceTypeName)) {
+            parseBower(referenceLocator);
+        } else if ("purl".equals(referenceTypeName)) {
+            paserPurl(referenceLocator);
+        } else if ("swh".equals(referenceTypeName)) {
+            parseSwh(referenceLocator);
         } else {
             osvVulnerabilityRequest = Optional.empty();
         }
@@ -271,7 +288,7 @@ public class ExternalRefParser {
     }
 
     /**
-     * @return the externalRef
+     * @return the externalRef or null if the parser was not created from an ExternalRef
      */
     public ExternalRef getExternalRef() {
         return externalRef;
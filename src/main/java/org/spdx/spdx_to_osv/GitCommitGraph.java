@@ -0,0 +1,457 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvEvent;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+
+/**
+ * Commit graph of a local git repository used to evaluate <code>GIT</code> ranges without the OSV API
+ *
+ * The graph is read once from <code>git rev-list --all --parents</code> of a local mirror (e.g. created with
+ * <code>git clone --mirror</code>).  Commits are numbered in hash order so the hashes are held in a single
+ * byte array searched by binary search, and the parents and children of each commit are held in arrays.
+ * The generation number of each commit - one more than the greatest generation of its parents - bounds the
+ * search when checking whether one commit is an ancestor of another, since an ancestor always has a lower
+ * generation.  The ancestors of a queried commit are collected once in a bitmap by an {@link Ancestors} walk
+ * which visits commits in decreasing generation and stops at the generation of the deepest event commit
+ * checked, so all of the ranges for a commit are evaluated without walking its history more than once and
+ * without walking below the oldest event.
+ *
+ * A commit is within a range if it is a descendant of, or is, an <code>introduced</code> commit and is not
+ * a descendant of, or is, a <code>fixed</code> commit or a descendant of a <code>last_affected</code> commit.
+ * If the range has <code>limit</code> events the commit must also be an ancestor of one of the limits.
+ *
+ * @author Gary O'Neall
+ */
+public class GitCommitGraph {
+
+	/**
+	 * Introduced commit meaning all commits
+	 */
+	static final String ZERO_COMMIT = "0";
+
+	/**
+	 * Shortest abbreviated commit hash which is looked up
+	 */
+	static final int MIN_ABBREVIATED_LENGTH = 7;
+
+	private final String repo;
+	private final int numCommits;
+	private final int hashLength;
+	private final byte[] hashes;
+	private final int[] parentStart;
+	private final int[] parents;
+	private final int[] childStart;
+	private final int[] children;
+	private final int[] generations;
+
+	/**
+	 * Ancestors of a commit found by walking its parents only as far as needed - the walk expands the commits
+	 * in decreasing generation so once every commit above a generation is expanded the ancestors at that
+	 * generation are known.  Not thread safe.
+	 */
+	public class Ancestors {
+		private final int commit;
+		private final BitSet found = new BitSet();
+		private final PriorityQueue<Integer> unexpanded = new PriorityQueue<>(
+				(a, b) -> Integer.compare(generations[b], generations[a]));
+
+		/**
+		 * @param commit commit number
+		 */
+		Ancestors(int commit) {
+			this.commit = commit;
+			found.set(commit);
+			unexpanded.add(commit);
+		}
+
+		/**
+		 * @return the commit number the ancestors are for
+		 */
+		public int getCommit() {
+			return commit;
+		}
+
+		/**
+		 * @param ancestor commit number of the possible ancestor
+		 * @return true if the commit is the ancestor or is reachable from it through parents
+		 */
+		public boolean contains(int ancestor) {
+			int generation = generations[ancestor];
+			if (generation > generations[commit]) {
+				return false;
+			}
+			// every path to the ancestor only passes through commits with a greater generation
+			while (!unexpanded.isEmpty() && generations[unexpanded.peek()] > generation) {
+				int current = unexpanded.poll();
+				for (int p = parentStart[current]; p < parentStart[current + 1]; p++) {
+					if (!found.get(parents[p])) {
+						found.set(parents[p]);
+						unexpanded.add(parents[p]);
+					}
+				}
+			}
+			return found.get(ancestor);
+		}
+	}
+
+	/**
+	 * @param repo URL of the repository the graph is for - may be null
+	 * @param revList output of <code>git rev-list --parents</code> - each line is a commit followed by its parents
+	 * @throws IOException on errors reading or invalid lines
+	 */
+	public GitCommitGraph(String repo, BufferedReader revList) throws IOException {
+		this.repo = repo;
+		List<String[]> lines = new ArrayList<>();
+		String line;
+		while (Objects.nonNull(line = revList.readLine())) {
+			line = line.trim();
+			if (!line.isEmpty()) {
+				lines.add(line.toLowerCase(Locale.ROOT).split(" "));
+			}
+		}
+		String[] commits = new String[lines.size()];
+		for (int i = 0; i < commits.length; i++) {
+			commits[i] = lines.get(i)[0];
+		}
+		Arrays.sort(commits);
+		numCommits = commits.length;
+		hashLength = numCommits == 0 ? 0 : commits[0].length() / 2;
+		hashes = new byte[numCommits * hashLength];
+		for (int i = 0; i < numCommits; i++) {
+			if (commits[i].length() != hashLength * 2 || (i > 0 && commits[i].equals(commits[i - 1]))) {
+				throw new IOException("Invalid or duplicate commit in git rev-list output: " + commits[i]);
+			}
+			for (int j = 0; j < hashLength; j++) {
+				int high = Character.digit(commits[i].charAt(j * 2), 16);
+				int low = Character.digit(commits[i].charAt(j * 2 + 1), 16);
+				if (high < 0 || low < 0) {
+					throw new IOException("Invalid commit in git rev-list output: " + commits[i]);
+				}
+				hashes[i * hashLength + j] = (byte)((high << 4) | low);
+			}
+		}
+		// parents which are not in the output (e.g. in a shallow clone) are ignored
+		int[][] commitParents = new int[numCommits][];
+		int numEdges = 0;
+		for (String[] tokens:lines) {
+			int commit = Arrays.binarySearch(commits, tokens[0]);
+			int[] ids = new int[tokens.length - 1];
+			int count = 0;
+			for (int i = 1; i < tokens.length; i++) {
+				int parent = Arrays.binarySearch(commits, tokens[i]);
+				if (parent >= 0) {
+					ids[count++] = parent;
+				}
+			}
+			commitParents[commit] = Arrays.copyOf(ids, count);
+			numEdges += count;
+		}
+		parentStart = new int[numCommits + 1];
+		parents = new int[numEdges];
+		int[] childCounts = new int[numCommits];
+		for (int i = 0; i < numCommits; i++) {
+			parentStart[i + 1] = parentStart[i] + commitParents[i].length;
+			System.arraycopy(commitParents[i], 0, parents, parentStart[i], commitParents[i].length);
+			for (int parent:commitParents[i]) {
+				childCounts[parent]++;
+			}
+		}
+		childStart = new int[numCommits + 1];
+		for (int i = 0; i < numCommits; i++) {
+			childStart[i + 1] = childStart[i] + childCounts[i];
+		}
+		children = new int[numEdges];
+		int[] childPositions = Arrays.copyOf(childStart, numCommits);
+		for (int i = 0; i < numCommits; i++) {
+			for (int p = parentStart[i]; p < parentStart[i + 1]; p++) {
+				children[childPositions[parents[p]]++] = i;
+			}
+		}
+		generations = computeGenerations();
+	}
+
+	/**
+	 * @return the generation of each commit - 1 for commits without parents
+	 * @throws IOException if the graph has a cycle
+	 */
+	private int[] computeGenerations() throws IOException {
+		int[] retval = new int[numCommits];
+		int[] remainingParents = new int[numCommits];
+		int[] queue = new int[numCommits];
+		int head = 0;
+		int tail = 0;
+		for (int i = 0; i < numCommits; i++) {
+			remainingParents[i] = parentStart[i + 1] - parentStart[i];
+			if (remainingParents[i] == 0) {
+				retval[i] = 1;
+				queue[tail++] = i;
+			}
+		}
+		while (head < tail) {
+			int commit = queue[head++];
+			for (int c = childStart[commit]; c < childStart[commit + 1]; c++) {
+				int child = children[c];
+				retval[child] = Math.max(retval[child], retval[commit] + 1);
+				if (--remainingParents[child] == 0) {
+					queue[tail++] = child;
+				}
+			}
+		}
+		if (tail != numCommits) {
+			throw new IOException("Invalid git rev-list output - the commits contain a cycle");
+		}
+		return retval;
+	}
+
+	/**
+	 * Read the commit graph of a local repository with the <code>git</code> command
+	 * @param repository path to the repository - typically a bare mirror
+	 * @return the commit graph for all the refs in the repository
+	 * @throws IOException if git can not be run or fails
+	 */
+	public static GitCommitGraph load(Path repository) throws IOException {
+		String repo = null;
+		List<String> remote = runGit(repository, true, "config", "--get", "remote.origin.url");
+		if (!remote.isEmpty()) {
+			repo = remote.get(0).trim();
+		}
+		Process process = new ProcessBuilder("git", "-C", repository.toString(), "rev-list", "--all", "--parents")
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		GitCommitGraph retval;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			retval = new GitCommitGraph(repo, reader);
+		}
+		waitFor(process, repository, "rev-list");
+		return retval;
+	}
+
+	/**
+	 * @param repository path to the repository
+	 * @param allowFailure true to return no output rather than fail if git exits with an error
+	 * @param args git arguments
+	 * @return the lines output by git
+	 * @throws IOException if git can not be run or fails
+	 */
+	private static List<String> runGit(Path repository, boolean allowFailure, String... args) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add("git");
+		command.add("-C");
+		command.add(repository.toString());
+		command.addAll(Arrays.asList(args));
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		List<String> retval = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while (Objects.nonNull(line = reader.readLine())) {
+				retval.add(line);
+			}
+		}
+		if (allowFailure) {
+			try {
+				return process.waitFor() == 0 ? retval : new ArrayList<>();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted waiting for git", e);
+			}
+		}
+		waitFor(process, repository, args[0]);
+		return retval;
+	}
+
+	private static void waitFor(Process process, Path repository, String gitCommand) throws IOException {
+		try {
+			int exitCode = process.waitFor();
+			if (exitCode != 0) {
+				throw new IOException("git " + gitCommand + " failed for " + repository + " with exit code " + exitCode);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for git", e);
+		}
+	}
+
+	/**
+	 * @return the URL of the repository the graph is for or null if not known
+	 */
+	public String getRepo() {
+		return repo;
+	}
+
+	/**
+	 * @return the number of commits in the graph
+	 */
+	public int getNumCommits() {
+		return numCommits;
+	}
+
+	/**
+	 * @param commit full or abbreviated commit hash
+	 * @return the number of the commit or -1 if the commit is not in the graph or the abbreviation is ambiguous
+	 */
+	public int find(String commit) {
+		if (Objects.isNull(commit) || commit.length() < MIN_ABBREVIATED_LENGTH || commit.length() > hashLength * 2) {
+			return -1;
+		}
+		String hex = commit.toLowerCase(Locale.ROOT);
+		for (int i = 0; i < hex.length(); i++) {
+			if (Character.digit(hex.charAt(i), 16) < 0) {
+				return -1;
+			}
+		}
+		// find the first hash not less than the prefix
+		int low = 0;
+		int high = numCommits;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(mid, hex) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		if (low >= numCommits || comparePrefix(low, hex) != 0 ||
+				(low + 1 < numCommits && comparePrefix(low + 1, hex) == 0)) {
+			return -1;
+		}
+		return low;
+	}
+
+	/**
+	 * @param commit commit number
+	 * @param hex lower case hexadecimal prefix
+	 * @return comparison of the start of the commit hash with the prefix
+	 */
+	private int comparePrefix(int commit, String hex) {
+		for (int i = 0; i < hex.length(); i++) {
+			int b = hashes[commit * hashLength + i / 2] & 0xff;
+			int nibble = i % 2 == 0 ? b >>> 4 : b & 0xf;
+			int compare = nibble - Character.digit(hex.charAt(i), 16);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param commit commit number
+	 * @return the generation of the commit
+	 */
+	int getGeneration(int commit) {
+		return generations[commit];
+	}
+
+	/**
+	 * @param ancestor commit number of the possible ancestor
+	 * @param descendant commit number of the possible descendant
+	 * @return true if the ancestor is the descendant or is reachable from it through parents
+	 */
+	public boolean isAncestor(int ancestor, int descendant) {
+		if (ancestor == descendant) {
+			return true;
+		}
+		if (generations[ancestor] >= generations[descendant]) {
+			return false;
+		}
+		// search the ancestors of the descendant with a greater generation than the ancestor
+		BitSet visited = new BitSet(numCommits);
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = descendant;
+		visited.set(descendant);
+		while (size > 0) {
+			int commit = stack[--size];
+			for (int p = parentStart[commit]; p < parentStart[commit + 1]; p++) {
+				int parent = parents[p];
+				if (parent == ancestor) {
+					return true;
+				}
+				if (generations[parent] > generations[ancestor] && !visited.get(parent)) {
+					visited.set(parent);
+					if (size == stack.length) {
+						stack = Arrays.copyOf(stack, size * 2);
+					}
+					stack[size++] = parent;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param commit commit number
+	 * @return the ancestors of the commit - found as they are checked
+	 */
+	public Ancestors ancestors(int commit) {
+		return new Ancestors(commit);
+	}
+
+	/**
+	 * @param range <code>GIT</code> range - other range types are never matched
+	 * @param commit full or abbreviated commit hash
+	 * @return true if the commit is in the graph and within the range
+	 */
+	public boolean isAffected(OsvRange range, String commit) {
+		int id = find(commit);
+		return id >= 0 && isAffected(range, ancestors(id));
+	}
+
+	/**
+	 * @param range <code>GIT</code> range - other range types are never matched
+	 * @param ancestors ancestors of the commit to check - may be shared by the checks of all ranges for the commit
+	 * @return true if the commit is within the range
+	 */
+	public boolean isAffected(OsvRange range, Ancestors ancestors) {
+		if (!OsvRangeType.GIT.equals(range.getType()) || Objects.isNull(range.getEvents())) {
+			return false;
+		}
+		int id = ancestors.getCommit();
+		boolean introduced = false;
+		boolean hasLimit = false;
+		boolean belowLimit = false;
+		for (OsvEvent event:range.getEvents()) {
+			if (Objects.nonNull(event.getIntroduced())) {
+				if (ZERO_COMMIT.equals(event.getIntroduced())) {
+					introduced = true;
+				} else {
+					int introducedId = find(event.getIntroduced());
+					introduced |= introducedId >= 0 && ancestors.contains(introducedId);
+				}
+			} else if (Objects.nonNull(event.getFixed())) {
+				int fixedId = find(event.getFixed());
+				if (fixedId >= 0 && ancestors.contains(fixedId)) {
+					return false;
+				}
+			} else if (Objects.nonNull(event.getLastAffected())) {
+				int lastId = find(event.getLastAffected());
+				if (lastId >= 0 && lastId != id && ancestors.contains(lastId)) {
+					return false;
+				}
+			} else if (Objects.nonNull(event.getLimit())) {
+				hasLimit = true;
+				int limitId = find(event.getLimit());
+				belowLimit |= limitId >= 0 && limitId != id && isAncestor(id, limitId);
+			}
+		}
+		return introduced && (!hasLimit || belowLimit);
+	}
+}
@@ -0,0 +1,549 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport which spreads requests across several equivalent service endpoints (e.g. OSV compatible mirrors)
+ * and hedges slow requests by sending a duplicate to a second endpoint
+ *
+ * Each request is sent to an endpoint chosen at random weighted by the health of the endpoints - the recent
+ * success rate divided by the recent average latency - so a slow or failing mirror receives less traffic but
+ * is still probed.  The scheme, host, port and any path prefix of the requested URL are replaced by those of the
+ * chosen endpoint, so a request for <code>https://api.osv.dev/v1/query</code> is sent to
+ * <code>https://mirror.example.com/osv/v1/query</code> for the endpoint <code>https://mirror.example.com/osv</code>.
+ *
+ * If no response has been received after the hedge percentile of the recent latencies for the API, the request
+ * is sent again to a different endpoint (or the same endpoint if only one is configured).  The first successful
+ * response is returned and the connection of the losing request is disconnected through its
+ * {@link RequestCancellation}, so the failure of the losing request is not counted against the health of its
+ * endpoint or by a {@link CircuitBreakerTransport} between this transport and the connection.  The hedge budget limits the hedges to a fraction
+ * of the requests so that a slow service does not receive twice the load.  Only idempotent requests, such
+ * as the OSV queries, should be sent through this transport.
+ *
+ * A request which can not be hedged - until enough latencies have been recorded or when the hedge budget is
+ * disabled - is sent on the caller's thread.  Other requests are sent from a pool of two threads for each
+ * concurrent request, so a hedge never waits for a thread.  Losing requests are disconnected and their
+ * responses closed on the pool rather than delaying the caller.
+ *
+ * @author Gary O'Neall
+ */
+public class HedgingTransport implements HttpTransport {
+
+	public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+	public static final double DEFAULT_BUDGET_RATIO = 0.1;
+	public static final double DEFAULT_BUDGET_CAPACITY = 10;
+	static final int LATENCY_WINDOW_SIZE = 200;
+	static final int MIN_LATENCY_SAMPLES = 20;
+	static final double HEALTH_SMOOTHING = 0.1;
+	static final double MIN_SUCCESS_RATE = 0.05;
+	static final long IDLE_THREAD_SECONDS = 60;
+
+	/**
+	 * A single request to a resolved URL
+	 */
+	@FunctionalInterface
+	private interface Request {
+		HttpResponse execute(URL url) throws IOException;
+	}
+
+	/**
+	 * Health of a single endpoint
+	 */
+	private static class Endpoint {
+		private final URL base;
+		private double successRate = 1.0;
+		private double latencyNanos = -1;
+
+		private Endpoint(URL base) {
+			this.base = base;
+		}
+
+		private synchronized void record(long latency, boolean success) {
+			successRate += HEALTH_SMOOTHING * ((success ? 1.0 : 0.0) - successRate);
+			if (success) {
+				latencyNanos = latencyNanos < 0 ? latency : latencyNanos + HEALTH_SMOOTHING * (latency - latencyNanos);
+			}
+		}
+
+		private synchronized double getSuccessRate() {
+			return successRate;
+		}
+
+		private synchronized double getLatencyNanos() {
+			return latencyNanos;
+		}
+	}
+
+	/**
+	 * Recent latencies of successful requests to an API used to compute the hedge delay
+	 */
+	private static class LatencyWindow {
+		private final long[] latencies = new long[LATENCY_WINDOW_SIZE];
+		private int position = 0;
+		private int numRecorded = 0;
+
+		private synchronized void record(long latency) {
+			latencies[position] = latency;
+			position = (position + 1) % latencies.length;
+			if (numRecorded < latencies.length) {
+				numRecorded++;
+			}
+		}
+
+		/**
+		 * @param percentile percentile between 0 and 1
+		 * @return the latency at the percentile or -1 if too few latencies have been recorded
+		 */
+		private synchronized long percentile(double percentile) {
+			if (numRecorded < MIN_LATENCY_SAMPLES) {
+				return -1;
+			}
+			long[] sorted = Arrays.copyOf(latencies, numRecorded);
+			Arrays.sort(sorted);
+			return sorted[Math.min(numRecorded - 1, (int)Math.ceil(percentile * numRecorded) - 1)];
+		}
+	}
+
+	/**
+	 * A request sent to one endpoint - completed attempts are added to the completion queue
+	 */
+	private static class Attempt implements Runnable {
+		private final Endpoint endpoint;
+		private final URL url;
+		private final Request request;
+		private final LatencyWindow latencies;
+		private final BlockingQueue<Attempt> completions;
+		private final RequestCancellation cancellation = new RequestCancellation();
+		private Future<?> future;
+		private HttpResponse response = null;
+		private IOException exception = null;
+		private boolean done = false;
+		private boolean abandoned = false;
+
+		private Attempt(Endpoint endpoint, URL url, Request request, LatencyWindow latencies,
+				BlockingQueue<Attempt> completions) {
+			this.endpoint = endpoint;
+			this.url = url;
+			this.request = request;
+			this.latencies = latencies;
+			this.completions = completions;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			HttpResponse result = null;
+			IOException error = null;
+			cancellation.bind();
+			try {
+				result = request.execute(url);
+			} catch (IOException e) {
+				error = e;
+			} catch (RuntimeException e) {
+				error = new IOException("Unexpected error sending request to "+url, e);
+			} finally {
+				cancellation.unbind();
+			}
+			long latency = System.nanoTime() - start;
+			boolean success = Objects.nonNull(result) && isSuccess(result.getStatusCode());
+			synchronized (this) {
+				if (!abandoned || Objects.nonNull(result)) {
+					// a cancelled request failing says nothing about the health of the endpoint
+					endpoint.record(latency, success);
+				}
+				if (success) {
+					latencies.record(latency);
+				}
+				if (abandoned) {
+					closeQuietly(result);
+					return;
+				}
+				response = result;
+				exception = error;
+				done = true;
+			}
+			completions.add(this);
+		}
+
+		private synchronized boolean isSuccessful() {
+			return done && Objects.nonNull(response) && isSuccess(response.getStatusCode());
+		}
+
+		private synchronized HttpResponse getResponse() {
+			return response;
+		}
+
+		private synchronized IOException getException() {
+			return exception;
+		}
+
+		/**
+		 * Cancel the attempt disconnecting the request and closing any response which is not returned to the caller
+		 * @param executor executor used to disconnect the request or close the response without delaying the caller
+		 */
+		private void abandon(Executor executor) {
+			synchronized (this) {
+				abandoned = true;
+				if (done) {
+					HttpResponse loser = response;
+					response = null;
+					if (Objects.nonNull(loser)) {
+						// closing drains the rest of the body
+						executor.execute(() -> closeQuietly(loser));
+					}
+					return;
+				}
+				if (Objects.nonNull(future)) {
+					// the request is disconnected rather than interrupted if already started
+					future.cancel(false);
+				}
+			}
+			executor.execute(cancellation::cancel);
+		}
+	}
+
+	private final HttpTransport delegate;
+	private final List<Endpoint> endpoints;
+	private final double hedgePercentile;
+	private final double budgetRatio;
+	private final double budgetCapacity;
+	private double budget;
+	private final ThreadPoolExecutor executor;
+	private final ConcurrentHashMap<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+	private final AtomicLong hedgesSent = new AtomicLong(0);
+	private final AtomicLong hedgesWon = new AtomicLong(0);
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param endpoints base URL's of the equivalent endpoints
+	 */
+	public HedgingTransport(HttpTransport delegate, List<URL> endpoints) {
+		this(delegate, endpoints, LimitingTransport.DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param endpoints base URL's of the equivalent endpoints
+	 * @param maxConcurrency maximum number of concurrent requests sent through the transport
+	 */
+	public HedgingTransport(HttpTransport delegate, List<URL> endpoints, int maxConcurrency) {
+		this(delegate, endpoints, DEFAULT_HEDGE_PERCENTILE, DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAPACITY, maxConcurrency);
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param endpoints base URL's of the equivalent endpoints
+	 * @param hedgePercentile percentile (0 to 1) of the recent latencies after which a request is hedged
+	 * @param budgetRatio hedges added to the hedge budget for each request - 0 disables hedging
+	 * @param budgetCapacity maximum and initial hedge budget
+	 */
+	public HedgingTransport(HttpTransport delegate, List<URL> endpoints, double hedgePercentile,
+			double budgetRatio, double budgetCapacity) {
+		this(delegate, endpoints, hedgePercentile, budgetRatio, budgetCapacity, LimitingTransport.DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param endpoints base URL's of the equivalent endpoints
+	 * @param hedgePercentile percentile (0 to 1) of the recent latencies after which a request is hedged
+	 * @param budgetRatio hedges added to the hedge budget for each request - 0 disables hedging
+	 * @param budgetCapacity maximum and initial hedge budget
+	 * @param maxConcurrency maximum number of concurrent requests sent through the transport
+	 */
+	public HedgingTransport(HttpTransport delegate, List<URL> endpoints, double hedgePercentile,
+			double budgetRatio, double budgetCapacity, int maxConcurrency) {
+		Objects.requireNonNull(delegate, "Delegate transport can not be null");
+		Objects.requireNonNull(endpoints, "Endpoints can not be null");
+		if (endpoints.isEmpty()) {
+			throw new IllegalArgumentException("At least one endpoint is required");
+		}
+		if (hedgePercentile <= 0 || hedgePercentile > 1) {
+			throw new IllegalArgumentException("Hedge percentile must be between 0 and 1");
+		}
+		if (budgetRatio < 0 || budgetCapacity < 0) {
+			throw new IllegalArgumentException("Hedge budget can not be negative");
+		}
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("Maximum concurrency must be at least 1");
+		}
+		this.delegate = delegate;
+		List<Endpoint> endpointList = new ArrayList<>();
+		for (URL endpoint:endpoints) {
+			Objects.requireNonNull(endpoint, "Endpoint can not be null");
+			endpointList.add(new Endpoint(endpoint));
+		}
+		this.endpoints = Collections.unmodifiableList(endpointList);
+		this.hedgePercentile = hedgePercentile;
+		this.budgetRatio = budgetRatio;
+		this.budgetCapacity = budgetCapacity;
+		this.budget = budgetCapacity;
+		// a request and its hedge for each concurrent request - idle threads are not kept
+		int numThreads = 2 * maxConcurrency;
+		this.executor = new ThreadPoolExecutor(numThreads, numThreads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "osv-hedging");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public HttpResponse get(URL url, String accept) throws IOException {
+		return execute(url, resolved -> delegate.get(resolved, accept));
+	}
+
+	@Override
+	public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+		return execute(url, resolved -> delegate.post(resolved, contentType, accept, body));
+	}
+
+	/**
+	 * @param url URL for the request
+	 * @param request request to send to one or two endpoints
+	 * @return the first successful response or the last failed response if no request succeeded
+	 * @throws IOException the last exception if no request succeeded and no response was received
+	 */
+	private HttpResponse execute(URL url, Request request) throws IOException {
+		depositBudget();
+		LatencyWindow latencies = latencyWindows.computeIfAbsent(RetryingTransport.endpoint(url), 
+				endpoint -> new LatencyWindow());
+		BlockingQueue<Attempt> completions = new LinkedBlockingQueue<>();
+		List<Attempt> attempts = new ArrayList<>(2);
+		Endpoint primary = select(null);
+		long hedgeDelay = latencies.percentile(hedgePercentile);
+		if (hedgeDelay < 0 || !canHedge()) {
+			// no thread is needed for a request which will not be hedged
+			Attempt attempt = new Attempt(primary, resolve(primary.base, url), request, latencies, completions);
+			attempt.run();
+			IOException exception = attempt.getException();
+			if (Objects.nonNull(exception)) {
+				throw exception;
+			}
+			return attempt.getResponse();
+		}
+		attempts.add(submit(primary, url, request, latencies, completions));
+		try {
+			Attempt completed = completions.poll(hedgeDelay, TimeUnit.NANOSECONDS);
+			if (Objects.isNull(completed) && acquireHedge()) {
+				attempts.add(submit(select(primary), url, request, latencies, completions));
+				hedgesSent.incrementAndGet();
+			}
+			if (Objects.isNull(completed)) {
+				completed = completions.take();
+			}
+			if (!completed.isSuccessful() && attempts.size() > 1) {
+				// the other request may still succeed
+				Attempt other = completions.take();
+				if (other.isSuccessful() || Objects.nonNull(other.getResponse())) {
+					completed = other;
+				}
+			}
+			if (completed != attempts.get(0) && completed.isSuccessful()) {
+				hedgesWon.incrementAndGet();
+			}
+			for (Attempt attempt:attempts) {
+				if (attempt != completed) {
+					attempt.abandon(executor);
+				}
+			}
+			IOException exception = completed.getException();
+			if (Objects.nonNull(exception)) {
+				throw exception;
+			}
+			return completed.getResponse();
+		} catch (InterruptedException e) {
+			for (Attempt attempt:attempts) {
+				attempt.abandon(executor);
+			}
+			Thread.currentThread().interrupt();
+			InterruptedIOException ioe = new InterruptedIOException("Interrupted waiting for a response");
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	/**
+	 * @param endpoint endpoint to send the request to
+	 * @param url requested URL
+	 * @param request request to send
+	 * @param latencies recent latencies for the path
+	 * @param completions queue the attempt is added to when completed
+	 * @return the submitted attempt
+	 * @throws IOException if the URL can not be resolved against the endpoint
+	 */
+	private Attempt submit(Endpoint endpoint, URL url, Request request, LatencyWindow latencies,
+			BlockingQueue<Attempt> completions) throws IOException {
+		Attempt attempt = new Attempt(endpoint, resolve(endpoint.base, url), request, latencies, completions);
+		synchronized (attempt) {
+			attempt.future = executor.submit(attempt);
+		}
+		return attempt;
+	}
+
+	/**
+	 * Select an endpoint at random weighted by the health of the endpoints
+	 * @param exclude endpoint not to select if there is any other endpoint - may be null
+	 * @return the selected endpoint
+	 */
+	private Endpoint select(Endpoint exclude) {
+		if (endpoints.size() == 1) {
+			return endpoints.get(0);
+		}
+		double[] weights = weights();
+		double total = 0;
+		for (int i = 0; i < weights.length; i++) {
+			if (endpoints.get(i) == exclude) {
+				weights[i] = 0;
+			}
+			total += weights[i];
+		}
+		Random random = ThreadLocalRandom.current();
+		double target = random.nextDouble() * total;
+		for (int i = 0; i < weights.length; i++) {
+			target -= weights[i];
+			if (target < 0) {
+				return endpoints.get(i);
+			}
+		}
+		return endpoints.get(endpoints.get(0) == exclude ? 1 : 0);
+	}
+
+	/**
+	 * @return the relative weight of each endpoint - endpoints without a recorded latency are weighted as the fastest endpoint
+	 */
+	private double[] weights() {
+		double[] latencies = new double[endpoints.size()];
+		double fastest = -1;
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = endpoints.get(i).getLatencyNanos();
+			if (latencies[i] >= 0 && (fastest < 0 || latencies[i] < fastest)) {
+				fastest = latencies[i];
+			}
+		}
+		double[] retval = new double[latencies.length];
+		for (int i = 0; i < latencies.length; i++) {
+			double latency = Math.max(1, latencies[i] < 0 ? fastest : latencies[i]);
+			retval[i] = Math.max(MIN_SUCCESS_RATE, endpoints.get(i).getSuccessRate()) / latency;
+		}
+		return retval;
+	}
+
+	/**
+	 * @param base base URL of an endpoint
+	 * @param url requested URL
+	 * @return the requested URL with the scheme, host, port and path prefix of the endpoint
+	 * @throws MalformedURLException
+	 */
+	static URL resolve(URL base, URL url) throws MalformedURLException {
+		String prefix = base.getPath();
+		while (prefix.endsWith("/")) {
+			prefix = prefix.substring(0, prefix.length() - 1);
+		}
+		return new URL(base.getProtocol(), base.getHost(), base.getPort(), prefix + url.getFile());
+	}
+
+	/**
+	 * @param statusCode HTTP status code
+	 * @return true if the response shows the endpoint handled the request
+	 */
+	private static boolean isSuccess(int statusCode) {
+		return statusCode != 429 && statusCode < 500;
+	}
+
+	/**
+	 * @param response response to close - may be null
+	 */
+	private static void closeQuietly(HttpResponse response) {
+		if (Objects.nonNull(response)) {
+			try {
+				response.close();
+			} catch (IOException e) {
+				// the response is no longer needed
+			}
+		}
+	}
+
+	/**
+	 * Add to the hedge budget for a new request
+	 */
+	private synchronized void depositBudget() {
+		budget = Math.min(budgetCapacity, budget + budgetRatio);
+	}
+
+	/**
+	 * @return true if the hedge budget may allow a hedge for a new request
+	 */
+	private synchronized boolean canHedge() {
+		return budget >= 1 || budgetRatio > 0;
+	}
+
+	/**
+	 * @return true if a hedge may be sent, using one from the budget
+	 */
+	private synchronized boolean acquireHedge() {
+		if (budget >= 1) {
+			budget -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of duplicate requests sent for slow requests
+	 */
+	public long getHedgesSent() {
+		return hedgesSent.get();
+	}
+
+	/**
+	 * @return number of duplicate requests whose response was returned because it succeeded before the original request
+	 */
+	public long getHedgesWon() {
+		return hedgesWon.get();
+	}
+
+	/**
+	 * @return the relative share of new requests sent to each endpoint
+	 */
+	public Map<String, Double> getWeights() {
+		double[] weights = weights();
+		double total = Arrays.stream(weights).sum();
+		Map<String, Double> retval = new LinkedHashMap<>();
+		for (int i = 0; i < weights.length; i++) {
+			retval.put(endpoints.get(i).base.toString(), weights[i] / total);
+		}
+		return retval;
+	}
+
+	/**
+	 * @return the transport used to execute the requests
+	 */
+	public HttpTransport getDelegate() {
+		return delegate;
+	}
+}
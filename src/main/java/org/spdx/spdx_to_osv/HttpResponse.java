@@ -0,0 +1,112 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Response returned by an {@link HttpTransport}
+ * 
+ * Closing the response or the body consumes any remaining body so that the underlying
+ * connection can be reused for subsequent requests.
+ * 
+ * @author Gary O'Neall
+ */
+public class HttpResponse implements Closeable {
+	
+	/**
+	 * Input stream which consumes any unread data before closing the wrapped stream
+	 */
+	private static class DrainingInputStream extends FilterInputStream {
+		
+		private boolean closed = false;
+
+		protected DrainingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				byte[] buf = new byte[8192];
+				while (in.read(buf) >= 0) {
+					// drain the stream so the connection can be reused
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+	
+	private int statusCode;
+	private Map<String, String> headers;
+	private InputStream body;
+	
+	/**
+	 * @param statusCode HTTP status code
+	 * @param headers response headers - the header names are case insensitive
+	 * @param body response body
+	 */
+	public HttpResponse(int statusCode, Map<String, String> headers, InputStream body) {
+		this.statusCode = statusCode;
+		this.headers = new HashMap<>();
+		if (Objects.nonNull(headers)) {
+			for (Map.Entry<String, String> entry:headers.entrySet()) {
+				if (Objects.nonNull(entry.getKey())) {
+					this.headers.put(entry.getKey().toLowerCase(), entry.getValue());
+				}
+			}
+		}
+		this.body = new DrainingInputStream(Objects.isNull(body) ? new ByteArrayInputStream(new byte[0]) : body);
+	}
+	
+	/**
+	 * @param statusCode HTTP status code
+	 * @param body response body
+	 */
+	public HttpResponse(int statusCode, InputStream body) {
+		this(statusCode, Collections.emptyMap(), body);
+	}
+
+	/**
+	 * @return the HTTP status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * @param name header name - case insensitive
+	 * @return the value of the header if present
+	 */
+	public Optional<String> getHeader(String name) {
+		return Optional.ofNullable(headers.get(name.toLowerCase()));
+	}
+
+	/**
+	 * @return the response body
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	@Override
+	public void close() throws IOException {
+		body.close();
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Transport used by the REST API classes to execute HTTP requests
+ * 
+ * Implementations must be thread safe and should reuse connections across requests.
+ * 
+ * @author Gary O'Neall
+ */
+public interface HttpTransport {
+	
+	/**
+	 * Execute an HTTP GET
+	 * @param url URL to get
+	 * @param accept value for the Accept header
+	 * @return response - the caller must close the response
+	 * @throws IOException on any communication error
+	 */
+	HttpResponse get(URL url, String accept) throws IOException;
+	
+	/**
+	 * Execute an HTTP POST
+	 * @param url URL to post to
+	 * @param contentType value for the Content-Type header
+	 * @param accept value for the Accept header
+	 * @param body request body
+	 * @return response - the caller must close the response
+	 * @throws IOException on any communication error
+	 */
+	HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException;
+
+}
@@ -0,0 +1,132 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.spdx.spdx_to_osv.AdaptiveConcurrencyLimiter.Outcome;
+
+/**
+ * Transport which limits the number of concurrent requests to each endpoint with an {@link AdaptiveConcurrencyLimiter}
+ *
+ * Endpoints are identified as in {@link RetryingTransport}, so the query and querybatch API's which have very
+ * different latencies are limited independently.  A request holds its permit until the response status and
+ * headers have been received.  A request which is cancelled (see {@link RequestCancellation}) or interrupted
+ * does not reduce the limit.
+ *
+ * @author Gary O'Neall
+ */
+public class LimitingTransport implements HttpTransport {
+
+	/**
+	 * Default maximum number of concurrent requests to each endpoint when the concurrency is adapted - the limiter
+	 * starts from {@link AdaptiveConcurrencyLimiter#DEFAULT_INITIAL_LIMIT}
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+	/**
+	 * A single request
+	 */
+	@FunctionalInterface
+	private interface Request {
+		HttpResponse execute() throws IOException;
+	}
+
+	private final HttpTransport delegate;
+	private final Supplier<AdaptiveConcurrencyLimiter> limiterFactory;
+	private final ConcurrentHashMap<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param maxConcurrency maximum number of concurrent requests to each endpoint
+	 */
+	public LimitingTransport(HttpTransport delegate, int maxConcurrency) {
+		this(delegate, () -> new AdaptiveConcurrencyLimiter(maxConcurrency));
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param limiterFactory creates the limiter for each endpoint
+	 */
+	public LimitingTransport(HttpTransport delegate, Supplier<AdaptiveConcurrencyLimiter> limiterFactory) {
+		Objects.requireNonNull(delegate, "Delegate transport can not be null");
+		Objects.requireNonNull(limiterFactory, "Limiter factory can not be null");
+		this.delegate = delegate;
+		this.limiterFactory = limiterFactory;
+	}
+
+	@Override
+	public HttpResponse get(URL url, String accept) throws IOException {
+		return execute(url, () -> delegate.get(url, accept));
+	}
+
+	@Override
+	public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+		return execute(url, () -> delegate.post(url, contentType, accept, body));
+	}
+
+	/**
+	 * @param url URL for the request
+	 * @param request request to execute once permitted by the limiter for the endpoint
+	 * @return the response
+	 * @throws IOException
+	 */
+	private HttpResponse execute(URL url, Request request) throws IOException {
+		AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(RetryingTransport.endpoint(url),
+				endpoint -> limiterFactory.get());
+		try {
+			limiter.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException ioe = new InterruptedIOException("Interrupted waiting to send request");
+			ioe.initCause(e);
+			throw ioe;
+		}
+		long start = System.nanoTime();
+		Outcome outcome = Outcome.DROPPED;
+		try {
+			HttpResponse response = request.execute();
+			int status = response.getStatusCode();
+			if (status == 429 || status >= 500) {
+				outcome = Outcome.DROPPED;
+			} else if (status >= 400) {
+				outcome = Outcome.IGNORED;
+			} else {
+				outcome = Outcome.SUCCESS;
+			}
+			return response;
+		} catch (IOException | RuntimeException e) {
+			if (CircuitBreakerTransport.isCancelled(e)) {
+				outcome = Outcome.IGNORED;
+			}
+			throw e;
+		} finally {
+			limiter.release(System.nanoTime() - start, outcome);
+		}
+	}
+
+	/**
+	 * @return the current concurrency limit for each endpoint which has been used
+	 */
+	public Map<String, Integer> getLimits() {
+		Map<String, Integer> retval = new TreeMap<>();
+		limiters.forEach((endpoint, limiter) -> retval.put(endpoint, limiter.getLimit()));
+		return retval;
+	}
+
+	/**
+	 * @return the transport used to execute the requests
+	 */
+	public HttpTransport getDelegate() {
+		return delegate;
+	}
+}
@@ -0,0 +1,626 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Vulnerability source answering queries in-process from a local copy of the OSV data
+ *
+ * The records are loaded from a directory or zip file of OSV JSON files, one vulnerability per file, as
+ * published by OSV for each ecosystem (e.g. <code>https://osv-vulnerabilities.storage.googleapis.com/PyPI/all.zip</code>),
+ * or from a binary index file built from them by {@link LocalOsvIndex} which is memory-mapped rather than parsed.
+ * Each affected package is indexed by ecosystem and name and by purl, and by the repository of any
+ * <code>GIT</code> ranges.  Ecosystem suffixes such as the release in <code>Debian:11</code> are ignored and
+ * PyPI names are normalized as in PEP 503.  Withdrawn records and affected packages without a name or a
+ * <code>GIT</code> range are not indexed.
+ *
+ * A request without a version matches every record affecting the package as with the OSV API.  A request
+ * with a version matches the records listing the version in the affected <code>versions</code> or with a range
+ * including the version as evaluated by the {@link AffectedVersionMatcher}.  The ranges of a package are indexed
+ * by an {@link AffectedRangeIndex} when the package is first queried.
+ *
+ * Commit queries are answered from the {@link GitCommitGraph}s of local repository mirrors added with
+ * {@link #addCommitGraph(GitCommitGraph)} and match the records with a <code>GIT</code> range for the repository
+ * of the mirror containing the commit.  Commit queries are reported as failed if no mirror contains the commit.
+ *
+ * @author Gary O'Neall
+ */
+public class LocalOsvDatabase implements VulnerabilitySource {
+
+	/**
+	 * A package affected by a vulnerability
+	 */
+	static class Entry {
+		final int record;
+		final OsvAffected affected;
+
+		/**
+		 * @param record index of the vulnerability record
+		 * @param affected affected package in the record
+		 */
+		Entry(int record, OsvAffected affected) {
+			this.record = record;
+			this.affected = affected;
+		}
+	}
+
+	/**
+	 * Index of the affected packages by the keys returned from {@link LocalOsvDatabase#indexKeys(OsvPackage)}
+	 */
+	interface Index {
+		/**
+		 * @param key package key
+		 * @return the entries for the key in the order the records were added
+		 * @throws IOException on errors reading the index
+		 */
+		List<Entry> find(String key) throws IOException;
+
+		/**
+		 * @param record index of the record
+		 * @return the vulnerability record
+		 * @throws IOException on errors reading the index
+		 */
+		OsvVulnerability getRecord(int record) throws IOException;
+
+		/**
+		 * @return number of vulnerability records
+		 */
+		int getNumRecords();
+
+		/**
+		 * @return number of distinct packages by ecosystem and name
+		 */
+		int getNumPackages();
+
+		/**
+		 * Release any resources held by the index
+		 */
+		void close();
+	}
+
+	/**
+	 * Receives the records read from OSV JSON files
+	 */
+	interface RecordConsumer {
+		/**
+		 * @param vulnerability record read
+		 * @param json the JSON of the record as read from the file
+		 * @throws IOException on errors handling the record
+		 */
+		void accept(OsvVulnerability vulnerability, byte[] json) throws IOException;
+	}
+
+	/**
+	 * Index of records held in memory
+	 */
+	private static class MemoryIndex implements Index {
+		private final List<OsvVulnerability> records = new ArrayList<>();
+		private final Map<String, List<Entry>> entries = new HashMap<>();
+		private int numPackages = 0;
+
+		@Override
+		public List<Entry> find(String key) {
+			return entries.getOrDefault(key, Collections.emptyList());
+		}
+
+		/**
+		 * @param vulnerability record to add
+		 */
+		void add(OsvVulnerability vulnerability) {
+			if (!isIndexed(vulnerability)) {
+				return;
+			}
+			int record = records.size();
+			records.add(vulnerability);
+			for (OsvAffected affected:vulnerability.getAffected()) {
+				for (String key:indexKeys(affected)) {
+					List<Entry> keyEntries = entries.get(key);
+					if (Objects.isNull(keyEntries)) {
+						keyEntries = new ArrayList<>(1);
+						entries.put(key, keyEntries);
+						if (key.charAt(0) == PACKAGE_KEY) {
+							numPackages++;
+						}
+					}
+					keyEntries.add(new Entry(record, affected));
+				}
+			}
+		}
+
+		@Override
+		public OsvVulnerability getRecord(int record) {
+			return records.get(record);
+		}
+
+		@Override
+		public int getNumRecords() {
+			return records.size();
+		}
+
+		@Override
+		public int getNumPackages() {
+			return numPackages;
+		}
+
+		@Override
+		public void close() {
+			// nothing to release
+		}
+	}
+
+	/**
+	 * Key prefixes for the package keys
+	 */
+	static final char PACKAGE_KEY = 'P';
+	static final char NAME_KEY = 'N';
+	static final char PURL_KEY = 'U';
+	static final char REPO_KEY = 'R';
+
+	private final Index index;
+	private final ConcurrentHashMap<String, AffectedRangeIndex> rangeIndexes = new ConcurrentHashMap<>();
+	private final List<GitCommitGraph> commitGraphs = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param vulnerabilities records to index in memory
+	 */
+	public LocalOsvDatabase(Iterable<OsvVulnerability> vulnerabilities) {
+		MemoryIndex memoryIndex = new MemoryIndex();
+		for (OsvVulnerability vulnerability:vulnerabilities) {
+			memoryIndex.add(vulnerability);
+		}
+		this.index = memoryIndex;
+	}
+
+	/**
+	 * @param index index of the records
+	 */
+	LocalOsvDatabase(Index index) {
+		Objects.requireNonNull(index, "Index can not be null");
+		this.index = index;
+	}
+
+	/**
+	 * Load the records from a directory of OSV JSON files, searched recursively, a zip file of OSV JSON files or
+	 * a {@link LocalOsvIndex} file
+	 * @param path directory, zip file or index file
+	 * @return database of the records
+	 * @throws IOException if the files can not be read or contain invalid JSON
+	 */
+	public static LocalOsvDatabase load(Path path) throws IOException {
+		if (LocalOsvIndex.isIndexFile(path)) {
+			return new LocalOsvDatabase(LocalOsvIndex.open(path));
+		}
+		MemoryIndex memoryIndex = new MemoryIndex();
+		readRecords(path, (vulnerability, json) -> memoryIndex.add(vulnerability));
+		return new LocalOsvDatabase(memoryIndex);
+	}
+
+	/**
+	 * Load the records from an index file, building the index file from the OSV JSON files if it does not exist
+	 * or was built from a different set of OSV JSON files - the number, total size or newest modification time of
+	 * the files differ from the {@link LocalOsvIndex.SourceManifest} stored in the index
+	 * @param path directory or zip file of OSV JSON files
+	 * @param indexFile index file for the OSV JSON files
+	 * @return database of the records
+	 * @throws IOException if the files can not be read or contain invalid JSON
+	 */
+	public static LocalOsvDatabase load(Path path, Path indexFile) throws IOException {
+		return load(path, indexFile, true);
+	}
+
+	/**
+	 * Load the records from an index file, building the index file from the OSV JSON files if it does not exist
+	 * @param path directory or zip file of OSV JSON files
+	 * @param indexFile index file for the OSV JSON files
+	 * @param checkSource if true, rebuild the index if it was built from a different set of OSV JSON files as
+	 * described in {@link #load(Path, Path)}.  If false, an existing index is opened without reading the OSV JSON
+	 * files, which do not need to be present, saving a walk of every file at startup.
+	 * @return database of the records
+	 * @throws IOException if the files can not be read or contain invalid JSON
+	 */
+	public static LocalOsvDatabase load(Path path, Path indexFile, boolean checkSource) throws IOException {
+		LocalOsvIndex.SourceManifest manifest = checkSource ? LocalOsvIndex.SourceManifest.of(path) : null;
+		if (LocalOsvIndex.isIndexFile(indexFile)) {
+			try {
+				LocalOsvIndex index = LocalOsvIndex.open(indexFile);
+				if (!checkSource || manifest.equals(index.getSourceManifest())) {
+					return new LocalOsvDatabase(index);
+				}
+				index.close();
+			} catch (IOException e) {
+				// an index in an older format is rebuilt
+			}
+		}
+		if (Objects.isNull(manifest)) {
+			manifest = LocalOsvIndex.SourceManifest.of(path);
+		}
+		LocalOsvIndex.build(path, indexFile, manifest);
+		return new LocalOsvDatabase(LocalOsvIndex.open(indexFile));
+	}
+
+	/**
+	 * @param dir directory of OSV JSON files
+	 * @return the OSV JSON files in the directory and its subdirectories in file name order
+	 * @throws IOException if the directory can not be read
+	 */
+	static List<Path> jsonFiles(Path dir) throws IOException {
+		try (Stream<Path> walk = Files.walk(dir)) {
+			return walk.filter(file -> Files.isRegularFile(file) && isJsonFile(file.getFileName().toString()))
+					.sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Read the records from a directory of OSV JSON files, searched recursively, or a zip file of OSV JSON files
+	 * @param path directory or zip file
+	 * @param consumer receives each record with an ID in file name order for a directory or in zip order
+	 * @throws IOException if the files can not be read or contain invalid JSON
+	 */
+	static void readRecords(Path path, RecordConsumer consumer) throws IOException {
+		if (Files.isDirectory(path)) {
+			for (Path file:jsonFiles(path)) {
+				try (InputStream in = Files.newInputStream(file)) {
+					readRecord(in, file.toString(), consumer);
+				}
+			}
+		} else if (Files.isRegularFile(path)) {
+			try (ZipFile zip = new ZipFile(path.toFile())) {
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (!entry.isDirectory() && isJsonFile(entry.getName())) {
+						try (InputStream in = zip.getInputStream(entry)) {
+							readRecord(in, entry.getName(), consumer);
+						}
+					}
+				}
+			}
+		} else {
+			throw new IOException("OSV database "+path+" is not a directory or a zip file");
+		}
+	}
+
+	/**
+	 * @param fileName name of a file
+	 * @return true if the file is an OSV JSON file
+	 */
+	private static boolean isJsonFile(String fileName) {
+		return fileName.toLowerCase(Locale.ROOT).endsWith(".json");
+	}
+
+	/**
+	 * @param in stream for a single OSV JSON record
+	 * @param name name of the file for error messages
+	 * @param consumer receives the record and its JSON if it has an ID
+	 * @throws IOException if the JSON is invalid
+	 */
+	private static void readRecord(InputStream in, String name, RecordConsumer consumer) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = in.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, count);
+		}
+		byte[] json = bytes.toByteArray();
+		OsvVulnerability vulnerability;
+		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)) {
+			vulnerability = OsvApi.GSON.fromJson(reader, OsvVulnerability.class);
+		} catch (JsonParseException e) {
+			throw new IOException("Invalid OSV record in "+name, e);
+		}
+		if (Objects.nonNull(vulnerability) && Objects.nonNull(vulnerability.getId())) {
+			consumer.accept(vulnerability, json);
+		}
+	}
+
+	/**
+	 * @param vulnerability vulnerability record
+	 * @return true if the record is indexed - withdrawn records and records without affected packages are not indexed
+	 */
+	static boolean isIndexed(OsvVulnerability vulnerability) {
+		return Objects.isNull(vulnerability.getWithdrawn()) && Objects.nonNull(vulnerability.getAffected());
+	}
+
+	/**
+	 * @param affected affected package
+	 * @return the keys the package is indexed by - the package keys if the package has a name and the
+	 * repository keys of the <code>GIT</code> ranges
+	 */
+	static List<String> indexKeys(OsvAffected affected) {
+		List<String> retval = new ArrayList<>(3);
+		OsvPackage osvPackage = affected.getOsvPackage();
+		if (Objects.nonNull(osvPackage) && Objects.nonNull(osvPackage.getName())) {
+			retval.add(PACKAGE_KEY + packageKey(osvPackage.getEcosystem(), osvPackage.getName()));
+			retval.add(NAME_KEY + osvPackage.getName());
+			if (Objects.nonNull(osvPackage.getPurl())) {
+				retval.add(PURL_KEY + normalizePurl(osvPackage.getPurl()));
+			}
+		}
+		if (Objects.nonNull(affected.getRanges())) {
+			for (OsvRange range:affected.getRanges()) {
+				if (OsvRangeType.GIT.equals(range.getType()) && Objects.nonNull(range.getRepo())) {
+					String key = REPO_KEY + normalizeRepo(range.getRepo());
+					if (!retval.contains(key)) {
+						retval.add(key);
+					}
+				}
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param repo URL of a git repository
+	 * @return the host and path of the repository in lower case without a <code>.git</code> suffix so the
+	 * https, ssh and git forms of the URL match
+	 */
+	static String normalizeRepo(String repo) {
+		String retval = repo.trim().toLowerCase(Locale.ROOT);
+		int scheme = retval.indexOf("://");
+		if (scheme >= 0) {
+			retval = retval.substring(scheme + 3);
+			int at = retval.indexOf('@');
+			if (at >= 0 && at < retval.indexOf('/')) {
+				retval = retval.substring(at + 1);
+			}
+		} else if (retval.matches("[^/]+@[^/:]+:.*")) {
+			// scp-like ssh URL - git@github.com:owner/repo.git
+			retval = retval.substring(retval.indexOf('@') + 1).replaceFirst(":", "/");
+		}
+		while (retval.endsWith("/")) {
+			retval = retval.substring(0, retval.length() - 1);
+		}
+		if (retval.endsWith(".git")) {
+			retval = retval.substring(0, retval.length() - 4);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param ecosystem OSV ecosystem - any suffix following a <code>:</code> is ignored
+	 * @param name package name
+	 * @return key identifying the package within the ecosystem
+	 */
+	static String packageKey(String ecosystem, String name) {
+		String baseEcosystem = Objects.isNull(ecosystem) ? "" : ecosystem;
+		int colon = baseEcosystem.indexOf(':');
+		if (colon >= 0) {
+			baseEcosystem = baseEcosystem.substring(0, colon);
+		}
+		if ("PyPI".equals(baseEcosystem)) {
+			name = name.toLowerCase(Locale.ROOT).replaceAll("[-_.]+", "-");
+		}
+		return baseEcosystem + '\u0000' + name;
+	}
+
+	/**
+	 * @param purl package URL
+	 * @return the package URL without the qualifiers or subpath and with an encoded <code>@</code> decoded
+	 */
+	private static String stripPurlSuffix(String purl) {
+		String retval = purl.replace("%40", "@");
+		int end = retval.length();
+		int hash = retval.indexOf('#');
+		if (hash >= 0) {
+			end = hash;
+		}
+		int question = retval.indexOf('?');
+		if (question >= 0 && question < end) {
+			end = question;
+		}
+		return retval.substring(0, end);
+	}
+
+	/**
+	 * @param purl package URL with or without a version
+	 * @return the package URL without the version, qualifiers or subpath
+	 */
+	static String normalizePurl(String purl) {
+		String retval = stripPurlSuffix(purl);
+		int at = retval.lastIndexOf('@');
+		if (at > retval.lastIndexOf('/')) {
+			retval = retval.substring(0, at);
+		}
+		int slash = retval.indexOf('/');
+		return slash > 0 ? retval.substring(0, slash).toLowerCase(Locale.ROOT) + retval.substring(slash) : retval;
+	}
+
+	/**
+	 * @param purl package URL
+	 * @return the version in the package URL or null if none
+	 */
+	static String purlVersion(String purl) {
+		String stripped = stripPurlSuffix(purl);
+		int at = stripped.lastIndexOf('@');
+		return at > stripped.lastIndexOf('/') ? stripped.substring(at + 1) : null;
+	}
+
+	/**
+	 * @param key package key
+	 * @return the index of the versions affected for the package key - built on first use
+	 * @throws IOException if the index can not be read
+	 */
+	private AffectedRangeIndex rangeIndex(String key) throws IOException {
+		AffectedRangeIndex retval = rangeIndexes.get(key);
+		if (Objects.isNull(retval)) {
+			AffectedRangeIndex.Builder builder = new AffectedRangeIndex.Builder();
+			for (Entry entry:index.find(key)) {
+				builder.add(entry.record, entry.affected);
+			}
+			retval = builder.build();
+			rangeIndexes.putIfAbsent(key, retval);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param commitGraph commit graph of a local repository mirror used for commit queries - the graph must
+	 * have the URL of the repository
+	 */
+	public void addCommitGraph(GitCommitGraph commitGraph) {
+		Objects.requireNonNull(commitGraph.getRepo(), "The commit graph must have a repository URL");
+		commitGraphs.add(commitGraph);
+	}
+
+	/**
+	 * @param commit full or abbreviated commit hash
+	 * @return the vulnerabilities with a <code>GIT</code> range including the commit in the order they were loaded
+	 * @throws SpdxToOsvException if no local repository mirror contains the commit or the index can not be read
+	 */
+	private List<OsvVulnerability> queryCommit(String commit) throws SpdxToOsvException {
+		if (commitGraphs.isEmpty()) {
+			throw new SpdxToOsvException("Commit queries require a local git mirror with the local OSV database");
+		}
+		try {
+			boolean found = false;
+			BitSet records = new BitSet();
+			for (GitCommitGraph graph:commitGraphs) {
+				int id = graph.find(commit);
+				if (id < 0) {
+					continue;
+				}
+				found = true;
+				// the history of the commit is walked once for all of the ranges
+				GitCommitGraph.Ancestors ancestors = graph.ancestors(id);
+				String repo = normalizeRepo(graph.getRepo());
+				for (Entry entry:index.find(REPO_KEY + repo)) {
+					if (records.get(entry.record)) {
+						continue;
+					}
+					for (OsvRange range:entry.affected.getRanges()) {
+						if (OsvRangeType.GIT.equals(range.getType()) && Objects.nonNull(range.getRepo()) &&
+								repo.equals(normalizeRepo(range.getRepo())) && graph.isAffected(range, ancestors)) {
+							records.set(entry.record);
+							break;
+						}
+					}
+				}
+			}
+			if (!found) {
+				throw new SpdxToOsvException("Commit " + commit + " was not found in the local git mirrors");
+			}
+			return getRecords(records);
+		} catch (IOException e) {
+			throw new SpdxToOsvException("Error reading the local OSV database", e);
+		}
+	}
+
+	/**
+	 * @param records record numbers
+	 * @return the records in order
+	 * @throws IOException if the index can not be read
+	 */
+	private List<OsvVulnerability> getRecords(BitSet records) throws IOException {
+		List<OsvVulnerability> retval = new ArrayList<>(records.cardinality());
+		for (int record = records.nextSetBit(0); record >= 0; record = records.nextSetBit(record + 1)) {
+			retval.add(index.getRecord(record));
+		}
+		return retval;
+	}
+
+	/**
+	 * @param request package and version or commit query
+	 * @return the vulnerabilities affecting the package version or commit in the order they were loaded
+	 * @throws SpdxToOsvException if the commit is not in a local repository mirror or the index can not be read
+	 */
+	public List<OsvVulnerability> query(OsvVulnerabilityRequest request) throws SpdxToOsvException {
+		OsvPackage osvPackage = request.getPackage();
+		if (Objects.isNull(osvPackage)) {
+			return queryCommit(request.getCommit());
+		}
+		String version = request.getVersion();
+		try {
+			List<String> keys = new ArrayList<>();
+			if (Objects.nonNull(osvPackage.getPurl())) {
+				keys.add(PURL_KEY + normalizePurl(osvPackage.getPurl()));
+				if (Objects.isNull(version)) {
+					version = purlVersion(osvPackage.getPurl());
+				}
+			}
+			if (Objects.nonNull(osvPackage.getName())) {
+				if (Objects.isNull(osvPackage.getEcosystem())) {
+					keys.add(NAME_KEY + osvPackage.getName());
+				} else {
+					keys.add(PACKAGE_KEY + packageKey(osvPackage.getEcosystem(), osvPackage.getName()));
+				}
+			}
+			BitSet records = new BitSet();
+			for (String key:keys) {
+				records.or(rangeIndex(key).affected(version));
+			}
+			return getRecords(records);
+		} catch (IOException e) {
+			throw new SpdxToOsvException("Error reading the local OSV database", e);
+		}
+	}
+
+	@Override
+	public List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests,
+			BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler) throws SpdxToOsvException {
+		List<List<OsvVulnerability>> retval = new ArrayList<>(requests.size());
+		for (OsvVulnerabilityRequest request:requests) {
+			try {
+				retval.add(query(request));
+			} catch (SpdxToOsvException e) {
+				failureHandler.accept(request, e);
+				retval.add(new ArrayList<>());
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @return number of vulnerability records loaded
+	 */
+	public int getNumRecords() {
+		return index.getNumRecords();
+	}
+
+	/**
+	 * @return number of distinct packages in the database
+	 */
+	public int getNumPackages() {
+		return index.getNumPackages();
+	}
+
+	@Override
+	public void close() {
+		index.close();
+	}
+}
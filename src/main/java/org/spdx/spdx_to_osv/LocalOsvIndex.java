@@ -0,0 +1,748 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.spdx.spdx_to_osv.osvmodel.CompactStringList;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvEvent;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Compact binary index of OSV records which is memory-mapped rather than parsed when opened
+ *
+ * Opening the index only maps the file and reads the fixed size header, so startup time does not depend on the
+ * number of records and the pages are shared through the OS page cache by all processes using the same index.
+ * A lookup binary searches the sorted package keys in place and decodes only the affected packages for the key.
+ * The raw JSON of a record is only parsed when the record matches a query.
+ *
+ * The file is big-endian and consists of:
+ * <ul>
+ * <li>Header - magic, format version, section counts, the offsets of each section and the
+ * {@link SourceManifest} of the OSV JSON files the index was built from</li>
+ * <li>Records - JSON of each record as read from the OSV JSON files</li>
+ * <li>Record table - <code>long</code> offset of each record followed by the end offset of the last record</li>
+ * <li>Key table - <code>int</code> key offset, key length, first entry and number of entries for each key,
+ * sorted by the unsigned UTF-8 bytes of the key</li>
+ * <li>Keys - UTF-8 bytes of the keys</li>
+ * <li>Entry table - <code>int</code> record and <code>long</code> affected offset of each entry, grouped by key</li>
+ * <li>Affected - package, versions and ranges of each affected package - the package is null for affected
+ * entries only indexed by the repository of their <code>GIT</code> ranges and the versions are stored in the
+ * encoding of a {@link CompactStringList}</li>
+ * </ul>
+ *
+ * @author Gary O'Neall
+ */
+public class LocalOsvIndex implements LocalOsvDatabase.Index {
+
+	static final byte[] MAGIC = "OSVINDEX".getBytes(StandardCharsets.US_ASCII);
+	static final int FORMAT_VERSION = 5;
+	static final int HEADER_SIZE = 104;
+	static final int KEY_SLOT_SIZE = 16;
+	static final int ENTRY_SIZE = 12;
+	/**
+	 * Size of each mapped segment - a single mapping is limited to 2GB
+	 */
+	static final int SEGMENT_SHIFT = 30;
+	static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+	/**
+	 * Records not read from a file are stored without pretty printing
+	 */
+	private static final Gson RECORD_GSON = new Gson();
+
+	/**
+	 * Number, total size and newest modification time of the OSV JSON files an index was built from, used to
+	 * check whether the index is up to date
+	 */
+	static final class SourceManifest {
+		/**
+		 * Manifest of an index not built from files - never equal to the manifest of a directory or zip file
+		 */
+		static final SourceManifest NONE = new SourceManifest(-1, -1, -1);
+
+		private final int numFiles;
+		private final long totalSize;
+		private final long lastModified;
+
+		SourceManifest(int numFiles, long totalSize, long lastModified) {
+			this.numFiles = numFiles;
+			this.totalSize = totalSize;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @param path directory or zip file of OSV JSON files
+		 * @return the manifest of the OSV JSON files in the directory and its subdirectories or of the zip file
+		 * @throws IOException if the files can not be read
+		 */
+		static SourceManifest of(Path path) throws IOException {
+			if (Files.isDirectory(path)) {
+				int numFiles = 0;
+				long totalSize = 0;
+				long lastModified = 0;
+				for (Path file:LocalOsvDatabase.jsonFiles(path)) {
+					numFiles++;
+					totalSize += Files.size(file);
+					lastModified = Math.max(lastModified, Files.getLastModifiedTime(file).toMillis());
+				}
+				return new SourceManifest(numFiles, totalSize, lastModified);
+			} else if (Files.isRegularFile(path)) {
+				return new SourceManifest(1, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+			} else {
+				throw new IOException("OSV database "+path+" is not a directory or a zip file");
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof SourceManifest)) {
+				return false;
+			}
+			SourceManifest compare = (SourceManifest)o;
+			return numFiles == compare.numFiles && totalSize == compare.totalSize && lastModified == compare.lastModified;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(numFiles, totalSize, lastModified);
+		}
+	}
+
+	/**
+	 * Writes an index file - records are streamed to the file as they are added while the keys and affected packages
+	 * are held in memory until the index is finished
+	 */
+	static class Writer implements AutoCloseable {
+		private final Path indexFile;
+		private final Path tempFile;
+		private final FileChannel channel;
+		private final DataOutputStream out;
+		private long position = HEADER_SIZE;
+		private final List<Long> recordOffsets = new ArrayList<>();
+		private final Map<String, List<Integer>> keyEntries = new HashMap<>();
+		private final List<Integer> entryRecords = new ArrayList<>();
+		private final ByteArrayOutputStream affectedPool = new ByteArrayOutputStream();
+		private final DataOutputStream affectedOut = new DataOutputStream(affectedPool);
+		private final List<Integer> affectedOffsets = new ArrayList<>();
+		private int numPackages = 0;
+		private SourceManifest sourceManifest = SourceManifest.NONE;
+		private boolean finished = false;
+
+		/**
+		 * @param indexFile file to write - replaced atomically when the index is finished
+		 * @throws IOException on errors creating the file
+		 */
+		Writer(Path indexFile) throws IOException {
+			this.indexFile = indexFile.toAbsolutePath();
+			Files.createDirectories(this.indexFile.getParent());
+			this.tempFile = Files.createTempFile(this.indexFile.getParent(), "osv", ".tmp");
+			this.channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+			this.channel.position(HEADER_SIZE);
+			this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+		}
+
+		/**
+		 * @param sourceManifest manifest of the OSV JSON files the index is built from
+		 */
+		void setSourceManifest(SourceManifest sourceManifest) {
+			this.sourceManifest = sourceManifest;
+		}
+
+		/**
+		 * @param vulnerability record to add - withdrawn records and records without affected packages are skipped
+		 * @throws IOException on errors writing the record
+		 */
+		void add(OsvVulnerability vulnerability) throws IOException {
+			if (LocalOsvDatabase.isIndexed(vulnerability)) {
+				add(vulnerability, RECORD_GSON.toJson(vulnerability).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		/**
+		 * @param vulnerability record to add - withdrawn records and records without affected packages are skipped
+		 * @param json UTF-8 JSON of the record stored in the index
+		 * @throws IOException on errors writing the record
+		 */
+		void add(OsvVulnerability vulnerability, byte[] json) throws IOException {
+			if (!LocalOsvDatabase.isIndexed(vulnerability)) {
+				return;
+			}
+			int record = recordOffsets.size();
+			recordOffsets.add(position);
+			out.write(json);
+			position += json.length;
+			for (OsvAffected affected:vulnerability.getAffected()) {
+				List<String> keys = LocalOsvDatabase.indexKeys(affected);
+				if (keys.isEmpty()) {
+					continue;
+				}
+				int entry = entryRecords.size();
+				entryRecords.add(record);
+				affectedOffsets.add(affectedOut.size());
+				writeAffected(affectedOut, affected);
+				for (String key:keys) {
+					List<Integer> entries = keyEntries.get(key);
+					if (Objects.isNull(entries)) {
+						entries = new ArrayList<>(1);
+						keyEntries.put(key, entries);
+						if (key.charAt(0) == LocalOsvDatabase.PACKAGE_KEY) {
+							numPackages++;
+						}
+					}
+					entries.add(entry);
+				}
+			}
+		}
+
+		/**
+		 * Write the tables and header and move the index into place
+		 * @throws IOException on errors writing the index
+		 */
+		void finish() throws IOException {
+			long recordTableOffset = position;
+			for (long offset:recordOffsets) {
+				out.writeLong(offset);
+			}
+			out.writeLong(recordTableOffset);
+			position += 8L * (recordOffsets.size() + 1);
+
+			Map<String, byte[]> keyBytes = new HashMap<>();
+			for (String key:keyEntries.keySet()) {
+				keyBytes.put(key, key.getBytes(StandardCharsets.UTF_8));
+			}
+			List<String> keys = new ArrayList<>(keyEntries.keySet());
+			keys.sort((a, b) -> compareUnsigned(keyBytes.get(a), keyBytes.get(b)));
+			long keyTableOffset = position;
+			int keyOffset = 0;
+			int firstEntry = 0;
+			for (String key:keys) {
+				int numEntries = keyEntries.get(key).size();
+				out.writeInt(keyOffset);
+				out.writeInt(keyBytes.get(key).length);
+				out.writeInt(firstEntry);
+				out.writeInt(numEntries);
+				keyOffset += keyBytes.get(key).length;
+				firstEntry += numEntries;
+			}
+			position += (long)KEY_SLOT_SIZE * keys.size();
+			long keyPoolOffset = position;
+			for (String key:keys) {
+				out.write(keyBytes.get(key));
+			}
+			position += keyOffset;
+			long entryTableOffset = position;
+			for (String key:keys) {
+				for (int entry:keyEntries.get(key)) {
+					out.writeInt(entryRecords.get(entry));
+					out.writeLong(affectedOffsets.get(entry));
+				}
+			}
+			position += (long)ENTRY_SIZE * firstEntry;
+			long affectedPoolOffset = position;
+			affectedPool.writeTo(out);
+			position += affectedPool.size();
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.put(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putInt(keys.size());
+			header.putInt(firstEntry);
+			header.putInt(recordOffsets.size());
+			header.putInt(numPackages);
+			header.putInt(sourceManifest.numFiles);
+			header.putLong(HEADER_SIZE);
+			header.putLong(recordTableOffset);
+			header.putLong(keyTableOffset);
+			header.putLong(keyPoolOffset);
+			header.putLong(entryTableOffset);
+			header.putLong(affectedPoolOffset);
+			header.putLong(position);
+			header.putLong(sourceManifest.totalSize);
+			header.putLong(sourceManifest.lastModified);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			out.close();
+			try {
+				Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+			finished = true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!finished) {
+				out.close();
+				Files.deleteIfExists(tempFile);
+			}
+		}
+	}
+
+	private final ByteBuffer[] segments;
+	private final int numKeys;
+	private final int numRecords;
+	private final int numPackages;
+	private final long recordTableOffset;
+	private final long keyTableOffset;
+	private final long keyPoolOffset;
+	private final long entryTableOffset;
+	private final long affectedPoolOffset;
+	private final SourceManifest sourceManifest;
+
+	/**
+	 * @param segments mapped segments of the index file
+	 * @throws IOException if the file is not a valid index
+	 */
+	private LocalOsvIndex(ByteBuffer[] segments) throws IOException {
+		this.segments = segments;
+		if (segments.length == 0 || segments[0].limit() < HEADER_SIZE) {
+			throw new IOException("Invalid OSV index - missing header");
+		}
+		ByteBuffer header = segments[0].duplicate();
+		byte[] magic = new byte[MAGIC.length];
+		header.get(magic);
+		if (!Arrays.equals(MAGIC, magic)) {
+			throw new IOException("Invalid OSV index - not an OSV index file");
+		}
+		int version = header.getInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported OSV index format version "+version+".  Rebuild the index.");
+		}
+		this.numKeys = header.getInt();
+		header.getInt();	// number of entries
+		this.numRecords = header.getInt();
+		this.numPackages = header.getInt();
+		int numSourceFiles = header.getInt();
+		header.getLong();	// records offset
+		this.recordTableOffset = header.getLong();
+		this.keyTableOffset = header.getLong();
+		this.keyPoolOffset = header.getLong();
+		this.entryTableOffset = header.getLong();
+		this.affectedPoolOffset = header.getLong();
+		long length = header.getLong();
+		if (length != (long)(segments.length - 1) * SEGMENT_SIZE + segments[segments.length - 1].limit()) {
+			throw new IOException("Invalid OSV index - the file is truncated");
+		}
+		long sourceSize = header.getLong();
+		this.sourceManifest = new SourceManifest(numSourceFiles, sourceSize, header.getLong());
+	}
+
+	/**
+	 * Build an index file from a directory or zip file of OSV JSON files
+	 * @param path directory or zip file of OSV JSON files
+	 * @param indexFile index file to write
+	 * @throws IOException on errors reading the records or writing the index
+	 */
+	public static void build(Path path, Path indexFile) throws IOException {
+		build(path, indexFile, SourceManifest.of(path));
+	}
+
+	/**
+	 * Build an index file from a directory or zip file of OSV JSON files
+	 * @param path directory or zip file of OSV JSON files
+	 * @param indexFile index file to write
+	 * @param sourceManifest manifest of the OSV JSON files taken before they are read
+	 * @throws IOException on errors reading the records or writing the index
+	 */
+	static void build(Path path, Path indexFile, SourceManifest sourceManifest) throws IOException {
+		try (Writer writer = new Writer(indexFile)) {
+			writer.setSourceManifest(sourceManifest);
+			LocalOsvDatabase.readRecords(path, writer::add);
+			writer.finish();
+		}
+	}
+
+	/**
+	 * Build an index file from OSV records
+	 * @param vulnerabilities records to index
+	 * @param indexFile index file to write
+	 * @throws IOException on errors writing the index
+	 */
+	public static void build(Iterable<OsvVulnerability> vulnerabilities, Path indexFile) throws IOException {
+		try (Writer writer = new Writer(indexFile)) {
+			for (OsvVulnerability vulnerability:vulnerabilities) {
+				writer.add(vulnerability);
+			}
+			writer.finish();
+		}
+	}
+
+	/**
+	 * @param path file to check
+	 * @return true if the file starts with the index magic
+	 */
+	public static boolean isIndexFile(Path path) {
+		if (!Files.isRegularFile(path)) {
+			return false;
+		}
+		byte[] magic = new byte[MAGIC.length];
+		try (InputStream in = Files.newInputStream(path)) {
+			int read = 0;
+			while (read < magic.length) {
+				int count = in.read(magic, read, magic.length - read);
+				if (count < 0) {
+					return false;
+				}
+				read += count;
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		return Arrays.equals(MAGIC, magic);
+	}
+
+	/**
+	 * Memory-map an index file
+	 * @param indexFile index file
+	 * @return the index
+	 * @throws IOException if the file can not be mapped or is not a valid index
+	 */
+	public static LocalOsvIndex open(Path indexFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+			long size = channel.size();
+			int numSegments = (int)((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+			ByteBuffer[] segments = new ByteBuffer[numSegments];
+			for (int i = 0; i < numSegments; i++) {
+				long start = (long)i << SEGMENT_SHIFT;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+			return new LocalOsvIndex(segments);
+		}
+	}
+
+	/**
+	 * @param a first key
+	 * @param b second key
+	 * @return comparison of the keys as unsigned bytes
+	 */
+	static int compareUnsigned(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int compare = (a[i] & 0xff) - (b[i] & 0xff);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * @param out stream for the affected pool
+	 * @param affected affected package to write
+	 * @throws IOException on write errors
+	 */
+	private static void writeAffected(DataOutputStream out, OsvAffected affected) throws IOException {
+		OsvPackage osvPackage = affected.getOsvPackage();
+		boolean named = Objects.nonNull(osvPackage) && Objects.nonNull(osvPackage.getName());
+		writeString(out, named ? osvPackage.getName() : null);
+		writeString(out, named ? osvPackage.getEcosystem() : null);
+		writeString(out, named ? osvPackage.getPurl() : null);
+		List<String> versions = affected.getVersions();
+		out.writeInt(Objects.isNull(versions) ? -1 : versions.size());
+		if (Objects.nonNull(versions)) {
+			byte[] encoded = (versions instanceof CompactStringList ? (CompactStringList)versions :
+					new CompactStringList(versions)).getEncoded();
+			out.writeInt(encoded.length);
+			out.write(encoded);
+		}
+		List<OsvRange> ranges = affected.getRanges();
+		out.writeInt(Objects.isNull(ranges) ? -1 : ranges.size());
+		if (Objects.nonNull(ranges)) {
+			for (OsvRange range:ranges) {
+				writeString(out, Objects.isNull(range.getType()) ? null : range.getType().name());
+				writeString(out, range.getRepo());
+				List<OsvEvent> events = range.getEvents();
+				out.writeInt(Objects.isNull(events) ? -1 : events.size());
+				if (Objects.nonNull(events)) {
+					for (OsvEvent event:events) {
+						writeString(out, event.getIntroduced());
+						writeString(out, event.getFixed());
+						writeString(out, event.getLastAffected());
+						writeString(out, event.getLimit());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param out output stream
+	 * @param value string to write - null is written as length -1
+	 * @throws IOException on write errors
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (Objects.isNull(value)) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @param position position in the file
+	 * @return byte at the position
+	 */
+	private byte getByte(long position) {
+		return segments[(int)(position >>> SEGMENT_SHIFT)].get((int)(position & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * @param position position in the file
+	 * @return int at the position
+	 */
+	private int getInt(long position) {
+		ByteBuffer segment = segments[(int)(position >>> SEGMENT_SHIFT)];
+		int offset = (int)(position & (SEGMENT_SIZE - 1));
+		if (offset + 4 <= segment.limit()) {
+			return segment.getInt(offset);
+		}
+		int retval = 0;
+		for (int i = 0; i < 4; i++) {
+			retval = (retval << 8) | (getByte(position + i) & 0xff);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param position position in the file
+	 * @return long at the position
+	 */
+	private long getLong(long position) {
+		ByteBuffer segment = segments[(int)(position >>> SEGMENT_SHIFT)];
+		int offset = (int)(position & (SEGMENT_SIZE - 1));
+		if (offset + 8 <= segment.limit()) {
+			return segment.getLong(offset);
+		}
+		return ((long)getInt(position) << 32) | (getInt(position + 4) & 0xffffffffL);
+	}
+
+	/**
+	 * @param position position in the file
+	 * @param length number of bytes
+	 * @return the bytes at the position
+	 */
+	private byte[] getBytes(long position, int length) {
+		byte[] retval = new byte[length];
+		int copied = 0;
+		while (copied < length) {
+			long current = position + copied;
+			ByteBuffer segment = segments[(int)(current >>> SEGMENT_SHIFT)].duplicate();
+			segment.position((int)(current & (SEGMENT_SIZE - 1)));
+			int count = Math.min(length - copied, segment.remaining());
+			segment.get(retval, copied, count);
+			copied += count;
+		}
+		return retval;
+	}
+
+	/**
+	 * @param slot key slot
+	 * @param key UTF-8 bytes of the key
+	 * @return comparison of the key in the slot to the key as unsigned bytes
+	 */
+	private int compareKey(int slot, byte[] key) {
+		long slotPosition = keyTableOffset + (long)slot * KEY_SLOT_SIZE;
+		long keyPosition = keyPoolOffset + getInt(slotPosition);
+		int keyLength = getInt(slotPosition + 4);
+		int length = Math.min(keyLength, key.length);
+		for (int i = 0; i < length; i++) {
+			int compare = (getByte(keyPosition + i) & 0xff) - (key[i] & 0xff);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return keyLength - key.length;
+	}
+
+	@Override
+	public List<LocalOsvDatabase.Entry> find(String key) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = numKeys - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int compare = compareKey(mid, keyBytes);
+			if (compare < 0) {
+				low = mid + 1;
+			} else if (compare > 0) {
+				high = mid - 1;
+			} else {
+				long slotPosition = keyTableOffset + (long)mid * KEY_SLOT_SIZE;
+				int firstEntry = getInt(slotPosition + 8);
+				int numEntries = getInt(slotPosition + 12);
+				List<LocalOsvDatabase.Entry> retval = new ArrayList<>(numEntries);
+				for (int i = 0; i < numEntries; i++) {
+					long entryPosition = entryTableOffset + (long)(firstEntry + i) * ENTRY_SIZE;
+					retval.add(new LocalOsvDatabase.Entry(getInt(entryPosition),
+							readAffected(affectedPoolOffset + getLong(entryPosition + 4))));
+				}
+				return retval;
+			}
+		}
+		return new ArrayList<>();
+	}
+
+	/**
+	 * Reads values sequentially from the mapped file
+	 */
+	private class Cursor {
+		long position;
+
+		Cursor(long position) {
+			this.position = position;
+		}
+
+		int readInt() {
+			int retval = getInt(position);
+			position += 4;
+			return retval;
+		}
+
+		String readString() {
+			int length = readInt();
+			if (length < 0) {
+				return null;
+			}
+			String retval = new String(getBytes(position, length), StandardCharsets.UTF_8);
+			position += length;
+			return retval;
+		}
+	}
+
+	/**
+	 * @param position position of the affected package in the file
+	 * @return the affected package with the package, versions and ranges
+	 * @throws IOException if the affected package is invalid
+	 */
+	private OsvAffected readAffected(long position) throws IOException {
+		Cursor cursor = new Cursor(position);
+		OsvAffected retval = new OsvAffected();
+		String name = cursor.readString();
+		String ecosystem = cursor.readString();
+		String purl = cursor.readString();
+		if (Objects.nonNull(name)) {
+			retval.setOsvPackage(new OsvPackage(name, ecosystem, purl));
+		} else if (Objects.nonNull(ecosystem) || Objects.nonNull(purl)) {
+			throw new IOException("Invalid OSV index - missing package name");
+		}
+		int numVersions = cursor.readInt();
+		if (numVersions >= 0) {
+			// the versions are used in their encoded form rather than decoded for each lookup
+			int length = cursor.readInt();
+			if (length < 0) {
+				throw new IOException("Invalid OSV index - invalid versions length");
+			}
+			try {
+				retval.setVersions(CompactStringList.fromEncoded(numVersions, getBytes(cursor.position, length)));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid OSV index - invalid versions", e);
+			}
+			cursor.position += length;
+		}
+		int numRanges = cursor.readInt();
+		if (numRanges >= 0) {
+			List<OsvRange> ranges = new ArrayList<>(numRanges);
+			for (int i = 0; i < numRanges; i++) {
+				OsvRange range = new OsvRange();
+				String type = cursor.readString();
+				range.setType(Objects.isNull(type) ? null : OsvRangeType.valueOf(type));
+				range.setRepo(cursor.readString());
+				int numEvents = cursor.readInt();
+				if (numEvents >= 0) {
+					List<OsvEvent> events = new ArrayList<>(numEvents);
+					for (int j = 0; j < numEvents; j++) {
+						OsvEvent event = new OsvEvent();
+						event.setIntroduced(cursor.readString());
+						event.setFixed(cursor.readString());
+						event.setLastAffected(cursor.readString());
+						event.setLimit(cursor.readString());
+						events.add(event);
+					}
+					range.setEvents(events);
+				}
+				ranges.add(range);
+			}
+			retval.setRanges(ranges);
+		}
+		return retval;
+	}
+
+	@Override
+	public OsvVulnerability getRecord(int record) throws IOException {
+		if (record < 0 || record >= numRecords) {
+			throw new IOException("Invalid OSV index record "+record);
+		}
+		long start = getLong(recordTableOffset + 8L * record);
+		long end = getLong(recordTableOffset + 8L * (record + 1));
+		try {
+			return RECORD_GSON.fromJson(new String(getBytes(start, (int)(end - start)), StandardCharsets.UTF_8),
+					OsvVulnerability.class);
+		} catch (JsonParseException e) {
+			throw new IOException("Invalid OSV index record "+record, e);
+		}
+	}
+
+	@Override
+	public int getNumRecords() {
+		return numRecords;
+	}
+
+	@Override
+	public int getNumPackages() {
+		return numPackages;
+	}
+
+	/**
+	 * @return the manifest of the OSV JSON files the index was built from
+	 */
+	SourceManifest getSourceManifest() {
+		return sourceManifest;
+	}
+
+	/**
+	 * @return number of distinct keys in the index
+	 */
+	public int getNumKeys() {
+		return numKeys;
+	}
+
+	@Override
+	public void close() {
+		// the mappings are released when the index is garbage collected
+	}
+}
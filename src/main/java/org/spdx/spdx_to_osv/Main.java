@@ -11,15 +11,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -30,7 +39,6 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.spdx.library.InvalidSPDXAnalysisException;
 import org.spdx.library.SpdxConstants;
-import org.spdx.library.model.ExternalRef;
 import org.spdx.library.model.Relationship;
 import org.spdx.library.model.SpdxDocument;
 import org.spdx.library.model.SpdxElement;
@@ -38,7 +46,6 @@ import org.spdx.library.model.SpdxFile;
 import org.spdx.library.model.SpdxModelFactory;
 import org.spdx.library.model.SpdxPackage;
 import org.spdx.library.model.enumerations.RelationshipType;
-import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
 import org.spdx.storage.IModelStore;
@@ -48,6 +55,8 @@ import org.spdx.tools.SpdxToolsHelper.SerFileType;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 
 /**
  * Utility to produce an OSV JSON file from an SPDX file
@@ -63,6 +72,27 @@ public class Main {
     
     static final int ERROR_STATUS = 1;
     static final int SUCCESS_STATUS = 0;
+    /**
+     * The output was written but some OSV queries could not be completed
+     */
+    static final int PARTIAL_RESULT_STATUS = 2;
+    static final String DEFAULT_OSV_ENDPOINT = "https://api.osv.dev";
+    /**
+     * Property added to each vulnerability in the output listing the OSV queries which found the vulnerability
+     */
+    static final String MATCHED_QUERIES_PROPERTY = "matched_queries";
+    /**
+     * Property of the output of a partial result marking the result as partial
+     */
+    static final String PARTIAL_PROPERTY = "partial";
+    /**
+     * Property of the output of a partial result listing the OSV queries which could not be completed
+     */
+    static final String FAILED_QUERIES_PROPERTY = "failed_queries";
+    /**
+     * Property of the output of a partial result listing the vulnerabilities found by the completed queries
+     */
+    static final String VULNS_PROPERTY = "vulns";
     
     /**
      * Forward relationships that may cause a security vulnerability 
@@ -170,17 +200,226 @@ public class Main {
             System.exit(ERROR_STATUS);
         }
         boolean allPackages = cmdLine.hasOption("a");
+        boolean fixedConcurrency = cmdLine.hasOption("fixedConcurrency");
+        int numThreads = fixedConcurrency ? OsvQueryExecutor.DEFAULT_NUM_THREADS : LimitingTransport.DEFAULT_MAX_CONCURRENCY;
+        if (cmdLine.hasOption("t")) {
+        	try {
+        		numThreads = Integer.parseInt(cmdLine.getOptionValue("t").trim());
+        	} catch (NumberFormatException e) {
+        		numThreads = 0;
+        	}
+        	if (numThreads < 1) {
+        		System.out.println("Invalid number of threads "+cmdLine.getOptionValue("t").trim() + 
+        				".  Expecting a positive number");
+        		System.exit(ERROR_STATUS);
+        	}
+        }
+        if (cmdLine.hasOption("b")) {
+        	try {
+        		OsvApi.getInstance().setBatchSize(Integer.parseInt(cmdLine.getOptionValue("b").trim()));
+        	} catch (IllegalArgumentException e) {
+        		System.out.println("Invalid batch size "+cmdLine.getOptionValue("b").trim() + 
+        				".  Expecting a number between 1 and "+OsvApi.MAX_BATCH_SIZE);
+        		System.exit(ERROR_STATUS);
+        	}
+        }
+        if (cmdLine.hasOption("cacheDir")) {
+        	long ttlMillis = OsvDiskCache.DEFAULT_TTL_MILLIS;
+        	if (cmdLine.hasOption("cacheTtl")) {
+        		try {
+        			ttlMillis = TimeUnit.HOURS.toMillis(Long.parseLong(cmdLine.getOptionValue("cacheTtl").trim()));
+        		} catch (NumberFormatException e) {
+        			ttlMillis = -1;
+        		}
+        		if (ttlMillis < 0) {
+        			System.out.println("Invalid cache time to live "+cmdLine.getOptionValue("cacheTtl").trim() + 
+        					".  Expecting a non-negative number of hours");
+        			System.exit(ERROR_STATUS);
+        		}
+        	}
+        	try {
+        		OsvApi.getInstance().setDiskCache(new OsvDiskCache(Paths.get(cmdLine.getOptionValue("cacheDir").trim()), ttlMillis));
+        	} catch (IOException | InvalidPathException e) {
+        		System.out.println("Unable to use cache directory "+cmdLine.getOptionValue("cacheDir").trim() + 
+        				": " + e.getMessage());
+        		System.exit(ERROR_STATUS);
+        	}
+        }
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+        if (cmdLine.hasOption("connectTimeout")) {
+        	transport.setConnectTimeoutMillis(parseTimeoutMillis(cmdLine, "connectTimeout"));
+        }
+        if (cmdLine.hasOption("readTimeout")) {
+        	transport.setReadTimeoutMillis(parseTimeoutMillis(cmdLine, "readTimeout"));
+        }
+        int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+        if (cmdLine.hasOption("retries")) {
+        	try {
+        		maxRetries = Integer.parseInt(cmdLine.getOptionValue("retries").trim());
+        	} catch (NumberFormatException e) {
+        		maxRetries = -1;
+        	}
+        	if (maxRetries < 0) {
+        		System.out.println("Invalid number of retries "+cmdLine.getOptionValue("retries").trim() + 
+        				".  Expecting a non-negative number");
+        		System.exit(ERROR_STATUS);
+        	}
+        }
+        HttpTransport limitedTransport = transport;
+        LimitingTransport limitingTransport = null;
+        if (!fixedConcurrency) {
+        	limitingTransport = new LimitingTransport(transport, numThreads);
+        	limitedTransport = limitingTransport;
+        }
+        List<URL> osvEndpoints = new ArrayList<>();
         try {
-            spdxToOsv(fromFile, toFile, inputFileType, allPackages);
-            System.exit(SUCCESS_STATUS);
+        	if (cmdLine.hasOption("osvEndpoints")) {
+        		for (String endpoint:cmdLine.getOptionValues("osvEndpoints")) {
+        			if (!endpoint.trim().isEmpty()) {
+        				osvEndpoints.add(new URL(endpoint.trim()));
+        			}
+        		}
+        	}
+        	if (osvEndpoints.isEmpty()) {
+        		osvEndpoints.add(new URL(DEFAULT_OSV_ENDPOINT));
+        	}
+        } catch (MalformedURLException e) {
+        	System.out.println("Invalid OSV endpoint: "+e.getMessage());
+        	System.exit(ERROR_STATUS);
+        }
+        CircuitBreakerTransport breakerTransport = new CircuitBreakerTransport(limitedTransport);
+        OsvApi.getInstance().setTransport(new RetryingTransport(new HedgingTransport(breakerTransport, osvEndpoints, numThreads), 
+        		new RetryPolicy(maxRetries)));
+        SwhApi.getInstance().setTransport(new RetryingTransport(breakerTransport, new RetryPolicy(maxRetries)));
+        if (Objects.isNull(System.getProperty("http.maxConnections"))) {
+        	// keep enough idle connections alive for all of the query threads
+        	System.setProperty("http.maxConnections", String.valueOf(numThreads));
+        }
+        ConversionOptions conversionOptions = new ConversionOptions(numThreads);
+        if (cmdLine.hasOption("mergeAliases")) {
+        	List<String> prefixes = AliasMerger.DEFAULT_PRIMARY_ID_PREFIXES;
+        	if (cmdLine.hasOption("primaryIdPrefixes")) {
+        		prefixes = new ArrayList<>();
+        		for (String prefix:cmdLine.getOptionValues("primaryIdPrefixes")) {
+        			if (!prefix.trim().isEmpty()) {
+        				prefixes.add(prefix.trim());
+        			}
+        		}
+        	}
+        	conversionOptions.setAliasMerger(new AliasMerger(AliasMerger.preferPrefixes(prefixes)));
+        }
+        conversionOptions.setPackageQueries(cmdLine.hasOption("packageQueries"));
+        if (cmdLine.hasOption("indexFile") && !cmdLine.hasOption("localDatabase")) {
+        	System.out.println("The --indexFile option requires the --localDatabase option");
+        	System.exit(ERROR_STATUS);
+        }
+        if (cmdLine.hasOption("skipIndexCheck") && !cmdLine.hasOption("indexFile")) {
+        	System.out.println("The --skipIndexCheck option requires the --indexFile option");
+        	System.exit(ERROR_STATUS);
+        }
+        if (cmdLine.hasOption("gitMirrors") && !cmdLine.hasOption("localDatabase")) {
+        	System.out.println("The --gitMirrors option requires the --localDatabase option");
+        	System.exit(ERROR_STATUS);
+        }
+        if (cmdLine.hasOption("localDatabase")) {
+        	Path databasePath = Paths.get(cmdLine.getOptionValue("localDatabase"));
+        	LocalOsvDatabase database = null;
+        	try {
+        		if (cmdLine.hasOption("indexFile")) {
+        			database = LocalOsvDatabase.load(databasePath, Paths.get(cmdLine.getOptionValue("indexFile")),
+        					!cmdLine.hasOption("skipIndexCheck"));
+        		} else {
+        			database = LocalOsvDatabase.load(databasePath);
+        		}
+        	} catch (IOException e) {
+        		System.err.println("Error loading local OSV database "+databasePath+": "+e.getMessage());
+        		usage(options);
+        		System.exit(ERROR_STATUS);
+        	}
+        	if (cmdLine.hasOption("gitMirrors")) {
+        		for (String mirror:cmdLine.getOptionValues("gitMirrors")) {
+        			if (mirror.trim().isEmpty()) {
+        				continue;
+        			}
+        			GitCommitGraph commitGraph = null;
+        			try {
+        				commitGraph = GitCommitGraph.load(Paths.get(mirror.trim()));
+        			} catch (IOException | InvalidPathException e) {
+        				System.err.println("Error loading git mirror "+mirror.trim()+": "+e.getMessage());
+        				usage(options);
+        				System.exit(ERROR_STATUS);
+        			}
+        			if (Objects.isNull(commitGraph.getRepo())) {
+        				System.err.println("Git mirror "+mirror.trim()+" has no origin remote URL");
+        				System.exit(ERROR_STATUS);
+        			}
+        			database.addCommitGraph(commitGraph);
+        		}
+        	}
+        	conversionOptions.setVulnerabilitySource(database);
+        }
+        int status;
+        try {
+            spdxToOsv(fromFile, toFile, inputFileType, allPackages, conversionOptions);
+            printConcurrencyLimits(limitingTransport);
+            status = SUCCESS_STATUS;
+        } catch(SpdxToOsvPartialResultException ex) {
+            System.err.println("Warning: "+ex.getMessage());
+            System.err.println("The OSV output file only contains vulnerabilities for the completed queries.  Failed queries:");
+            for (OsvVulnerabilityRequest request:ex.getFailedRequests()) {
+                System.err.println("    "+OsvQueryCache.toKey(request));
+            }
+            printConcurrencyLimits(limitingTransport);
+            status = PARTIAL_RESULT_STATUS;
         } catch(Exception ex) {
             System.err.println("Error converting SPDX file to OSV.");
             if (Objects.nonNull(ex.getMessage())) {
                 System.err.println(ex.getMessage());
             }
             usage(options);
-            System.exit(ERROR_STATUS);
+            status = ERROR_STATUS;
+        } finally {
+        	// the conversion does not close the source it was given
+        	if (Objects.nonNull(conversionOptions.getVulnerabilitySource())) {
+        		conversionOptions.getVulnerabilitySource().close();
+        	}
         }
+        System.exit(status);
+    }
+    
+    /**
+     * Parse a timeout option exiting with a usage error if it is not valid
+     * @param cmdLine parsed command line
+     * @param option name of the timeout option in seconds
+     * @return timeout in milliseconds
+     */
+    private static int parseTimeoutMillis(CommandLine cmdLine, String option) {
+    	String seconds = cmdLine.getOptionValue(option).trim();
+    	int retval;
+    	try {
+    		retval = Math.multiplyExact(Integer.parseInt(seconds), 1000);
+    	} catch (NumberFormatException | ArithmeticException e) {
+    		retval = -1;
+    	}
+    	if (retval < 0) {
+    		System.out.println("Invalid "+option+" "+seconds + 
+    				".  Expecting a non-negative number of seconds up to "+Integer.MAX_VALUE / 1000);
+    		System.exit(ERROR_STATUS);
+    	}
+    	return retval;
+    }
+    
+    /**
+     * Print the concurrency limit each endpoint converged to, so the --threads option can be tuned
+     * @param limitingTransport transport adapting the concurrency or null if the concurrency is fixed
+     */
+    private static void printConcurrencyLimits(LimitingTransport limitingTransport) {
+    	if (Objects.isNull(limitingTransport)) {
+    		return;
+    	}
+    	for (Map.Entry<String, Integer> limit:limitingTransport.getLimits().entrySet()) {
+    		System.out.println("Concurrency limit for "+limit.getKey()+": "+limit.getValue());
+    	}
     }
     
     /**
@@ -217,6 +456,138 @@ public class Main {
 				.required(false)
 				.build()
 				);
+		retval.addOption(Option.builder("b")
+				.longOpt("batchSize")
+				.desc("Maximum number of queries sent in a single call to the OSV querybatch API. "
+						+ "Default is "+OsvApi.DEFAULT_BATCH_SIZE)
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder("t")
+				.longOpt("threads")
+				.desc("Maximum number of concurrent OSV queries. Default is "+LimitingTransport.DEFAULT_MAX_CONCURRENCY
+						+ " or "+OsvQueryExecutor.DEFAULT_NUM_THREADS+" with --fixedConcurrency")
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("fixedConcurrency")
+				.desc("Always run the maximum number of concurrent OSV queries rather than adapting the "
+						+ "concurrency to the OSV API latency and errors")
+				.hasArg(false)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("cacheDir")
+				.desc("Directory used to cache OSV query results across runs.  May be shared by concurrent runs. "
+						+ "Default is no persistent cache")
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("cacheTtl")
+				.desc("Time in hours cached OSV query results remain valid. "
+						+ "Default is "+TimeUnit.MILLISECONDS.toHours(OsvDiskCache.DEFAULT_TTL_MILLIS))
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("retries")
+				.desc("Maximum number of times a failed OSV or Software Heritage request is retried. "
+						+ "Default is "+RetryPolicy.DEFAULT_MAX_RETRIES)
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("mergeAliases")
+				.desc("Merge vulnerabilities from different databases which are aliases of each other into a single "
+						+ "vulnerability")
+				.hasArg(false)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("primaryIdPrefixes")
+				.desc("Comma separated database prefixes in order of preference for the ID of merged vulnerabilities. "
+						+ "Default is "+String.join(",", AliasMerger.DEFAULT_PRIMARY_ID_PREFIXES))
+				.hasArgs()
+				.valueSeparator(',')
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("packageQueries")
+				.desc("Query each package with several versions once without a version and match the versions "
+						+ "against the affected versions and ranges of the vulnerabilities locally")
+				.hasArg(false)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("localDatabase")
+				.desc("Directory or zip file of OSV JSON records (e.g. an OSV ecosystem all.zip export) or an index "
+						+ "file built from them queried in place of the OSV API")
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("indexFile")
+				.desc("Binary index file for the --localDatabase records which is memory-mapped at startup. "
+						+ "The index is built if it does not exist or is older than the records")
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("skipIndexCheck")
+				.desc("Use an existing --indexFile without checking that it was built from the current --localDatabase records. "
+						+ "The records are only read if the index does not exist")
+				.hasArg(false)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("gitMirrors")
+				.desc("Comma separated local git repository mirrors used with the --localDatabase to match "
+						+ "commits against GIT ranges. The origin remote URL identifies the repository")
+				.hasArgs()
+				.valueSeparator(',')
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("osvEndpoints")
+				.desc("Comma separated base URL's of equivalent OSV API endpoints such as internal mirrors. "
+						+ "Requests are balanced across the healthy endpoints and slow requests are hedged. "
+						+ "Default is "+DEFAULT_OSV_ENDPOINT)
+				.hasArgs()
+				.valueSeparator(',')
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("connectTimeout")
+				.desc("Timeout in seconds for connecting to the OSV and Software Heritage APIs. "
+						+ "Default is "+UrlConnectionTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS / 1000)
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
+		retval.addOption(Option.builder()
+				.longOpt("readTimeout")
+				.desc("Timeout in seconds for reading a response from the OSV and Software Heritage APIs. "
+						+ "Default is "+UrlConnectionTransport.DEFAULT_READ_TIMEOUT_MILLIS / 1000)
+				.hasArg(true)
+				.required(false)
+				.build()
+				);
 		return retval;
 	}
 
@@ -230,6 +601,36 @@ public class Main {
      * @throws IOException 
      */
     public static void spdxToOsv(File fromFile, File toFile, SerFileType inputFileType, boolean allPackages) throws SpdxToOsvException, IOException {
+    	spdxToOsv(fromFile, toFile, inputFileType, allPackages, OsvQueryExecutor.DEFAULT_NUM_THREADS);
+    }
+    
+    /**
+     * Produce an OSV Output File from an SPDX input file
+     * @param fromFile SPDX input file
+     * @param toFile OSV output file
+     * @param inputFileType Input file type for the SPDX file
+     * @param allPackage if true, scan all packages in the document
+     * @param numThreads maximum number of concurrent OSV queries
+     * @throws SpdxToOsvException 
+     * @throws IOException 
+     */
+    public static void spdxToOsv(File fromFile, File toFile, SerFileType inputFileType, boolean allPackages,
+    		int numThreads) throws SpdxToOsvException, IOException {
+    	spdxToOsv(fromFile, toFile, inputFileType, allPackages, new ConversionOptions(numThreads));
+    }
+    
+    /**
+     * Produce an OSV Output File from an SPDX input file
+     * @param fromFile SPDX input file
+     * @param toFile OSV output file
+     * @param inputFileType Input file type for the SPDX file
+     * @param allPackage if true, scan all packages in the document
+     * @param options options for the conversion
+     * @throws SpdxToOsvException 
+     * @throws IOException 
+     */
+    public static void spdxToOsv(File fromFile, File toFile, SerFileType inputFileType, boolean allPackages,
+    		ConversionOptions options) throws SpdxToOsvException, IOException {
         if (!fromFile.exists()) {
             throw new SpdxToOsvException("Input file "+fromFile.getName()+" does not exist");
         }
@@ -241,7 +642,7 @@ public class Main {
         try {
             writer = new OutputStreamWriter(new FileOutputStream(toFile), StandardCharsets.UTF_8);
             inStream = new FileInputStream(fromFile);
-            spdxToOsv(inStream, inputFileType, writer, allPackages);
+            spdxToOsv(inStream, inputFileType, writer, allPackages, options);
         } finally {
             if (Objects.nonNull(inStream)) {
                 inStream.close();
@@ -263,73 +664,237 @@ public class Main {
      * @throws InvalidSPDXAnalysisException 
      */
     public static void spdxToOsv(IModelStore fromStore, String documentUri, Writer writer, boolean allPackages) throws SpdxToOsvException, IOException, InvalidSPDXAnalysisException {
-    	OsvApi osvApi = OsvApi.getInstance();
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    	spdxToOsv(fromStore, documentUri, writer, allPackages, OsvQueryExecutor.DEFAULT_NUM_THREADS);
+    }
+    
+    /**
+     * Writes OSV JSON data to the outStream based on an SPDX model store and document URI
+     * @param fromStore Model store containing the SPDX model
+     * @param documentUri Document URI for the document to use
+     * @param writer writer the OSV file
+     * @param allPackage if true, scan all packages in the document
+     * @param numThreads maximum number of concurrent OSV queries
+     * @throws SpdxToOsvException
+     * @throws IOException 
+     * @throws InvalidSPDXAnalysisException 
+     */
+    public static void spdxToOsv(IModelStore fromStore, String documentUri, Writer writer, boolean allPackages,
+    		int numThreads) throws SpdxToOsvException, IOException, InvalidSPDXAnalysisException {
+    	spdxToOsv(fromStore, documentUri, writer, allPackages, new ConversionOptions(numThreads));
+    }
+    
+    /**
+     * Writes OSV JSON data to the outStream based on an SPDX model store and document URI
+     * @param fromStore Model store containing the SPDX model
+     * @param documentUri Document URI for the document to use
+     * @param writer writer the OSV file
+     * @param allPackage if true, scan all packages in the document
+     * @param options options for the conversion
+     * @throws SpdxToOsvException
+     * @throws IOException 
+     * @throws InvalidSPDXAnalysisException 
+     */
+    public static void spdxToOsv(IModelStore fromStore, String documentUri, Writer writer, boolean allPackages,
+    		ConversionOptions options) throws SpdxToOsvException, IOException, InvalidSPDXAnalysisException {
+        writeOsv(collectRequests(fromStore, documentUri, allPackages), writer, options);
+    }
+    
+    /**
+     * @param fromStore Model store containing the SPDX model
+     * @param documentUri Document URI for the document to use
+     * @param allPackage if true, scan all packages in the document
+     * @return the set of OSV vulnerability requests for the relevant packages in the document
+     * @throws InvalidSPDXAnalysisException
+     */
+    static Set<OsvVulnerabilityRequest> collectRequests(IModelStore fromStore, String documentUri, boolean allPackages) throws InvalidSPDXAnalysisException {
         Set<OsvVulnerabilityRequest> pvSet = new HashSet<>();
         List<SpdxPackage> pkgs = getPackageFromDocument(fromStore, documentUri, allPackages);
         for (SpdxPackage pkg:pkgs) {
-            try {
-                Optional<String> packageName = pkg.getName();
-                Optional<String> version = pkg.getVersionInfo();
-                if (packageName.isPresent() && version.isPresent()) {
-                    String pName = packageName.get();
-
-                    // Some SPDX documents are created with the package name
-                    // including the versions. Although these should be parsed
-                    // by the creator, this code will workaround the package names.
-                    pName = pName.split("@")[0];
-                    pvSet.add(new OsvVulnerabilityRequest(new OsvPackage(pName, null, null),
-                            version.get()));
+            SpdxPackageInfo.fromSpdxPackage(pkg).addOsvVulnerabilityRequests(pvSet);
+        }
+        return pvSet;
+    }
+    
+    /**
+     * Query OSV for all the requests and write the resulting vulnerabilities
+     * @param pvSet set of OSV vulnerability requests
+     * @param writer writer the OSV file
+     * @param options options for the conversion
+     * @throws SpdxToOsvPartialResultException after writing the vulnerabilities found if any of the queries failed
+     * @throws SpdxToOsvException
+     * @throws IOException
+     */
+    private static void writeOsv(Set<OsvVulnerabilityRequest> pvSet, Writer writer, ConversionOptions options) throws SpdxToOsvException, IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        // call the API on all the package name versions
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>(pvSet);
+        List<List<OsvVulnerability>> results;
+        List<OsvVulnerabilityRequest> failedRequests = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+        BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler = (request, e) -> {
+        	failedRequests.add(request);
+        	failures.add(e);
+        };
+        VulnerabilitySource source = options.getVulnerabilitySource();
+        boolean queryPackages = options.isPackageQueries();
+        if (Objects.nonNull(source)) {
+            // the package query source is not closed since it would close the caller's source
+            results = (queryPackages ? new PackageQuerySource(source) : source).queryVulnerabilities(requests, failureHandler);
+        } else {
+            try (OsvQueryExecutor queryExecutor = new OsvQueryExecutor(OsvApi.getInstance(), options.getNumThreads())) {
+                results = (queryPackages ? new PackageQuerySource(queryExecutor) : queryExecutor)
+                		.queryVulnerabilities(requests, failureHandler);
+            }
+        }
+        // The same vulnerability is often found by several requests (e.g. package name, purl and download location)
+        int[][] resultIndexes = new int[results.size()][];
+        int numUnique = indexVulnerabilities(results, resultIndexes);
+        int[][] matchedRequests = matchedRequests(resultIndexes, numUnique);
+        if (!failedRequests.isEmpty()) {
+            // a partial result describes itself so it can not be mistaken for a complete result
+            JsonArray failedQueries = new JsonArray();
+            for (OsvVulnerabilityRequest request:failedRequests) {
+                failedQueries.add(gson.toJsonTree(request));
+            }
+            writer.append("{\n\"").append(PARTIAL_PROPERTY).append("\": true,\n\"").append(FAILED_QUERIES_PROPERTY).append("\": ");
+            gson.toJson(failedQueries, writer);
+            writer.append(",\n\"").append(VULNS_PROPERTY).append("\": ");
+        }
+        writer.append('[');
+        AliasMerger merger = options.getAliasMerger();
+        if (Objects.nonNull(merger)) {
+            // replace records describing the same issue in different databases with a single canonical record
+            List<OsvVulnerability> uniqueVulns = new ArrayList<>(numUnique);
+            for (int i = 0; i < results.size(); i++) {
+                for (int j = 0; j < resultIndexes[i].length; j++) {
+                    if (resultIndexes[i][j] == uniqueVulns.size()) {
+                        uniqueVulns.add(results.get(i).get(j));
+                    }
                 }
-                for (ExternalRef externalRef:pkg.getExternalRefs()) {
-                    try {
-                        Optional<OsvVulnerabilityRequest> pnv = new ExternalRefParser(externalRef).osvVulnerabilityRequest();
-                        if (pnv.isPresent()) {
-                            pvSet.add(pnv.get());
-                        }
-                    } catch (InvalidExternalRefPattern e) {
-                        System.err.println("Warning: Error parsing external ref: "+e.getMessage());
-                    } catch (IOException e) {
-                    	System.err.println("Warning: I/O Error parsing external ref: "+e.getMessage());
-					} catch (SwhException e) {
-						System.err.println("Warning: Software Heritage API error while processing external ref: "+e.getMessage());
-					}
+            }
+            int[] groups = merger.group(uniqueVulns);
+            List<Set<Integer>> groupMatches = new ArrayList<>();
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i] == groupMatches.size()) {
+                    groupMatches.add(new TreeSet<>());
                 }
-                // Get additional versions and commits from download locations
-                Optional<String> downloadLocation = pkg.getDownloadLocation();
-                if (downloadLocation.isPresent()) {
-                    Optional<OsvVulnerabilityRequest> pnv = new DownloadLocationParser(downloadLocation.get()).getOsvVulnerabilityRequest();
-                    if (pnv.isPresent()) {
-                        OsvVulnerabilityRequest req = pnv.get();
-                        if (req.getVersion() == null && req.getCommit() == null) {
-                            if (version.isPresent()) {
-                                req.setVersion(version.get());
-                            } else {
-                                System.err.printf("Warning: Unable to query package %s due to missing version/commit info", req.getPackage().getName());
-                                continue;
-                            }
-                        }
-                        pvSet.add(req);
+                for (int requestIndex:matchedRequests[i]) {
+                    groupMatches.get(groups[i]).add(requestIndex);
+                }
+            }
+            List<OsvVulnerability> merged = merger.merge(uniqueVulns, groups);
+            for (int i = 0; i < merged.size(); i++) {
+                int[] matches = groupMatches.get(i).stream().mapToInt(Integer::intValue).toArray();
+                writeVulnerability(merged.get(i), matches, requests, i > 0, gson, writer);
+            }
+        } else {
+            // each vulnerability is written the first time its ID is seen and each result is released once written
+            List<List<OsvVulnerability>> pending = new ArrayList<>(results);
+            results = null;
+            BitSet written = new BitSet(numUnique);
+            for (int i = 0; i < pending.size(); i++) {
+                for (int j = 0; j < resultIndexes[i].length; j++) {
+                    int index = resultIndexes[i][j];
+                    if (!written.get(index)) {
+                        writeVulnerability(pending.get(i).get(j), matchedRequests[index], requests, 
+                                !written.isEmpty(), gson, writer);
+                        written.set(index);
                     }
                 }
-            } catch (InvalidSPDXAnalysisException ex) {
-                throw new RuntimeException(ex);
+                pending.set(i, null);
             }
         }
-        // call the API on all the package name versions
-        writer.append('[');
-        int numVulns = 0;
-        for (OsvVulnerabilityRequest pnv:pvSet) {
-            for (OsvVulnerability vulnerability:osvApi.queryVulnerabilities(pnv)) {
-                if (numVulns > 0) {
-	                writer.append(',');
-	                writer.append('\n');
+        writer.append(']');
+        if (!failedRequests.isEmpty()) {
+        	writer.append('}');
+        	writer.flush();
+        	throw new SpdxToOsvPartialResultException("Partial result - unable to complete "+failedRequests.size()+
+        			" of "+requests.size()+" OSV queries: "+failures.get(0).getMessage(), failedRequests, failures.get(0));
+        }
+    }
+
+    /**
+     * Number the distinct vulnerabilities in the order they are first found - vulnerabilities without an ID are 
+     * always distinct
+     * @param results vulnerabilities found by each request
+     * @param resultIndexes set to the number of each vulnerability in the results
+     * @return number of distinct vulnerabilities
+     */
+    private static int indexVulnerabilities(List<List<OsvVulnerability>> results, int[][] resultIndexes) {
+        Map<String, Integer> seenIds = new HashMap<>();
+        int numUnique = 0;
+        for (int i = 0; i < results.size(); i++) {
+            List<OsvVulnerability> result = results.get(i);
+            resultIndexes[i] = new int[result.size()];
+            for (int j = 0; j < result.size(); j++) {
+                String id = result.get(j).getId();
+                Integer index = Objects.isNull(id) ? null : seenIds.putIfAbsent(id, numUnique);
+                if (Objects.isNull(index)) {
+                    index = numUnique++;
                 }
-                gson.toJson(vulnerability, writer);
-                numVulns++;
+                resultIndexes[i][j] = index;
             }
         }
-        writer.append(']');
+        return numUnique;
+    }
+    
+    /**
+     * @param resultIndexes number of each vulnerability found by each request
+     * @param numUnique number of distinct vulnerabilities
+     * @return indexes of the requests which found each distinct vulnerability in ascending order
+     */
+    private static int[][] matchedRequests(int[][] resultIndexes, int numUnique) {
+        int[] counts = new int[numUnique];
+        int[] lastRequest = new int[numUnique];
+        Arrays.fill(lastRequest, -1);
+        for (int i = 0; i < resultIndexes.length; i++) {
+            for (int index:resultIndexes[i]) {
+                if (lastRequest[index] != i) {
+                    lastRequest[index] = i;
+                    counts[index]++;
+                }
+            }
+        }
+        int[][] retval = new int[numUnique][];
+        for (int i = 0; i < numUnique; i++) {
+            retval[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        Arrays.fill(lastRequest, -1);
+        for (int i = 0; i < resultIndexes.length; i++) {
+            for (int index:resultIndexes[i]) {
+                if (lastRequest[index] != i) {
+                    lastRequest[index] = i;
+                    retval[index][counts[index]++] = i;
+                }
+            }
+        }
+        return retval;
+    }
+    
+    /**
+     * Write a vulnerability with the queries which found it
+     * @param vulnerability vulnerability to write
+     * @param matches indexes of the requests which found the vulnerability
+     * @param requests requests
+     * @param separator true if the vulnerability follows another vulnerability in the output
+     * @param gson Gson used to serialize the vulnerability
+     * @param writer writer for the OSV file
+     * @throws IOException
+     */
+    private static void writeVulnerability(OsvVulnerability vulnerability, int[] matches, 
+            List<OsvVulnerabilityRequest> requests, boolean separator, Gson gson, Writer writer) throws IOException {
+        if (separator) {
+            writer.append(',');
+            writer.append('\n');
+        }
+        JsonObject json = gson.toJsonTree(vulnerability).getAsJsonObject();
+        JsonArray matchedQueries = new JsonArray();
+        for (int requestIndex:matches) {
+            matchedQueries.add(gson.toJsonTree(requests.get(requestIndex)));
+        }
+        json.add(MATCHED_QUERIES_PROPERTY, matchedQueries);
+        gson.toJson(json, writer);
     }
 
     /**
@@ -353,105 +918,71 @@ public class Main {
 			if (Objects.isNull(doc)) {
 				throw new InvalidSPDXAnalysisException("Missing document ID");
 			}
-			Map<String, List<Relationship>> fromElementIdRelationshipMap = new HashMap<>();
-			Map<String, List<SpdxElement>> toElementIdToRelationship = new HashMap<>();
+			DependencyGraph.Builder graphBuilder = new DependencyGraph.Builder();
+			Map<String, SpdxPackage> packages = new HashMap<>();
 			// Collect all the relationships from Files and Packages that have a relevant relationship type
 			SpdxModelFactory.getElements(fromStore, documentUri, null, SpdxPackage.class).forEach(oPackage -> {
 				try {
-					addRelevantRelationships((SpdxElement)oPackage, fromElementIdRelationshipMap, 
-							toElementIdToRelationship);
+					SpdxPackage pkg = (SpdxPackage)oPackage;
+					packages.put(pkg.getId(), pkg);
+					addRelevantRelationships(pkg, graphBuilder);
+					// the files of a package (hasFiles) are equivalent to contains relationships
+					for (SpdxFile file:pkg.getFiles()) {
+						graphBuilder.addEdge(pkg.getId(), file.getId());
+					}
 				} catch (InvalidSPDXAnalysisException e) {
 					throw new RuntimeException("Error parsing relationship graph",e);
 				}
 			});
 			SpdxModelFactory.getElements(fromStore, documentUri, null, SpdxFile.class).forEach(oFile -> {
 				try {
-					addRelevantRelationships((SpdxElement)oFile, fromElementIdRelationshipMap, 
-							toElementIdToRelationship);
+					addRelevantRelationships((SpdxElement)oFile, graphBuilder);
 				} catch (InvalidSPDXAnalysisException e) {
 					throw new RuntimeException("Error parsing relationship graph",e);
 				}
 			});
-			List<SpdxPackage> retval = new ArrayList<>();
-			Set<String> visitedElementIds = new HashSet<>();
+			DependencyGraph graph = graphBuilder.build();
+			List<String> describedIds = new ArrayList<>();
 			for (SpdxElement described:doc.getDocumentDescribes()) {
-				if (!visitedElementIds.contains(described.getId())) {
-					collectRelevantPackages(described, retval, 
-							fromElementIdRelationshipMap, toElementIdToRelationship,
-							visitedElementIds);
-				}
+				describedIds.add(described.getId());
 			}
-			return retval;
-		}
-	}
-
-	/**
-	 * Collects all of relevant packages related to element
-	 * @param element element to search for relevant relationship
-	 * @param relevantPackages result of packages which are added to
-	 * @param toElementIdToRelationship map of element ID's to relevant relationships
-	 * @param fromElementIdRelationshipMap map of from element ID's to the element containing the relevant relationship
-	 * @param visitedElementIds Set of all element ID's visited by the collector - used to avoid infinite recursion
-	 * @throws InvalidSPDXAnalysisException 
-	 */
-	private static void collectRelevantPackages(SpdxElement element, 
-			List<SpdxPackage> relevantPackages, 
-			Map<String, List<Relationship>> fromElementIdRelationshipMap, 
-			Map<String, List<SpdxElement>> toElementIdToRelationship, 
-			Set<String> visitedElementIds) throws InvalidSPDXAnalysisException {
-		String id = element.getId();
-		if (visitedElementIds.contains(id)) {
-			return;
-		}
-		visitedElementIds.add(id);
-		if (element instanceof SpdxPackage) {
-			// if we're here, we're relevant!
-			relevantPackages.add((SpdxPackage)element);
-		}
-		if (fromElementIdRelationshipMap.containsKey(id)) {
-			for (Relationship relationship:fromElementIdRelationshipMap.get(id)) {
-				if (relationship.getRelatedSpdxElement().isPresent()) {
-					collectRelevantPackages(relationship.getRelatedSpdxElement().get(),
-							relevantPackages, fromElementIdRelationshipMap,
-							toElementIdToRelationship, visitedElementIds);
+			List<SpdxPackage> retval = new ArrayList<>();
+			BitSet relevant = graph.reachableFrom(describedIds);
+			for (int i = relevant.nextSetBit(0); i >= 0; i = relevant.nextSetBit(i + 1)) {
+				SpdxPackage pkg = packages.get(graph.getId(i));
+				if (Objects.nonNull(pkg)) {
+					// if we're here, we're relevant!
+					retval.add(pkg);
 				}
 			}
-		}
-		if (toElementIdToRelationship.containsKey(id)) {
-			for (SpdxElement relatedElement:toElementIdToRelationship.get(id)) {
-				collectRelevantPackages(relatedElement, relevantPackages, 
-						fromElementIdRelationshipMap,
-						toElementIdToRelationship, visitedElementIds);
-			}
+			return retval;
 		}
 	}
 
 	/**
-	 * Add relationships from the element to the relationship maps collecting any relationship
-	 * considered relevant to possible security violations (e.g. development and test relationships would
-	 * be excluded)
+	 * Add edges to the graph for the relationships from the element which are considered relevant to 
+	 * possible security violations (e.g. development and test relationships would be excluded).
+	 * An edge from A to B means that a vulnerability in B may be a vulnerability for A.
 	 * @param element Element containing the relationships
-	 * @param fromElementIdRelationshipMap Map from an element ID to all of it's relevant relationships 
-	 * @param toElementIdRelationshipMap
+	 * @param graphBuilder builder for the relationship graph
 	 * @throws InvalidSPDXAnalysisException 
 	 */
 	private static void addRelevantRelationships(SpdxElement element,
-			Map<String, List<Relationship>> fromElementIdRelationshipMap,
-			Map<String, List<SpdxElement>> toElementIdRelationshipMap) throws InvalidSPDXAnalysisException {
-		List<Relationship> elementRelationships = new ArrayList<>();
-		fromElementIdRelationshipMap.put(element.getId(), elementRelationships);
+			DependencyGraph.Builder graphBuilder) throws InvalidSPDXAnalysisException {
+		graphBuilder.addElement(element.getId());
 		for (Relationship relationship:element.getRelationships()) {
+			if (!relationship.getRelatedSpdxElement().isPresent()) {
+				continue;
+			}
+			String relatedId = relationship.getRelatedSpdxElement().get().getId();
+			if (Objects.isNull(relatedId)) {
+				continue;
+			}
 			if (RELEVANT_RELATIONSHIPS.contains(relationship.getRelationshipType())) {
-				elementRelationships.add(relationship);
+				graphBuilder.addEdge(element.getId(), relatedId);
 			}
-			if (RELEVANT_REVERSE_RELATIONSHIPS.contains(relationship.getRelationshipType()) &&
-					relationship.getRelatedSpdxElement().isPresent()) {
-				List<SpdxElement> reverseRelationships = toElementIdRelationshipMap.get(relationship.getRelatedSpdxElement().get().getId());
-				if (Objects.isNull(reverseRelationships)) {
-					reverseRelationships = new ArrayList<>();
-					toElementIdRelationshipMap.put(relationship.getRelatedSpdxElement().get().getId(), reverseRelationships);
-				}
-				reverseRelationships.add(element);
+			if (RELEVANT_REVERSE_RELATIONSHIPS.contains(relationship.getRelationshipType())) {
+				graphBuilder.addEdge(relatedId, element.getId());
 			}
 		}
 	}
@@ -465,10 +996,49 @@ public class Main {
      * @throws SpdxToOsvException 
      */
     public static void spdxToOsv(InputStream inStream, SerFileType inputFileType, Writer writer, boolean allPackages) throws SpdxToOsvException {
+    	spdxToOsv(inStream, inputFileType, writer, allPackages, OsvQueryExecutor.DEFAULT_NUM_THREADS);
+    }
+    
+    /**
+     * Writes OSV JSON data to the outStream based on an SPDX input stream
+     * @param inStream Stream for the SPDX file
+     * @param inputFileType Serialization type for the input file stream
+     * @param writer writer the OSV file
+     * @param allPackage if true, scan all packages in the document
+     * @param numThreads maximum number of concurrent OSV queries
+     * @throws SpdxToOsvException 
+     */
+    public static void spdxToOsv(InputStream inStream, SerFileType inputFileType, Writer writer, boolean allPackages,
+    		int numThreads) throws SpdxToOsvException {
+    	spdxToOsv(inStream, inputFileType, writer, allPackages, new ConversionOptions(numThreads));
+    }
+    
+    /**
+     * Writes OSV JSON data to the outStream based on an SPDX input stream
+     * @param inStream Stream for the SPDX file
+     * @param inputFileType Serialization type for the input file stream
+     * @param writer writer the OSV file
+     * @param allPackage if true, scan all packages in the document
+     * @param options options for the conversion
+     * @throws SpdxToOsvException 
+     */
+    public static void spdxToOsv(InputStream inStream, SerFileType inputFileType, Writer writer, boolean allPackages,
+    		ConversionOptions options) throws SpdxToOsvException {
         try {
+            if (SerFileType.JSON.equals(inputFileType)) {
+                // stream the JSON rather than deserializing the entire document into a model store
+                Set<OsvVulnerabilityRequest> pvSet;
+                try {
+                    pvSet = SpdxJsonRequestExtractor.extractRequests(inStream, allPackages);
+                } catch (IOException e) {
+                    throw new SpdxToOsvException("Error reading the SPDX input file",e);
+                }
+                writeOsv(pvSet, writer, options);
+                return;
+            }
             ISerializableModelStore fromStore = SpdxToolsHelper.fileTypeToStore(inputFileType);
             String documentUri = fromStore.deSerialize(inStream, false);
-            spdxToOsv(fromStore, documentUri, writer, allPackages);
+            spdxToOsv(fromStore, documentUri, writer, allPackages, options);
         } catch (InvalidSPDXAnalysisException e) {
             throw new SpdxToOsvException("Error reading the SPDX input file",e);
         } catch (IOException e) {
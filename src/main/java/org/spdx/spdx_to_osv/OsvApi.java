@@ -4,25 +4,35 @@
  */
 package org.spdx.spdx_to_osv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import org.spdx.spdx_to_osv.osvmodel.OsvBatchRequest;
 import org.spdx.spdx_to_osv.osvmodel.OsvErrorResponse;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
-import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityResponse;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 /**
  * Singleton class for the OSV REST API
@@ -34,12 +44,61 @@ public class OsvApi {
     
     private static OsvApi _instance;
     protected static String API_URL_STRING = "https://api.osv.dev/v1/query";
+    protected static String BATCH_API_URL_STRING = "https://api.osv.dev/v1/querybatch";
+    protected static String VULNS_API_URL_STRING = "https://api.osv.dev/v1/vulns/";
+    /**
+     * Maximum number of queries the OSV querybatch API accepts in a single call
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BATCH_SIZE = MAX_BATCH_SIZE;
     protected URL apiUrl;
+    protected URL batchApiUrl;
+    protected URL vulnsApiUrl;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile HttpTransport transport;
+    private volatile OsvQueryCache queryCache = new OsvQueryCache();
+    private volatile OsvDiskCache diskCache = null;
+    private final SingleFlight<String, Page> inFlightQueries = new SingleFlight<>();
+    /**
+     * Prefix of the cache key for a full vulnerability record - query keys are JSON objects so can not collide
+     */
+    static final String VULNERABILITY_KEY_PREFIX = "vulns/";
+    /**
+     * Prefix of the in flight key for a query sent in a querybatch call - the batch API returns only summaries so 
+     * the results can not be shared with the QueryVulnerabilities API
+     */
+    static final String BATCH_KEY_PREFIX = "querybatch/";
     static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    static final OsvResponseReader RESPONSE_READER = new OsvResponseReader(GSON);
+    
+    /**
+     * A single page of the results of a query
+     */
+    private static class Page {
+        private final List<OsvVulnerability> vulnerabilities;
+        private final String nextPageToken;
+
+        private Page(List<OsvVulnerability> vulnerabilities, String nextPageToken) {
+            this.vulnerabilities = vulnerabilities;
+            this.nextPageToken = nextPageToken;
+        }
+    }
     
     private OsvApi() {
+        this(new RetryingTransport(new CircuitBreakerTransport(new LimitingTransport(new UrlConnectionTransport(), 
+                OsvQueryExecutor.DEFAULT_NUM_THREADS))));
+    }
+    
+    /**
+     * @param transport transport used for all HTTP requests
+     */
+    OsvApi(HttpTransport transport) {
+        Objects.requireNonNull(transport, "Transport can not be null");
+        this.transport = transport;
         try {
             apiUrl  = new URL(API_URL_STRING);
+            batchApiUrl = new URL(BATCH_API_URL_STRING);
+            vulnsApiUrl = new URL(VULNS_API_URL_STRING);
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
@@ -52,6 +111,116 @@ public class OsvApi {
         return _instance;
     }
 
+    /**
+     * @return the transport used for all HTTP requests
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @param transport the transport used for all HTTP requests
+     */
+    public void setTransport(HttpTransport transport) {
+        Objects.requireNonNull(transport, "Transport can not be null");
+        this.transport = transport;
+    }
+
+    /**
+     * @return the cache of query results or null if query results are not cached
+     */
+    public OsvQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * @param queryCache the cache of query results - null to disable caching
+     */
+    public void setQueryCache(OsvQueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * @return the persistent cache of query results or null if query results are not persisted
+     */
+    public OsvDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * @param diskCache the persistent cache of query results - null to disable
+     */
+    public void setDiskCache(OsvDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Look up a query result in the in-memory cache and then the persistent cache
+     * @param key normalized request key
+     * @return the cached result or empty if not cached
+     */
+    private Optional<List<OsvVulnerability>> getCached(String key) {
+        OsvQueryCache memoryCache = queryCache;
+        Optional<List<OsvVulnerability>> retval = Objects.isNull(memoryCache) ? Optional.empty() : memoryCache.get(key);
+        if (!retval.isPresent()) {
+            OsvDiskCache persistentCache = diskCache;
+            if (Objects.nonNull(persistentCache)) {
+                retval = persistentCache.get(key);
+                if (retval.isPresent() && Objects.nonNull(memoryCache)) {
+                    memoryCache.put(key, retval.get());
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Store a query result in the in-memory and persistent caches
+     * @param key normalized request key
+     * @param vulnerabilities result of the query
+     */
+    private void putCached(String key, List<OsvVulnerability> vulnerabilities) {
+        OsvQueryCache memoryCache = queryCache;
+        if (Objects.nonNull(memoryCache)) {
+            memoryCache.put(key, vulnerabilities);
+        }
+        OsvDiskCache persistentCache = diskCache;
+        if (Objects.nonNull(persistentCache)) {
+            persistentCache.put(key, vulnerabilities);
+        }
+    }
+
+    /**
+     * @return true if either cache is enabled
+     */
+    private boolean isCaching() {
+        return Objects.nonNull(queryCache) || Objects.nonNull(diskCache);
+    }
+
+    /**
+     * @return number of queries and vulnerability record fetches which shared the result of an identical call already in flight
+     */
+    public long getCoalescedQueryCount() {
+        return inFlightQueries.getCoalescedCount();
+    }
+
+    /**
+     * @return the maximum number of queries sent in a single call to the querybatch API
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the maximum number of queries sent in a single call to the querybatch API
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and "+MAX_BATCH_SIZE);
+        }
+        this.batchSize = batchSize;
+    }
+
     /**
      * Calls the QueryVulnerabilities API to obtain vulnerability information from OSV
      * @param packageNameVersion The package name and version object to pass to the OSV API
@@ -60,50 +229,382 @@ public class OsvApi {
      * @throws SpdxToOsvException 
      */
     public List<OsvVulnerability> queryVulnerabilities(OsvVulnerabilityRequest packageNameVersion) throws IOException, SpdxToOsvException {
-        HttpURLConnection con = (HttpURLConnection)(apiUrl.openConnection());
-        String pkgNameVersionJson = GSON.toJson(packageNameVersion);
-        byte[] json = pkgNameVersionJson.getBytes(StandardCharsets.UTF_8);
-        int len = json.length;
-        con.setRequestMethod("POST");
-        con.setFixedLengthStreamingMode(len);
-        con.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-        con.setRequestProperty("Accept", "application/json");
-        con.setDoOutput(true);
-        con.connect();
+        List<OsvVulnerability> retval = new ArrayList<>();
+        queryVulnerabilities(packageNameVersion, retval::add);
+        return retval;
+    }
+    
+    /**
+     * Calls the QueryVulnerabilities API to obtain vulnerability information from OSV passing each
+     * vulnerability to the consumer.  Concurrent calls for an equal request share a single call to the API.
+     * 
+     * The caller which makes the call to the API receives each vulnerability as it is read from the response.
+     * Callers sharing a call already in flight receive the vulnerabilities once the whole page has been read,
+     * so each page is also held in memory while it is in flight.  Large results are returned by OSV in several
+     * pages and each page is passed to the consumer before the next page is requested.  Only results which fit
+     * in a single page are cached.
+     * @param packageNameVersion The package name and version object to pass to the OSV API
+     * @param consumer consumer for the OSV Vulnerabilities returned by the API
+     * @throws IOException 
+     * @throws SpdxToOsvException 
+     */
+    public void queryVulnerabilities(OsvVulnerabilityRequest packageNameVersion, 
+            Consumer<OsvVulnerability> consumer) throws IOException, SpdxToOsvException {
+        String key = OsvQueryCache.toKey(packageNameVersion);
+        Optional<List<OsvVulnerability>> cached = isCaching() ? getCached(key) : Optional.empty();
+        if (cached.isPresent()) {
+            cached.get().forEach(consumer);
+            return;
+        }
+        StreamingConsumer streaming = new StreamingConsumer(consumer);
+        Page page = inFlightQueries.execute(key, () -> {
+            Page firstPage = queryPage(packageNameVersion.withPageToken(null), streaming.start());
+            if (Objects.isNull(firstPage.nextPageToken)) {
+                putCached(key, firstPage.vulnerabilities);
+            }
+            return firstPage;
+        });
+        streaming.finish(page);
+        Set<String> pageTokens = new HashSet<>();
+        while (Objects.nonNull(page.nextPageToken)) {
+            String pageToken = page.nextPageToken;
+            pageTokens.add(pageToken);
+            page = inFlightQueries.execute(key + "#" + pageToken, 
+                    () -> queryPage(packageNameVersion.withPageToken(pageToken), streaming.start()));
+            if (Objects.nonNull(page.nextPageToken) && pageTokens.contains(page.nextPageToken)) {
+                throw new SpdxToOsvException("OSV returned a page token already used for the query");
+            }
+            streaming.finish(page);
+        }
+    }
+    
+    /**
+     * Passes the vulnerabilities of a page to a caller's consumer as they are read if the caller makes the
+     * call to the API, otherwise once the page shared with another caller has been read.  An exception thrown
+     * by the consumer is rethrown to the caller only rather than failing the call shared with other callers.
+     */
+    private static class StreamingConsumer {
+        private final Consumer<OsvVulnerability> consumer;
+        private boolean streamed = false;
+        private RuntimeException failure = null;
+
+        private StreamingConsumer(Consumer<OsvVulnerability> consumer) {
+            this.consumer = consumer;
+        }
+
+        /**
+         * @return consumer for the vulnerabilities read by a call made by this caller
+         */
+        private Consumer<OsvVulnerability> start() {
+            streamed = true;
+            return vulnerability -> {
+                if (Objects.isNull(failure)) {
+                    try {
+                        consumer.accept(vulnerability);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            };
+        }
+
+        /**
+         * @param page page returned by the call - passed to the consumer if the call was made by another caller
+         */
+        private void finish(Page page) {
+            if (Objects.nonNull(failure)) {
+                throw failure;
+            }
+            if (!streamed) {
+                page.vulnerabilities.forEach(consumer);
+            }
+            streamed = false;
+        }
+    }
+    
+    /**
+     * @param request request including the token for the page
+     * @param consumer receives each vulnerability as it is read
+     * @return the page of results
+     * @throws IOException
+     * @throws SpdxToOsvException
+     */
+    private Page queryPage(OsvVulnerabilityRequest request, Consumer<OsvVulnerability> consumer) throws IOException, SpdxToOsvException {
+        List<OsvVulnerability> vulnerabilities = new ArrayList<>();
+        String nextPageToken = post(apiUrl, request, reader -> 
+                RESPONSE_READER.readVulnerabilities(reader, vulnerability -> {
+                    vulnerabilities.add(vulnerability);
+                    consumer.accept(vulnerability);
+                }));
+        return new Page(vulnerabilities, nextPageToken);
+    }
+    
+    /**
+     * Calls the GetVulnByID API to obtain the full record for a vulnerability.  The record is cached.
+     * Concurrent calls for the same ID share a single call to the API.
+     * @param id ID of the vulnerability
+     * @return the vulnerability
+     * @throws IOException
+     * @throws SpdxToOsvException if the API returns an error including if the vulnerability is not found
+     */
+    public OsvVulnerability getVulnerability(String id) throws IOException, SpdxToOsvException {
+        Objects.requireNonNull(id, "Vulnerability ID can not be null");
+        return inFlightQueries.execute(VULNERABILITY_KEY_PREFIX + id, 
+                () -> new Page(Collections.singletonList(fetchVulnerability(id)), null)).vulnerabilities.get(0);
+    }
+    
+    /**
+     * Obtain the full record for a vulnerability using the cached record if it has not been modified.
+     * Concurrent calls for the same ID share a single call to the API, so a record is fetched at most once
+     * while it is cached.
+     * @param id ID of the vulnerability
+     * @param modified the current <code>modified</code> timestamp of the vulnerability (e.g. from a batch query) - 
+     * null if unknown in which case any cached record is used
+     * @return the vulnerability
+     * @throws IOException
+     * @throws SpdxToOsvException if the API returns an error including if the vulnerability is not found
+     */
+    public OsvVulnerability getVulnerability(String id, String modified) throws IOException, SpdxToOsvException {
+        Objects.requireNonNull(id, "Vulnerability ID can not be null");
+        OsvVulnerability cached = getCachedVulnerability(id, modified);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+        return inFlightQueries.execute(VULNERABILITY_KEY_PREFIX + id, () -> {
+            // a call for the same ID may have completed since the cache was checked
+            OsvVulnerability record = getCachedVulnerability(id, modified);
+            if (Objects.isNull(record)) {
+                record = fetchVulnerability(id);
+            }
+            return new Page(Collections.singletonList(record), null);
+        }).vulnerabilities.get(0);
+    }
+    
+    /**
+     * @param id ID of the vulnerability
+     * @param modified the current <code>modified</code> timestamp of the vulnerability - null if unknown
+     * @return the cached record if it has not been modified or null
+     */
+    private OsvVulnerability getCachedVulnerability(String id, String modified) {
+        if (!isCaching()) {
+            return null;
+        }
+        Optional<List<OsvVulnerability>> cached = getCached(VULNERABILITY_KEY_PREFIX + id);
+        if (cached.isPresent() && cached.get().size() == 1 && 
+                (Objects.isNull(modified) || modified.equals(cached.get().get(0).getModified()))) {
+            return cached.get().get(0);
+        }
+        return null;
+    }
+    
+    /**
+     * Calls the GetVulnByID API and caches the record
+     * @param id ID of the vulnerability
+     * @return the vulnerability
+     * @throws IOException
+     * @throws SpdxToOsvException if the API returns an error including if the vulnerability is not found
+     */
+    private OsvVulnerability fetchVulnerability(String id) throws IOException, SpdxToOsvException {
+        URL url = new URL(vulnsApiUrl, URLEncoder.encode(id, "UTF-8").replace("+", "%20"));
+        OsvVulnerability retval;
+        try (HttpResponse httpResponse = transport.get(url, "application/json")) {
+            retval = handleResponse(httpResponse, reader -> {
+                try {
+                    return GSON.fromJson(reader, OsvVulnerability.class);
+                } catch (JsonParseException e) {
+                    throw new IOException("Invalid vulnerability in OSV response", e);
+                }
+            });
+        }
+        if (Objects.isNull(retval) || !id.equals(retval.getId())) {
+            throw new SpdxToOsvException("OSV returned a different vulnerability for the ID "+id);
+        }
+        putCached(VULNERABILITY_KEY_PREFIX + id, Collections.singletonList(retval));
+        return retval;
+    }
+    
+    /**
+     * Cache the full result of a query obtained by other means than calling the QueryVulnerabilities API 
+     * (e.g. by hydrating the results of a batch query)
+     * @param request query
+     * @param vulnerabilities full vulnerability records returned for the query
+     */
+    void cacheQueryResult(OsvVulnerabilityRequest request, List<OsvVulnerability> vulnerabilities) {
+        putCached(OsvQueryCache.toKey(request), vulnerabilities);
+    }
+    
+    /**
+     * Calls the QueryVulnerabilitiesBatch API to obtain vulnerability information for many requests 
+     * using as few round trips as possible.  The requests are split into chunks of at most
+     * <code>batchSize</code> queries.
+     * 
+     * NOTE: The batch API only returns the <code>id</code> and <code>modified</code> fields
+     * for each vulnerability.  Use <code>getVulnerability</code> to obtain the full record.
+     * Requests with a cached result are not sent and the full cached records are returned.
+     * Requests already in flight in a concurrent batch call, such as from another conversion, are not sent 
+     * again and share the result of that call.
+     * 
+     * @param requests The package name and version objects to pass to the OSV API
+     * @return list of vulnerability lists in the same order as the requests
+     * @throws IOException
+     * @throws SpdxToOsvException
+     */
+    public List<List<OsvVulnerability>> queryVulnerabilitiesBatch(List<OsvVulnerabilityRequest> requests) throws IOException, SpdxToOsvException {
+        boolean caching = isCaching();
+        List<List<OsvVulnerability>> retval = new ArrayList<>(requests.size());
+        List<OsvVulnerabilityRequest> uncachedRequests = new ArrayList<>();
+        List<Integer> uncachedIndexes = new ArrayList<>();
+        List<String> claimedKeys = new ArrayList<>();
+        Map<Integer, CompletableFuture<Page>> inFlight = new HashMap<>();
+        for (OsvVulnerabilityRequest request:requests) {
+            String key = OsvQueryCache.toKey(request);
+            Optional<List<OsvVulnerability>> cached = caching ? getCached(key) : Optional.empty();
+            if (cached.isPresent()) {
+                retval.add(new ArrayList<>(cached.get()));
+                continue;
+            }
+            CompletableFuture<Page> existing = inFlightQueries.claim(BATCH_KEY_PREFIX + key);
+            if (Objects.nonNull(existing)) {
+                inFlight.put(retval.size(), existing);
+            } else {
+                uncachedIndexes.add(retval.size());
+                uncachedRequests.add(request);
+                claimedKeys.add(BATCH_KEY_PREFIX + key);
+            }
+            retval.add(null);
+        }
+        int completed = 0;
         try {
-	        try(OutputStream out = con.getOutputStream()) {
-	        	if (Objects.nonNull(out)) {
-	        		out.write(json);
-	        	}
-	        }
-	        String response;
-	        try(BufferedReader reader = new BufferedReader(
-	                new InputStreamReader(con.getInputStream(),StandardCharsets.UTF_8))) {
-	            StringBuilder sb = new StringBuilder();
-	            String line = null;
-	            while ((line = reader.readLine()) != null) {
-	                sb.append(line);
-	            }
-	            response = sb.toString();
-	        }
-	        if (con.getResponseCode() == 200) {
-	            OsvVulnerabilityResponse responseJson = GSON.fromJson(response, OsvVulnerabilityResponse.class);
-	            if (Objects.nonNull(responseJson.getVulns())) {
-	                return responseJson.getVulns();
-	            } else {
-	                return new ArrayList<OsvVulnerability>();
-	            }
-	        } else {
-	            OsvErrorResponse responseJson = GSON.fromJson(response, OsvErrorResponse.class);
-	            String msg = "Error getting vulnerability data";
-	            if (Objects.nonNull(responseJson) && Objects.nonNull(responseJson.getMessage()) &&
-	                    !responseJson.getMessage().isEmpty()) {
-	                msg += responseJson.getMessage();
-	            }
-	            throw new SpdxToOsvException(msg);
-	        }
-        } finally {
-        	con.disconnect();
+            for (int start = 0; start < uncachedRequests.size(); start += batchSize) {
+                int end = Math.min(start + batchSize, uncachedRequests.size());
+                List<OsvVulnerabilityRequest> chunk = uncachedRequests.subList(start, end);
+                List<List<OsvVulnerability>> chunkResults = queryBatchChunk(chunk);
+                for (int i = 0; i < chunkResults.size(); i++) {
+                    retval.set(uncachedIndexes.get(start + i), chunkResults.get(i));
+                    if (caching && chunkResults.get(i).isEmpty()) {
+                        // no vulnerabilities is also the complete result for the full query
+                        putCached(OsvQueryCache.toKey(chunk.get(i)), chunkResults.get(i));
+                    }
+                    inFlightQueries.complete(claimedKeys.get(start + i), new Page(chunkResults.get(i), null));
+                }
+                completed = end;
+            }
+        } catch (IOException | SpdxToOsvException | RuntimeException | Error e) {
+            for (int i = completed; i < claimedKeys.size(); i++) {
+                inFlightQueries.fail(claimedKeys.get(i), e);
+            }
+            throw e;
+        }
+        // the claimed queries are completed before waiting so concurrent batch calls can not wait for each other
+        for (Map.Entry<Integer, CompletableFuture<Page>> entry:inFlight.entrySet()) {
+            retval.set(entry.getKey(), new ArrayList<>(inFlightQueries.await(entry.getValue()).vulnerabilities));
+        }
+        return retval;
+    }
+
+    /**
+     * Query a chunk of requests following the next page token of any result with more pages in further
+     * querybatch calls containing only the requests with more pages
+     * 
+     * The pages are accumulated rather than streamed since the results are returned in request order and
+     * a result is only complete - and can be cached or hydrated - once its last page has been read.  The
+     * batch API only returns the <code>id</code> and <code>modified</code> fields, so the accumulated
+     * results are small compared to the full records.
+     * @param chunk requests to send in a single querybatch call - must be no larger than the MAX_BATCH_SIZE
+     * @return list of vulnerability lists in the same order as the requests
+     * @throws IOException
+     * @throws SpdxToOsvException
+     */
+    private List<List<OsvVulnerability>> queryBatchChunk(List<OsvVulnerabilityRequest> chunk) throws IOException, SpdxToOsvException {
+        List<List<OsvVulnerability>> retval = new ArrayList<>(chunk.size());
+        List<Integer> pageIndexes = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            retval.add(new ArrayList<OsvVulnerability>());
+            pageIndexes.add(i);
+        }
+        List<OsvVulnerabilityRequest> pageRequests = chunk;
+        Map<Integer, Set<String>> pageTokens = new HashMap<>();
+        while (!pageRequests.isEmpty()) {
+            List<Integer> indexes = pageIndexes;
+            Map<Integer, String> nextPageTokens = new TreeMap<>();
+            int numResults = post(batchApiUrl, new OsvBatchRequest(pageRequests), reader -> 
+                RESPONSE_READER.readBatchResults(reader, (index, vuln) -> {
+                    if (index < indexes.size()) {
+                        retval.get(indexes.get(index)).add(vuln);
+                    }
+                }, nextPageTokens::put));
+            if (numResults != pageRequests.size()) {
+                throw new SpdxToOsvException("Unexpected number of results returned from the OSV batch query");
+            }
+            List<OsvVulnerabilityRequest> nextPageRequests = new ArrayList<>(nextPageTokens.size());
+            pageIndexes = new ArrayList<>(nextPageTokens.size());
+            for (Map.Entry<Integer, String> entry:nextPageTokens.entrySet()) {
+                OsvVulnerabilityRequest request = pageRequests.get(entry.getKey());
+                if (!pageTokens.computeIfAbsent(indexes.get(entry.getKey()), index -> new HashSet<>()).add(entry.getValue())) {
+                    throw new SpdxToOsvException("OSV returned a page token already used for the query");
+                }
+                nextPageRequests.add(request.withPageToken(entry.getValue()));
+                pageIndexes.add(indexes.get(entry.getKey()));
+            }
+            pageRequests = nextPageRequests;
+        }
+        return retval;
+    }
+    
+    /**
+     * Handles the JSON body of a successful API response
+     */
+    @FunctionalInterface
+    private interface ResponseHandler<T> {
+        T handle(JsonReader reader) throws IOException;
+    }
+    
+    /**
+     * Post a JSON request to the OSV API
+     * @param url URL for the API endpoint
+     * @param request object to be serialized as the JSON request body
+     * @param handler handler which decodes the response body from a successful call
+     * @return the value returned by the handler
+     * @throws IOException
+     * @throws SpdxToOsvException if the API returns an error
+     */
+    private <T> T post(URL url, Object request, ResponseHandler<T> handler) throws IOException, SpdxToOsvException {
+        byte[] json = GSON.toJson(request).getBytes(StandardCharsets.UTF_8);
+        try (HttpResponse httpResponse = transport.post(url, "application/json; charset=UTF-8", "application/json", json)) {
+            return handleResponse(httpResponse, handler);
+        }
+    }
+    
+    /**
+     * @param httpResponse response from the OSV API
+     * @param handler handler which decodes the response body from a successful call
+     * @return the value returned by the handler
+     * @throws IOException
+     * @throws SpdxToOsvException if the API returns an error
+     */
+    private <T> T handleResponse(HttpResponse httpResponse, ResponseHandler<T> handler) throws IOException, SpdxToOsvException {
+        JsonReader reader = new JsonReader(new InputStreamReader(httpResponse.getBody(), StandardCharsets.UTF_8));
+        if (httpResponse.getStatusCode() == 200) {
+            try {
+                return handler.handle(reader);
+            } catch (IllegalStateException | NumberFormatException e) {
+                // the response is JSON of an unexpected shape
+                throw new IOException("Invalid OSV response: " + e.getMessage(), e);
+            } catch (MalformedJsonException e) {
+                throw new IOException("Invalid JSON in OSV response: " + e.getMessage(), e);
+            }
+        } else {
+            String msg = "Error getting vulnerability data";
+            try {
+                OsvErrorResponse responseJson = GSON.fromJson(reader, OsvErrorResponse.class);
+                if (Objects.nonNull(responseJson) && Objects.nonNull(responseJson.getMessage()) &&
+                        !responseJson.getMessage().isEmpty()) {
+                    msg += ": " + responseJson.getMessage();
+                }
+            } catch (JsonParseException e) {
+                msg += ": HTTP status " + httpResponse.getStatusCode();
+            }
+            throw new SpdxToOsvException(msg);
         }
     }
 }
@@ -0,0 +1,198 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Persistent cache of OSV query results stored as one JSON file per query in a cache directory
+ *
+ * The file name is the SHA-256 hash of the normalized request key.  Files are written to a temporary file
+ * in the cache directory and atomically renamed into place, so any number of threads or processes may
+ * read and fill the same directory concurrently - a reader sees either a complete entry or no entry.
+ * Entries older than the time to live, unreadable entries and entries whose stored key does not match are
+ * treated as misses.  I/O errors never fail a query, the cache is simply bypassed.
+ *
+ * @author Gary O'Neall
+ */
+public class OsvDiskCache {
+
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    static final String FILE_SUFFIX = ".json";
+    static final Gson CACHE_GSON = new Gson();
+
+    /**
+     * Contents of a cache file
+     */
+    private static class DiskEntry {
+        String key;
+        long created;
+        List<OsvVulnerability> vulns;
+    }
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong writeCount = new AtomicLong(0);
+
+    /**
+     * @param directory directory for the cache files - created if it does not exist
+     * @param ttlMillis time in milliseconds a query result remains valid
+     * @throws IOException if the directory can not be created
+     */
+    public OsvDiskCache(Path directory, long ttlMillis) throws IOException {
+        this(directory, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param directory directory for the cache files - created if it does not exist
+     * @param ttlMillis time in milliseconds a query result remains valid
+     * @param clock source of the current time in milliseconds since the epoch
+     * @throws IOException if the directory can not be created
+     */
+    OsvDiskCache(Path directory, long ttlMillis, LongSupplier clock) throws IOException {
+        Objects.requireNonNull(directory, "Cache directory can not be null");
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache time to live can not be negative");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param key normalized key for the query
+     * @return path of the file for the key
+     */
+    Path pathFor(String key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is required to be supported", e);
+        }
+        byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b:hash) {
+            sb.append(String.format("%02x", b));
+        }
+        String hex = sb.toString();
+        // spread the files over subdirectories to keep the directory sizes small
+        return directory.resolve(hex.substring(0, 2)).resolve(hex + FILE_SUFFIX);
+    }
+
+    /**
+     * @param key normalized key for the query
+     * @return the cached vulnerabilities for the query or empty if the query is not cached or has expired
+     */
+    public Optional<List<OsvVulnerability>> get(String key) {
+        Path path = pathFor(key);
+        DiskEntry entry = null;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            entry = CACHE_GSON.fromJson(reader, DiskEntry.class);
+        } catch (NoSuchFileException e) {
+            // not cached
+        } catch (IOException | JsonParseException e) {
+            // unreadable - will be replaced by the next put
+        }
+        if (Objects.isNull(entry) || !key.equals(entry.key) || Objects.isNull(entry.vulns) ||
+                clock.getAsLong() - entry.created >= ttlMillis) {
+            missCount.incrementAndGet();
+            return Optional.empty();
+        }
+        hitCount.incrementAndGet();
+        return Optional.of(entry.vulns);
+    }
+
+    /**
+     * Store the result of a query replacing any existing result - errors writing the file are ignored
+     * @param key normalized key for the query
+     * @param vulnerabilities vulnerabilities returned for the query
+     */
+    public void put(String key, List<OsvVulnerability> vulnerabilities) {
+        DiskEntry entry = new DiskEntry();
+        entry.key = key;
+        entry.created = clock.getAsLong();
+        entry.vulns = vulnerabilities;
+        Path path = pathFor(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(path.getParent());
+            tempFile = Files.createTempFile(path.getParent(), "osv", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                CACHE_GSON.toJson(entry, writer);
+            }
+            try {
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+            writeCount.incrementAndGet();
+        } catch (IOException e) {
+            // the cache is best effort - another process may hold the file open
+        } finally {
+            if (Objects.nonNull(tempFile)) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the cache directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return number of lookups which found a cached result
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups which did not find a cached result
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of results written to the cache
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+}
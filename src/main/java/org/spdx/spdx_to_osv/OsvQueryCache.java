@@ -0,0 +1,252 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+import com.google.gson.Gson;
+
+/**
+ * Bounded in-memory cache of OSV query results
+ *
+ * Entries are keyed by the normalized (compact JSON) form of the request and are evicted in least recently
+ * used order once either the maximum number of entries or the maximum total weight is exceeded.  The weight
+ * of an entry approximates its size - the number of vulnerabilities plus the number of affected versions and
+ * ranges they contain - so that a few large results for name only queries can not use unbounded memory.
+ * Entries expire after the time to live.
+ *
+ * @author Gary O'Neall
+ */
+public class OsvQueryCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    public static final long DEFAULT_MAX_WEIGHT = 1000000L;
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    static final Gson KEY_GSON = new Gson();	// compact with no null values
+
+    private static class CacheEntry {
+        List<OsvVulnerability> vulnerabilities;
+        long weight;
+        long expiresNanos;
+
+        CacheEntry(List<OsvVulnerability> vulnerabilities, long weight, long expiresNanos) {
+            this.vulnerabilities = vulnerabilities;
+            this.weight = weight;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Create a cache with the default bounds and time to live
+     */
+    public OsvQueryCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param maxEntries maximum number of cached query results
+     * @param maxWeight maximum total weight of the cached query results
+     * @param ttlMillis time in milliseconds a query result remains valid
+     */
+    public OsvQueryCache(int maxEntries, long maxWeight, long ttlMillis) {
+        this(maxEntries, maxWeight, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * @param maxEntries maximum number of cached query results
+     * @param maxWeight maximum total weight of the cached query results
+     * @param ttlMillis time in milliseconds a query result remains valid
+     * @param clock source of the current time in nanoseconds
+     */
+    OsvQueryCache(int maxEntries, long maxWeight, long ttlMillis, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of cache entries must be at least 1");
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Maximum cache weight must be at least 1");
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache time to live can not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * @param request OSV query
+     * @return normalized key for the request - the page token is not part of the key
+     */
+    public static String toKey(OsvVulnerabilityRequest request) {
+        if (Objects.nonNull(request.getPageToken())) {
+            request = request.withPageToken(null);
+        }
+        return KEY_GSON.toJson(request);
+    }
+
+    /**
+     * @param vulnerabilities result of a query
+     * @return approximate size of the result
+     */
+    static long weigh(List<OsvVulnerability> vulnerabilities) {
+        long retval = 1;
+        for (OsvVulnerability vuln:vulnerabilities) {
+            retval++;
+            if (Objects.nonNull(vuln.getAffected())) {
+                for (OsvAffected affected:vuln.getAffected()) {
+                    retval++;
+                    if (Objects.nonNull(affected.getVersions())) {
+                        retval += affected.getVersions().size();
+                    }
+                    if (Objects.nonNull(affected.getRanges())) {
+                        retval += affected.getRanges().size();
+                    }
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * @param request OSV query
+     * @return the cached vulnerabilities for the query or empty if the query is not cached or has expired
+     */
+    public Optional<List<OsvVulnerability>> get(OsvVulnerabilityRequest request) {
+        return get(toKey(request));
+    }
+
+    /**
+     * @param key normalized key for the query
+     * @return the cached vulnerabilities for the query or empty if the query is not cached or has expired
+     */
+    public synchronized Optional<List<OsvVulnerability>> get(String key) {
+        CacheEntry entry = entries.get(key);
+        if (Objects.nonNull(entry) && clock.getAsLong() - entry.expiresNanos >= 0) {
+            remove(key);
+            entry = null;
+        }
+        if (Objects.isNull(entry)) {
+            missCount++;
+            return Optional.empty();
+        }
+        hitCount++;
+        return Optional.of(entry.vulnerabilities);
+    }
+
+    /**
+     * Cache the result of a query evicting the least recently used results if the cache bounds are exceeded
+     * @param request OSV query
+     * @param vulnerabilities vulnerabilities returned for the query
+     */
+    public void put(OsvVulnerabilityRequest request, List<OsvVulnerability> vulnerabilities) {
+        put(toKey(request), vulnerabilities);
+    }
+
+    /**
+     * Cache the result of a query evicting the least recently used results if the cache bounds are exceeded
+     * @param key normalized key for the query
+     * @param vulnerabilities vulnerabilities returned for the query
+     */
+    public synchronized void put(String key, List<OsvVulnerability> vulnerabilities) {
+        long weight = weigh(vulnerabilities);
+        remove(key);
+        if (weight > maxWeight) {
+            return;	// would evict everything else and still not fit
+        }
+        entries.put(key, new CacheEntry(Collections.unmodifiableList(new ArrayList<>(vulnerabilities)),
+                weight, clock.getAsLong() + ttlNanos));
+        totalWeight += weight;
+        Iterator<Map.Entry<String, CacheEntry>> iter = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && iter.hasNext()) {
+            totalWeight -= iter.next().getValue().weight;
+            iter.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * @param key key of the entry to remove
+     */
+    private void remove(String key) {
+        CacheEntry removed = entries.remove(key);
+        if (Objects.nonNull(removed)) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    /**
+     * Remove all cached results - the statistics are not reset
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * @return number of cached results including any expired results not yet removed
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return total weight of the cached results
+     */
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * @return number of lookups which found a cached result
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of lookups which did not find a cached result
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of results evicted to keep within the cache bounds
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OsvQueryCache[entries=" + entries.size() + ", weight=" + totalWeight + ", hits=" + hitCount +
+                ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+    }
+}
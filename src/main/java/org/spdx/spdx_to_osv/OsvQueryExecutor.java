@@ -0,0 +1,187 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * Executes OSV vulnerability queries over a bounded pool of worker threads
+ *
+ * The batch queries are split into chunks of the OSV API batch size and executed concurrently.
+ * The full records for the vulnerabilities found are then obtained concurrently by a 
+ * {@link VulnerabilityHydrator} which fetches each distinct vulnerability at most once for the lifetime
+ * of the executor.  Results are always returned in the same order as the requests.  A failed query
+ * does not stop the remaining queries.
+ *
+ * @author Gary O'Neall
+ */
+public class OsvQueryExecutor implements VulnerabilitySource {
+
+	public static final int DEFAULT_NUM_THREADS = 8;
+
+	private OsvApi osvApi;
+	private ExecutorService executor;
+	private int numThreads;
+	private VulnerabilityHydrator hydrator;
+
+	/**
+	 * @param osvApi API to use for the queries
+	 * @param numThreads maximum number of queries executed concurrently
+	 */
+	public OsvQueryExecutor(OsvApi osvApi, int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1");
+		}
+		this.osvApi = osvApi;
+		this.numThreads = numThreads;
+		this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			private final AtomicInteger threadNum = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "osv-query-" + threadNum.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.hydrator = new VulnerabilityHydrator(osvApi, executor);
+	}
+
+	/**
+	 * Query OSV for the full vulnerability records for all requests
+	 * @param requests requests to query
+	 * @return list of vulnerability lists in the same order as the requests
+	 * @throws IOException
+	 * @throws SpdxToOsvException
+	 */
+	public List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests) throws IOException, SpdxToOsvException {
+		List<Exception> failures = new ArrayList<>();
+		List<List<OsvVulnerability>> retval = queryVulnerabilities(requests, (request, e) -> failures.add(e));
+		if (!failures.isEmpty()) {
+			if (failures.get(0) instanceof IOException) {
+				throw (IOException)failures.get(0);
+			} else {
+				throw (SpdxToOsvException)failures.get(0);
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * Query OSV for the full vulnerability records for all requests continuing with the remaining requests
+	 * when a query fails
+	 * @param requests requests to query
+	 * @param failureHandler called with each request which could not be queried and the error
+	 * @return list of vulnerability lists in the same order as the requests - empty for failed requests
+	 * @throws SpdxToOsvException if interrupted
+	 */
+	@Override
+	public List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests,
+			BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler) throws SpdxToOsvException {
+		// Find which requests have any vulnerabilities using the batch API
+		int batchSize = osvApi.getBatchSize();
+		List<Future<List<List<OsvVulnerability>>>> batchFutures = new ArrayList<>();
+		for (int start = 0; start < requests.size(); start += batchSize) {
+			List<OsvVulnerabilityRequest> chunk = requests.subList(start, Math.min(start + batchSize, requests.size()));
+			batchFutures.add(executor.submit(() -> osvApi.queryVulnerabilitiesBatch(chunk)));
+		}
+		List<List<OsvVulnerability>> batchResults = new ArrayList<>(requests.size());
+		for (Future<List<List<OsvVulnerability>>> future:batchFutures) {
+			int start = batchResults.size();
+			try {
+				batchResults.addAll(getResult(future));
+			} catch (IOException | SpdxToOsvException e) {
+				checkInterrupted(e);
+				for (OsvVulnerabilityRequest request:requests.subList(start, Math.min(start + batchSize, requests.size()))) {
+					failureHandler.accept(request, e);
+					batchResults.add(null);
+				}
+			}
+		}
+		// The batch API only returns the vulnerability ID's and modified timestamps - obtain the full records
+		List<List<OsvVulnerability>> retval = hydrator.hydrate(batchResults, 
+				(index, e) -> failureHandler.accept(requests.get(index), e));
+		for (int i = 0; i < requests.size(); i++) {
+			if (Objects.isNull(retval.get(i))) {
+				// never cache a partial result - it would be reported as clean by later queries
+				retval.set(i, new ArrayList<>());
+			} else if (!batchResults.get(i).isEmpty()) {
+				osvApi.cacheQueryResult(requests.get(i), retval.get(i));
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param e exception from a query
+	 * @throws SpdxToOsvException if the exception was caused by interrupting the current thread
+	 */
+	private static void checkInterrupted(Exception e) throws SpdxToOsvException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw e instanceof SpdxToOsvException ? (SpdxToOsvException)e : 
+				new SpdxToOsvException("Interrupted waiting for OSV query results", e);
+		}
+	}
+
+	/**
+	 * Wait for the result of a query unwrapping any exceptions thrown by the query
+	 * @param future future for a submitted {@link Callable}
+	 * @return result of the query
+	 * @throws IOException
+	 * @throws SpdxToOsvException
+	 */
+	private <T> T getResult(Future<T> future) throws IOException, SpdxToOsvException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpdxToOsvException("Interrupted waiting for OSV query results", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			} else if (cause instanceof SpdxToOsvException) {
+				throw (SpdxToOsvException)cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw new SpdxToOsvException("Error executing OSV query", cause);
+			}
+		}
+	}
+
+	/**
+	 * @return the hydrator used to obtain the full vulnerability records
+	 */
+	public VulnerabilityHydrator getHydrator() {
+		return hydrator;
+	}
+
+	/**
+	 * @return the maximum number of queries executed concurrently
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Incrementally decodes OSV API responses from a {@link JsonReader}
+ *
+ * Only a single vulnerability is materialized at a time, so the memory used is bounded by the
+ * largest vulnerability rather than by the size of the whole response.  A response which is not valid JSON
+ * or does not have the expected structure fails with an {@link IOException}.
+ *
+ * @author Gary O'Neall
+ */
+public class OsvResponseReader {
+
+	private Gson gson;
+
+	/**
+	 * @param gson Gson used to deserialize the individual vulnerabilities
+	 */
+	public OsvResponseReader(Gson gson) {
+		this.gson = gson;
+	}
+
+	/**
+	 * Read a QueryVulnerabilities response object (<code>{"vulns":[...],"next_page_token":"..."}</code>) passing 
+	 * each vulnerability to the consumer as it is parsed
+	 * @param reader reader positioned at the start of the response object
+	 * @param consumer consumer for the vulnerabilities
+	 * @return the token for the next page of results or null if this is the last page
+	 * @throws IOException on I/O errors or invalid JSON
+	 */
+	public String readVulnerabilities(JsonReader reader, Consumer<OsvVulnerability> consumer) throws IOException {
+		try {
+			return readVulnerabilitiesObject(reader, consumer);
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Invalid OSV response: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param reader reader positioned at the start of a QueryVulnerabilities response object
+	 * @param consumer consumer for the vulnerabilities
+	 * @return the token for the next page of results or null if this is the last page
+	 * @throws IOException on I/O errors or invalid JSON
+	 */
+	private String readVulnerabilitiesObject(JsonReader reader, Consumer<OsvVulnerability> consumer) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		String nextPageToken = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if ("vulns".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					consumer.accept(readVulnerability(reader));
+				}
+				reader.endArray();
+			} else if ("next_page_token".equals(name) && reader.peek() == JsonToken.STRING) {
+				nextPageToken = reader.nextString();
+				if (nextPageToken.isEmpty()) {
+					nextPageToken = null;
+				}
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return nextPageToken;
+	}
+
+	/**
+	 * Read a QueryVulnerabilitiesBatch response object (<code>{"results":[{"vulns":[...]},...]}</code>) passing each vulnerability
+	 * along with the index of the query it belongs to to the consumer as it is parsed
+	 * @param reader reader positioned at the start of the response object
+	 * @param consumer consumer for the query index and vulnerabilities
+	 * @return number of results read
+	 * @throws IOException on I/O errors or invalid JSON
+	 */
+	public int readBatchResults(JsonReader reader, BiConsumer<Integer, OsvVulnerability> consumer) throws IOException {
+		return readBatchResults(reader, consumer, (index, token) -> {});
+	}
+
+	/**
+	 * Read a QueryVulnerabilitiesBatch response object (<code>{"results":[{"vulns":[...]},...]}</code>) passing each vulnerability
+	 * along with the index of the query it belongs to to the consumer as it is parsed
+	 * @param reader reader positioned at the start of the response object
+	 * @param consumer consumer for the query index and vulnerabilities
+	 * @param pageTokenConsumer consumer for the query index and next page token of each result which has more pages
+	 * @return number of results read
+	 * @throws IOException on I/O errors or invalid JSON
+	 */
+	public int readBatchResults(JsonReader reader, BiConsumer<Integer, OsvVulnerability> consumer,
+			BiConsumer<Integer, String> pageTokenConsumer) throws IOException {
+		try {
+			int numResults = 0;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if ("results".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						final int index = numResults++;
+						String nextPageToken = readVulnerabilitiesObject(reader, vuln -> consumer.accept(index, vuln));
+						if (nextPageToken != null) {
+							pageTokenConsumer.accept(index, nextPageToken);
+						}
+					}
+					reader.endArray();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return numResults;
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Invalid OSV batch response: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param reader reader positioned at the start of a vulnerability object
+	 * @return the vulnerability
+	 * @throws IOException on I/O errors or invalid JSON
+	 */
+	private OsvVulnerability readVulnerability(JsonReader reader) throws IOException {
+		try {
+			return gson.fromJson(reader, OsvVulnerability.class);
+		} catch (JsonParseException e) {
+			throw new IOException("Invalid vulnerability in OSV response", e);
+		}
+	}
+}
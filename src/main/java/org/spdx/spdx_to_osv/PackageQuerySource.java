@@ -0,0 +1,175 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * Vulnerability source which queries each package once for all of its versions
+ *
+ * Requests for several versions of the same package - matched by ecosystem and name, ignoring any version in the
+ * purl - are replaced by a single query without a version.  The vulnerabilities returned are then filtered locally
+ * for each requested version by an {@link AffectedVersionMatcher}.  Packages with fewer than the minimum number of
+ * distinct versions, requests without a version or package name and commit requests are passed to the underlying
+ * source unchanged.
+ *
+ * Versions are matched against the affected <code>versions</code> lists and the <code>SEMVER</code> and
+ * <code>ECOSYSTEM</code> ranges of the records rather than by the OSV API, so a record only describing the
+ * affected versions with <code>GIT</code> ranges is not matched.
+ *
+ * @author Gary O'Neall
+ */
+public class PackageQuerySource implements VulnerabilitySource {
+
+	/**
+	 * Default minimum number of distinct versions of a package for the package to be queried once
+	 */
+	public static final int DEFAULT_MIN_VERSIONS = 2;
+
+	private final VulnerabilitySource source;
+	private final AffectedVersionMatcher matcher;
+	private final int minVersions;
+
+	/**
+	 * @param source source for the package queries
+	 */
+	public PackageQuerySource(VulnerabilitySource source) {
+		this(source, new AffectedVersionMatcher(), DEFAULT_MIN_VERSIONS);
+	}
+
+	/**
+	 * @param source source for the package queries
+	 * @param matcher matcher for the versions of the package
+	 * @param minVersions minimum number of distinct versions of a package for the package to be queried once
+	 */
+	public PackageQuerySource(VulnerabilitySource source, AffectedVersionMatcher matcher, int minVersions) {
+		Objects.requireNonNull(source, "Source can not be null");
+		Objects.requireNonNull(matcher, "Matcher can not be null");
+		if (minVersions < 1) {
+			throw new IllegalArgumentException("Minimum number of versions must be at least 1");
+		}
+		this.source = source;
+		this.matcher = matcher;
+		this.minVersions = minVersions;
+	}
+
+	/**
+	 * @param request request
+	 * @return true if the request is for a version of a named package
+	 */
+	private static boolean isVersionRequest(OsvVulnerabilityRequest request) {
+		return Objects.isNull(request.getCommit()) && Objects.nonNull(request.getPackage()) &&
+				Objects.nonNull(request.getPackage().getName()) && Objects.nonNull(request.getVersion());
+	}
+
+	@Override
+	public List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests,
+			BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler) throws SpdxToOsvException {
+		Map<String, List<Integer>> packageRequests = new LinkedHashMap<>();
+		for (int i = 0; i < requests.size(); i++) {
+			OsvVulnerabilityRequest request = requests.get(i);
+			if (isVersionRequest(request)) {
+				packageRequests.computeIfAbsent(LocalOsvDatabase.packageKey(request.getPackage().getEcosystem(),
+						request.getPackage().getName()), key -> new ArrayList<>()).add(i);
+			}
+		}
+		// package to filter the results by for each request replaced by a package query - null if not replaced
+		OsvPackage[] filterPackages = new OsvPackage[requests.size()];
+		int[] queryIndexes = new int[requests.size()];
+		Map<OsvVulnerabilityRequest, Integer> queryIndexMap = new HashMap<>();
+		List<OsvVulnerabilityRequest> queries = new ArrayList<>();
+		for (List<Integer> indexes:packageRequests.values()) {
+			Set<String> versions = new HashSet<>();
+			for (int i:indexes) {
+				versions.add(requests.get(i).getVersion());
+			}
+			if (versions.size() < minVersions) {
+				continue;
+			}
+			OsvPackage requestPackage = requests.get(indexes.get(0)).getPackage();
+			OsvPackage osvPackage = new OsvPackage(requestPackage.getName(), requestPackage.getEcosystem(), null);
+			int queryIndex = addQuery(new OsvVulnerabilityRequest(osvPackage, null), queries, queryIndexMap);
+			for (int i:indexes) {
+				filterPackages[i] = osvPackage;
+				queryIndexes[i] = queryIndex;
+			}
+		}
+		for (int i = 0; i < requests.size(); i++) {
+			if (Objects.isNull(filterPackages[i])) {
+				queryIndexes[i] = addQuery(requests.get(i), queries, queryIndexMap);
+			}
+		}
+		Exception[] failures = new Exception[queries.size()];
+		List<List<OsvVulnerability>> results = source.queryVulnerabilities(queries, (query, e) -> {
+			Integer queryIndex = queryIndexMap.get(query);
+			if (Objects.nonNull(queryIndex)) {
+				synchronized (failures) {
+					if (Objects.isNull(failures[queryIndex])) {
+						failures[queryIndex] = e;
+					}
+				}
+			}
+		});
+		List<List<OsvVulnerability>> retval = new ArrayList<>(requests.size());
+		synchronized (failures) {
+			for (int i = 0; i < requests.size(); i++) {
+				Exception failure = failures[queryIndexes[i]];
+				if (Objects.nonNull(failure)) {
+					failureHandler.accept(requests.get(i), failure);
+					retval.add(Collections.emptyList());
+				} else if (Objects.nonNull(filterPackages[i])) {
+					retval.add(matcher.filter(results.get(queryIndexes[i]), filterPackages[i], requests.get(i).getVersion()));
+				} else {
+					retval.add(results.get(queryIndexes[i]));
+				}
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param query query to add
+	 * @param queries list of distinct queries
+	 * @param queryIndexMap index of each query in the list
+	 * @return index of the query in the list of queries
+	 */
+	private static int addQuery(OsvVulnerabilityRequest query, List<OsvVulnerabilityRequest> queries,
+			Map<OsvVulnerabilityRequest, Integer> queryIndexMap) {
+		Integer retval = queryIndexMap.putIfAbsent(query, queries.size());
+		if (Objects.isNull(retval)) {
+			retval = queries.size();
+			queries.add(query);
+		}
+		return retval;
+	}
+
+	/**
+	 * @return the minimum number of distinct versions of a package for the package to be queried once
+	 */
+	public int getMinVersions() {
+		return minVersions;
+	}
+
+	/**
+	 * Closes the underlying source
+	 */
+	@Override
+	public void close() {
+		source.close();
+	}
+}
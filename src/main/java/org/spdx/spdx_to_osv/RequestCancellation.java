@@ -0,0 +1,93 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.Objects;
+
+/**
+ * Cancels a request being executed by another thread by disconnecting its connection
+ *
+ * The cancellation is bound to the thread executing the request, so transports wrapping each other on that thread
+ * can register the connection to disconnect ({@link UrlConnectionTransport}) and tell a failure caused by the
+ * cancellation from a failure of the service ({@link CircuitBreakerTransport} and {@link LimitingTransport}).
+ * Interrupting the thread instead does not stop a blocking socket read and is reported by some transports as an
+ * I/O error.
+ *
+ * @author Gary O'Neall
+ */
+class RequestCancellation {
+
+	private static final ThreadLocal<RequestCancellation> CURRENT = new ThreadLocal<>();
+
+	private Runnable disconnect = null;
+	private boolean cancelled = false;
+
+	/**
+	 * @return the cancellation for the request executed by the current thread or null if the request can not be cancelled
+	 */
+	static RequestCancellation current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return true if the request executed by the current thread has been cancelled
+	 */
+	static boolean isCurrentCancelled() {
+		RequestCancellation cancellation = CURRENT.get();
+		return Objects.nonNull(cancellation) && cancellation.isCancelled();
+	}
+
+	/**
+	 * Bind the cancellation to the current thread until {@link #unbind()}
+	 */
+	void bind() {
+		CURRENT.set(this);
+	}
+
+	/**
+	 * Remove the cancellation from the current thread
+	 */
+	void unbind() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * @param disconnect disconnects the connection of the request - called immediately if already cancelled
+	 */
+	void register(Runnable disconnect) {
+		boolean alreadyCancelled;
+		synchronized (this) {
+			this.disconnect = disconnect;
+			alreadyCancelled = cancelled;
+		}
+		if (alreadyCancelled) {
+			disconnect.run();
+		}
+	}
+
+	/**
+	 * Cancel the request disconnecting any registered connection
+	 */
+	void cancel() {
+		Runnable toDisconnect;
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			toDisconnect = disconnect;
+		}
+		if (Objects.nonNull(toDisconnect)) {
+			toDisconnect.run();
+		}
+	}
+
+	/**
+	 * @return true if the request has been cancelled
+	 */
+	synchronized boolean isCancelled() {
+		return cancelled;
+	}
+}
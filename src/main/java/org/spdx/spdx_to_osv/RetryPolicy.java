@@ -0,0 +1,173 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Random;
+
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * Determines which failed HTTP requests are retried and how long to wait before each retry
+ *
+ * Requests failing with an I/O error or a 429 or 5xx status which typically indicates a transient
+ * problem are retried up to the maximum number of retries.  The delay before each retry grows
+ * exponentially from the initial backoff up to the maximum backoff with random jitter so that
+ * concurrent clients do not retry in lock step.  A <code>Retry-After</code> header in the response
+ * takes precedence over the computed backoff unless it exceeds the maximum <code>Retry-After</code>
+ * in which case the request is not retried.
+ *
+ * The retry budget limits retries to a fraction of all requests so that a failing service is not
+ * overwhelmed by retries - each request adds <code>budgetRatio</code> to the budget up to the budget
+ * capacity and each retry uses one from the budget.
+ *
+ * @author Gary O'Neall
+ */
+public class RetryPolicy {
+
+	public static final int DEFAULT_MAX_RETRIES = 3;
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+	public static final long DEFAULT_MAX_RETRY_AFTER_MILLIS = 120000;
+	public static final double DEFAULT_BUDGET_RATIO = 0.2;
+	public static final double DEFAULT_BUDGET_CAPACITY = 10;
+
+	private final int maxRetries;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+	private final long maxRetryAfterMillis;
+	private final double budgetRatio;
+	private final double budgetCapacity;
+
+	/**
+	 * Create a retry policy with the default settings
+	 */
+	public RetryPolicy() {
+		this(DEFAULT_MAX_RETRIES);
+	}
+
+	/**
+	 * @param maxRetries maximum number of times a request is retried - 0 disables retries
+	 */
+	public RetryPolicy(int maxRetries) {
+		this(maxRetries, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS,
+				DEFAULT_MAX_RETRY_AFTER_MILLIS, DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_CAPACITY);
+	}
+
+	/**
+	 * @param maxRetries maximum number of times a request is retried - 0 disables retries
+	 * @param initialBackoffMillis backoff before the first retry
+	 * @param maxBackoffMillis maximum backoff before any retry
+	 * @param maxRetryAfterMillis maximum <code>Retry-After</code> delay honored
+	 * @param budgetRatio retries added to the retry budget for each request
+	 * @param budgetCapacity maximum and initial retry budget
+	 */
+	public RetryPolicy(int maxRetries, long initialBackoffMillis, long maxBackoffMillis,
+			long maxRetryAfterMillis, double budgetRatio, double budgetCapacity) {
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("Maximum retries can not be negative");
+		}
+		if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+			throw new IllegalArgumentException("Invalid backoff range");
+		}
+		if (maxRetryAfterMillis < 0 || budgetRatio < 0 || budgetCapacity < 0) {
+			throw new IllegalArgumentException("Retry limits can not be negative");
+		}
+		this.maxRetries = maxRetries;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.maxRetryAfterMillis = maxRetryAfterMillis;
+		this.budgetRatio = budgetRatio;
+		this.budgetCapacity = budgetCapacity;
+	}
+
+	/**
+	 * @param statusCode HTTP status code
+	 * @return true if a request with the status code may succeed if retried
+	 */
+	public boolean isRetryableStatus(int statusCode) {
+		return statusCode == 429 || statusCode == 500 || statusCode == 502 ||
+				statusCode == 503 || statusCode == 504;
+	}
+
+	/**
+	 * @param e exception thrown executing a request
+	 * @return true if the request may succeed if retried
+	 */
+	public boolean isRetryableException(IOException e) {
+		return !(e instanceof UnknownHostException) && !(e instanceof SSLHandshakeException) &&
+				!(e instanceof CircuitOpenException);
+	}
+
+	/**
+	 * @param retry number of the retry starting at 0 for the first retry
+	 * @param random source of the jitter
+	 * @return milliseconds to wait before the retry - between half and all of the exponential backoff
+	 */
+	public long backoffMillis(int retry, Random random) {
+		long backoff = initialBackoffMillis << Math.min(retry, 30);
+		if (backoff <= 0 || backoff > maxBackoffMillis) {
+			backoff = maxBackoffMillis;
+		}
+		long half = backoff / 2;
+		return half + (long)(random.nextDouble() * (backoff - half));
+	}
+
+	/**
+	 * @param retryAfter value of a <code>Retry-After</code> header - either delay seconds or an HTTP date
+	 * @param nowMillis current time in milliseconds since the epoch
+	 * @return the delay in milliseconds or empty if the value can not be parsed
+	 */
+	public static OptionalLong parseRetryAfter(String retryAfter, long nowMillis) {
+		Objects.requireNonNull(retryAfter, "Retry-After can not be null");
+		String value = retryAfter.trim();
+		try {
+			long seconds = Long.parseLong(value);
+			return seconds < 0 ? OptionalLong.empty() : OptionalLong.of(seconds * 1000);
+		} catch (NumberFormatException e) {
+			// try HTTP date
+		}
+		try {
+			long millis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return OptionalLong.of(Math.max(0, millis - nowMillis));
+		} catch (DateTimeParseException e) {
+			return OptionalLong.empty();
+		}
+	}
+
+	/**
+	 * @return the maximum number of times a request is retried
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * @return the maximum <code>Retry-After</code> delay honored
+	 */
+	public long getMaxRetryAfterMillis() {
+		return maxRetryAfterMillis;
+	}
+
+	/**
+	 * @return retries added to the retry budget for each request
+	 */
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	/**
+	 * @return maximum and initial retry budget
+	 */
+	public double getBudgetCapacity() {
+		return budgetCapacity;
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport which retries failed requests on a delegate transport according to a {@link RetryPolicy}
+ *
+ * Retries are counted per endpoint - the host and the path of the URL without the final resource
+ * identifier (e.g. <code>api.osv.dev/v1/query</code> or <code>archive.softwareheritage.org/api/1/release</code>).
+ * When no more retries are allowed the last response is returned, or the last exception thrown, so the
+ * caller reports the error as it would without retries.
+ *
+ * @author Gary O'Neall
+ */
+public class RetryingTransport implements HttpTransport {
+
+	/**
+	 * Waits between retries
+	 */
+	@FunctionalInterface
+	interface Sleeper {
+		void sleep(long millis) throws InterruptedException;
+	}
+
+	/**
+	 * A single attempt of a request
+	 */
+	@FunctionalInterface
+	private interface Attempt {
+		HttpResponse execute() throws IOException;
+	}
+
+	private final HttpTransport delegate;
+	private final RetryPolicy policy;
+	private final Sleeper sleeper;
+	private double budget;
+	private final ConcurrentHashMap<String, AtomicLong> retryCounts = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, AtomicLong> exhaustedCounts = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 */
+	public RetryingTransport(HttpTransport delegate) {
+		this(delegate, new RetryPolicy());
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param policy policy for retrying failed requests
+	 */
+	public RetryingTransport(HttpTransport delegate, RetryPolicy policy) {
+		this(delegate, policy, Thread::sleep);
+	}
+
+	/**
+	 * @param delegate transport used to execute the requests
+	 * @param policy policy for retrying failed requests
+	 * @param sleeper waits between retries
+	 */
+	RetryingTransport(HttpTransport delegate, RetryPolicy policy, Sleeper sleeper) {
+		Objects.requireNonNull(delegate, "Delegate transport can not be null");
+		Objects.requireNonNull(policy, "Retry policy can not be null");
+		this.delegate = delegate;
+		this.policy = policy;
+		this.sleeper = sleeper;
+		this.budget = policy.getBudgetCapacity();
+	}
+
+	@Override
+	public HttpResponse get(URL url, String accept) throws IOException {
+		return execute(url, () -> delegate.get(url, accept));
+	}
+
+	@Override
+	public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+		return execute(url, () -> delegate.post(url, contentType, accept, body));
+	}
+
+	/**
+	 * Execute the attempt retrying as allowed by the policy
+	 * @param url URL for the request
+	 * @param attempt attempt to execute
+	 * @return the successful response or the last response if no more retries are allowed
+	 * @throws IOException the last exception if no more retries are allowed
+	 */
+	private HttpResponse execute(URL url, Attempt attempt) throws IOException {
+		depositBudget();
+		Random random = ThreadLocalRandom.current();
+		for (int retry = 0; ; retry++) {
+			HttpResponse response;
+			try {
+				response = attempt.execute();
+			} catch (IOException e) {
+				if (!policy.isRetryableException(e) || !acquireRetry(url, retry)) {
+					throw e;
+				}
+				sleep(policy.backoffMillis(retry, random));
+				continue;
+			}
+			if (!policy.isRetryableStatus(response.getStatusCode())) {
+				return response;
+			}
+			long delay = policy.backoffMillis(retry, random);
+			if (response.getHeader("Retry-After").isPresent()) {
+				OptionalLong retryAfter = RetryPolicy.parseRetryAfter(response.getHeader("Retry-After").get(),
+						System.currentTimeMillis());
+				if (retryAfter.isPresent()) {
+					if (retryAfter.getAsLong() > policy.getMaxRetryAfterMillis()) {
+						countExhausted(url);
+						return response;	// the server asked for a longer wait than we are willing to make
+					}
+					delay = retryAfter.getAsLong();
+				}
+			}
+			if (!acquireRetry(url, retry)) {
+				return response;
+			}
+			response.close();	// drain so the connection can be reused
+			sleep(delay);
+		}
+	}
+
+	/**
+	 * @param millis time to wait
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	private void sleep(long millis) throws InterruptedIOException {
+		try {
+			sleeper.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException ioe = new InterruptedIOException("Interrupted waiting to retry request");
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Add to the retry budget for a new request
+	 */
+	private synchronized void depositBudget() {
+		budget = Math.min(policy.getBudgetCapacity(), budget + policy.getBudgetRatio());
+	}
+
+	/**
+	 * @param url URL for the request
+	 * @param retry number of retries already made for the request
+	 * @return true if the request may be retried, counting the retry
+	 */
+	private boolean acquireRetry(URL url, int retry) {
+		boolean allowed = false;
+		if (retry < policy.getMaxRetries()) {
+			synchronized (this) {
+				if (budget >= 1) {
+					budget -= 1;
+					allowed = true;
+				}
+			}
+		}
+		if (allowed) {
+			retryCounts.computeIfAbsent(endpoint(url), e -> new AtomicLong(0)).incrementAndGet();
+		} else {
+			countExhausted(url);
+		}
+		return allowed;
+	}
+
+	/**
+	 * @param url URL of a request which failed with no more retries allowed
+	 */
+	private void countExhausted(URL url) {
+		exhaustedCounts.computeIfAbsent(endpoint(url), e -> new AtomicLong(0)).incrementAndGet();
+	}
+
+	/**
+	 * @param url URL for a request
+	 * @return the endpoint used to count retries for the URL
+	 */
+	static String endpoint(URL url) {
+		String path = url.getPath();
+		while (path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		// drop the resource identifier from paths such as /v1/vulns/{id} or /api/1/release/{sha1}
+		if (path.split("/").length > 3) {
+			path = path.substring(0, path.lastIndexOf('/'));
+		}
+		return url.getHost() + path;
+	}
+
+	/**
+	 * @param counts counters by endpoint
+	 * @return snapshot of the counters sorted by endpoint
+	 */
+	private static Map<String, Long> snapshot(Map<String, AtomicLong> counts) {
+		Map<String, Long> retval = new TreeMap<>();
+		counts.forEach((endpoint, count) -> retval.put(endpoint, count.get()));
+		return retval;
+	}
+
+	/**
+	 * @return number of retries made for each endpoint
+	 */
+	public Map<String, Long> getRetryCounts() {
+		return snapshot(retryCounts);
+	}
+
+	/**
+	 * @return number of failed requests for each endpoint which were not retried because no more retries were allowed
+	 */
+	public Map<String, Long> getExhaustedCounts() {
+		return snapshot(exhaustedCounts);
+	}
+
+	/**
+	 * @return the retry policy
+	 */
+	public RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the transport used to execute the requests
+	 */
+	public HttpTransport getDelegate() {
+		return delegate;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls for the same key so that only one call is in flight per key at a time
+ *
+ * The first caller for a key executes the call.  Any caller arriving with the same key while that call is
+ * in flight waits for it and receives the same result or exception.  Nothing is retained once the call
+ * completes - see {@link OsvQueryCache} for caching results.
+ *
+ * @author Gary O'Neall
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * A call which may be coalesced
+     */
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException, SpdxToOsvException;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+
+    /**
+     * Execute the call unless a call for the same key is already in flight in which case wait for its result
+     * @param key key identifying equivalent calls
+     * @param call call to execute
+     * @return result of the call
+     * @throws IOException
+     * @throws SpdxToOsvException
+     */
+    public V execute(K key, Call<V> call) throws IOException, SpdxToOsvException {
+        Objects.requireNonNull(key, "Key can not be null");
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (Objects.nonNull(existing)) {
+            coalescedCount.incrementAndGet();
+            return await(existing);
+        }
+        try {
+            V result = call.call();
+            future.complete(result);
+            return result;
+        } catch (IOException | SpdxToOsvException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Claim the call for a key for a caller which makes the calls for several keys at once (e.g. in a single
+     * batch request).  A caller which claims a key must later {@link #complete(Object, Object)} or 
+     * {@link #fail(Object, Throwable)} it.
+     * @param key key identifying equivalent calls
+     * @return null if the caller claimed the call, otherwise the call already in flight to {@link #await(CompletableFuture)}
+     */
+    public CompletableFuture<V> claim(K key) {
+        Objects.requireNonNull(key, "Key can not be null");
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, new CompletableFuture<>());
+        if (Objects.nonNull(existing)) {
+            coalescedCount.incrementAndGet();
+        }
+        return existing;
+    }
+
+    /**
+     * Complete a call claimed by the caller passing the result to any callers waiting for it
+     * @param key key of the claimed call
+     * @param result result of the call
+     */
+    public void complete(K key, V result) {
+        CompletableFuture<V> future = inFlight.remove(key);
+        if (Objects.nonNull(future)) {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Fail a call claimed by the caller passing the exception to any callers waiting for it
+     * @param key key of the claimed call
+     * @param e exception thrown by the call
+     */
+    public void fail(K key, Throwable e) {
+        CompletableFuture<V> future = inFlight.remove(key);
+        if (Objects.nonNull(future)) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @param future future for a call executed by another thread
+     * @return result of the call
+     * @throws IOException
+     * @throws SpdxToOsvException
+     */
+    public V await(CompletableFuture<V> future) throws IOException, SpdxToOsvException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpdxToOsvException("Interrupted waiting for an in flight OSV query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof SpdxToOsvException) {
+                throw (SpdxToOsvException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            } else {
+                throw new SpdxToOsvException("Error executing OSV query", cause);
+            }
+        }
+    }
+
+    /**
+     * @return number of calls currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return number of calls which waited for another caller's result rather than executing
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.spdx.library.SpdxConstants;
+import org.spdx.library.model.enumerations.RelationshipType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Extracts the OSV vulnerability requests from an SPDX JSON document in a single streaming pass
+ *
+ * Unlike deserializing into a model store, only the package names, versions, download locations,
+ * external refs, relevant relationships (including the <code>hasFiles</code> of packages as contains
+ * relationships) and document describes are retained.  The file objects are skipped entirely, so the
+ * checksums, license information and other file details are never held in memory.
+ *
+ * The requests produced are the same as those produced from the model store by {@link Main}.
+ *
+ * @author Gary O'Neall
+ */
+public class SpdxJsonRequestExtractor {
+
+	private String documentId = SpdxConstants.SPDX_DOCUMENT_ID;
+	private List<String> documentDescribes = new ArrayList<>();
+	private Map<String, SpdxPackageInfo> packages = new LinkedHashMap<>();
+	private Set<String> snippetIds = new HashSet<>();
+	// relationships with a relevant type - stored as parallel lists until all elements are known
+	private List<String> relationshipElementIds = new ArrayList<>();
+	private List<String> relationshipRelatedIds = new ArrayList<>();
+	private List<RelationshipType> relationshipTypes = new ArrayList<>();
+
+	/**
+	 * @param inStream stream containing an SPDX JSON document
+	 * @param allPackages if true, return requests for all packages in the document
+	 * @return requests for the packages related to the elements described by the document or all packages if allPackages is true
+	 * @throws IOException on I/O errors or invalid SPDX JSON
+	 */
+	public static Set<OsvVulnerabilityRequest> extractRequests(InputStream inStream, boolean allPackages) throws IOException {
+		SpdxJsonRequestExtractor extractor = new SpdxJsonRequestExtractor();
+		extractor.read(inStream);
+		Set<OsvVulnerabilityRequest> retval = new HashSet<>();
+		for (SpdxPackageInfo pkg:extractor.getRelevantPackages(allPackages)) {
+			pkg.addOsvVulnerabilityRequests(retval);
+		}
+		return retval;
+	}
+
+	/**
+	 * Read the SPDX JSON document collecting the information needed for the vulnerability requests
+	 * @param inStream stream containing an SPDX JSON document
+	 * @throws IOException on I/O errors or invalid SPDX JSON
+	 */
+	void read(InputStream inStream) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(inStream, StandardCharsets.UTF_8));
+		try {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+				} else if ("SPDXID".equals(name)) {
+					documentId = reader.nextString();
+				} else if ("documentDescribes".equals(name)) {
+					readStringArray(reader, documentDescribes);
+				} else if ("packages".equals(name)) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						SpdxPackageInfo pkg = readPackage(reader);
+						packages.putIfAbsent(pkg.getSpdxId(), pkg);
+					}
+					reader.endArray();
+				} else if ("snippets".equals(name)) {
+					readSnippetIds(reader);
+				} else if ("relationships".equals(name)) {
+					readRelationships(reader);
+				} else {
+					reader.skipValue();	// includes files
+				}
+			}
+			reader.endObject();
+		} catch (IllegalStateException e) {
+			throw new IOException("Invalid SPDX JSON document: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param allPackages if true, return all packages in the document
+	 * @return the packages related to the elements described by the document or all packages if allPackages is true
+	 */
+	List<SpdxPackageInfo> getRelevantPackages(boolean allPackages) {
+		if (allPackages) {
+			return new ArrayList<>(packages.values());
+		}
+		DependencyGraph.Builder graphBuilder = new DependencyGraph.Builder();
+		List<String> describes = new ArrayList<>(documentDescribes);
+		for (int i = 0; i < relationshipTypes.size(); i++) {
+			String elementId = relationshipElementIds.get(i);
+			String relatedId = relationshipRelatedIds.get(i);
+			RelationshipType type = relationshipTypes.get(i);
+			if (documentId.equals(elementId)) {
+				if (RelationshipType.DESCRIBES.equals(type)) {
+					describes.add(relatedId);
+				}
+				continue;	// only package and file relationships are followed
+			}
+			if (snippetIds.contains(elementId)) {
+				continue;
+			}
+			if (Main.RELEVANT_RELATIONSHIPS.contains(type)) {
+				graphBuilder.addEdge(elementId, relatedId);
+			}
+			if (Main.RELEVANT_REVERSE_RELATIONSHIPS.contains(type)) {
+				graphBuilder.addEdge(relatedId, elementId);
+			}
+		}
+		for (String packageId:packages.keySet()) {
+			graphBuilder.addElement(packageId);
+		}
+		DependencyGraph graph = graphBuilder.build();
+		List<SpdxPackageInfo> retval = new ArrayList<>();
+		BitSet relevant = graph.reachableFrom(describes);
+		for (int i = relevant.nextSetBit(0); i >= 0; i = relevant.nextSetBit(i + 1)) {
+			SpdxPackageInfo pkg = packages.get(graph.getId(i));
+			if (Objects.nonNull(pkg)) {
+				retval.add(pkg);
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param reader reader positioned at a package object
+	 * @return package information
+	 * @throws IOException
+	 */
+	private SpdxPackageInfo readPackage(JsonReader reader) throws IOException {
+		String id = null;
+		String name = null;
+		String version = null;
+		String downloadLocation = null;
+		List<String> refTypes = new ArrayList<>();
+		List<String> refLocators = new ArrayList<>();
+		List<String> fileIds = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String property = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			} else if ("SPDXID".equals(property)) {
+				id = reader.nextString();
+			} else if ("name".equals(property)) {
+				name = reader.nextString();
+			} else if ("versionInfo".equals(property)) {
+				version = reader.nextString();
+			} else if ("downloadLocation".equals(property)) {
+				downloadLocation = reader.nextString();
+			} else if ("externalRefs".equals(property)) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					String refType = null;
+					String refLocator = null;
+					reader.beginObject();
+					while (reader.hasNext()) {
+						String refProperty = reader.nextName();
+						if ("referenceType".equals(refProperty) && reader.peek() == JsonToken.STRING) {
+							refType = reader.nextString();
+						} else if ("referenceLocator".equals(refProperty) && reader.peek() == JsonToken.STRING) {
+							refLocator = reader.nextString();
+						} else {
+							reader.skipValue();
+						}
+					}
+					reader.endObject();
+					refTypes.add(refType);
+					refLocators.add(refLocator);
+				}
+				reader.endArray();
+			} else if ("hasFiles".equals(property)) {
+				readStringArray(reader, fileIds);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		if (Objects.isNull(id)) {
+			throw new IOException("Missing SPDXID for package in SPDX JSON document");
+		}
+		// the model store represents the files of a package as contains relationships
+		for (String fileId:fileIds) {
+			relationshipElementIds.add(id);
+			relationshipRelatedIds.add(fileId);
+			relationshipTypes.add(RelationshipType.CONTAINS);
+		}
+		SpdxPackageInfo retval = new SpdxPackageInfo(id);
+		retval.setName(name);
+		retval.setVersion(version);
+		retval.setDownloadLocation(downloadLocation);
+		for (int i = 0; i < refTypes.size(); i++) {
+			retval.addExternalRef(refTypes.get(i), refLocators.get(i));
+		}
+		return retval;
+	}
+
+	/**
+	 * Read only the SPDX ID's from the snippets array
+	 * @param reader reader positioned at the snippets array
+	 * @throws IOException
+	 */
+	private void readSnippetIds(JsonReader reader) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if ("SPDXID".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+					snippetIds.add(reader.nextString());
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * Read the relationships retaining only those relevant to security vulnerabilities and describes relationships
+	 * @param reader reader positioned at the relationships array
+	 * @throws IOException
+	 */
+	private void readRelationships(JsonReader reader) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String elementId = null;
+			String relatedId = null;
+			String typeName = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String property = reader.nextName();
+				if (reader.peek() != JsonToken.STRING) {
+					reader.skipValue();
+				} else if ("spdxElementId".equals(property)) {
+					elementId = reader.nextString();
+				} else if ("relatedSpdxElement".equals(property)) {
+					relatedId = reader.nextString();
+				} else if ("relationshipType".equals(property)) {
+					typeName = reader.nextString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			if (Objects.isNull(elementId) || Objects.isNull(relatedId) || Objects.isNull(typeName)) {
+				continue;
+			}
+			RelationshipType type;
+			try {
+				type = RelationshipType.valueOf(typeName);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown relationship type "+typeName+" in SPDX JSON document");
+			}
+			if (RelationshipType.DESCRIBES.equals(type) || Main.RELEVANT_RELATIONSHIPS.contains(type) ||
+					Main.RELEVANT_REVERSE_RELATIONSHIPS.contains(type)) {
+				relationshipElementIds.add(elementId);
+				relationshipRelatedIds.add(relatedId);
+				relationshipTypes.add(type);
+			}
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * @param reader reader positioned at an array of strings or a single string
+	 * @param result list to add the strings to
+	 * @throws IOException
+	 */
+	private static void readStringArray(JsonReader reader, List<String> result) throws IOException {
+		if (reader.peek() == JsonToken.STRING) {
+			result.add(reader.nextString());	// single value
+			return;
+		}
+		reader.beginArray();
+		while (reader.hasNext()) {
+			result.add(reader.nextString());
+		}
+		reader.endArray();
+	}
+}
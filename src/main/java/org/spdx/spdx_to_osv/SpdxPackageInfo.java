@@ -0,0 +1,166 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.library.model.ExternalRef;
+import org.spdx.library.model.SpdxPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * The subset of the SPDX package information used to query for vulnerabilities
+ *
+ * @author Gary O'Neall
+ */
+public class SpdxPackageInfo {
+
+	private String spdxId;
+	private @Nullable String name;
+	private @Nullable String version;
+	private @Nullable String downloadLocation;
+	private List<String> externalRefTypes = new ArrayList<>();
+	private List<String> externalRefLocators = new ArrayList<>();
+
+	/**
+	 * @param spdxId SPDX ID of the package
+	 */
+	public SpdxPackageInfo(String spdxId) {
+		Objects.requireNonNull(spdxId, "SPDX ID can not be null");
+		this.spdxId = spdxId;
+	}
+
+	/**
+	 * @param pkg SPDX package
+	 * @return package information collected from the package
+	 * @throws InvalidSPDXAnalysisException
+	 */
+	public static SpdxPackageInfo fromSpdxPackage(SpdxPackage pkg) throws InvalidSPDXAnalysisException {
+		SpdxPackageInfo retval = new SpdxPackageInfo(pkg.getId());
+		retval.setName(pkg.getName().orElse(null));
+		retval.setVersion(pkg.getVersionInfo().orElse(null));
+		retval.setDownloadLocation(pkg.getDownloadLocation().orElse(null));
+		for (ExternalRef externalRef:pkg.getExternalRefs()) {
+			retval.addExternalRef(externalRef.getReferenceType().getIndividualURI(), externalRef.getReferenceLocator());
+		}
+		return retval;
+	}
+
+	/**
+	 * Add all vulnerability requests for this package to the request set
+	 * @param pvSet set of requests to add to
+	 */
+	public void addOsvVulnerabilityRequests(Set<OsvVulnerabilityRequest> pvSet) {
+		if (Objects.nonNull(name) && Objects.nonNull(version)) {
+			// Some SPDX documents are created with the package name
+			// including the versions. Although these should be parsed
+			// by the creator, this code will workaround the package names.
+			String pName = name.split("@")[0];
+			pvSet.add(new OsvVulnerabilityRequest(new OsvPackage(pName, null, null), version));
+		}
+		for (int i = 0; i < externalRefTypes.size(); i++) {
+			try {
+				Optional<OsvVulnerabilityRequest> pnv = new ExternalRefParser(externalRefTypes.get(i),
+						externalRefLocators.get(i), true).osvVulnerabilityRequest();
+				if (pnv.isPresent()) {
+					pvSet.add(pnv.get());
+				}
+			} catch (InvalidExternalRefPattern e) {
+				System.err.println("Warning: Error parsing external ref: "+e.getMessage());
+			} catch (IOException e) {
+				System.err.println("Warning: I/O Error parsing external ref: "+e.getMessage());
+			} catch (SwhException e) {
+				System.err.println("Warning: Software Heritage API error while processing external ref: "+e.getMessage());
+			} catch (InvalidSPDXAnalysisException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		// Get additional versions and commits from download locations
+		if (Objects.nonNull(downloadLocation)) {
+			Optional<OsvVulnerabilityRequest> pnv = new DownloadLocationParser(downloadLocation).getOsvVulnerabilityRequest();
+			if (pnv.isPresent()) {
+				OsvVulnerabilityRequest req = pnv.get();
+				if (req.getVersion() == null && req.getCommit() == null) {
+					if (Objects.nonNull(version)) {
+						req.setVersion(version);
+					} else {
+						System.err.printf("Warning: Unable to query package %s due to missing version/commit info", req.getPackage().getName());
+						return;
+					}
+				}
+				pvSet.add(req);
+			}
+		}
+	}
+
+	/**
+	 * @param referenceType Reference type URI or, for listed reference types, the reference type name
+	 * @param referenceLocator Reference locator
+	 */
+	public void addExternalRef(String referenceType, String referenceLocator) {
+		if (Objects.nonNull(referenceType) && Objects.nonNull(referenceLocator)) {
+			externalRefTypes.add(referenceType);
+			externalRefLocators.add(referenceLocator);
+		}
+	}
+
+	/**
+	 * @return the SPDX ID
+	 */
+	public String getSpdxId() {
+		return spdxId;
+	}
+
+	/**
+	 * @return the name
+	 */
+	public @Nullable String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name the name to set
+	 */
+	public void setName(@Nullable String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the version
+	 */
+	public @Nullable String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @param version the version to set
+	 */
+	public void setVersion(@Nullable String version) {
+		this.version = version;
+	}
+
+	/**
+	 * @return the downloadLocation
+	 */
+	public @Nullable String getDownloadLocation() {
+		return downloadLocation;
+	}
+
+	/**
+	 * @param downloadLocation the downloadLocation to set
+	 */
+	public void setDownloadLocation(@Nullable String downloadLocation) {
+		this.downloadLocation = downloadLocation;
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * Exception thrown after the OSV output has been written when some of the OSV queries could not be completed.
+ * The output only contains the vulnerabilities for the queries which were completed.
+ * 
+ * @author Gary O'Neall
+ *
+ */
+public class SpdxToOsvPartialResultException extends SpdxToOsvException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private final transient List<OsvVulnerabilityRequest> failedRequests;
+
+	/**
+	 * @param message
+	 * @param failedRequests queries which could not be completed
+	 * @param cause the first error encountered
+	 */
+	public SpdxToOsvPartialResultException(String message, List<OsvVulnerabilityRequest> failedRequests, Throwable cause) {
+		super(message, cause);
+		this.failedRequests = Collections.unmodifiableList(failedRequests);
+	}
+
+	/**
+	 * @return the queries which could not be completed
+	 */
+	public List<OsvVulnerabilityRequest> getFailedRequests() {
+		return failedRequests;
+	}
+
+}
@@ -4,10 +4,8 @@
  */
 package org.spdx.spdx_to_osv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
@@ -15,6 +13,7 @@ import java.util.Objects;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
 /**
  * Singleton class API for SoftwareHeritage
@@ -29,8 +28,19 @@ public class SwhApi {
 	public static final String ENDPOINT = "https://archive.softwareheritage.org/api/1/";
 	public static final String RELEASE_ENDPOINT = ENDPOINT + "release/";
 	
+	private volatile HttpTransport transport;
+	
 	private SwhApi() {
-		
+		this(new RetryingTransport(new CircuitBreakerTransport(new LimitingTransport(new UrlConnectionTransport(), 
+				OsvQueryExecutor.DEFAULT_NUM_THREADS))));
+	}
+	
+	/**
+	 * @param transport transport used for all HTTP requests
+	 */
+	SwhApi(HttpTransport transport) {
+		Objects.requireNonNull(transport, "Transport can not be null");
+		this.transport = transport;
 	}
 	
 	public synchronized static SwhApi getInstance() {
@@ -40,10 +50,25 @@ public class SwhApi {
 		return _instance;
 	}
 	
+	/**
+	 * @return the transport used for all HTTP requests
+	 */
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * @param transport the transport used for all HTTP requests
+	 */
+	public void setTransport(HttpTransport transport) {
+		Objects.requireNonNull(transport, "Transport can not be null");
+		this.transport = transport;
+	}
+	
 	public SwhRelease getSwhRelease(String releaseSha1) throws IOException, SwhException {
 		try {
 			URL url = new URL(RELEASE_ENDPOINT + releaseSha1 + "/");
-			return GSON.fromJson(getResponseString(url), SwhRelease.class);
+			return get(url, SwhRelease.class);
 		} catch (MalformedURLException e) {
 			throw new RuntimeException("Malformed URL when getting Software Heritage Release",e);
 		}
@@ -51,33 +76,22 @@ public class SwhApi {
 	
 	/**
 	 * @param url URL to "get" the response
-	 * @return String representing the response
+	 * @param type class of the response object
+	 * @return response object decoded directly from the response stream
 	 */
-	private String getResponseString(URL url) throws IOException, SwhException {
-		HttpURLConnection con = (HttpURLConnection)(url.openConnection());
-		con.setRequestMethod("GET");
-		con.setRequestProperty("Accept", "application/json");
-		con.connect();
-		try {
-			String response;
-	        try(BufferedReader reader = new BufferedReader(
-	                new InputStreamReader(con.getInputStream(),StandardCharsets.UTF_8))) {
-	            StringBuilder sb = new StringBuilder();
-	            String line = null;
-	            while ((line = reader.readLine()) != null) {
-	                sb.append(line);
-	            }
-	            response = sb.toString();
-	        }
-	        if (con.getResponseCode() == 200) {
-	        	return response;
-	        } else if (con.getResponseCode() == 404){
+	private <T> T get(URL url, Class<T> type) throws IOException, SwhException {
+		try (HttpResponse httpResponse = transport.get(url, "application/json")) {
+	        if (httpResponse.getStatusCode() == 200) {
+	        	try {
+	        		return GSON.fromJson(new InputStreamReader(httpResponse.getBody(), StandardCharsets.UTF_8), type);
+	        	} catch (JsonParseException e) {
+	        		throw new SwhApiException("Invalid response from SwhApi for URL "+url, e);
+	        	}
+	        } else if (httpResponse.getStatusCode() == 404){
 	        	throw new SwhResourceNotFoundException("Resource not found for URL "+url);
 	        } else {
-	        	throw new SwhApiException("Unexpected response code from SwhApi: "+con.getResponseCode());
+	        	throw new SwhApiException("Unexpected response code from SwhApi: "+httpResponse.getStatusCode());
 	        }
-		} finally {
-			con.disconnect();
 		}
 	}
 
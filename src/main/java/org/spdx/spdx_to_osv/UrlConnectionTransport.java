@@ -0,0 +1,140 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP transport based on {@link HttpURLConnection}
+ * 
+ * Connections are never explicitly disconnected and response bodies are always fully consumed
+ * so that the JDK keep-alive cache can reuse the underlying socket (and TLS session) across requests.
+ * The number of idle connections kept per destination is controlled by the 
+ * <code>http.maxConnections</code> system property.  The only exception is a request cancelled through the
+ * {@link RequestCancellation} of the calling thread, whose connection is disconnected.
+ * 
+ * @author Gary O'Neall
+ */
+public class UrlConnectionTransport implements HttpTransport {
+	
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+	public static final int DEFAULT_READ_TIMEOUT_MILLIS = 60000;
+	
+	private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+	private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+	public UrlConnectionTransport() {
+		
+	}
+	
+	/**
+	 * @param connectTimeoutMillis timeout in milliseconds for establishing a connection - 0 for no timeout
+	 * @param readTimeoutMillis timeout in milliseconds for reading a response - 0 for no timeout
+	 */
+	public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+		setConnectTimeoutMillis(connectTimeoutMillis);
+		setReadTimeoutMillis(readTimeoutMillis);
+	}
+
+	@Override
+	public HttpResponse get(URL url, String accept) throws IOException {
+		HttpURLConnection con = openConnection(url);
+		con.setRequestMethod("GET");
+		con.setRequestProperty("Accept", accept);
+		con.connect();
+		return toResponse(con);
+	}
+
+	@Override
+	public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+		HttpURLConnection con = openConnection(url);
+		con.setRequestMethod("POST");
+		con.setFixedLengthStreamingMode(body.length);
+		con.setRequestProperty("Content-Type", contentType);
+		con.setRequestProperty("Accept", accept);
+		con.setDoOutput(true);
+		con.connect();
+		try (OutputStream out = con.getOutputStream()) {
+			out.write(body);
+		}
+		return toResponse(con);
+	}
+	
+	/**
+	 * @param url URL to connect to
+	 * @return connection with the timeouts set
+	 * @throws IOException
+	 */
+	private HttpURLConnection openConnection(URL url) throws IOException {
+		HttpURLConnection con = (HttpURLConnection)(url.openConnection());
+		con.setConnectTimeout(connectTimeoutMillis);
+		con.setReadTimeout(readTimeoutMillis);
+		con.setUseCaches(false);
+		RequestCancellation cancellation = RequestCancellation.current();
+		if (cancellation != null) {
+			cancellation.register(con::disconnect);
+		}
+		return con;
+	}
+	
+	/**
+	 * @param con connection after the request has been sent
+	 * @return response containing the status, headers and body
+	 * @throws IOException
+	 */
+	private HttpResponse toResponse(HttpURLConnection con) throws IOException {
+		int statusCode = con.getResponseCode();
+		Map<String, String> headers = new HashMap<>();
+		for (Map.Entry<String, List<String>> entry:con.getHeaderFields().entrySet()) {
+			if (entry.getKey() != null && entry.getValue() != null && !entry.getValue().isEmpty()) {
+				headers.put(entry.getKey(), entry.getValue().get(0));
+			}
+		}
+		InputStream body = statusCode >= 400 ? con.getErrorStream() : con.getInputStream();
+		return new HttpResponse(statusCode, headers, body);
+	}
+
+	/**
+	 * @return the timeout in milliseconds for establishing a connection
+	 */
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * @param connectTimeoutMillis timeout in milliseconds for establishing a connection - 0 for no timeout
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if (connectTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Connect timeout can not be negative");
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	/**
+	 * @return the timeout in milliseconds for reading a response
+	 */
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	/**
+	 * @param readTimeoutMillis timeout in milliseconds for reading a response - 0 for no timeout
+	 */
+	public void setReadTimeoutMillis(int readTimeoutMillis) {
+		if (readTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Read timeout can not be negative");
+		}
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+}
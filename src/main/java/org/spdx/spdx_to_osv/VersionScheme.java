@@ -0,0 +1,561 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Version ordering for an OSV ecosystem
+ *
+ * Each version string is parsed once into a compact key - an array of <code>long</code>s each holding a tag
+ * in the top byte and a number or up to 6 bytes of a string in the remaining bytes - so comparing two versions
+ * is an unsigned comparison of the <code>long</code>s rather than re-parsing the strings.  A shorter key is
+ * compared as if padded with {@link #PAD}, so the tags above {@link #PAD} sort after the end of a version and
+ * the tags below sort before it (e.g. pre-releases).  Keys are cached per scheme.
+ *
+ * The schemes follow SemVer 2.0 (npm and Go), NuGet, PEP 440 (PyPI) and Maven.  Other ecosystems use a generic
+ * order comparing numeric parts numerically and other parts lexically with a version followed by non-numeric
+ * parts (e.g. <code>1.0-beta</code>) before the version.  A version which is not valid for its scheme is given a
+ * key in the layout of the scheme - its leading numbers are the release and its remaining parts sort after the
+ * pre-releases and before the release - so it still compares consistently with the valid versions.
+ *
+ * @author Gary O'Neall
+ */
+public abstract class VersionScheme implements Comparator<String> {
+
+	static final long TAG_LOW = 0x10L << 56;
+	static final long TAG_END = 0x18L << 56;
+	static final long TAG_PRE = 0x20L << 56;
+	static final long TAG_STRING = 0x30L << 56;
+	static final long PAD = 0x40L << 56;
+	static final long TAG_LOCAL = 0x48L << 56;
+	static final long TAG_POST = 0x50L << 56;
+	static final long TAG_POST_STRING = 0x60L << 56;
+	static final long TAG_NUMBER = 0x70L << 56;
+	static final long TAG_HIGH_STRING = 0x80L << 56;
+	static final long MAX_NUMBER = (1L << 56) - 1;
+	static final int STRING_CHUNK = 6;
+
+	/**
+	 * Maximum number of keys cached by each scheme before the cache is cleared
+	 */
+	static final int MAX_CACHED_KEYS = 100_000;
+
+	/**
+	 * Builds a version key
+	 */
+	static class KeyBuilder {
+		private long[] key = new long[8];
+		private int length = 0;
+
+		KeyBuilder add(long value) {
+			if (length == key.length) {
+				key = Arrays.copyOf(key, length * 2);
+			}
+			key[length++] = value;
+			return this;
+		}
+
+		/**
+		 * @param digits decimal digits - numbers too large for 56 bits are saturated
+		 * @return this builder
+		 */
+		KeyBuilder number(String digits) {
+			return add(TAG_NUMBER | parseNumber(digits));
+		}
+
+		/**
+		 * @param tag tag for the chunks of the string
+		 * @param s string to add as chunks of {@link VersionScheme#STRING_CHUNK} bytes
+		 * @return this builder
+		 */
+		KeyBuilder string(long tag, String s) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			int offset = 0;
+			do {
+				long chunk = 0;
+				for (int i = 0; i < STRING_CHUNK; i++) {
+					chunk = (chunk << 8) | (offset + i < bytes.length ? bytes[offset + i] & 0xff : 0);
+				}
+				offset += STRING_CHUNK;
+				// the last byte marks whether more chunks follow so a shorter string sorts first
+				add(tag | (chunk << 8) | (offset < bytes.length ? 1 : 0));
+			} while (offset < bytes.length);
+			return this;
+		}
+
+		/**
+		 * Remove numeric zeros at the end of the key
+		 * @param from index of the first value which may be removed
+		 * @return this builder
+		 */
+		KeyBuilder trimZeros(int from) {
+			while (length > from && key[length - 1] == TAG_NUMBER) {
+				length--;
+			}
+			return this;
+		}
+
+		int length() {
+			return length;
+		}
+
+		long[] build() {
+			return Arrays.copyOf(key, length);
+		}
+	}
+
+	/**
+	 * SemVer 2.0 precedence - a leading <code>v</code> is ignored, missing minor or patch numbers are 0 and
+	 * build metadata is ignored
+	 */
+	public static final VersionScheme SEMVER = new SemverScheme(3, false);
+
+	/**
+	 * NuGet version precedence - SemVer with an optional fourth revision number and case insensitive pre-releases
+	 */
+	public static final VersionScheme NUGET = new SemverScheme(4, true);
+
+	/**
+	 * PEP 440 version order used by PyPI
+	 */
+	public static final VersionScheme PYPI = new Pep440Scheme();
+
+	/**
+	 * Maven version order
+	 */
+	public static final VersionScheme MAVEN = new MavenScheme();
+
+	/**
+	 * Order for versions of an unknown scheme
+	 */
+	public static final VersionScheme GENERIC = new GenericScheme();
+
+	private static final Map<String, VersionScheme> ECOSYSTEM_SCHEMES;
+
+	static {
+		Map<String, VersionScheme> schemes = new HashMap<>();
+		schemes.put("npm", SEMVER);
+		schemes.put("Go", SEMVER);
+		schemes.put("NuGet", NUGET);
+		schemes.put("PyPI", PYPI);
+		schemes.put("Maven", MAVEN);
+		ECOSYSTEM_SCHEMES = Collections.unmodifiableMap(schemes);
+	}
+
+	private final ConcurrentHashMap<String, long[]> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * @param ecosystem OSV ecosystem - any suffix following a <code>:</code> is ignored
+	 * @return the version scheme for the ecosystem - {@link #GENERIC} for unknown ecosystems
+	 */
+	public static VersionScheme forEcosystem(String ecosystem) {
+		if (Objects.isNull(ecosystem)) {
+			return GENERIC;
+		}
+		int colon = ecosystem.indexOf(':');
+		String baseEcosystem = colon >= 0 ? ecosystem.substring(0, colon) : ecosystem;
+		return ECOSYSTEM_SCHEMES.getOrDefault(baseEcosystem, GENERIC);
+	}
+
+	/**
+	 * @param version version string
+	 * @return the key for the version - shared and must not be modified
+	 */
+	public long[] key(String version) {
+		long[] retval = keys.get(version);
+		if (Objects.isNull(retval)) {
+			retval = parse(version);
+			if (Objects.isNull(retval)) {
+				retval = parseInvalid(version);
+			}
+			if (keys.size() >= MAX_CACHED_KEYS) {
+				keys.clear();
+			}
+			keys.put(version, retval);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param version version string
+	 * @return the key for the version or null if the version is not valid for the scheme
+	 */
+	protected abstract long[] parse(String version);
+
+	/**
+	 * @param version version string which is not valid for the scheme
+	 * @return a key for the version in the layout of the keys of the scheme
+	 */
+	protected long[] parseInvalid(String version) {
+		return GenericScheme.parseGeneric(version);
+	}
+
+	/**
+	 * Add the parts of a version following its release numbers - numbers sort above the end of a key and strings
+	 * below it
+	 * @param builder builder for the key
+	 * @param tokens tokens of the version
+	 * @param from index of the first token to add
+	 */
+	static void addRemainingTokens(KeyBuilder builder, List<String> tokens, int from) {
+		for (int i = from; i < tokens.size(); i++) {
+			if (isNumeric(tokens.get(i))) {
+				builder.number(tokens.get(i));
+			} else {
+				builder.string(TAG_STRING, tokens.get(i));
+			}
+		}
+	}
+
+	/**
+	 * @param version version string
+	 * @return the version without surrounding whitespace, a leading <code>=</code> or <code>v</code>
+	 */
+	static String stripPrefix(String version) {
+		String retval = version.trim();
+		if (retval.startsWith("=")) {
+			retval = retval.substring(1);
+		}
+		if (retval.startsWith("v") || retval.startsWith("V")) {
+			retval = retval.substring(1);
+		}
+		return retval;
+	}
+
+	@Override
+	public int compare(String a, String b) {
+		return compareKeys(key(a), key(b));
+	}
+
+	/**
+	 * @param a first key
+	 * @param b second key
+	 * @return comparison of the keys with the shorter key padded with {@link #PAD}
+	 */
+	public static int compareKeys(long[] a, long[] b) {
+		int length = Math.max(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int compare = Long.compareUnsigned(i < a.length ? a[i] : PAD, i < b.length ? b[i] : PAD);
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param digits decimal digits
+	 * @return the value saturated to 56 bits
+	 */
+	static long parseNumber(String digits) {
+		long retval = 0;
+		for (int i = 0; i < digits.length(); i++) {
+			retval = retval * 10 + (digits.charAt(i) - '0');
+			if (retval > MAX_NUMBER) {
+				return MAX_NUMBER;
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * @param s string to check
+	 * @return true if the string is a non-empty sequence of ASCII digits
+	 */
+	static boolean isNumeric(String s) {
+		if (s.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			if (ch < '0' || ch > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param version version string
+	 * @param separators characters separating the parts of the version
+	 * @return the numeric and non-numeric parts of the version - separators are dropped
+	 */
+	static List<String> tokenize(String version, String separators) {
+		List<String> retval = new ArrayList<>();
+		int start = -1;
+		boolean numeric = false;
+		for (int i = 0; i <= version.length(); i++) {
+			char ch = i < version.length() ? version.charAt(i) : separators.charAt(0);
+			boolean separator = separators.indexOf(ch) >= 0;
+			boolean digit = ch >= '0' && ch <= '9';
+			if (start >= 0 && (separator || digit != numeric)) {
+				retval.add(version.substring(start, i));
+				start = -1;
+			}
+			if (!separator && start < 0) {
+				start = i;
+				numeric = digit;
+			}
+		}
+		return retval;
+	}
+
+	/**
+	 * Numeric parts compare numerically and above other parts, which compare lexically ignoring case.
+	 * Zeros before a non-numeric part or the end are ignored so <code>1.0</code> equals <code>1</code>.
+	 */
+	private static class GenericScheme extends VersionScheme {
+
+		@Override
+		protected long[] parse(String version) {
+			return parseGeneric(version);
+		}
+
+		static long[] parseGeneric(String version) {
+			KeyBuilder builder = new KeyBuilder();
+			int numberStart = 0;
+			for (String token:tokenize(version.toLowerCase(Locale.ROOT), ".-_+~:")) {
+				if (isNumeric(token)) {
+					builder.number(token);
+				} else {
+					builder.trimZeros(numberStart);
+					builder.string(TAG_STRING, token);
+					numberStart = builder.length();
+				}
+			}
+			return builder.trimZeros(numberStart).build();
+		}
+	}
+
+	/**
+	 * SemVer 2.0 with a fixed number of numeric parts - pre-release numeric identifiers are stored incremented
+	 * so that they sort above the end of a shorter pre-release
+	 */
+	private static class SemverScheme extends VersionScheme {
+		private final int numParts;
+		private final boolean ignoreCase;
+
+		SemverScheme(int numParts, boolean ignoreCase) {
+			this.numParts = numParts;
+			this.ignoreCase = ignoreCase;
+		}
+
+		@Override
+		protected long[] parse(String version) {
+			String remaining = stripPrefix(version);
+			int plus = remaining.indexOf('+');
+			if (plus >= 0) {
+				remaining = remaining.substring(0, plus);
+			}
+			String pre = null;
+			int dash = remaining.indexOf('-');
+			if (dash >= 0) {
+				pre = remaining.substring(dash + 1);
+				remaining = remaining.substring(0, dash);
+			}
+			String[] parts = remaining.split("\\.", -1);
+			if (parts.length > numParts) {
+				return null;
+			}
+			KeyBuilder builder = new KeyBuilder();
+			for (int i = 0; i < numParts; i++) {
+				if (i < parts.length) {
+					if (!isNumeric(parts[i])) {
+						return null;
+					}
+					builder.number(parts[i]);
+				} else {
+					builder.add(TAG_NUMBER);
+				}
+			}
+			if (Objects.nonNull(pre)) {
+				if (pre.isEmpty()) {
+					return null;
+				}
+				// pre-releases sort before the release
+				builder.add(TAG_PRE);
+				for (String id:pre.split("\\.", -1)) {
+					if (isNumeric(id)) {
+						builder.add(TAG_NUMBER | Math.min(parseNumber(id) + 1, MAX_NUMBER));
+					} else {
+						builder.string(TAG_HIGH_STRING, ignoreCase ? id.toLowerCase(Locale.ROOT) : id);
+					}
+				}
+			}
+			return builder.build();
+		}
+
+		/**
+		 * The leading numbers are the numeric parts
+		 */
+		@Override
+		protected long[] parseInvalid(String version) {
+			String stripped = stripPrefix(version);
+			List<String> tokens = tokenize(ignoreCase ? stripped.toLowerCase(Locale.ROOT) : stripped, ".-_+~");
+			KeyBuilder builder = new KeyBuilder();
+			int i = 0;
+			while (i < numParts && i < tokens.size() && isNumeric(tokens.get(i))) {
+				builder.number(tokens.get(i++));
+			}
+			for (int part = i; part < numParts; part++) {
+				builder.add(TAG_NUMBER);
+			}
+			addRemainingTokens(builder, tokens, i);
+			return builder.build();
+		}
+	}
+
+	/**
+	 * PEP 440 - epoch, release, pre-release, post-release, development release and local version
+	 */
+	private static class Pep440Scheme extends VersionScheme {
+		static final Pattern VERSION_PATTERN = Pattern.compile(
+				"v?(?:(\\d+)!)?(\\d+(?:\\.\\d+)*)" +
+				"(?:[-_.]?(a|b|c|rc|alpha|beta|pre|preview)[-_.]?(\\d*))?" +
+				"(?:-(\\d+)|[-_.]?(post|rev|r)[-_.]?(\\d*))?" +
+				"(?:[-_.]?(dev)[-_.]?(\\d*))?" +
+				"(?:\\+([a-z0-9]+(?:[-_.][a-z0-9]+)*))?");
+
+		@Override
+		protected long[] parse(String version) {
+			Matcher matcher = VERSION_PATTERN.matcher(version.trim().toLowerCase(Locale.ROOT));
+			if (!matcher.matches()) {
+				return null;
+			}
+			KeyBuilder builder = new KeyBuilder();
+			builder.number(Objects.isNull(matcher.group(1)) ? "0" : matcher.group(1));
+			int releaseStart = builder.length();
+			for (String part:matcher.group(2).split("\\.")) {
+				builder.number(part);
+			}
+			builder.trimZeros(releaseStart);
+			builder.add(TAG_END);
+			String preLetter = matcher.group(3);
+			boolean post = Objects.nonNull(matcher.group(5)) || Objects.nonNull(matcher.group(6));
+			boolean dev = Objects.nonNull(matcher.group(8));
+			if (Objects.nonNull(preLetter)) {
+				builder.add(TAG_PRE | preRank(preLetter));
+				builder.number(optionalNumber(matcher.group(4)));
+			} else if (dev && !post) {
+				// a development release without a pre or post release is before the pre-releases
+				builder.add(TAG_LOW);
+			}
+			if (post) {
+				builder.add(TAG_POST);
+				builder.number(Objects.nonNull(matcher.group(5)) ? matcher.group(5) : optionalNumber(matcher.group(7)));
+			}
+			if (dev) {
+				builder.add(TAG_LOW);
+				builder.number(optionalNumber(matcher.group(9)));
+			}
+			if (Objects.nonNull(matcher.group(10))) {
+				builder.add(TAG_LOCAL);
+				for (String segment:matcher.group(10).split("[-_.]")) {
+					if (isNumeric(segment)) {
+						builder.number(segment);
+					} else {
+						builder.string(TAG_STRING, segment);
+					}
+				}
+			}
+			return builder.build();
+		}
+
+		/**
+		 * The leading numbers are the release in epoch 0
+		 */
+		@Override
+		protected long[] parseInvalid(String version) {
+			List<String> tokens = tokenize(stripPrefix(version.toLowerCase(Locale.ROOT)), ".-_+!");
+			KeyBuilder builder = new KeyBuilder();
+			builder.add(TAG_NUMBER);
+			int releaseStart = builder.length();
+			int i = 0;
+			while (i < tokens.size() && isNumeric(tokens.get(i))) {
+				builder.number(tokens.get(i++));
+			}
+			builder.trimZeros(releaseStart);
+			builder.add(TAG_END);
+			addRemainingTokens(builder, tokens, i);
+			return builder.build();
+		}
+
+		private static String optionalNumber(String digits) {
+			return Objects.isNull(digits) || digits.isEmpty() ? "0" : digits;
+		}
+
+		private static long preRank(String letter) {
+			switch (letter) {
+				case "a":
+				case "alpha": return 0;
+				case "b":
+				case "beta": return 1;
+				default: return 2;	// c, rc, pre and preview
+			}
+		}
+	}
+
+	/**
+	 * Maven - known qualifiers are ordered <code>alpha &lt; beta &lt; milestone &lt; rc &lt; snapshot &lt;
+	 * release &lt; sp</code>, unknown qualifiers sort lexically after <code>sp</code> and all qualifiers sort
+	 * before numbers
+	 */
+	private static class MavenScheme extends VersionScheme {
+		static final List<String> PRE_QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot");
+		static final List<String> RELEASE_QUALIFIERS = Arrays.asList("ga", "final", "release");
+
+		@Override
+		protected long[] parse(String version) {
+			List<String> tokens = tokenize(version.trim().toLowerCase(Locale.ROOT), ".-_");
+			KeyBuilder builder = new KeyBuilder();
+			int numberStart = 0;
+			for (int i = 0; i < tokens.size(); i++) {
+				String token = tokens.get(i);
+				if (isNumeric(token)) {
+					builder.number(token);
+					continue;
+				}
+				builder.trimZeros(numberStart);
+				boolean followedByNumber = i + 1 < tokens.size() && isNumeric(tokens.get(i + 1));
+				String qualifier = normalizeQualifier(token, followedByNumber);
+				int preRank = PRE_QUALIFIERS.indexOf(qualifier);
+				if (preRank >= 0) {
+					builder.add(TAG_PRE | preRank);
+				} else if ("sp".equals(qualifier)) {
+					builder.add(TAG_POST);
+				} else if (!RELEASE_QUALIFIERS.contains(qualifier)) {
+					builder.string(TAG_POST_STRING, qualifier);
+				}
+				numberStart = builder.length();
+			}
+			return builder.trimZeros(numberStart).build();
+		}
+
+		private static String normalizeQualifier(String token, boolean followedByNumber) {
+			if (followedByNumber && token.length() == 1) {
+				switch (token) {
+					case "a": return "alpha";
+					case "b": return "beta";
+					case "m": return "milestone";
+					default: return token;
+				}
+			}
+			return "cr".equals(token) ? "rc" : token;
+		}
+	}
+}
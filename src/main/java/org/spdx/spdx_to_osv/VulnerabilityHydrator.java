@@ -0,0 +1,180 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+/**
+ * Replaces the vulnerability summaries returned by the OSV batch API (only the <code>id</code> and
+ * <code>modified</code> fields) with the full vulnerability records
+ *
+ * The same vulnerability is typically reported for many packages, so the ID's are deduplicated across
+ * all of the results passed to the hydrator - each distinct vulnerability is obtained at most once for
+ * the lifetime of the hydrator.  Records are obtained with {@link OsvApi#getVulnerability(String, String)}
+ * which uses a cached record if the <code>modified</code> timestamp has not changed, otherwise the
+ * records are fetched concurrently on the executor.  A record which could not be obtained is forgotten so
+ * a later query can retry it.  Fetches for the same ID by several hydrators, such as those of concurrent
+ * conversions, are coalesced by the API.
+ *
+ * @author Gary O'Neall
+ */
+public class VulnerabilityHydrator {
+
+	private final OsvApi osvApi;
+	private final ExecutorService executor;
+	private final ConcurrentHashMap<String, Future<OsvVulnerability>> records = new ConcurrentHashMap<>();
+	private final AtomicLong dedupedCount = new AtomicLong(0);
+
+	/**
+	 * @param osvApi API used to obtain the full records
+	 * @param executor executor used to obtain the records concurrently
+	 */
+	public VulnerabilityHydrator(OsvApi osvApi, ExecutorService executor) {
+		Objects.requireNonNull(osvApi, "OSV API can not be null");
+		Objects.requireNonNull(executor, "Executor can not be null");
+		this.osvApi = osvApi;
+		this.executor = executor;
+	}
+
+	/**
+	 * @param vulnerability vulnerability returned by an OSV API
+	 * @return true if the vulnerability only contains the fields returned by the batch API
+	 */
+	static boolean isSummary(OsvVulnerability vulnerability) {
+		return Objects.isNull(vulnerability.getSummary()) && Objects.isNull(vulnerability.getDetails()) &&
+				Objects.isNull(vulnerability.getAffected()) && Objects.isNull(vulnerability.getAliases()) &&
+				Objects.isNull(vulnerability.getPublished()) && Objects.isNull(vulnerability.getReferences());
+	}
+
+	/**
+	 * Replace the vulnerability summaries with full records
+	 * @param results vulnerabilities for each query - null for a failed query
+	 * @param failureHandler called with the index of each query for which a record could not be obtained and the error
+	 * @return list of full vulnerability records in the same order as the results - null for failed queries and
+	 * queries for which any record could not be obtained
+	 * @throws SpdxToOsvException if interrupted
+	 */
+	public List<List<OsvVulnerability>> hydrate(List<List<OsvVulnerability>> results,
+			BiConsumer<Integer, Exception> failureHandler) throws SpdxToOsvException {
+		List<List<Future<OsvVulnerability>>> futures = new ArrayList<>(results.size());
+		for (List<OsvVulnerability> result:results) {
+			if (Objects.isNull(result)) {
+				futures.add(null);
+				continue;
+			}
+			List<Future<OsvVulnerability>> resultFutures = new ArrayList<>(result.size());
+			for (OsvVulnerability vulnerability:result) {
+				resultFutures.add(submit(vulnerability));
+			}
+			futures.add(resultFutures);
+		}
+		List<List<OsvVulnerability>> retval = new ArrayList<>(results.size());
+		for (int i = 0; i < futures.size(); i++) {
+			List<Future<OsvVulnerability>> resultFutures = futures.get(i);
+			if (Objects.isNull(resultFutures)) {
+				retval.add(null);
+				continue;
+			}
+			List<OsvVulnerability> hydrated = new ArrayList<>(resultFutures.size());
+			for (int j = 0; j < resultFutures.size(); j++) {
+				try {
+					hydrated.add(getResult(resultFutures.get(j)));
+				} catch (IOException | SpdxToOsvException e) {
+					if (Thread.currentThread().isInterrupted()) {
+						throw e instanceof SpdxToOsvException ? (SpdxToOsvException)e :
+							new SpdxToOsvException("Interrupted waiting for OSV vulnerability records", e);
+					}
+					String id = results.get(i).get(j).getId();
+					if (Objects.nonNull(id)) {
+						records.remove(id, resultFutures.get(j));
+					}
+					failureHandler.accept(i, e);
+					hydrated = null;
+					break;
+				}
+			}
+			retval.add(hydrated);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param vulnerability vulnerability summary or full record
+	 * @return future for the full record - shared by all summaries with the same ID
+	 */
+	private Future<OsvVulnerability> submit(OsvVulnerability vulnerability) {
+		String id = vulnerability.getId();
+		if (!isSummary(vulnerability)) {
+			if (Objects.nonNull(id)) {
+				records.putIfAbsent(id, CompletableFuture.completedFuture(vulnerability));
+			}
+			return CompletableFuture.completedFuture(vulnerability);
+		}
+		if (Objects.isNull(id)) {
+			CompletableFuture<OsvVulnerability> failed = new CompletableFuture<>();
+			failed.completeExceptionally(new SpdxToOsvException("Missing vulnerability ID in OSV response"));
+			return failed;
+		}
+		Future<OsvVulnerability> existing = records.get(id);
+		if (Objects.nonNull(existing)) {
+			dedupedCount.incrementAndGet();
+			return existing;
+		}
+		String modified = vulnerability.getModified();
+		return records.computeIfAbsent(id, key -> executor.submit(() -> osvApi.getVulnerability(key, modified)));
+	}
+
+	/**
+	 * @param future future for a vulnerability record
+	 * @return the record
+	 * @throws IOException
+	 * @throws SpdxToOsvException
+	 */
+	private static OsvVulnerability getResult(Future<OsvVulnerability> future) throws IOException, SpdxToOsvException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SpdxToOsvException("Interrupted waiting for OSV vulnerability records", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			} else if (cause instanceof SpdxToOsvException) {
+				throw (SpdxToOsvException)cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else {
+				throw new SpdxToOsvException("Error obtaining OSV vulnerability record", cause);
+			}
+		}
+	}
+
+	/**
+	 * @return number of vulnerability summaries which used a record already obtained for the same ID
+	 */
+	public long getDedupedCount() {
+		return dedupedCount.get();
+	}
+
+	/**
+	 * @return number of distinct vulnerabilities obtained or being obtained
+	 */
+	public int getNumRecords() {
+		return records.size();
+	}
+}
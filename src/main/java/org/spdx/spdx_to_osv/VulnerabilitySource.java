@@ -0,0 +1,34 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * Source of the OSV vulnerabilities affecting packages and commits - either the OSV API ({@link OsvQueryExecutor})
+ * or a local copy of the OSV data ({@link LocalOsvDatabase})
+ *
+ * @author Gary O'Neall
+ */
+public interface VulnerabilitySource extends AutoCloseable {
+
+	/**
+	 * Find the full vulnerability records for all requests continuing with the remaining requests when a
+	 * request fails
+	 * @param requests requests to query
+	 * @param failureHandler called with each request which could not be queried and the error
+	 * @return list of vulnerability lists in the same order as the requests - empty for failed requests
+	 * @throws SpdxToOsvException if interrupted
+	 */
+	List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests,
+			BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler) throws SpdxToOsvException;
+
+	@Override
+	void close();
+}
@@ -0,0 +1,371 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv.osvmodel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Immutable list of strings stored compactly for long lists such as the affected versions of a package
+ *
+ * The strings are kept in their original order as UTF-8 in a single byte array.  Each string only stores
+ * the bytes following the prefix it shares with the previous string (front coding) and the full string is
+ * stored every {@value #BLOCK_SIZE} strings so any string can be decoded from the start of its block.
+ * Versions listed in order share most of their bytes, so the list takes a few bytes per version rather than
+ * a <code>String</code> object for each.  Membership checks use a sorted array of the hash codes which is
+ * built on the first check.  The encoded bytes can be stored with {@link #getEncoded()} and read back with
+ * {@link #fromEncoded(int, byte[])} without decoding the strings.
+ *
+ * @author Gary O'Neall
+ */
+public class CompactStringList extends AbstractList<String> implements RandomAccess {
+
+    /**
+     * Number of strings front coded from each full string
+     */
+    static final int BLOCK_SIZE = 16;
+
+    /**
+     * Gson adapter reading a JSON array of strings into a compact list
+     */
+    public static class GsonAdapter extends TypeAdapter<List<String>> {
+
+        @Override
+        public void write(JsonWriter out, List<String> value) throws IOException {
+            out.beginArray();
+            for (String s:value) {
+                out.value(s);
+            }
+            out.endArray();
+        }
+
+        @Override
+        public List<String> read(JsonReader in) throws IOException {
+            List<String> strings = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    strings.add(null);
+                } else {
+                    strings.add(in.nextString());
+                }
+            }
+            in.endArray();
+            return new CompactStringList(strings);
+        }
+    }
+
+    private final int size;
+    private final byte[] data;
+    private final int[] blockOffsets;
+    private final int maxLength;
+    /**
+     * hash code of each string in the upper 32 bits and its index in the lower 32 bits sorted - null until
+     * the first membership check
+     */
+    private volatile long[] hashIndex = null;
+
+    /**
+     * @param strings strings to store - may include nulls
+     */
+    public CompactStringList(Collection<String> strings) {
+        size = strings.size();
+        blockOffsets = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        byte[] buffer = new byte[64];
+        int length = 0;
+        int longest = 0;
+        byte[] previous = null;
+        int index = 0;
+        for (String s:strings) {
+            if (index % BLOCK_SIZE == 0) {
+                blockOffsets[index / BLOCK_SIZE] = length;
+                previous = null;
+            }
+            byte[] bytes = Objects.isNull(s) ? null : s.getBytes(StandardCharsets.UTF_8);
+            int prefix = 0;
+            if (Objects.nonNull(bytes) && Objects.nonNull(previous)) {
+                int max = Math.min(bytes.length, previous.length);
+                while (prefix < max && bytes[prefix] == previous[prefix]) {
+                    prefix++;
+                }
+            }
+            int suffix = Objects.isNull(bytes) ? 0 : bytes.length - prefix;
+            if (length + 10 + suffix > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + 10 + suffix));
+            }
+            length = writeVarint(buffer, length, prefix);
+            // the suffix length is stored plus one so zero can mark a null
+            length = writeVarint(buffer, length, Objects.isNull(bytes) ? 0 : suffix + 1);
+            if (Objects.nonNull(bytes)) {
+                System.arraycopy(bytes, prefix, buffer, length, suffix);
+                length += suffix;
+                longest = Math.max(longest, bytes.length);
+                previous = bytes;
+            } else {
+                previous = null;
+            }
+            index++;
+        }
+        data = Arrays.copyOf(buffer, length);
+        maxLength = longest;
+    }
+
+    /**
+     * @param size number of strings
+     * @param data encoded strings
+     * @param blockOffsets offset of the first string of each block in the data
+     * @param maxLength length in bytes of the longest string
+     */
+    private CompactStringList(int size, byte[] data, int[] blockOffsets, int maxLength) {
+        this.size = size;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Create a list from the bytes returned by {@link #getEncoded()} - the strings are not decoded
+     * @param size number of strings in the list
+     * @param encoded encoded strings - not copied
+     * @return list of the encoded strings
+     * @throws IllegalArgumentException if the bytes are not a valid encoding of the number of strings
+     */
+    public static CompactStringList fromEncoded(int size, byte[] encoded) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid number of strings "+size);
+        }
+        int[] blockOffsets = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        int maxLength = 0;
+        int[] offset = new int[] {0};
+        try {
+            int previousLength = 0;
+            for (int i = 0; i < size; i++) {
+                if (i % BLOCK_SIZE == 0) {
+                    blockOffsets[i / BLOCK_SIZE] = offset[0];
+                    previousLength = 0;
+                }
+                int prefix = readVarint(encoded, offset);
+                int suffix = readVarint(encoded, offset);
+                // the prefix is shared with the previous string in the block
+                if (prefix < 0 || prefix > previousLength || suffix < 0 || suffix - 1 > encoded.length - offset[0]) {
+                    throw new IllegalArgumentException("Invalid compact string list encoding");
+                }
+                if (suffix == 0) {
+                    previousLength = 0;
+                } else {
+                    offset[0] += suffix - 1;
+                    previousLength = prefix + suffix - 1;
+                    maxLength = Math.max(maxLength, previousLength);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated compact string list encoding", e);
+        }
+        if (offset[0] != encoded.length) {
+            throw new IllegalArgumentException("Invalid compact string list encoding");
+        }
+        return new CompactStringList(size, encoded, blockOffsets, maxLength);
+    }
+
+    /**
+     * @param data encoded data
+     * @param offset offset of the varint - updated to the offset after the varint
+     * @return the value of the varint
+     */
+    private static int readVarint(byte[] data, int[] offset) {
+        int retval = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[offset[0]++];
+            retval |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return retval;
+    }
+
+    /**
+     * @return a copy of the encoded strings which can be read back with {@link #fromEncoded(int, byte[])}
+     */
+    public byte[] getEncoded() {
+        return data.clone();
+    }
+
+    private static int writeVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[offset++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte)value;
+        return offset;
+    }
+
+    /**
+     * Decodes the strings sequentially from the start of a block
+     */
+    private class Decoder implements Iterator<String> {
+        private final byte[] current = new byte[maxLength];
+        private int index;
+        private int offset;
+        private int length = 0;
+
+        /**
+         * @param block block to decode from
+         */
+        Decoder(int block) {
+            index = block * BLOCK_SIZE;
+            offset = block < blockOffsets.length ? blockOffsets[block] : data.length;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return advance() ? new String(current, 0, length, StandardCharsets.UTF_8) : null;
+        }
+
+        /**
+         * Decode the next string into the current bytes without creating a string
+         * @return false if the next string is null
+         */
+        boolean advance() {
+            int prefix = readVarint();
+            int suffix = readVarint();
+            index++;
+            if (suffix == 0) {
+                length = 0;
+                return false;
+            }
+            suffix--;
+            System.arraycopy(data, offset, current, prefix, suffix);
+            offset += suffix;
+            length = prefix + suffix;
+            return true;
+        }
+
+        private int readVarint() {
+            int retval = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                retval |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return retval;
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Decoder decoder = new Decoder(index / BLOCK_SIZE);
+        for (int i = index % BLOCK_SIZE; i > 0; i--) {
+            decoder.advance();
+        }
+        return decoder.next();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Decoder(0);
+    }
+
+    /**
+     * @return the hash codes and indexes of the strings sorted by hash code
+     */
+    private long[] getHashIndex() {
+        long[] retval = hashIndex;
+        if (Objects.isNull(retval)) {
+            retval = new long[size];
+            Iterator<String> iter = iterator();
+            for (int i = 0; i < size; i++) {
+                retval[i] = ((long)Objects.hashCode(iter.next()) << 32) | i;
+            }
+            Arrays.sort(retval);
+            hashIndex = retval;
+        }
+        return retval;
+    }
+
+    /**
+     * @param o object to find
+     * @param last true to find the last index rather than the first
+     * @return the index of the object or -1 if not in the list
+     */
+    private int find(Object o, boolean last) {
+        if (Objects.nonNull(o) && !(o instanceof String)) {
+            return -1;
+        }
+        long[] index = getHashIndex();
+        long hash = (long)Objects.hashCode(o) << 32;
+        int pos = Arrays.binarySearch(index, hash);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        int retval = -1;
+        // strings with the same hash code are in index order
+        for (; pos < index.length && (index[pos] & 0xFFFFFFFF00000000L) == hash; pos++) {
+            int i = (int)index[pos];
+            if (Objects.equals(o, get(i))) {
+                retval = i;
+                if (!last) {
+                    break;
+                }
+            }
+        }
+        return retval;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return find(o, false);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return find(o, true);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * @return the number of bytes used to store the strings
+     */
+    public int getDataSize() {
+        return data.length;
+    }
+}
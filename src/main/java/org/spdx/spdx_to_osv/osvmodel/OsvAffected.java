@@ -7,6 +7,7 @@ package org.spdx.spdx_to_osv.osvmodel;
 import java.util.List;
 
 import com.google.gson.JsonObject;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -28,8 +29,9 @@ public class OsvAffected {
     List<OsvRange> ranges;
     
     /**
-     * Optional. List of affected versions.
+     * Optional. List of affected versions - read into a {@link CompactStringList} as the list may be long.
      */
+    @JsonAdapter(CompactStringList.GsonAdapter.class)
     List<String> versions;
     
     /**
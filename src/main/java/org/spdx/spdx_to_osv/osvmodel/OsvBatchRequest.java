@@ -0,0 +1,43 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv.osvmodel;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Request for the OSV-QueryAffectedBatch API based on https://osv.dev/docs/#operation/OSV_QueryAffectedBatch
+ * 
+ * @author Gary O'Neall
+ */
+public class OsvBatchRequest {
+    
+    /**
+     * Queries to be executed in a single batch
+     */
+    private List<OsvVulnerabilityRequest> queries;
+    
+    /**
+     * @param queries queries to be executed in a single batch
+     */
+    public OsvBatchRequest(List<OsvVulnerabilityRequest> queries) {
+        Objects.requireNonNull(queries, "Queries can not be null");
+        this.queries = queries;
+    }
+
+    /**
+     * @return the queries
+     */
+    public List<OsvVulnerabilityRequest> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @param queries the queries to set
+     */
+    public void setQueries(List<OsvVulnerabilityRequest> queries) {
+        this.queries = queries;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv.osvmodel;
+
+import java.util.List;
+
+/**
+ * Object for a response from the OSV-QueryAffectedBatch API based on https://osv.dev/docs/#operation/OSV_QueryAffectedBatch
+ * 
+ * The results are in the same order as the queries in the request.  Vulnerabilities returned
+ * by the batch API only contain the <code>id</code> and <code>modified</code> fields.
+ * 
+ * @author Gary O'Neall
+ */
+public class OsvBatchResponse {
+
+    List<OsvVulnerabilityResponse> results = null;
+    
+    public OsvBatchResponse() {
+        // required empty constructor
+    }
+    
+    public List<OsvVulnerabilityResponse> getResults() {
+        return this.results;
+    }
+}
@@ -4,6 +4,8 @@
  */
 package org.spdx.spdx_to_osv.osvmodel;
 
+import com.google.gson.annotations.SerializedName;
+
 /**
  * OSV event object as described at https://docs.google.com/document/d/1sylBGNooKtf220RHQn1I8pZRmqXZQADDQ_TOABrKTpA/edit
  * 
@@ -21,6 +23,12 @@ public class OsvEvent {
      */
     String fixed;
     
+    /**
+     * The last version/commit that is known to be affected.
+     */
+    @SerializedName("last_affected")
+    String lastAffected;
+    
     /**
      * The limit to apply to the range.
      */
@@ -61,6 +69,20 @@ public class OsvEvent {
         this.fixed = fixed;
     }
 
+    /**
+     * @return the lastAffected
+     */
+    public String getLastAffected() {
+        return lastAffected;
+    }
+
+    /**
+     * @param lastAffected the lastAffected to set
+     */
+    public void setLastAffected(String lastAffected) {
+        this.lastAffected = lastAffected;
+    }
+
     /**
      * @return the limit
      */
@@ -34,6 +34,13 @@ public class OsvVulnerabilityRequest {
      */
     private String commit;
     
+    /**
+     * Token returned as <code>next_page_token</code> in a previous response to retrieve the next page of results.
+     * Not part of the identity of the query.
+     */
+    @SerializedName(value="page_token")
+    private String pageToken;
+    
     /**
      * @param name package name
      * @param version package version
@@ -101,6 +108,36 @@ public class OsvVulnerabilityRequest {
     }
 
 
+    /**
+     * @return the token for the page of results to retrieve or null for the first page
+     */
+    public String getPageToken() {
+        return pageToken;
+    }
+
+
+    /**
+     * @param pageToken the token for the page of results to retrieve - null for the first page
+     */
+    public void setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+    }
+
+
+    /**
+     * @param pageToken the token for the page of results to retrieve - null for the first page
+     * @return a copy of this request for the page
+     */
+    public OsvVulnerabilityRequest withPageToken(String pageToken) {
+        OsvVulnerabilityRequest retval = Objects.nonNull(osvPackage) ? 
+                new OsvVulnerabilityRequest(osvPackage, version) : new OsvVulnerabilityRequest(commit);
+        retval.setVersion(version);
+        retval.setCommit(commit);
+        retval.setPageToken(pageToken);
+        return retval;
+    }
+
+
     @Override
     public int hashCode() {
         int retval = 101;
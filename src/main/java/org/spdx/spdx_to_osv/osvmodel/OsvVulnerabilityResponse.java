@@ -6,6 +6,8 @@ package org.spdx.spdx_to_osv.osvmodel;
 
 import java.util.List;
 
+import com.google.gson.annotations.SerializedName;
+
 /**
  * Object for a response from the OSV-QueryAffected API based on https://osv.dev/docs/#operation/OSV_QueryAffected
  */
@@ -13,6 +15,12 @@ public class OsvVulnerabilityResponse {
 
     List<OsvVulnerability> vulns = null;
     
+    /**
+     * Token to pass as the <code>page_token</code> of the query to retrieve the next page of results - null for the last page
+     */
+    @SerializedName("next_page_token")
+    String nextPageToken = null;
+    
     public OsvVulnerabilityResponse() {
         // required empty constructor
     }
@@ -20,4 +28,8 @@ public class OsvVulnerabilityResponse {
     public List<OsvVulnerability> getVulns() {
         return this.vulns;
     }
+    
+    public String getNextPageToken() {
+        return this.nextPageToken;
+    }
 }
@@ -0,0 +1,122 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.AdaptiveConcurrencyLimiter.Outcome;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Keep the limiter's limit of requests in flight completing the given number of requests
+     */
+    static void runPipelined(AdaptiveConcurrencyLimiter limiter, int numRequests, long latency, Outcome outcome) throws InterruptedException {
+        while (limiter.getInFlight() < limiter.getLimit()) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < numRequests; i++) {
+            limiter.release(latency, outcome);
+            while (limiter.getInFlight() < limiter.getLimit()) {
+                limiter.acquire();
+            }
+        }
+        while (limiter.getInFlight() > 0) {
+            limiter.release(latency, Outcome.IGNORED);
+        }
+    }
+
+    @Test
+    public void testIncrease() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 20);
+        runPipelined(limiter, 25, LATENCY, Outcome.SUCCESS);
+        assertTrue(limiter.getLimit() >= 8);
+        runPipelined(limiter, 500, LATENCY, Outcome.SUCCESS);
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void testNoIncreaseWhenIdle() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 20);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.release(LATENCY, Outcome.SUCCESS);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void testDrop() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 1, 20);
+        for (int i = 0; i < 16; i++) {
+            limiter.acquire();
+        }
+        // all requests in flight fail together - only one decrease
+        for (int i = 0; i < 16; i++) {
+            limiter.release(LATENCY, Outcome.DROPPED);
+        }
+        assertEquals(8, limiter.getLimit());
+        runPipelined(limiter, 50, LATENCY, Outcome.DROPPED);
+        assertEquals(1, limiter.getLimit());
+        // client errors do not change the limit
+        runPipelined(limiter, 50, LATENCY, Outcome.IGNORED);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testRisingLatency() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 10);
+        runPipelined(limiter, 200, LATENCY, Outcome.SUCCESS);
+        assertEquals(10, limiter.getLimit());
+        runPipelined(limiter, 50, LATENCY * 4, Outcome.SUCCESS);
+        assertTrue(limiter.getLimit() < 10);
+    }
+
+    @Test
+    public void testAcquireBlocks() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        limiter.acquire();
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire();
+                acquired.set(true);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        });
+        thread.start();
+        thread.join(100);
+        assertFalse(acquired.get());
+        limiter.release(LATENCY, Outcome.SUCCESS);
+        thread.join(10000);
+        assertTrue(acquired.get());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitingTransport() throws IOException {
+        RetryingTransportTest.ScriptedTransport scripted = new RetryingTransportTest.ScriptedTransport();
+        LimitingTransport transport = new LimitingTransport(scripted, () -> new AdaptiveConcurrencyLimiter(8, 1, 8));
+        URL url = new URL("https://api.osv.dev/v1/query");
+        scripted.respond(503, null).respond(200, null);
+        transport.post(url, "application/json", "application/json", new byte[0]).close();
+        assertEquals(Integer.valueOf(4), transport.getLimits().get("api.osv.dev/v1/query"));
+        transport.get(new URL("https://api.osv.dev/v1/querybatch"), "application/json").close();
+        assertEquals(Integer.valueOf(8), transport.getLimits().get("api.osv.dev/v1/querybatch"));
+    }
+}
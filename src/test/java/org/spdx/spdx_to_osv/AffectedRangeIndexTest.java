@@ -0,0 +1,132 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class AffectedRangeIndexTest {
+
+	static final OsvPackage LODASH = new OsvPackage("lodash", "npm", null);
+
+	private static BitSet bits(int... records) {
+		BitSet retval = new BitSet();
+		for (int record:records) {
+			retval.set(record);
+		}
+		return retval;
+	}
+
+	@Test
+	public void testAffected() {
+		AffectedRangeIndex index = new AffectedRangeIndex.Builder()
+				.add(0, AffectedVersionMatcherTest.affected(LODASH, null,
+						AffectedVersionMatcherTest.range(OsvRangeType.SEMVER, "introduced", "0", "fixed", "1.0.5",
+								"introduced", "2.0.0", "fixed", "2.1.0")))
+				.add(1, AffectedVersionMatcherTest.affected(LODASH, Arrays.asList("4.0.0-custom"),
+						AffectedVersionMatcherTest.range(OsvRangeType.ECOSYSTEM, "introduced", "1.0.0",
+								"last_affected", "2.0.0")))
+				.add(2, AffectedVersionMatcherTest.affected(LODASH, null,
+						AffectedVersionMatcherTest.range(OsvRangeType.SEMVER, "introduced", "1.5.0", "limit", "3.0.0"),
+						AffectedVersionMatcherTest.range(OsvRangeType.GIT, "introduced", "0", "fixed", "abcdef")))
+				.add(3, AffectedVersionMatcherTest.affected(LODASH, null))
+				.build();
+		assertEquals(4, index.getNumIntervals());
+		assertEquals(bits(0, 1, 2, 3), index.affected(null));
+		assertEquals(bits(0), index.affected("0.1.0"));
+		assertEquals(bits(1), index.affected("1.0.5"));
+		assertEquals(bits(1, 2), index.affected("1.5.0"));
+		assertEquals(bits(0, 1, 2), index.affected("2.0.0"));
+		assertEquals(bits(0, 2), index.affected("2.0.1"));
+		assertEquals(bits(2), index.affected("2.9.9"));
+		assertEquals(bits(), index.affected("3.0.0"));
+		assertEquals(bits(1), index.affected("4.0.0-custom"));
+		assertEquals(bits(), index.affected("9.0.0"));
+	}
+
+	@Test
+	public void testMergedVersions() {
+		AffectedRangeIndex index = new AffectedRangeIndex.Builder()
+				.add(0, AffectedVersionMatcherTest.affected(LODASH, Arrays.asList("1.0.0", "1.0.1")))
+				.add(1, AffectedVersionMatcherTest.affected(LODASH, Arrays.asList("1.0.1", "2.0.0")))
+				.add(1, AffectedVersionMatcherTest.affected(LODASH, Arrays.asList("2.0.0")))
+				.add(2, AffectedVersionMatcherTest.affected(LODASH, Arrays.asList("2.0.0", "1.0.0")))
+				.build();
+		assertEquals(0, index.getNumIntervals());
+		assertEquals(bits(0, 2), index.affected("1.0.0"));
+		assertEquals(bits(0, 1), index.affected("1.0.1"));
+		assertEquals(bits(1, 2), index.affected("2.0.0"));
+		assertEquals(bits(), index.affected("1.0"));
+		assertEquals(bits(), index.affected("3.0.0"));
+	}
+
+	@Test
+	public void testEmptyIntervals() {
+		AffectedRangeIndex index = new AffectedRangeIndex.Builder()
+				.add(0, AffectedVersionMatcherTest.affected(LODASH, null,
+						AffectedVersionMatcherTest.range(OsvRangeType.SEMVER, "introduced", "2.0.0", "fixed", "2.0.0")))
+				.add(1, AffectedVersionMatcherTest.affected(LODASH, null,
+						AffectedVersionMatcherTest.range(OsvRangeType.SEMVER, "introduced", "2.0.0", "limit", "1.0.0")))
+				.add(2, AffectedVersionMatcherTest.affected(LODASH, null,
+						AffectedVersionMatcherTest.range(OsvRangeType.SEMVER, "fixed", "1.0.0")))
+				.build();
+		assertEquals(0, index.getNumIntervals());
+		assertEquals(bits(), index.affected("2.0.0"));
+		assertEquals(bits(0, 1, 2), index.affected(null));
+	}
+
+	@Test
+	public void testSameAsMatcher() {
+		Random random = new Random(42);
+		AffectedRangeIndex.Builder builder = new AffectedRangeIndex.Builder();
+		List<OsvAffected> affectedList = new ArrayList<>();
+		for (int record = 0; record < 300; record++) {
+			List<String> events = new ArrayList<>();
+			int numEvents = random.nextInt(6) + 1;
+			String[] kinds = {"introduced", "fixed", "last_affected", "limit"};
+			for (int i = 0; i < numEvents; i++) {
+				events.add(kinds[random.nextInt(kinds.length)]);
+				events.add(random.nextInt(10) == 0 ? "0" : randomVersion(random));
+			}
+			OsvRange range = AffectedVersionMatcherTest.range(random.nextBoolean() ? OsvRangeType.SEMVER :
+				OsvRangeType.ECOSYSTEM, events.toArray(new String[events.size()]));
+			OsvAffected affected = AffectedVersionMatcherTest.affected(LODASH, null, range);
+			affectedList.add(affected);
+			builder.add(record, affected);
+		}
+		AffectedRangeIndex index = builder.build();
+		AffectedVersionMatcher matcher = new AffectedVersionMatcher();
+		for (int i = 0; i < 500; i++) {
+			String version = randomVersion(random);
+			BitSet expected = new BitSet();
+			for (int record = 0; record < affectedList.size(); record++) {
+				if (matcher.isAffected(affectedList.get(record), version)) {
+					expected.set(record);
+				}
+			}
+			assertEquals(version, expected, index.affected(version));
+		}
+	}
+
+	private static String randomVersion(Random random) {
+		String retval = random.nextInt(3) + "." + random.nextInt(4) + "." + random.nextInt(4);
+		return random.nextInt(5) == 0 ? retval + "-rc." + random.nextInt(3) : retval;
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvEvent;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class AffectedVersionMatcherTest {
+
+	static OsvEvent event(String kind, String version) {
+		OsvEvent retval = new OsvEvent();
+		switch (kind) {
+			case "introduced": retval.setIntroduced(version); break;
+			case "fixed": retval.setFixed(version); break;
+			case "last_affected": retval.setLastAffected(version); break;
+			case "limit": retval.setLimit(version); break;
+			default: throw new IllegalArgumentException(kind);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param type range type
+	 * @param events alternating event kind and version
+	 * @return range with the events
+	 */
+	static OsvRange range(OsvRangeType type, String... events) {
+		OsvRange retval = new OsvRange();
+		retval.setType(type);
+		List<OsvEvent> eventList = new ArrayList<>();
+		for (int i = 0; i < events.length; i += 2) {
+			eventList.add(event(events[i], events[i + 1]));
+		}
+		retval.setEvents(eventList);
+		return retval;
+	}
+
+	static OsvAffected affected(OsvPackage osvPackage, List<String> versions, OsvRange... ranges) {
+		OsvAffected retval = new OsvAffected();
+		retval.setOsvPackage(osvPackage);
+		retval.setVersions(versions);
+		retval.setRanges(Arrays.asList(ranges));
+		return retval;
+	}
+
+	@Test
+	public void testSemverOrder() {
+		List<String> versions = new ArrayList<>(Arrays.asList("1.0.0", "1.0.0-rc.1", "1.0.0-beta.11", "v0.9",
+				"1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-beta", "1.0.0-alpha.beta", "1.0.0-beta.2", "2.0.0+build.5",
+				"1.10.0", "1.2.0"));
+		versions.sort(AffectedVersionMatcher.SEMVER_ORDER);
+		assertEquals(Arrays.asList("v0.9", "1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-alpha.beta", "1.0.0-beta",
+				"1.0.0-beta.2", "1.0.0-beta.11", "1.0.0-rc.1", "1.0.0", "1.2.0", "1.10.0", "2.0.0+build.5"), versions);
+		assertEquals(0, AffectedVersionMatcher.SEMVER_ORDER.compare("1.0.0+a", "1.0.0+b"));
+		assertEquals(0, AffectedVersionMatcher.SEMVER_ORDER.compare("1.2", "1.2.0"));
+	}
+
+	@Test
+	public void testGenericOrder() {
+		List<String> versions = new ArrayList<>(Arrays.asList("1.0", "1.0.1", "1.0-beta", "0.9.9", "1.0.0.1",
+				"10.0", "2.0a", "2.0"));
+		versions.sort(AffectedVersionMatcher.GENERIC_ORDER);
+		assertEquals(Arrays.asList("0.9.9", "1.0-beta", "1.0", "1.0.0.1", "1.0.1", "2.0a", "2.0", "10.0"), versions);
+		assertEquals(0, AffectedVersionMatcher.GENERIC_ORDER.compare("1.0", "1.0.0"));
+		assertTrue(AffectedVersionMatcher.GENERIC_ORDER.compare("1.99999999999999999999", "1.100") > 0);
+	}
+
+	@Test
+	public void testRanges() {
+		OsvRange range = range(OsvRangeType.SEMVER, "introduced", "0", "fixed", "1.0.5",
+				"introduced", "2.0.0", "fixed", "2.1.0");
+		assertTrue(AffectedVersionMatcher.isInRange(range, "0.1.0", AffectedVersionMatcher.SEMVER_ORDER));
+		assertTrue(AffectedVersionMatcher.isInRange(range, "1.0.4", AffectedVersionMatcher.SEMVER_ORDER));
+		assertFalse(AffectedVersionMatcher.isInRange(range, "1.0.5", AffectedVersionMatcher.SEMVER_ORDER));
+		assertFalse(AffectedVersionMatcher.isInRange(range, "1.9.0", AffectedVersionMatcher.SEMVER_ORDER));
+		assertTrue(AffectedVersionMatcher.isInRange(range, "2.0.0", AffectedVersionMatcher.SEMVER_ORDER));
+		assertTrue(AffectedVersionMatcher.isInRange(range, "2.1.0-rc.1", AffectedVersionMatcher.SEMVER_ORDER));
+		assertFalse(AffectedVersionMatcher.isInRange(range, "2.1.0", AffectedVersionMatcher.SEMVER_ORDER));
+		// events out of order
+		range = range(OsvRangeType.SEMVER, "fixed", "2.1.0", "introduced", "2.0.0");
+		assertTrue(AffectedVersionMatcher.isInRange(range, "2.0.1", AffectedVersionMatcher.SEMVER_ORDER));
+		assertFalse(AffectedVersionMatcher.isInRange(range, "1.0.0", AffectedVersionMatcher.SEMVER_ORDER));
+		// last affected
+		range = range(OsvRangeType.SEMVER, "introduced", "1.0.0", "last_affected", "1.2.0");
+		assertTrue(AffectedVersionMatcher.isInRange(range, "1.2.0", AffectedVersionMatcher.SEMVER_ORDER));
+		assertFalse(AffectedVersionMatcher.isInRange(range, "1.2.1", AffectedVersionMatcher.SEMVER_ORDER));
+		// limit
+		range = range(OsvRangeType.SEMVER, "introduced", "1.0.0", "limit", "1.5.0");
+		assertTrue(AffectedVersionMatcher.isInRange(range, "1.4.0", AffectedVersionMatcher.SEMVER_ORDER));
+		assertFalse(AffectedVersionMatcher.isInRange(range, "1.5.0", AffectedVersionMatcher.SEMVER_ORDER));
+		// no events
+		assertFalse(AffectedVersionMatcher.isInRange(range(OsvRangeType.SEMVER), "1.0.0",
+				AffectedVersionMatcher.SEMVER_ORDER));
+	}
+
+	@Test
+	public void testIsAffected() {
+		OsvPackage pkg = new OsvPackage("requests", "PyPI", null);
+		OsvAffected affected = affected(pkg, Arrays.asList("2.19.0"),
+				range(OsvRangeType.ECOSYSTEM, "introduced", "2.0", "fixed", "2.3.0"),
+				range(OsvRangeType.GIT, "introduced", "0", "fixed", "abcdef"));
+		AffectedVersionMatcher matcher = new AffectedVersionMatcher();
+		assertTrue(matcher.isAffected(affected, null));
+		assertTrue(matcher.isAffected(affected, "2.19.0"));
+		assertTrue(matcher.isAffected(affected, "2.2.1"));
+		assertFalse(matcher.isAffected(affected, "2.3.0"));
+		assertFalse(matcher.isAffected(affected, "1.0"));
+		// GIT ranges are not evaluated
+		assertFalse(matcher.isAffected(affected, "abcde0"));
+		// ecosystem order
+		matcher = new AffectedVersionMatcher(ecosystem -> "PyPI".equals(ecosystem) ?
+				Collections.reverseOrder(AffectedVersionMatcher.GENERIC_ORDER) : AffectedVersionMatcher.GENERIC_ORDER);
+		assertFalse(matcher.isAffected(affected, "2.2.1"));
+		assertTrue(matcher.isAffected(affected, "1.0"));
+	}
+
+	@Test
+	public void testFilter() {
+		OsvVulnerability lodash = new OsvVulnerability();
+		lodash.setId("GHSA-1");
+		lodash.setAffected(Arrays.asList(
+				affected(new OsvPackage("lodash", "npm", "pkg:npm/lodash"), null,
+						range(OsvRangeType.SEMVER, "introduced", "0", "fixed", "4.17.21")),
+				affected(new OsvPackage("lodash-es", "npm", null), null,
+						range(OsvRangeType.SEMVER, "introduced", "0", "fixed", "4.17.15"))));
+		OsvVulnerability other = new OsvVulnerability();
+		other.setId("GHSA-2");
+		other.setAffected(Arrays.asList(affected(new OsvPackage("lodash", "PyPI", null), null,
+				range(OsvRangeType.ECOSYSTEM, "introduced", "0"))));
+		List<OsvVulnerability> vulns = Arrays.asList(lodash, other);
+		AffectedVersionMatcher matcher = new AffectedVersionMatcher();
+		assertEquals(Arrays.asList(lodash), matcher.filter(vulns, new OsvPackage("lodash", "npm", null), "4.17.20"));
+		assertTrue(matcher.filter(vulns, new OsvPackage("lodash", "npm", null), "4.17.21").isEmpty());
+		assertTrue(matcher.filter(vulns, new OsvPackage("lodash-es", "npm", null), "4.17.20").isEmpty());
+		assertEquals(Arrays.asList(lodash), matcher.filter(vulns,
+				new OsvPackage("other-name", null, "pkg:npm/lodash@4.17.20"), "4.17.20"));
+		assertEquals(vulns, matcher.filter(vulns, new OsvPackage("lodash", null, null), "1.0.0"));
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvReference;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+import com.google.gson.JsonObject;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class AliasMergerTest {
+
+	static OsvVulnerability vulnerability(String id, String... aliases) {
+		OsvVulnerability retval = new OsvVulnerability();
+		retval.setId(id);
+		if (aliases.length > 0) {
+			retval.setAliases(new ArrayList<>(Arrays.asList(aliases)));
+		}
+		retval.setSummary("Summary of " + id);
+		return retval;
+	}
+
+	@Test
+	public void testGroup() {
+		List<OsvVulnerability> vulns = Arrays.asList(
+				vulnerability("GHSA-1", "CVE-2021-1"),
+				vulnerability("PYSEC-2021-5"),
+				vulnerability("PYSEC-2021-1", "CVE-2021-1"),
+				vulnerability("CVE-2021-1"),
+				vulnerability(null),
+				vulnerability("GHSA-2", "PYSEC-2021-5"));
+		int[] groups = new AliasMerger().group(vulns);
+		assertArrayEquals(new int[] {0, 1, 0, 0, 2, 1}, groups);
+	}
+
+	@Test
+	public void testTransitive() {
+		// A-B, C-D and B-C are aliases so all 4 are one group
+		List<OsvVulnerability> vulns = Arrays.asList(
+				vulnerability("A", "B"),
+				vulnerability("C", "D"),
+				vulnerability("E"),
+				vulnerability("D", "B"));
+		int[] groups = new AliasMerger().group(vulns);
+		assertArrayEquals(new int[] {0, 0, 1, 0}, groups);
+	}
+
+	@Test
+	public void testMerge() {
+		List<OsvVulnerability> vulns = Arrays.asList(
+				vulnerability("GHSA-1", "CVE-2021-1"),
+				vulnerability("PYSEC-2021-1", "CVE-2021-1", "OSV-7"),
+				vulnerability("PYSEC-2021-2"));
+		List<OsvVulnerability> result = new AliasMerger().merge(vulns);
+		assertEquals(2, result.size());
+		// there is no CVE record so the GHSA record is primary
+		assertEquals("GHSA-1", result.get(0).getId());
+		assertEquals("Summary of GHSA-1", result.get(0).getSummary());
+		assertEquals(Arrays.asList("CVE-2021-1", "OSV-7", "PYSEC-2021-1"), result.get(0).getAliases());
+		assertSame(vulns.get(2), result.get(1));
+		// the original records are not modified
+		assertEquals(Collections.singletonList("CVE-2021-1"), vulns.get(0).getAliases());
+		// configurable primary
+		result = new AliasMerger(AliasMerger.preferPrefixes(Arrays.asList("PYSEC"))).merge(vulns);
+		assertEquals("PYSEC-2021-1", result.get(0).getId());
+		assertEquals(Arrays.asList("CVE-2021-1", "GHSA-1", "OSV-7"), result.get(0).getAliases());
+		assertEquals("PYSEC-2021-2", result.get(1).getId());
+	}
+
+	private static OsvReference reference(String url) {
+		OsvReference retval = new OsvReference();
+		retval.setUrl(url);
+		return retval;
+	}
+
+	@Test
+	public void testMergeUnionsMembers() {
+		OsvPackage lodash = new OsvPackage("lodash", "npm", null);
+		OsvVulnerability cve = vulnerability("CVE-2021-1");
+		cve.setReferences(Arrays.asList(reference("https://nvd.nist.gov/vuln/detail/CVE-2021-1")));
+		JsonObject cveSpecific = new JsonObject();
+		cveSpecific.addProperty("source", "nvd");
+		cve.setDatabase_specific(cveSpecific);
+		OsvVulnerability ghsa = vulnerability("GHSA-1", "CVE-2021-1");
+		// only the non-primary record lists the affected package
+		ghsa.setAffected(Arrays.asList(AffectedVersionMatcherTest.affected(lodash, null,
+				AffectedVersionMatcherTest.range(OsvRangeType.ECOSYSTEM, "introduced", "0", "fixed", "4.17.12"))));
+		ghsa.setReferences(Arrays.asList(reference("https://github.com/advisories/GHSA-1"),
+				reference("https://nvd.nist.gov/vuln/detail/CVE-2021-1")));
+		JsonObject ghsaSpecific = new JsonObject();
+		ghsaSpecific.addProperty("source", "github");
+		ghsaSpecific.addProperty("severity", "HIGH");
+		ghsa.setDatabase_specific(ghsaSpecific);
+		OsvVulnerability pysec = vulnerability("PYSEC-2021-1", "CVE-2021-1");
+		pysec.setAffected(ghsa.getAffected());
+		List<OsvVulnerability> result = new AliasMerger().merge(Arrays.asList(cve, ghsa, pysec));
+		assertEquals(1, result.size());
+		OsvVulnerability merged = result.get(0);
+		assertEquals("CVE-2021-1", merged.getId());
+		assertEquals(1, merged.getAffected().size());
+		assertEquals("lodash", merged.getAffected().get(0).getOsvPackage().getName());
+		assertEquals(Arrays.asList(merged), new AffectedVersionMatcher().filter(result, lodash, "4.17.11"));
+		assertEquals(2, merged.getReferences().size());
+		assertEquals("https://nvd.nist.gov/vuln/detail/CVE-2021-1", merged.getReferences().get(0).getUrl());
+		assertEquals("https://github.com/advisories/GHSA-1", merged.getReferences().get(1).getUrl());
+		assertEquals("nvd", merged.getDatabase_specific().get("source").getAsString());
+		assertEquals("HIGH", merged.getDatabase_specific().get("severity").getAsString());
+		// the original records are not modified
+		assertNull(cve.getAffected());
+		assertEquals(1, cve.getReferences().size());
+		assertFalse(cveSpecific.has("severity"));
+	}
+
+	@Test
+	public void testPreferPrefixes() {
+		List<String> ids = new ArrayList<>(Arrays.asList("PYSEC-1", "GHSA-b", "CVE-2", "GHSA-a", "CVEX-1", "CVE-1"));
+		ids.sort(AliasMerger.preferPrefixes(Arrays.asList("CVE", "GHSA-")));
+		assertEquals(Arrays.asList("CVE-1", "CVE-2", "GHSA-a", "GHSA-b", "CVEX-1", "PYSEC-1"), ids);
+	}
+
+	@Test
+	public void testLargeChain() {
+		// a long chain of aliases must not degrade to quadratic time or overflow the stack
+		List<OsvVulnerability> vulns = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			vulns.add(vulnerability("ID-" + i, "ID-" + (i + 1)));
+		}
+		int[] groups = new AliasMerger().group(vulns);
+		for (int group:groups) {
+			assertEquals(0, group);
+		}
+	}
+}
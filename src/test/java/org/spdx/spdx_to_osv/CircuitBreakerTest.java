@@ -0,0 +1,118 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.CircuitBreaker.State;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpen() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, now::get);
+        // not enough calls to open
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals(State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, () -> 0);
+        // one failure in four calls stays closed
+        for (int i = 0; i < 30; i++) {
+            assertTrue(breaker.tryAcquire());
+            if (i % 4 == 0) {
+                breaker.recordFailure();
+            } else {
+                breaker.recordSuccess();
+            }
+        }
+        assertEquals(State.CLOSED, breaker.getState());
+        // the window only holds the most recent calls
+        int numFailures = 0;
+        while (breaker.tryAcquire()) {
+            breaker.recordFailure();
+            numFailures++;
+        }
+        assertEquals(State.OPEN, breaker.getState());
+        assertTrue(numFailures <= 5);
+    }
+
+    @Test
+    public void testHalfOpen() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(4, 1, 0.5, 1000, now::get);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals(State.OPEN, breaker.getState());
+        now.set(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(State.HALF_OPEN, breaker.getState());
+        // a single trial call
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals(State.OPEN, breaker.getState());
+        now.set(TimeUnit.MILLISECONDS.toNanos(2000));
+        assertTrue(breaker.tryAcquire());
+        breaker.recordSuccess();
+        assertEquals(State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testTransport() throws IOException {
+        RetryingTransportTest.ScriptedTransport scripted = new RetryingTransportTest.ScriptedTransport();
+        CircuitBreakerTransport transport = new CircuitBreakerTransport(scripted, 
+                () -> new CircuitBreaker(4, 2, 0.5, 60000));
+        URL url = new URL("https://api.osv.dev/v1/query");
+        scripted.respond(503, null).fail(new SocketTimeoutException("timeout")).respond(200, null);
+        transport.get(url, "application/json").close();
+        try {
+            transport.get(url, "application/json");
+            fail("Expected exception");
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+        assertEquals(State.OPEN, transport.getStates().get("api.osv.dev/v1/query"));
+        try {
+            transport.get(url, "application/json");
+            fail("Expected exception");
+        } catch (CircuitOpenException e) {
+            // expected
+        }
+        assertEquals(2, scripted.numRequests);
+        // other endpoints are not affected
+        transport.get(new URL("https://api.osv.dev/v1/querybatch"), "application/json").close();
+        assertEquals(3, scripted.numRequests);
+        // an open circuit is not retried
+        RetryingTransport retrying = new RetryingTransport(transport, new RetryPolicy(), millis -> fail("No retry expected"));
+        try {
+            retrying.get(url, "application/json");
+            fail("Expected exception");
+        } catch (CircuitOpenException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class DependencyGraphTest {
+
+	@Test
+	public void testReachableFrom() {
+		DependencyGraph.Builder builder = new DependencyGraph.Builder();
+		builder.addEdge("A", "B");
+		builder.addEdge("B", "C");
+		builder.addEdge("C", "A");	// cycle
+		builder.addEdge("D", "A");
+		builder.addElement("E");
+		DependencyGraph graph = builder.build();
+		assertEquals(5, graph.getNumElements());
+		assertEquals(4, graph.getNumEdges());
+		BitSet result = graph.reachableFrom(Collections.singletonList("B"));
+		assertEquals(3, result.cardinality());
+		assertTrue(result.get(graph.indexOf("A")));
+		assertTrue(result.get(graph.indexOf("B")));
+		assertTrue(result.get(graph.indexOf("C")));
+		result = graph.reachableFrom(Arrays.asList("E", "D", "Missing"));
+		assertEquals(5, result.cardinality());
+		assertEquals(-1, graph.indexOf("Missing"));
+		assertEquals("E", graph.getId(graph.indexOf("E")));
+	}
+	
+	@Test
+	public void testDeepChain() {
+		int depth = 1000000;
+		DependencyGraph.Builder builder = new DependencyGraph.Builder();
+		for (int i = 0; i < depth; i++) {
+			builder.addEdge("SPDXRef-" + i, "SPDXRef-" + (i + 1));
+		}
+		DependencyGraph graph = builder.build();
+		BitSet result = graph.reachableFrom(Collections.singletonList("SPDXRef-0"));
+		assertEquals(depth + 1, result.cardinality());
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class GitCommitGraphTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	static String hash(int n) {
+		return String.format("abcdef%02x%032x", n, n * 7919L);
+	}
+
+	/**
+	 * Graph of commits 1 to 7 - 1 &lt;- 2 &lt;- 3 &lt;- 5 &lt;- 6 with 2 &lt;- 4 &lt;- 5 merged and 7 a separate root
+	 */
+	static GitCommitGraph graph() throws IOException {
+		String revList = hash(6) + " " + hash(5) + "\n"
+				+ hash(5) + " " + hash(3) + " " + hash(4) + "\n"
+				+ hash(4) + " " + hash(2) + "\n"
+				+ hash(3) + " " + hash(2) + "\n"
+				+ hash(2) + " " + hash(1) + "\n"
+				+ hash(1) + "\n"
+				+ hash(7) + " " + hash(99) + "\n";
+		return new GitCommitGraph("https://github.com/example/repo", new BufferedReader(new StringReader(revList)));
+	}
+
+	@Test
+	public void testGraph() throws IOException {
+		GitCommitGraph graph = graph();
+		assertEquals(7, graph.getNumCommits());
+		int[] ids = new int[8];
+		for (int i = 1; i <= 7; i++) {
+			ids[i] = graph.find(hash(i));
+			assertTrue(ids[i] >= 0);
+		}
+		assertEquals(-1, graph.find(hash(99)));
+		assertEquals(ids[5], graph.find(hash(5).substring(0, 12).toUpperCase()));
+		assertEquals(-1, graph.find(hash(5).substring(0, 5)));
+		assertEquals(-1, graph.find("abcdef0"));	// ambiguous
+		assertEquals(-1, graph.find("not-a-hash"));
+		assertEquals(1, graph.getGeneration(ids[1]));
+		assertEquals(4, graph.getGeneration(ids[5]));
+		assertEquals(1, graph.getGeneration(ids[7]));
+		assertTrue(graph.isAncestor(ids[1], ids[6]));
+		assertTrue(graph.isAncestor(ids[4], ids[5]));
+		assertTrue(graph.isAncestor(ids[3], ids[3]));
+		assertFalse(graph.isAncestor(ids[3], ids[4]));
+		assertFalse(graph.isAncestor(ids[6], ids[1]));
+		assertFalse(graph.isAncestor(ids[7], ids[6]));
+		GitCommitGraph.Ancestors ancestors = graph.ancestors(ids[5]);
+		assertTrue(ancestors.contains(ids[4]));
+		assertTrue(ancestors.contains(ids[1]));
+		assertTrue(ancestors.contains(ids[5]));
+		assertFalse(ancestors.contains(ids[6]));
+		assertFalse(ancestors.contains(ids[7]));
+		assertTrue(ancestors.contains(ids[3]));
+	}
+
+	@Test
+	public void testIsAffected() throws IOException {
+		GitCommitGraph graph = graph();
+		OsvRange range = AffectedVersionMatcherTest.range(OsvRangeType.GIT, "introduced", hash(2), "fixed", hash(4));
+		assertFalse(graph.isAffected(range, hash(1)));
+		assertTrue(graph.isAffected(range, hash(2)));
+		assertTrue(graph.isAffected(range, hash(3)));
+		assertFalse(graph.isAffected(range, hash(4)));
+		assertFalse(graph.isAffected(range, hash(5)));	// the fix is merged
+		assertFalse(graph.isAffected(range, hash(7)));
+		assertFalse(graph.isAffected(range, hash(99)));
+		range = AffectedVersionMatcherTest.range(OsvRangeType.GIT, "introduced", "0", "last_affected", hash(3));
+		assertTrue(graph.isAffected(range, hash(3)));
+		assertTrue(graph.isAffected(range, hash(4)));
+		assertFalse(graph.isAffected(range, hash(5)));
+		assertTrue(graph.isAffected(range, hash(7)));
+		range = AffectedVersionMatcherTest.range(OsvRangeType.GIT, "introduced", hash(1), "limit", hash(3));
+		assertTrue(graph.isAffected(range, hash(2)));
+		assertFalse(graph.isAffected(range, hash(3)));
+		assertFalse(graph.isAffected(range, hash(4)));
+		range = AffectedVersionMatcherTest.range(OsvRangeType.SEMVER, "introduced", "0");
+		assertFalse(graph.isAffected(range, hash(1)));
+		// one walk of the history shared by ranges with shallow and deep events
+		GitCommitGraph.Ancestors ancestors = graph.ancestors(graph.find(hash(6)));
+		assertFalse(graph.isAffected(AffectedVersionMatcherTest.range(OsvRangeType.GIT,
+				"introduced", hash(5), "fixed", hash(6)), ancestors));
+		assertTrue(graph.isAffected(AffectedVersionMatcherTest.range(OsvRangeType.GIT,
+				"introduced", hash(1), "fixed", hash(7)), ancestors));
+		assertTrue(graph.isAffected(AffectedVersionMatcherTest.range(OsvRangeType.GIT,
+				"introduced", hash(4)), ancestors));
+		assertFalse(graph.isAffected(AffectedVersionMatcherTest.range(OsvRangeType.GIT,
+				"introduced", hash(7)), ancestors));
+	}
+
+	@Test
+	public void testNormalizeRepo() {
+		String expected = "github.com/example/repo";
+		assertEquals(expected, LocalOsvDatabase.normalizeRepo("https://github.com/Example/repo.git"));
+		assertEquals(expected, LocalOsvDatabase.normalizeRepo("git://github.com/example/repo/"));
+		assertEquals(expected, LocalOsvDatabase.normalizeRepo("ssh://git@github.com/example/repo"));
+		assertEquals(expected, LocalOsvDatabase.normalizeRepo("git@github.com:example/repo.git"));
+	}
+
+	private static String git(Path repo, String... args) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>(Arrays.asList("git", "-C", repo.toString(),
+				"-c", "user.name=test", "-c", "user.email=test@example.com"));
+		command.addAll(Arrays.asList(args));
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		StringBuilder output = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				output.append(line);
+			}
+		}
+		assertEquals(output.toString(), 0, process.waitFor());
+		return output.toString().trim();
+	}
+
+	@Test
+	public void testLocalDatabaseCommitQuery() throws Exception {
+		Path repo = tempFolder.newFolder("repo").toPath();
+		try {
+			git(repo, "init", "-q");
+		} catch (IOException e) {
+			Assume.assumeNoException("git is not available", e);
+		}
+		git(repo, "remote", "add", "origin", "git@github.com:example/repo.git");
+		String[] commits = new String[3];
+		for (int i = 0; i < commits.length; i++) {
+			git(repo, "commit", "-q", "--allow-empty", "-m", "commit " + i);
+			commits[i] = git(repo, "rev-parse", "HEAD");
+		}
+		GitCommitGraph graph = GitCommitGraph.load(repo);
+		assertEquals(3, graph.getNumCommits());
+		assertEquals("git@github.com:example/repo.git", graph.getRepo());
+
+		OsvAffected affected = new OsvAffected();
+		affected.setRanges(Arrays.asList(AffectedVersionMatcherTest.range(OsvRangeType.GIT,
+				"introduced", commits[1], "fixed", commits[2])));
+		affected.getRanges().get(0).setRepo("https://github.com/example/repo");
+		OsvVulnerability vulnerability = new OsvVulnerability();
+		vulnerability.setId("OSV-1");
+		vulnerability.setAffected(Arrays.asList(affected));
+		LocalOsvDatabase db = new LocalOsvDatabase(Arrays.asList(vulnerability));
+		try {
+			db.query(new OsvVulnerabilityRequest(commits[1]));
+			fail("Commit queries without a mirror should fail");
+		} catch (SpdxToOsvException e) {
+			// expected
+		}
+		db.addCommitGraph(graph);
+		assertTrue(db.query(new OsvVulnerabilityRequest(commits[0])).isEmpty());
+		assertEquals(Arrays.asList("OSV-1"), LocalOsvDatabaseTest.ids(db.query(new OsvVulnerabilityRequest(commits[1]))));
+		assertTrue(db.query(new OsvVulnerabilityRequest(commits[2])).isEmpty());
+		try {
+			db.query(new OsvVulnerabilityRequest(hash(1)));
+			fail("Commits not in a mirror should fail");
+		} catch (SpdxToOsvException e) {
+			// expected
+		}
+
+		// the binary index includes the affected entries without a package
+		Path indexFile = tempFolder.getRoot().toPath().resolve("osv.idx");
+		LocalOsvIndex.build(Arrays.asList(vulnerability), indexFile);
+		try (LocalOsvDatabase mapped = LocalOsvDatabase.load(indexFile)) {
+			mapped.addCommitGraph(graph);
+			assertEquals(Arrays.asList("OSV-1"), LocalOsvDatabaseTest.ids(mapped.query(new OsvVulnerabilityRequest(commits[1]))));
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class HedgingTransportTest {
+
+    /**
+     * Transport responding with the host of the URL as the body - hosts in <code>failingHosts</code>
+     * return a 503 and the next request after <code>blockNext</code> is set waits for the latch or until it
+     * is disconnected through its {@link RequestCancellation} - other requests take <code>latencyMillis</code>
+     */
+    static class HostTransport implements HttpTransport {
+        Map<String, AtomicInteger> numRequests = new ConcurrentHashMap<>();
+        Map<String, Boolean> failingHosts = new ConcurrentHashMap<>();
+        AtomicBoolean blockNext = new AtomicBoolean(false);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean disconnected = new AtomicBoolean(false);
+        volatile long latencyMillis = 0;
+
+        @Override
+        public HttpResponse get(URL url, String accept) throws IOException {
+            numRequests.computeIfAbsent(url.getHost(), host -> new AtomicInteger(0)).incrementAndGet();
+            if (blockNext.compareAndSet(true, false)) {
+                RequestCancellation cancellation = RequestCancellation.current();
+                if (cancellation != null) {
+                    cancellation.register(() -> {
+                        disconnected.set(true);
+                        latch.countDown();
+                    });
+                }
+                try {
+                    latch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                if (disconnected.get()) {
+                    throw new SocketException("Socket closed");
+                }
+            } else if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            int status = failingHosts.containsKey(url.getHost()) ? 503 : 200;
+            return new HttpResponse(status, new ByteArrayInputStream(url.getHost().getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+            return get(url, accept);
+        }
+
+        int getNumRequests(String host) {
+            AtomicInteger retval = numRequests.get(host);
+            return retval == null ? 0 : retval.get();
+        }
+    }
+
+    URL url;
+    HostTransport hosts;
+
+    @Before
+    public void setUp() throws Exception {
+        url = new URL("https://api.osv.dev/v1/query");
+        hosts = new HostTransport();
+    }
+
+    static String readBody(HttpResponse response) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (Reader reader = new InputStreamReader(response.getBody(), StandardCharsets.UTF_8)) {
+            int ch;
+            while ((ch = reader.read()) >= 0) {
+                sb.append((char)ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testResolve() throws IOException {
+        assertEquals(new URL("https://mirror.example.com/osv/v1/query").toString(),
+                HedgingTransport.resolve(new URL("https://mirror.example.com/osv/"), url).toString());
+        assertEquals(new URL("http://localhost:8080/v1/query").toString(),
+                HedgingTransport.resolve(new URL("http://localhost:8080"), url).toString());
+    }
+
+    @Test
+    public void testSingleEndpoint() throws IOException {
+        HedgingTransport transport = new HedgingTransport(hosts, Arrays.asList(new URL("https://mirror.example.com")));
+        try (HttpResponse response = transport.post(url, "application/json", "application/json", new byte[0])) {
+            assertEquals(200, response.getStatusCode());
+            assertEquals("mirror.example.com", readBody(response));
+        }
+        assertEquals(0, hosts.getNumRequests("api.osv.dev"));
+    }
+
+    @Test
+    public void testHealthWeighting() throws IOException {
+        hosts.failingHosts.put("bad.example.com", true);
+        HedgingTransport transport = new HedgingTransport(hosts,
+                Arrays.asList(new URL("https://good.example.com"), new URL("https://bad.example.com")),
+                HedgingTransport.DEFAULT_HEDGE_PERCENTILE, 0, 0);
+        for (int i = 0; i < 200; i++) {
+            transport.get(url, "application/json").close();
+        }
+        assertTrue(hosts.getNumRequests("good.example.com") > 150);
+        assertTrue(hosts.getNumRequests("bad.example.com") > 0);
+        Map<String, Double> weights = transport.getWeights();
+        assertTrue(weights.get("https://good.example.com") > 0.9);
+        assertEquals(0, transport.getHedgesSent());
+    }
+
+    @Test
+    public void testHedge() throws IOException {
+        HedgingTransport transport = new HedgingTransport(hosts,
+                Arrays.asList(new URL("https://one.example.com"), new URL("https://two.example.com")));
+        // the hedge delay must be well above the time to start the pool thread of the blocked request
+        hosts.latencyMillis = 20;
+        for (int i = 0; i < HedgingTransport.MIN_LATENCY_SAMPLES; i++) {
+            transport.get(url, "application/json").close();
+        }
+        assertEquals(0, transport.getHedgesSent());
+        hosts.blockNext.set(true);
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(200, response.getStatusCode());
+            readBody(response);
+        } finally {
+            hosts.latch.countDown();
+        }
+        assertEquals(1, transport.getHedgesSent());
+        assertEquals(1, transport.getHedgesWon());
+        assertEquals(HedgingTransport.MIN_LATENCY_SAMPLES + 2,
+                hosts.getNumRequests("one.example.com") + hosts.getNumRequests("two.example.com"));
+    }
+
+    @Test
+    public void testHedgeBudget() throws IOException {
+        HedgingTransport transport = new HedgingTransport(hosts,
+                Arrays.asList(new URL("https://one.example.com"), new URL("https://two.example.com")),
+                HedgingTransport.DEFAULT_HEDGE_PERCENTILE, 0, 0);
+        for (int i = 0; i < HedgingTransport.MIN_LATENCY_SAMPLES; i++) {
+            transport.get(url, "application/json").close();
+        }
+        hosts.blockNext.set(true);
+        Thread release = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                // release now
+            }
+            hosts.latch.countDown();
+        });
+        release.start();
+        transport.get(url, "application/json").close();
+        assertEquals(0, transport.getHedgesSent());
+        assertEquals(HedgingTransport.MIN_LATENCY_SAMPLES + 1,
+                hosts.getNumRequests("one.example.com") + hosts.getNumRequests("two.example.com"));
+    }
+
+    @Test
+    public void testUnhedgedOnCallerThread() throws IOException {
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        HostTransport recording = new HostTransport() {
+            @Override
+            public HttpResponse get(URL url, String accept) throws IOException {
+                threads.put(url.getHost(), Thread.currentThread());
+                return super.get(url, accept);
+            }
+        };
+        HedgingTransport transport = new HedgingTransport(recording,
+                Arrays.asList(new URL("https://one.example.com")), HedgingTransport.DEFAULT_HEDGE_PERCENTILE, 0, 0, 1);
+        transport.get(url, "application/json").close();
+        // a request which can not be hedged does not need another thread
+        assertEquals(Thread.currentThread(), threads.get("one.example.com"));
+    }
+
+    @Test
+    public void testLoserNotCircuitBreakerFailure() throws Exception {
+        AtomicInteger failures = new AtomicInteger(0);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        // a single failure opens the breaker
+        CircuitBreakerTransport breakers = new CircuitBreakerTransport(hosts, () -> new CircuitBreaker(1, 1, 1.0, 60000) {
+            @Override
+            public synchronized void recordFailure() {
+                failures.incrementAndGet();
+                super.recordFailure();
+            }
+
+            @Override
+            public synchronized void recordCancelled() {
+                super.recordCancelled();
+                cancelled.countDown();
+            }
+        });
+        HedgingTransport transport = new HedgingTransport(breakers,
+                Arrays.asList(new URL("https://one.example.com"), new URL("https://two.example.com")));
+        // the hedge delay must be well above the time to start the pool thread of the blocked request
+        hosts.latencyMillis = 20;
+        for (int i = 0; i < HedgingTransport.MIN_LATENCY_SAMPLES; i++) {
+            transport.get(url, "application/json").close();
+        }
+        hosts.blockNext.set(true);
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(200, response.getStatusCode());
+        }
+        assertEquals(1, transport.getHedgesWon());
+        // the slow request is disconnected rather than left to time out
+        assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+        assertTrue(hosts.disconnected.get());
+        assertEquals(0, failures.get());
+        for (CircuitBreaker.State state:breakers.getStates().values()) {
+            assertEquals(CircuitBreaker.State.CLOSED, state);
+        }
+    }
+}
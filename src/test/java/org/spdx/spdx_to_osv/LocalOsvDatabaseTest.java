@@ -0,0 +1,151 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class LocalOsvDatabaseTest {
+
+	static final String PYSEC_RECORD = "{\"id\": \"PYSEC-2021-1\", \"modified\": \"2021-06-01T00:00:00Z\", "
+			+ "\"aliases\": [\"CVE-2021-1\"], \"affected\": [{\"package\": {\"name\": \"Jinja2\", \"ecosystem\": \"PyPI\", "
+			+ "\"purl\": \"pkg:pypi/jinja2\"}, \"versions\": [\"2.11.0\", \"2.11.1\"]}]}";
+	static final String GHSA_RECORD = "{\"id\": \"GHSA-1\", \"modified\": \"2021-06-01T00:00:00Z\", "
+			+ "\"affected\": [{\"package\": {\"name\": \"jinja2\", \"ecosystem\": \"PyPI\"}, \"versions\": [\"2.11.1\"]}, "
+			+ "{\"package\": {\"name\": \"lodash\", \"ecosystem\": \"npm\"}, \"versions\": [\"4.17.20\"]}]}";
+	static final String DEBIAN_RECORD = "{\"id\": \"DSA-1\", \"modified\": \"2021-06-01T00:00:00Z\", "
+			+ "\"affected\": [{\"package\": {\"name\": \"openssl\", \"ecosystem\": \"Debian:11\"}, \"versions\": [\"1.1.1k-1\"]}]}";
+	static final String WITHDRAWN_RECORD = "{\"id\": \"GHSA-2\", \"modified\": \"2021-06-01T00:00:00Z\", "
+			+ "\"withdrawn\": \"2021-07-01T00:00:00Z\", "
+			+ "\"affected\": [{\"package\": {\"name\": \"lodash\", \"ecosystem\": \"npm\"}, \"versions\": [\"4.17.20\"]}]}";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	static List<String> ids(List<OsvVulnerability> vulnerabilities) {
+		List<String> retval = new ArrayList<>();
+		for (OsvVulnerability vulnerability:vulnerabilities) {
+			retval.add(vulnerability.getId());
+		}
+		return retval;
+	}
+
+	private Path writeDirectory() throws IOException {
+		return writeRecords(tempFolder.newFolder("osv").toPath());
+	}
+
+	static Path writeRecords(Path dir) throws IOException {
+		Files.createDirectories(dir.resolve("PyPI"));
+		Files.write(dir.resolve("PyPI").resolve("PYSEC-2021-1.json"), PYSEC_RECORD.getBytes(StandardCharsets.UTF_8));
+		Files.write(dir.resolve("GHSA-1.json"), GHSA_RECORD.getBytes(StandardCharsets.UTF_8));
+		Files.write(dir.resolve("DSA-1.json"), DEBIAN_RECORD.getBytes(StandardCharsets.UTF_8));
+		Files.write(dir.resolve("GHSA-2.json"), WITHDRAWN_RECORD.getBytes(StandardCharsets.UTF_8));
+		Files.write(dir.resolve("README.txt"), "not a record".getBytes(StandardCharsets.UTF_8));
+		return dir;
+	}
+
+	@Test
+	public void testLoadDirectory() throws IOException, SpdxToOsvException {
+		LocalOsvDatabase db = LocalOsvDatabase.load(writeDirectory());
+		assertEquals(3, db.getNumRecords());
+		assertEquals(Arrays.asList("GHSA-1", "PYSEC-2021-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI", null), "2.11.1"))));
+		// PyPI names are normalized
+		assertEquals(Arrays.asList("PYSEC-2021-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("Jinja2", "PyPI", null), "2.11.0"))));
+		assertEquals(Arrays.asList("PYSEC-2021-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI:3", null), "2.11.0"))));
+		assertTrue(db.query(new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI", null), "3.0.0")).isEmpty());
+		// no version matches all records for the package
+		assertEquals(Arrays.asList("GHSA-1", "PYSEC-2021-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("JINJA2", "PyPI", null), null))));
+		// withdrawn records are not loaded
+		assertEquals(Arrays.asList("GHSA-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("lodash", "npm", null), "4.17.20"))));
+		// ecosystem release suffix
+		assertEquals(Arrays.asList("DSA-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("openssl", "Debian", null), "1.1.1k-1"))));
+		// ecosystems are not mixed
+		assertTrue(db.query(new OsvVulnerabilityRequest(new OsvPackage("lodash", "PyPI", null), null)).isEmpty());
+	}
+
+	@Test
+	public void testPurl() throws IOException, SpdxToOsvException {
+		LocalOsvDatabase db = LocalOsvDatabase.load(writeDirectory());
+		assertEquals(Arrays.asList("PYSEC-2021-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("python-jinja2", null, "pkg:pypi/jinja2%402.11.0?a=b"), null))));
+		assertTrue(db.query(new OsvVulnerabilityRequest(new OsvPackage("python-jinja2", null, "pkg:pypi/jinja2@3.0.0"), null)).isEmpty());
+		assertEquals("pkg:pypi/jinja2", LocalOsvDatabase.normalizePurl("PKG:pypi/jinja2@2.11.0#sub/path"));
+		assertEquals("2.11.0", LocalOsvDatabase.purlVersion("pkg:pypi/jinja2%402.11.0?a=b"));
+		assertNull(LocalOsvDatabase.purlVersion("pkg:npm/%40angular/core"));
+	}
+
+	@Test
+	public void testLoadZip() throws IOException, SpdxToOsvException {
+		Path zip = tempFolder.newFile("all.zip").toPath();
+		try (OutputStream out = Files.newOutputStream(zip);
+				ZipOutputStream zipOut = new ZipOutputStream(out)) {
+			zipOut.putNextEntry(new ZipEntry("PYSEC-2021-1.json"));
+			zipOut.write(PYSEC_RECORD.getBytes(StandardCharsets.UTF_8));
+			zipOut.closeEntry();
+			zipOut.putNextEntry(new ZipEntry("GHSA-1.json"));
+			zipOut.write(GHSA_RECORD.getBytes(StandardCharsets.UTF_8));
+			zipOut.closeEntry();
+		}
+		LocalOsvDatabase db = LocalOsvDatabase.load(zip);
+		assertEquals(2, db.getNumRecords());
+		assertEquals(Arrays.asList("GHSA-1"),
+				ids(db.query(new OsvVulnerabilityRequest(new OsvPackage("lodash", "npm", null), "4.17.20"))));
+	}
+
+	@Test
+	public void testQueryVulnerabilities() throws IOException, SpdxToOsvException {
+		List<OsvVulnerabilityRequest> failed = new ArrayList<>();
+		try (LocalOsvDatabase db = LocalOsvDatabase.load(writeDirectory())) {
+			List<List<OsvVulnerability>> results = db.queryVulnerabilities(Arrays.asList(
+					new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI", null), "2.11.0"),
+					new OsvVulnerabilityRequest("6879efc2c1596d11a6a6ad296f80063b558d5e0f"),
+					new OsvVulnerabilityRequest(new OsvPackage("unknown", "npm", null), "1.0.0")),
+					(request, e) -> failed.add(request));
+			assertEquals(3, results.size());
+			assertEquals(Arrays.asList("PYSEC-2021-1"), ids(results.get(0)));
+			assertTrue(results.get(1).isEmpty());
+			assertTrue(results.get(2).isEmpty());
+		}
+		assertEquals(1, failed.size());
+		assertEquals("6879efc2c1596d11a6a6ad296f80063b558d5e0f", failed.get(0).getCommit());
+	}
+
+	@Test
+	public void testInvalidPath() throws IOException {
+		try {
+			LocalOsvDatabase.load(tempFolder.getRoot().toPath().resolve("missing"));
+			fail("Missing database should fail");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class LocalOsvIndexTest {
+
+	static final String RANGE_RECORD = "{\"id\": \"GHSA-3\", \"modified\": \"2021-06-01T00:00:00Z\", "
+			+ "\"summary\": \"Prototype pollution\", "
+			+ "\"affected\": [{\"package\": {\"name\": \"lodash\", \"ecosystem\": \"npm\", \"purl\": \"pkg:npm/lodash\"}, "
+			+ "\"ranges\": [{\"type\": \"SEMVER\", \"events\": [{\"introduced\": \"0\"}, {\"fixed\": \"4.17.21\"}]}, "
+			+ "{\"type\": \"GIT\", \"repo\": \"https://github.com/lodash/lodash\", \"events\": [{\"introduced\": \"0\"}, "
+			+ "{\"limit\": \"abc123\"}]}], \"versions\": [\"4.17.20\", \"été\"]}]}";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path writeDirectory() throws IOException {
+		Path dir = LocalOsvDatabaseTest.writeRecords(tempFolder.newFolder("osv").toPath());
+		Files.write(dir.resolve("GHSA-3.json"), RANGE_RECORD.getBytes(StandardCharsets.UTF_8));
+		return dir;
+	}
+
+	@Test
+	public void testBuildAndOpen() throws IOException, SpdxToOsvException {
+		Path dir = writeDirectory();
+		Path indexFile = tempFolder.getRoot().toPath().resolve("osv.idx");
+		LocalOsvIndex.build(dir, indexFile);
+		assertTrue(LocalOsvIndex.isIndexFile(indexFile));
+		assertFalse(LocalOsvIndex.isIndexFile(dir));
+		assertFalse(LocalOsvIndex.isIndexFile(dir.resolve("GHSA-3.json")));
+		LocalOsvDatabase memory = LocalOsvDatabase.load(dir);
+		try (LocalOsvDatabase mapped = LocalOsvDatabase.load(indexFile)) {
+			assertEquals(memory.getNumRecords(), mapped.getNumRecords());
+			assertEquals(memory.getNumPackages(), mapped.getNumPackages());
+			assertEquals(4, mapped.getNumRecords());
+			List<OsvVulnerabilityRequest> requests = Arrays.asList(
+					new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI", null), "2.11.1"),
+					new OsvVulnerabilityRequest(new OsvPackage("Jinja_2", "PyPI", null), null),
+					new OsvVulnerabilityRequest(new OsvPackage("lodash", "npm", null), "4.17.20"),
+					new OsvVulnerabilityRequest(new OsvPackage("lodash", null, null), "été"),
+					new OsvVulnerabilityRequest(new OsvPackage("python-jinja2", null, "pkg:pypi/jinja2@2.11.0"), null),
+					new OsvVulnerabilityRequest(new OsvPackage("openssl", "Debian:10", null), "1.1.1k-1"),
+					new OsvVulnerabilityRequest(new OsvPackage("missing", "npm", null), null),
+					new OsvVulnerabilityRequest(new OsvPackage("\uffff", "npm", null), null));
+			for (OsvVulnerabilityRequest request:requests) {
+				assertEquals(LocalOsvDatabaseTest.ids(memory.query(request)), LocalOsvDatabaseTest.ids(mapped.query(request)));
+			}
+			assertEquals(Arrays.asList("GHSA-1", "GHSA-3"),
+					LocalOsvDatabaseTest.ids(mapped.query(requests.get(2))));
+			// matched by the SEMVER range
+			assertEquals(Arrays.asList("GHSA-3"), LocalOsvDatabaseTest.ids(mapped.query(
+					new OsvVulnerabilityRequest(new OsvPackage("lodash", "npm", null), "4.0.0"))));
+			OsvVulnerability record = mapped.query(requests.get(3)).get(0);
+			assertEquals("Prototype pollution", record.getSummary());
+		}
+	}
+
+	@Test
+	public void testAffectedRoundTrip() throws IOException {
+		Path indexFile = tempFolder.getRoot().toPath().resolve("osv.idx");
+		LocalOsvIndex.build(writeDirectory(), indexFile);
+		LocalOsvIndex index = LocalOsvIndex.open(indexFile);
+		List<LocalOsvDatabase.Entry> entries = index.find(LocalOsvDatabase.PURL_KEY + "pkg:npm/lodash");
+		assertEquals(1, entries.size());
+		OsvAffected affected = entries.get(0).affected;
+		assertEquals("lodash", affected.getOsvPackage().getName());
+		assertEquals("npm", affected.getOsvPackage().getEcosystem());
+		assertEquals("pkg:npm/lodash", affected.getOsvPackage().getPurl());
+		assertEquals(Arrays.asList("4.17.20", "été"), affected.getVersions());
+		assertEquals(2, affected.getRanges().size());
+		assertEquals(OsvRangeType.SEMVER, affected.getRanges().get(0).getType());
+		assertNull(affected.getRanges().get(0).getRepo());
+		assertEquals("0", affected.getRanges().get(0).getEvents().get(0).getIntroduced());
+		assertEquals("4.17.21", affected.getRanges().get(0).getEvents().get(1).getFixed());
+		assertNull(affected.getRanges().get(0).getEvents().get(1).getIntroduced());
+		assertEquals("https://github.com/lodash/lodash", affected.getRanges().get(1).getRepo());
+		assertEquals("abc123", affected.getRanges().get(1).getEvents().get(1).getLimit());
+		assertEquals("GHSA-3", index.getRecord(entries.get(0).record).getId());
+		assertTrue(index.find(LocalOsvDatabase.PURL_KEY + "pkg:npm/missing").isEmpty());
+	}
+
+	@Test
+	public void testLoadBuildsOnce() throws IOException {
+		Path dir = writeDirectory();
+		Path indexFile = tempFolder.getRoot().toPath().resolve("index").resolve("osv.idx");
+		LocalOsvDatabase.load(dir, indexFile).close();
+		assertTrue(LocalOsvIndex.isIndexFile(indexFile));
+		FileTime built = FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 60000);
+		Files.setLastModifiedTime(indexFile, built);
+		LocalOsvDatabase.load(dir, indexFile).close();
+		assertEquals(built, Files.getLastModifiedTime(indexFile));
+		// rebuilt when a record in a subdirectory changes without changing the top level directory
+		FileTime dirModified = Files.getLastModifiedTime(dir);
+		Path record = dir.resolve("PyPI").resolve("PYSEC-2021-1.json");
+		Files.setLastModifiedTime(record, FileTime.fromMillis(Files.getLastModifiedTime(record).toMillis() + 1000));
+		assertEquals(dirModified, Files.getLastModifiedTime(dir));
+		LocalOsvDatabase.load(dir, indexFile).close();
+		assertNotEquals(built, Files.getLastModifiedTime(indexFile));
+		// rebuilt when a record is removed even though the index is newer than all of the records
+		Files.setLastModifiedTime(indexFile, built);
+		Files.delete(dir.resolve("GHSA-3.json"));
+		try (LocalOsvDatabase db = LocalOsvDatabase.load(dir, indexFile)) {
+			assertNotEquals(built, Files.getLastModifiedTime(indexFile));
+			assertEquals(3, db.getNumRecords());
+		}
+	}
+
+	@Test
+	public void testLoadWithoutSourceCheck() throws IOException {
+		Path dir = writeDirectory();
+		Path indexFile = tempFolder.getRoot().toPath().resolve("index").resolve("osv.idx");
+		LocalOsvDatabase.load(dir, indexFile, false).close();
+		assertTrue(LocalOsvIndex.isIndexFile(indexFile));
+		FileTime built = FileTime.fromMillis(Files.getLastModifiedTime(dir).toMillis() + 60000);
+		Files.setLastModifiedTime(indexFile, built);
+		// the existing index is used even though the records changed or are no longer present
+		Files.delete(dir.resolve("GHSA-3.json"));
+		try (LocalOsvDatabase db = LocalOsvDatabase.load(tempFolder.getRoot().toPath().resolve("missing"), indexFile, false)) {
+			assertEquals(built, Files.getLastModifiedTime(indexFile));
+			assertEquals(4, db.getNumRecords());
+		}
+	}
+
+	@Test
+	public void testStoresRecordJson() throws IOException {
+		Path indexFile = tempFolder.getRoot().toPath().resolve("osv.idx");
+		LocalOsvIndex.build(writeDirectory(), indexFile);
+		// the record is stored as read rather than serialized again
+		String index = new String(Files.readAllBytes(indexFile), StandardCharsets.UTF_8);
+		assertTrue(index.contains(RANGE_RECORD));
+	}
+
+	@Test
+	public void testInvalidIndex() throws IOException {
+		Path indexFile = tempFolder.getRoot().toPath().resolve("osv.idx");
+		LocalOsvIndex.build(writeDirectory(), indexFile);
+		byte[] bytes = Files.readAllBytes(indexFile);
+		Files.write(indexFile, Arrays.copyOf(bytes, bytes.length - 1));
+		try {
+			LocalOsvIndex.open(indexFile);
+			fail("Truncated index should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		bytes[LocalOsvIndex.MAGIC.length + 3] = 99;
+		Files.write(indexFile, bytes);
+		try {
+			LocalOsvIndex.open(indexFile);
+			fail("Unsupported version should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("version"));
+		}
+	}
+}
@@ -6,8 +6,23 @@ package org.spdx.spdx_to_osv;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -16,13 +31,84 @@ import org.spdx.spdx_to_osv.OsvApi;
 import org.spdx.spdx_to_osv.SpdxToOsvException;
 import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvBatchRequest;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
 
+import com.google.gson.Gson;
+
 /**
  * @author Gary O'Neall
  *
  */
 public class OsvApiTest {
+    
+    static final Gson GSON = new Gson();
+    
+    /**
+     * Transport which answers the query, querybatch and vulns API's without a network connection.
+     * Every package named "vulnerable" has a single vulnerability with the ID "OSV-" + version.
+     * Every package named "paged" has 3 vulnerabilities returned in 3 pages.
+     * Every package named "shared" has the vulnerability "OSV-SHARED".
+     * Every package named "cycle" returns page tokens cycling between pages 2 and 3.
+     */
+    static class StubOsvTransport implements HttpTransport {
+        AtomicInteger numPosts = new AtomicInteger(0);
+        AtomicInteger numBatchPosts = new AtomicInteger(0);
+        AtomicInteger numGets = new AtomicInteger(0);
+        String modified = "2021-01-01T00:00:00Z";
+
+        @Override
+        public HttpResponse get(URL url, String accept) throws IOException {
+            numGets.incrementAndGet();
+            String path = url.getPath();
+            if (!path.startsWith("/v1/vulns/")) {
+                return new HttpResponse(404, null);
+            }
+            String id = path.substring("/v1/vulns/".length());
+            String json = "{\"id\":\"" + id + "\",\"modified\":\"" + modified + "\",\"summary\":\"Summary of " + id + "\"}";
+            return new HttpResponse(200, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+            numPosts.incrementAndGet();
+            String json = new String(body, StandardCharsets.UTF_8);
+            StringBuilder sb = new StringBuilder();
+            if (url.getPath().endsWith("querybatch")) {
+                numBatchPosts.incrementAndGet();
+                OsvBatchRequest batch = GSON.fromJson(json, OsvBatchRequest.class);
+                sb.append("{\"results\":[");
+                for (int i = 0; i < batch.getQueries().size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(vulnsJson(batch.getQueries().get(i)));
+                }
+                sb.append("]}");
+            } else {
+                sb.append(vulnsJson(GSON.fromJson(json, OsvVulnerabilityRequest.class)));
+            }
+            return new HttpResponse(200, new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        
+        static String vulnsJson(OsvVulnerabilityRequest request) {
+            if (request.getPackage() != null && "vulnerable".equals(request.getPackage().getName())) {
+                return "{\"vulns\":[{\"id\":\"OSV-" + request.getVersion() + "\",\"modified\":\"2021-01-01T00:00:00Z\"}]}";
+            } else if (request.getPackage() != null && "shared".equals(request.getPackage().getName())) {
+                return "{\"vulns\":[{\"id\":\"OSV-SHARED\",\"modified\":\"2021-01-01T00:00:00Z\"}]}";
+            } else if (request.getPackage() != null && "paged".equals(request.getPackage().getName())) {
+                int page = request.getPageToken() == null ? 1 : Integer.parseInt(request.getPageToken());
+                return "{\"vulns\":[{\"id\":\"PAGE-" + page + "\",\"modified\":\"2021-01-01T00:00:00Z\"}]" +
+                        (page < 3 ? ",\"next_page_token\":\"" + (page + 1) + "\"" : "") + "}";
+            } else if (request.getPackage() != null && "cycle".equals(request.getPackage().getName())) {
+                int page = request.getPageToken() == null ? 1 : Integer.parseInt(request.getPageToken());
+                return "{\"vulns\":[{\"id\":\"PAGE-" + page + "\",\"modified\":\"2021-01-01T00:00:00Z\"}]," +
+                        "\"next_page_token\":\"" + (page == 2 ? 3 : 2) + "\"}";
+            } else {
+                return "{}";
+            }
+        }
+    }
 
     /**
      * @throws java.lang.Exception
@@ -63,4 +149,494 @@ public class OsvApiTest {
         assertEquals(0, result.size());
     }
 
+    /**
+     * Test method for {@link org.spdx.spdx_to_osv.OsvApi#queryVulnerabilitiesBatch(java.util.List)}.
+     * @throws SpdxToOsvException 
+     * @throws IOException 
+     */
+    @Test
+    public void testQueryVulnerabilitiesBatch() throws IOException, SpdxToOsvException {
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        requests.add(new OsvVulnerabilityRequest("6879efc2c1596d11a6a6ad296f80063b558d5e0f"));
+        requests.add(new OsvVulnerabilityRequest(new OsvPackage("tools-java", "OSV-Fuzz", null), "1.0.1"));
+        requests.add(new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI", null), "2.4.1"));
+        OsvApi api = OsvApi.getInstance();
+        int savedBatchSize = api.getBatchSize();
+        try {
+            api.setBatchSize(2);    // force more than one chunk
+            List<List<OsvVulnerability>> result = api.queryVulnerabilitiesBatch(requests);
+            assertEquals(3, result.size());
+            assertTrue(result.get(0).size() > 0);
+            assertEquals(0, result.get(1).size());
+            assertTrue(result.get(2).size() > 0);
+            assertNotNull(result.get(2).get(0).getId());
+        } finally {
+            api.setBatchSize(savedBatchSize);
+        }
+    }
+
+    @Test
+    public void testQueryVulnerabilitiesBatchChunks() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport();
+        OsvApi api = new OsvApi(transport);
+        api.setBatchSize(10);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            String name = i % 5 == 0 ? "vulnerable" : "safe";
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), String.valueOf(i)));
+        }
+        List<List<OsvVulnerability>> result = api.queryVulnerabilitiesBatch(requests);
+        assertEquals(3, transport.numBatchPosts.get());
+        assertEquals(25, result.size());
+        for (int i = 0; i < 25; i++) {
+            if (i % 5 == 0) {
+                assertEquals(1, result.get(i).size());
+                assertEquals("OSV-" + i, result.get(i).get(0).getId());
+            } else {
+                assertEquals(0, result.get(i).size());
+            }
+        }
+    }
+    
+    @Test
+    public void testQueryExecutor() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport();
+        OsvApi api = new OsvApi(transport);
+        api.setBatchSize(7);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String name = i % 10 == 0 ? "vulnerable" : "safe";
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), String.valueOf(i)));
+        }
+        List<List<OsvVulnerability>> result;
+        try (OsvQueryExecutor executor = new OsvQueryExecutor(api, 4)) {
+            result = executor.queryVulnerabilities(requests);
+        }
+        assertEquals(50, result.size());
+        for (int i = 0; i < 50; i++) {
+            if (i % 10 == 0) {
+                assertEquals("OSV-" + i, result.get(i).get(0).getId());
+            } else {
+                assertEquals(0, result.get(i).size());
+            }
+        }
+        // 8 batch calls and one full record per vulnerability
+        assertEquals(8, transport.numBatchPosts.get());
+        assertEquals(8, transport.numPosts.get());
+        assertEquals(5, transport.numGets.get());
+        assertEquals("Summary of OSV-10", result.get(10).get(0).getSummary());
+    }
+    
+    @Test
+    public void testQueryExecutorPartial() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+                if (new String(body, StandardCharsets.UTF_8).contains("broken")) {
+                    numPosts.incrementAndGet();
+                    return new HttpResponse(503, new ByteArrayInputStream(
+                            "{\"code\":14,\"message\":\"unavailable\"}".getBytes(StandardCharsets.UTF_8)));
+                }
+                return super.post(url, contentType, accept, body);
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        api.setBatchSize(5);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String name = i == 7 ? "broken" : i % 5 == 0 ? "vulnerable" : "safe";
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), String.valueOf(i)));
+        }
+        List<OsvVulnerabilityRequest> failed = new ArrayList<>();
+        List<List<OsvVulnerability>> result;
+        try (OsvQueryExecutor executor = new OsvQueryExecutor(api, 4)) {
+            result = executor.queryVulnerabilities(requests, (request, e) -> {
+                assertTrue(e instanceof SpdxToOsvException);
+                failed.add(request);
+            });
+            // the whole failed chunk is reported
+            assertEquals(requests.subList(5, 10), failed);
+            assertEquals(20, result.size());
+            assertEquals(0, result.get(5).size());
+            assertEquals("OSV-15", result.get(15).get(0).getId());
+            try {
+                executor.queryVulnerabilities(requests);
+                fail("Expected exception");
+            } catch (SpdxToOsvException e) {
+                assertTrue(e.getMessage().contains("unavailable"));
+            }
+        }
+    }
+    
+    @Test
+    public void testQueryCache() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport();
+        OsvApi api = new OsvApi(transport);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String name = i % 10 == 0 ? "vulnerable" : "safe";
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), String.valueOf(i)));
+        }
+        try (OsvQueryExecutor executor = new OsvQueryExecutor(api, 4)) {
+            executor.queryVulnerabilities(requests);
+            assertEquals(1, transport.numPosts.get());
+            assertEquals(2, transport.numGets.get());
+            // the full results and the empty batch results are all cached
+            List<List<OsvVulnerability>> result = executor.queryVulnerabilities(requests);
+            assertEquals(1, transport.numPosts.get());
+            assertEquals(2, transport.numGets.get());
+            assertEquals("OSV-10", result.get(10).get(0).getId());
+            assertEquals(0, result.get(11).size());
+        }
+        // an equal request is a hit
+        List<OsvVulnerability> result = api.queryVulnerabilities(
+                new OsvVulnerabilityRequest(new OsvPackage("vulnerable", "PyPI", null), "0"));
+        assertEquals("OSV-0", result.get(0).getId());
+        assertEquals(1, transport.numPosts.get());
+        assertTrue(api.getQueryCache().getHitCount() > 0);
+        api.setQueryCache(null);
+        api.queryVulnerabilities(new OsvVulnerabilityRequest(new OsvPackage("vulnerable", "PyPI", null), "0"));
+        assertEquals(1 + 1, transport.numPosts.get());
+    }
+    
+    @Test
+    public void testHydrationFailureNotCached() throws IOException, SpdxToOsvException {
+        AtomicInteger failures = new AtomicInteger(1);
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse get(URL url, String accept) throws IOException {
+                if (url.getPath().endsWith("/OSV-10") && failures.getAndDecrement() > 0) {
+                    numGets.incrementAndGet();
+                    return new HttpResponse(500, new ByteArrayInputStream(
+                            "{\"code\":13,\"message\":\"internal\"}".getBytes(StandardCharsets.UTF_8)));
+                }
+                return super.get(url, accept);
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String name = i % 10 == 0 ? "vulnerable" : "safe";
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), String.valueOf(i)));
+        }
+        try (OsvQueryExecutor executor = new OsvQueryExecutor(api, 4)) {
+            List<OsvVulnerabilityRequest> failed = new ArrayList<>();
+            List<List<OsvVulnerability>> result = executor.queryVulnerabilities(requests, (request, e) -> failed.add(request));
+            assertEquals(Arrays.asList(requests.get(10)), failed);
+            assertEquals(0, result.get(10).size());
+            assertEquals("OSV-0", result.get(0).get(0).getId());
+            assertFalse(api.getQueryCache().get(requests.get(10)).isPresent());
+            assertTrue(api.getQueryCache().get(requests.get(0)).isPresent());
+            // the failed record is fetched again
+            result = executor.queryVulnerabilities(requests);
+            assertEquals("OSV-10", result.get(10).get(0).getId());
+            assertEquals(3, transport.numGets.get());
+        }
+    }
+
+    @Test
+    public void testPagination() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport();
+        OsvApi api = new OsvApi(transport);
+        OsvVulnerabilityRequest paged = new OsvVulnerabilityRequest(new OsvPackage("paged", "Linux", null), null);
+        List<String> ids = new ArrayList<>();
+        api.queryVulnerabilities(paged, vuln -> ids.add(vuln.getId()));
+        assertEquals(3, transport.numPosts.get());
+        assertEquals(3, ids.size());
+        assertEquals("PAGE-1", ids.get(0));
+        assertEquals("PAGE-3", ids.get(2));
+        assertNull(paged.getPageToken());
+        // results spanning pages are not cached
+        assertEquals(3, api.queryVulnerabilities(paged).size());
+        assertEquals(6, transport.numPosts.get());
+        // batch
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        requests.add(new OsvVulnerabilityRequest(new OsvPackage("vulnerable", "PyPI", null), "1"));
+        requests.add(paged);
+        requests.add(new OsvVulnerabilityRequest(new OsvPackage("safe", "PyPI", null), "1"));
+        List<List<OsvVulnerability>> result = api.queryVulnerabilitiesBatch(requests);
+        assertEquals(3, transport.numBatchPosts.get());
+        assertEquals(1, result.get(0).size());
+        assertEquals(3, result.get(1).size());
+        assertEquals("PAGE-2", result.get(1).get(1).getId());
+        assertEquals(0, result.get(2).size());
+    }
+    
+    @Test
+    public void testPageTokenCycle() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport();
+        OsvApi api = new OsvApi(transport);
+        OsvVulnerabilityRequest cycle = new OsvVulnerabilityRequest(new OsvPackage("cycle", "Linux", null), null);
+        try {
+            api.queryVulnerabilities(cycle);
+            fail("A page token cycle should fail");
+        } catch (SpdxToOsvException e) {
+            // expected
+        }
+        assertEquals(3, transport.numPosts.get());
+        try {
+            api.queryVulnerabilitiesBatch(Arrays.asList(cycle, 
+                    new OsvVulnerabilityRequest(new OsvPackage("paged", "Linux", null), null)));
+            fail("A page token cycle should fail");
+        } catch (SpdxToOsvException e) {
+            // expected
+        }
+        assertEquals(3, transport.numBatchPosts.get());
+    }
+    
+    @Test
+    public void testHydration() throws IOException, SpdxToOsvException {
+        StubOsvTransport transport = new StubOsvTransport();
+        OsvApi api = new OsvApi(transport);
+        api.setBatchSize(10);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(i % 2 == 0 ? "shared" : "safe", "PyPI", null), String.valueOf(i)));
+        }
+        try (OsvQueryExecutor executor = new OsvQueryExecutor(api, 4)) {
+            List<List<OsvVulnerability>> result = executor.queryVulnerabilities(requests);
+            // the vulnerability is only downloaded once for all 25 packages
+            assertEquals(1, transport.numGets.get());
+            assertEquals(24, executor.getHydrator().getDedupedCount());
+            for (int i = 0; i < 50; i += 2) {
+                assertEquals("Summary of OSV-SHARED", result.get(i).get(0).getSummary());
+            }
+        }
+        // cached records are only used while the modified timestamp is unchanged
+        assertEquals("OSV-SHARED", api.getVulnerability("OSV-SHARED", "2021-01-01T00:00:00Z").getId());
+        assertEquals(1, transport.numGets.get());
+        transport.modified = "2022-01-01T00:00:00Z";
+        assertEquals("2022-01-01T00:00:00Z", api.getVulnerability("OSV-SHARED", "2022-01-01T00:00:00Z").getModified());
+        assertEquals(2, transport.numGets.get());
+        assertEquals("2022-01-01T00:00:00Z", api.getVulnerability("OSV-SHARED", "2022-01-01T00:00:00Z").getModified());
+        assertEquals(2, transport.numGets.get());
+    }
+    
+    @Test
+    public void testCoalesceQueries() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.post(url, contentType, accept, body);
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        api.setQueryCache(null);    // coalescing does not depend on caching
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<OsvVulnerability>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> api.queryVulnerabilities(
+                        new OsvVulnerabilityRequest(new OsvPackage("vulnerable", "PyPI", null), "1"))));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (api.getCoalescedQueryCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<List<OsvVulnerability>> future:futures) {
+                assertEquals("OSV-1", future.get().get(0).getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, transport.numPosts.get());
+        assertEquals(3, api.getCoalescedQueryCount());
+    }
+    
+    @Test
+    public void testCoalesceVulnerabilityFetches() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse get(URL url, String accept) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.get(url, accept);
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<OsvVulnerability>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                // callers with and without a modified timestamp, such as two hydrators and a direct caller
+                String modified = i % 2 == 0 ? "2021-01-01T00:00:00Z" : null;
+                futures.add(executor.submit(() -> api.getVulnerability("OSV-1", modified)));
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (api.getCoalescedQueryCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<OsvVulnerability> future:futures) {
+                assertEquals("Summary of OSV-1", future.get().getSummary());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, transport.numGets.get());
+        // later callers use the cached record
+        api.getVulnerability("OSV-1", "2021-01-01T00:00:00Z");
+        assertEquals(1, transport.numGets.get());
+    }
+
+    @Test
+    public void testCoalesceBatchQueries() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch sent = new CountDownLatch(1);
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+                sent.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.post(url, contentType, accept, body);
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        api.setQueryCache(null);
+        List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new OsvVulnerabilityRequest(new OsvPackage(i % 2 == 0 ? "vulnerable" : "safe", "PyPI", null), String.valueOf(i)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<List<OsvVulnerability>>> first = executor.submit(() -> api.queryVulnerabilitiesBatch(requests));
+            assertTrue(sent.await(10, TimeUnit.SECONDS));
+            // the second conversion only sends the queries which are not already in flight
+            List<OsvVulnerabilityRequest> overlapping = new ArrayList<>(requests.subList(5, 10));
+            overlapping.add(new OsvVulnerabilityRequest(new OsvPackage("vulnerable", "PyPI", null), "10"));
+            Future<List<List<OsvVulnerability>>> second = executor.submit(() -> api.queryVulnerabilitiesBatch(overlapping));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (api.getCoalescedQueryCount() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            assertEquals("OSV-6", first.get().get(6).get(0).getId());
+            List<List<OsvVulnerability>> secondResult = second.get();
+            assertEquals(6, secondResult.size());
+            assertEquals("OSV-6", secondResult.get(1).get(0).getId());
+            assertTrue(secondResult.get(2).isEmpty());
+            assertEquals("OSV-10", secondResult.get(5).get(0).getId());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, transport.numBatchPosts.get());
+        assertEquals(5, api.getCoalescedQueryCount());
+    }
+
+    @Test
+    public void testStreamsQueryResponse() throws Exception {
+        StringBuilder sb = new StringBuilder("{\"vulns\":[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":\"OSV-").append(i).append("\",\"summary\":\"Vulnerability number ").append(i).append("\"}");
+        }
+        sb.append("]}");
+        byte[] json = sb.toString().getBytes(StandardCharsets.UTF_8);
+        AtomicInteger bytesRead = new AtomicInteger(0);
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+                numPosts.incrementAndGet();
+                return new HttpResponse(200, new ByteArrayInputStream(json) {
+                    @Override
+                    public synchronized int read(byte[] b, int off, int len) {
+                        int retval = super.read(b, off, len);
+                        if (retval > 0) {
+                            bytesRead.addAndGet(retval);
+                        }
+                        return retval;
+                    }
+                });
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        api.setQueryCache(null);
+        List<Integer> readAtVulnerability = new ArrayList<>();
+        api.queryVulnerabilities(new OsvVulnerabilityRequest(new OsvPackage("large", "PyPI", null), "1"),
+                vuln -> readAtVulnerability.add(bytesRead.get()));
+        assertEquals(500, readAtVulnerability.size());
+        // the first vulnerabilities are received before the whole response has been read
+        assertTrue(readAtVulnerability.get(0) < json.length);
+        assertEquals(json.length, bytesRead.get());
+    }
+    
+    @Test
+    public void testWrongShapeResponse() throws Exception {
+        StubOsvTransport transport = new StubOsvTransport() {
+            @Override
+            public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+                String json = url.getPath().endsWith("querybatch") ? "{\"results\":[\"OSV-1\"]}" : "[\"OSV-1\"]";
+                return new HttpResponse(200, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            }
+        };
+        OsvApi api = new OsvApi(transport);
+        api.setQueryCache(null);
+        OsvVulnerabilityRequest request = new OsvVulnerabilityRequest(new OsvPackage("vulnerable", "PyPI", null), "1");
+        try {
+            api.queryVulnerabilities(request);
+            fail("A wrong shape response should fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Invalid OSV response"));
+        }
+        try {
+            api.queryVulnerabilitiesBatch(Arrays.asList(request));
+            fail("A wrong shape response should fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testDiskCache() throws Exception {
+        Path cacheDir = Files.createTempDirectory("osv-cache");
+        try {
+            List<OsvVulnerabilityRequest> requests = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String name = i % 10 == 0 ? "vulnerable" : "safe";
+                requests.add(new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), String.valueOf(i)));
+            }
+            StubOsvTransport transport = new StubOsvTransport();
+            OsvApi api = new OsvApi(transport);
+            api.setDiskCache(new OsvDiskCache(cacheDir, 10000));
+            try (OsvQueryExecutor executor = new OsvQueryExecutor(api, 4)) {
+                executor.queryVulnerabilities(requests);
+            }
+            assertEquals(1, transport.numPosts.get());
+            assertEquals(2, transport.numGets.get());
+            // a cold API instance as in a new process
+            StubOsvTransport transport2 = new StubOsvTransport();
+            OsvApi api2 = new OsvApi(transport2);
+            api2.setDiskCache(new OsvDiskCache(cacheDir, 10000));
+            List<List<OsvVulnerability>> result;
+            try (OsvQueryExecutor executor = new OsvQueryExecutor(api2, 4)) {
+                result = executor.queryVulnerabilities(requests);
+            }
+            assertEquals(0, transport2.numPosts.get());
+            assertEquals(0, transport2.numGets.get());
+            assertEquals("OSV-10", result.get(10).get(0).getId());
+            assertEquals(0, result.get(11).size());
+        } finally {
+            try (Stream<Path> files = Files.walk(cacheDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class OsvDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    static List<OsvVulnerability> vulns(String... ids) {
+        List<OsvVulnerability> retval = new ArrayList<>();
+        for (String id:ids) {
+            OsvVulnerability vuln = new OsvVulnerability();
+            vuln.setId(id);
+            retval.add(vuln);
+        }
+        return retval;
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        OsvDiskCache cache = new OsvDiskCache(tempFolder.getRoot().toPath().resolve("cache"), 10000);
+        String key = OsvQueryCache.toKey(new OsvVulnerabilityRequest(new OsvPackage("jinja2", "PyPI", null), "2.4.1"));
+        assertFalse(cache.get(key).isPresent());
+        cache.put(key, vulns("OSV-1", "OSV-2"));
+        cache.put("other", Collections.emptyList());
+        // a new instance on the same directory sees the entries
+        OsvDiskCache cache2 = new OsvDiskCache(cache.getDirectory(), 10000);
+        List<OsvVulnerability> result = cache2.get(key).get();
+        assertEquals(2, result.size());
+        assertEquals("OSV-2", result.get(1).getId());
+        assertTrue(cache2.get("other").get().isEmpty());
+        assertEquals(2, cache2.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        AtomicLong now = new AtomicLong(1000000);
+        OsvDiskCache cache = new OsvDiskCache(tempFolder.getRoot().toPath(), 1000, now::get);
+        cache.put("key", vulns("OSV-1"));
+        now.addAndGet(999);
+        assertTrue(cache.get("key").isPresent());
+        now.addAndGet(1);
+        assertFalse(cache.get("key").isPresent());
+        cache.put("key", vulns("OSV-1"));
+        assertTrue(cache.get("key").isPresent());
+    }
+
+    @Test
+    public void testInvalidEntries() throws Exception {
+        OsvDiskCache cache = new OsvDiskCache(tempFolder.getRoot().toPath(), 10000);
+        cache.put("key", vulns("OSV-1"));
+        Path path = cache.pathFor("key");
+        Files.write(path, "{\"key\":\"key\",\"created\":".getBytes(StandardCharsets.UTF_8));
+        assertFalse(cache.get("key").isPresent());
+        Files.write(path, ("{\"key\":\"different\",\"created\":" + System.currentTimeMillis() + ",\"vulns\":[]}")
+                .getBytes(StandardCharsets.UTF_8));
+        assertFalse(cache.get("key").isPresent());
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        Path dir = tempFolder.getRoot().toPath();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    // each thread has its own instance as if it were a separate process
+                    OsvDiskCache cache = new OsvDiskCache(dir, 10000);
+                    for (int j = 0; j < 200; j++) {
+                        if (thread % 2 == 0) {
+                            cache.put("key", vulns("OSV-1", "OSV-2", "OSV-3"));
+                        } else {
+                            Optional<List<OsvVulnerability>> result = cache.get("key");
+                            if (result.isPresent() && result.get().size() != 3) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future:futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // no temporary files are left behind
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(0, files.filter(p -> p.toString().endsWith(".tmp")).count());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class OsvQueryCacheTest {
+
+    static OsvVulnerabilityRequest request(String name, String version) {
+        return new OsvVulnerabilityRequest(new OsvPackage(name, "PyPI", null), version);
+    }
+
+    static List<OsvVulnerability> vulns(String id, int numVersions) {
+        OsvVulnerability vuln = new OsvVulnerability();
+        vuln.setId(id);
+        OsvAffected affected = new OsvAffected();
+        List<String> versions = new ArrayList<>();
+        for (int i = 0; i < numVersions; i++) {
+            versions.add(String.valueOf(i));
+        }
+        affected.setVersions(versions);
+        vuln.setAffected(Arrays.asList(affected));
+        return Arrays.asList(vuln);
+    }
+
+    @Test
+    public void testHitMiss() {
+        OsvQueryCache cache = new OsvQueryCache();
+        assertFalse(cache.get(request("jinja2", "2.4.1")).isPresent());
+        cache.put(request("jinja2", "2.4.1"), vulns("OSV-1", 0));
+        cache.put(request("jinja2", "2.4.2"), Collections.emptyList());
+        assertEquals("OSV-1", cache.get(request("jinja2", "2.4.1")).get().get(0).getId());
+        assertTrue(cache.get(request("jinja2", "2.4.2")).get().isEmpty());
+        assertFalse(cache.get(request("jinja2", "2.4.3")).isPresent());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testLruEviction() {
+        OsvQueryCache cache = new OsvQueryCache(2, 1000, 10000);
+        cache.put(request("a", "1"), vulns("OSV-A", 0));
+        cache.put(request("b", "1"), vulns("OSV-B", 0));
+        assertTrue(cache.get(request("a", "1")).isPresent());    // b is now least recently used
+        cache.put(request("c", "1"), vulns("OSV-C", 0));
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(request("a", "1")).isPresent());
+        assertFalse(cache.get(request("b", "1")).isPresent());
+        assertTrue(cache.get(request("c", "1")).isPresent());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testWeightEviction() {
+        OsvQueryCache cache = new OsvQueryCache(100, 250, 10000);
+        cache.put(request("a", "1"), vulns("OSV-A", 100));
+        cache.put(request("b", "1"), vulns("OSV-B", 100));
+        assertEquals(2, cache.size());
+        cache.put(request("c", "1"), vulns("OSV-C", 100));
+        assertEquals(2, cache.size());
+        assertTrue(cache.getTotalWeight() <= 250);
+        assertFalse(cache.get(request("a", "1")).isPresent());
+        // a single result heavier than the bound is never cached
+        cache.put(request("d", "1"), vulns("OSV-D", 1000));
+        assertFalse(cache.get(request("d", "1")).isPresent());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testTtl() {
+        AtomicLong now = new AtomicLong(0);
+        OsvQueryCache cache = new OsvQueryCache(100, 1000, 1000, now::get);
+        cache.put(request("a", "1"), vulns("OSV-A", 0));
+        now.set(TimeUnit.MILLISECONDS.toNanos(999));
+        assertTrue(cache.get(request("a", "1")).isPresent());
+        now.set(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertFalse(cache.get(request("a", "1")).isPresent());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalWeight());
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class OsvResponseReaderTest {
+	
+	static final String SINGLE_RESPONSE = "{\"vulns\":[" +
+			"{\"id\":\"GHSA-1\",\"aliases\":[\"CVE-2021-1\"],\"affected\":[{\"package\":{\"name\":\"jinja2\",\"ecosystem\":\"PyPI\"},\"versions\":[\"2.4.1\"]}]}," +
+			"{\"id\":\"PYSEC-2\",\"summary\":\"second\"}]," +
+			"\"unknown\":{\"nested\":[1,2,3]}}";
+	
+	static final String BATCH_RESPONSE = "{\"results\":[" +
+			"{\"vulns\":[{\"id\":\"A\",\"modified\":\"2021-01-01T00:00:00Z\"},{\"id\":\"B\",\"modified\":\"2021-01-01T00:00:00Z\"}]}," +
+			"{}," +
+			"{\"vulns\":[{\"id\":\"C\",\"modified\":\"2021-01-01T00:00:00Z\"}]}]}";
+
+	@Test
+	public void testReadVulnerabilities() throws IOException {
+		OsvResponseReader responseReader = new OsvResponseReader(new Gson());
+		List<OsvVulnerability> result = new ArrayList<>();
+		responseReader.readVulnerabilities(new JsonReader(new StringReader(SINGLE_RESPONSE)), result::add);
+		assertEquals(2, result.size());
+		assertEquals("GHSA-1", result.get(0).getId());
+		assertEquals("CVE-2021-1", result.get(0).getAliases().get(0));
+		assertEquals("jinja2", result.get(0).getAffected().get(0).getOsvPackage().getName());
+		assertEquals("second", result.get(1).getSummary());
+	}
+	
+	@Test
+	public void testReadEmpty() throws IOException {
+		OsvResponseReader responseReader = new OsvResponseReader(new Gson());
+		List<OsvVulnerability> result = new ArrayList<>();
+		responseReader.readVulnerabilities(new JsonReader(new StringReader("{}")), result::add);
+		assertEquals(0, result.size());
+	}
+
+	@Test
+	public void testReadBatchResults() throws IOException {
+		OsvResponseReader responseReader = new OsvResponseReader(new Gson());
+		List<String> result = new ArrayList<>();
+		int numResults = responseReader.readBatchResults(new JsonReader(new StringReader(BATCH_RESPONSE)), 
+				(index, vuln) -> result.add(index + ":" + vuln.getId()));
+		assertEquals(3, numResults);
+		assertEquals(3, result.size());
+		assertEquals("0:A", result.get(0));
+		assertEquals("0:B", result.get(1));
+		assertEquals("2:C", result.get(2));
+	}
+	
+	@Test
+	public void testReadPageTokens() throws IOException {
+		OsvResponseReader responseReader = new OsvResponseReader(new Gson());
+		List<OsvVulnerability> vulns = new ArrayList<>();
+		assertEquals("token1", responseReader.readVulnerabilities(new JsonReader(new StringReader(
+				"{\"vulns\":[{\"id\":\"A\"}],\"next_page_token\":\"token1\"}")), vulns::add));
+		assertEquals(1, vulns.size());
+		assertNull(responseReader.readVulnerabilities(new JsonReader(new StringReader(SINGLE_RESPONSE)), vulns::add));
+		List<String> tokens = new ArrayList<>();
+		int numResults = responseReader.readBatchResults(new JsonReader(new StringReader(
+				"{\"results\":[{\"vulns\":[{\"id\":\"A\"}]},{\"vulns\":[{\"id\":\"B\"}],\"next_page_token\":\"token2\"}]}")),
+				(index, vuln) -> {}, (index, token) -> tokens.add(index + ":" + token));
+		assertEquals(2, numResults);
+		assertEquals(1, tokens.size());
+		assertEquals("1:token2", tokens.get(0));
+	}
+	
+	@Test
+	public void testInvalidJson() {
+		OsvResponseReader responseReader = new OsvResponseReader(new Gson());
+		try {
+			responseReader.readVulnerabilities(new JsonReader(new StringReader("{\"vulns\":[{\"id\":[1,2]}]}")), vuln -> {});
+			fail("Expected an exception for an invalid vulnerability");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testWrongShape() {
+		OsvResponseReader responseReader = new OsvResponseReader(new Gson());
+		for (String json:new String[] {"[{\"id\":\"A\"}]", "\"vulns\"", "{\"vulns\":[[\"A\"]]}"}) {
+			try {
+				responseReader.readVulnerabilities(new JsonReader(new StringReader(json)), vuln -> {});
+				fail("Expected an exception for " + json);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		for (String json:new String[] {"[]", "{\"results\":[1]}", "{\"results\":[[]]}"}) {
+			try {
+				responseReader.readBatchResults(new JsonReader(new StringReader(json)), (index, vuln) -> {});
+				fail("Expected an exception for " + json);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+}
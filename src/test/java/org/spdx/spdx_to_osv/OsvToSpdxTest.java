@@ -6,13 +6,20 @@ package org.spdx.spdx_to_osv;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 import org.junit.After;
 import org.junit.Before;
@@ -32,12 +39,16 @@ import org.spdx.spdx_to_osv.Main;
 import org.spdx.spdx_to_osv.SpdxToOsvException;
 import org.spdx.spdx_to_osv.osvmodel.OsvAffected;
 import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
 import org.spdx.storage.IModelStore.IdType;
 import org.spdx.storage.simple.InMemSpdxStore;
 import org.spdx.tools.SpdxToolsHelper.SerFileType;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -204,6 +215,134 @@ public class OsvToSpdxTest {
 		assertEquals(singleResult.size(), result.size());
 	}
 	
+	@Test
+	public void testDuplicateVulnerabilities() throws InvalidSPDXAnalysisException, SpdxToOsvException, IOException {
+		InMemSpdxStore modelStore = new InMemSpdxStore();
+		ModelCopyManager copyManager = new ModelCopyManager();
+		String documentUri = "https://org.spdx.documents/this/is/a/test";
+		SpdxDocument doc = SpdxModelFactory.createSpdxDocument(modelStore, documentUri, copyManager);
+		for (String version:new String[] {"1.0.0", "2.0.0"}) {
+			ExternalRef externalRef = doc.createExternalRef(ReferenceCategory.PACKAGE_MANAGER, 
+					ListedReferenceTypes.getListedReferenceTypes().getListedReferenceTypeByName("npm"), 
+					"shared@" + version, null);
+			SpdxPackage sharedPackage = doc.createPackage(modelStore.getNextId(IdType.SpdxId, documentUri), 
+					"shared", new SpdxNoAssertionLicense(), "NOASSERTION", new SpdxNoAssertionLicense())
+					.setFilesAnalyzed(false)
+					.addExternalRef(externalRef)
+					.build();
+			doc.addRelationship(doc.createRelationship(sharedPackage, RelationshipType.DESCRIBES, null));
+		}
+		HttpTransport transport = OsvApi.getInstance().getTransport();
+		OsvApi.getInstance().setTransport(new OsvApiTest.StubOsvTransport());
+		try {
+			StringWriter writer = new StringWriter();
+			Main.spdxToOsv(modelStore, documentUri, writer, true);
+			JsonArray result = new JsonParser().parse(writer.toString()).getAsJsonArray();
+			// the vulnerability found for both packages is only written once
+			assertEquals(1, result.size());
+			JsonObject vulnerability = result.get(0).getAsJsonObject();
+			assertEquals("OSV-SHARED", vulnerability.get("id").getAsString());
+			JsonArray matchedQueries = vulnerability.getAsJsonArray(Main.MATCHED_QUERIES_PROPERTY);
+			assertEquals(2, matchedQueries.size());
+			assertEquals("shared", matchedQueries.get(0).getAsJsonObject().getAsJsonObject("package").get("name").getAsString());
+		} finally {
+			OsvApi.getInstance().setTransport(transport);
+		}
+	}
+	
+	@Test
+	public void testPartialResult() throws InvalidSPDXAnalysisException, SpdxToOsvException, IOException {
+		InMemSpdxStore modelStore = new InMemSpdxStore();
+		ModelCopyManager copyManager = new ModelCopyManager();
+		String documentUri = "https://org.spdx.documents/this/is/a/test";
+		SpdxDocument doc = SpdxModelFactory.createSpdxDocument(modelStore, documentUri, copyManager);
+		for (String name:new String[] {"shared", "vulnerable"}) {
+			ExternalRef externalRef = doc.createExternalRef(ReferenceCategory.PACKAGE_MANAGER,
+					ListedReferenceTypes.getListedReferenceTypes().getListedReferenceTypeByName("npm"),
+					name + "@9.9.9", null);
+			SpdxPackage pkg = doc.createPackage(modelStore.getNextId(IdType.SpdxId, documentUri),
+					name, new SpdxNoAssertionLicense(), "NOASSERTION", new SpdxNoAssertionLicense())
+					.setFilesAnalyzed(false)
+					.addExternalRef(externalRef)
+					.build();
+			doc.addRelationship(doc.createRelationship(pkg, RelationshipType.DESCRIBES, null));
+		}
+		HttpTransport transport = OsvApi.getInstance().getTransport();
+		OsvApi.getInstance().setTransport(new OsvApiTest.StubOsvTransport() {
+			@Override
+			public HttpResponse get(URL url, String accept) throws IOException {
+				if (url.getPath().endsWith("OSV-9.9.9")) {
+					return new HttpResponse(404, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+				}
+				return super.get(url, accept);
+			}
+		});
+		StringWriter writer = new StringWriter();
+		try {
+			Main.spdxToOsv(modelStore, documentUri, writer, true);
+			fail("The conversion should report a partial result");
+		} catch (SpdxToOsvPartialResultException e) {
+			// expected
+		} finally {
+			OsvApi.getInstance().setTransport(transport);
+		}
+		// the output itself is marked as partial and lists the failed queries
+		JsonObject result = new JsonParser().parse(writer.toString()).getAsJsonObject();
+		assertTrue(result.get(Main.PARTIAL_PROPERTY).getAsBoolean());
+		JsonArray failedQueries = result.getAsJsonArray(Main.FAILED_QUERIES_PROPERTY);
+		assertTrue(failedQueries.size() > 0);
+		for (int i = 0; i < failedQueries.size(); i++) {
+			assertTrue(failedQueries.get(i).toString().contains("vulnerable"));
+		}
+		JsonArray vulns = result.getAsJsonArray(Main.VULNS_PROPERTY);
+		assertEquals(1, vulns.size());
+		assertEquals("OSV-SHARED", vulns.get(0).getAsJsonObject().get("id").getAsString());
+	}
+
+	@Test
+	public void testVulnerabilitySourceOption() throws InvalidSPDXAnalysisException, SpdxToOsvException, IOException {
+		InMemSpdxStore modelStore = new InMemSpdxStore();
+		ModelCopyManager copyManager = new ModelCopyManager();
+		String documentUri = "https://org.spdx.documents/this/is/a/test";
+		SpdxDocument doc = SpdxModelFactory.createSpdxDocument(modelStore, documentUri, copyManager);
+		ExternalRef externalRef = doc.createExternalRef(ReferenceCategory.PACKAGE_MANAGER,
+				ListedReferenceTypes.getListedReferenceTypes().getListedReferenceTypeByName("npm"),
+				"local@9.9.9", null);
+		SpdxPackage pkg = doc.createPackage(modelStore.getNextId(IdType.SpdxId, documentUri),
+				"local", new SpdxNoAssertionLicense(), "NOASSERTION", new SpdxNoAssertionLicense())
+				.setFilesAnalyzed(false)
+				.addExternalRef(externalRef)
+				.build();
+		doc.addRelationship(doc.createRelationship(pkg, RelationshipType.DESCRIBES, null));
+		AtomicBoolean closed = new AtomicBoolean(false);
+		ConversionOptions options = new ConversionOptions();
+		options.setVulnerabilitySource(new VulnerabilitySource() {
+			@Override
+			public List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests,
+					BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler) {
+				List<List<OsvVulnerability>> retval = new ArrayList<>();
+				for (int i = 0; i < requests.size(); i++) {
+					OsvVulnerability vuln = new OsvVulnerability();
+					vuln.setId("LOCAL-1");
+					retval.add(Collections.singletonList(vuln));
+				}
+				return retval;
+			}
+
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		});
+		StringWriter writer = new StringWriter();
+		Main.spdxToOsv(modelStore, documentUri, writer, true, options);
+		JsonArray vulns = new JsonParser().parse(writer.toString()).getAsJsonArray();
+		assertEquals(1, vulns.size());
+		assertEquals("LOCAL-1", vulns.get(0).getAsJsonObject().get("id").getAsString());
+		// the caller owns the source
+		assertFalse(closed.get());
+	}
+
 	@Test
 	public void testJsonFormat()  throws IOException, SpdxToOsvException {
 		File spdxFile = new File(JSON_FILE);
@@ -0,0 +1,124 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.junit.Test;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvRange.OsvRangeType;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerability;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class PackageQuerySourceTest {
+
+	/**
+	 * Source returning fixed results for each request and recording the requests queried
+	 */
+	static class RecordingSource implements VulnerabilitySource {
+		final Map<OsvVulnerabilityRequest, List<OsvVulnerability>> results = new HashMap<>();
+		final List<OsvVulnerabilityRequest> failing = new ArrayList<>();
+		final List<OsvVulnerabilityRequest> queried = new ArrayList<>();
+		boolean closed = false;
+
+		@Override
+		public List<List<OsvVulnerability>> queryVulnerabilities(List<OsvVulnerabilityRequest> requests,
+				BiConsumer<OsvVulnerabilityRequest, Exception> failureHandler) throws SpdxToOsvException {
+			List<List<OsvVulnerability>> retval = new ArrayList<>();
+			for (OsvVulnerabilityRequest request:requests) {
+				queried.add(request);
+				if (failing.contains(request)) {
+					failureHandler.accept(request, new IOException("Query failed"));
+					retval.add(Collections.emptyList());
+				} else {
+					retval.add(results.getOrDefault(request, Collections.emptyList()));
+				}
+			}
+			return retval;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static OsvVulnerability vulnerability(String id, OsvPackage osvPackage, String introduced, String fixed) {
+		OsvVulnerability retval = new OsvVulnerability();
+		retval.setId(id);
+		retval.setAffected(Arrays.asList(AffectedVersionMatcherTest.affected(osvPackage, null,
+				AffectedVersionMatcherTest.range(OsvRangeType.ECOSYSTEM, "introduced", introduced, "fixed", fixed))));
+		return retval;
+	}
+
+	@Test
+	public void testQueryVulnerabilities() throws SpdxToOsvException {
+		OsvPackage lodash = new OsvPackage("lodash", "npm", null);
+		OsvPackage log4j = new OsvPackage("org.apache.logging.log4j:log4j-core", "Maven", null);
+		RecordingSource source = new RecordingSource();
+		source.results.put(new OsvVulnerabilityRequest(lodash, null), Arrays.asList(
+				vulnerability("GHSA-1", lodash, "0", "4.17.12"),
+				vulnerability("GHSA-2", lodash, "4.17.0", "4.17.21")));
+		OsvPackage leftPad = new OsvPackage("left-pad", "npm", null);
+		OsvVulnerabilityRequest singleVersion = new OsvVulnerabilityRequest(leftPad, "1.0.0");
+		source.results.put(singleVersion, Arrays.asList(vulnerability("GHSA-3", leftPad, "0", "2.0.0")));
+		source.failing.add(new OsvVulnerabilityRequest(log4j, null));
+		OsvVulnerabilityRequest commit = new OsvVulnerabilityRequest("6879efc2c1596d11a6a6ad296f80063b558d5e0f");
+		List<OsvVulnerabilityRequest> requests = Arrays.asList(
+				new OsvVulnerabilityRequest(new OsvPackage("lodash", "npm", "pkg:npm/lodash@4.16.0"), "4.16.0"),
+				new OsvVulnerabilityRequest(new OsvPackage("lodash", "npm", "pkg:npm/lodash@4.17.15"), "4.17.15"),
+				new OsvVulnerabilityRequest(lodash, "4.17.21"),
+				new OsvVulnerabilityRequest(lodash, "4.17.21"),
+				new OsvVulnerabilityRequest(new OsvPackage("org.apache.logging.log4j:log4j-core", "Maven", null), "2.14.1"),
+				new OsvVulnerabilityRequest(new OsvPackage("org.apache.logging.log4j:log4j-core", "Maven", null), "2.17.1"),
+				singleVersion,
+				commit);
+		List<OsvVulnerabilityRequest> failed = new ArrayList<>();
+		try (PackageQuerySource packageSource = new PackageQuerySource(source)) {
+			List<List<OsvVulnerability>> results = packageSource.queryVulnerabilities(requests, (request, e) -> failed.add(request));
+			assertEquals(requests.size(), results.size());
+			assertEquals(Arrays.asList("GHSA-1"), LocalOsvDatabaseTest.ids(results.get(0)));
+			assertEquals(Arrays.asList("GHSA-2"), LocalOsvDatabaseTest.ids(results.get(1)));
+			assertTrue(results.get(2).isEmpty());
+			assertTrue(results.get(3).isEmpty());
+			assertTrue(results.get(4).isEmpty());
+			assertTrue(results.get(5).isEmpty());
+			// single versions are queried unchanged
+			assertEquals(Arrays.asList("GHSA-3"), LocalOsvDatabaseTest.ids(results.get(6)));
+			assertTrue(results.get(7).isEmpty());
+		}
+		assertTrue(source.closed);
+		assertEquals(Arrays.asList(new OsvVulnerabilityRequest(lodash, null), new OsvVulnerabilityRequest(log4j, null),
+				singleVersion, commit), source.queried);
+		assertEquals(requests.subList(4, 6), failed);
+	}
+
+	@Test
+	public void testMinVersions() throws SpdxToOsvException {
+		OsvPackage lodash = new OsvPackage("lodash", "npm", null);
+		RecordingSource source = new RecordingSource();
+		List<OsvVulnerabilityRequest> requests = Arrays.asList(
+				new OsvVulnerabilityRequest(lodash, "4.16.0"),
+				new OsvVulnerabilityRequest(lodash, "4.17.15"));
+		new PackageQuerySource(source, new AffectedVersionMatcher(), 3).queryVulnerabilities(requests, (request, e) -> fail());
+		assertEquals(requests, source.queried);
+		source.queried.clear();
+		new PackageQuerySource(source, new AffectedVersionMatcher(), 1).queryVulnerabilities(requests.subList(0, 1), (request, e) -> fail());
+		assertEquals(Arrays.asList(new OsvVulnerabilityRequest(lodash, null)), source.queried);
+	}
+}
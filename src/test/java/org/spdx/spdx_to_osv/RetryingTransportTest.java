@@ -0,0 +1,199 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class RetryingTransportTest {
+
+    /**
+     * Transport returning a scripted sequence of responses - a status of -1 throws a SocketTimeoutException
+     */
+    static class ScriptedTransport implements HttpTransport {
+        Deque<Object> script = new ArrayDeque<>();
+        int numRequests = 0;
+
+        ScriptedTransport respond(int status, String retryAfter) {
+            Map<String, String> headers = new HashMap<>();
+            if (retryAfter != null) {
+                headers.put("retry-after", retryAfter);
+            }
+            script.add(new HttpResponse(status, headers, 
+                    new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))));
+            return this;
+        }
+
+        ScriptedTransport fail(IOException e) {
+            script.add(e);
+            return this;
+        }
+
+        @Override
+        public HttpResponse get(URL url, String accept) throws IOException {
+            numRequests++;
+            Object next = script.remove();
+            if (next instanceof IOException) {
+                throw (IOException)next;
+            }
+            return (HttpResponse)next;
+        }
+
+        @Override
+        public HttpResponse post(URL url, String contentType, String accept, byte[] body) throws IOException {
+            return get(url, accept);
+        }
+    }
+
+    URL url;
+    ScriptedTransport scripted;
+    List<Long> sleeps;
+
+    @Before
+    public void setUp() throws Exception {
+        url = new URL("https://api.osv.dev/v1/query");
+        scripted = new ScriptedTransport();
+        sleeps = new ArrayList<>();
+    }
+
+    RetryingTransport transport(RetryPolicy policy) {
+        return new RetryingTransport(scripted, policy, sleeps::add);
+    }
+
+    @Test
+    public void testRetryStatus() throws IOException {
+        scripted.respond(503, null).respond(429, null).respond(200, null);
+        RetryingTransport transport = transport(new RetryPolicy(3, 100, 1000, 10000, 0.2, 10));
+        try (HttpResponse response = transport.post(url, "application/json", "application/json", new byte[0])) {
+            assertEquals(200, response.getStatusCode());
+        }
+        assertEquals(3, scripted.numRequests);
+        assertEquals(2, sleeps.size());
+        assertTrue(sleeps.get(0) >= 50 && sleeps.get(0) <= 100);
+        assertTrue(sleeps.get(1) >= 100 && sleeps.get(1) <= 200);
+        assertEquals(Collections.singletonMap("api.osv.dev/v1/query", 2L), transport.getRetryCounts());
+    }
+
+    @Test
+    public void testNoRetry() throws IOException {
+        scripted.respond(400, null);
+        RetryingTransport transport = transport(new RetryPolicy());
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(400, response.getStatusCode());
+        }
+        assertEquals(1, scripted.numRequests);
+        assertTrue(transport.getRetryCounts().isEmpty());
+    }
+
+    @Test
+    public void testMaxRetries() throws IOException {
+        scripted.respond(500, null).respond(500, null).respond(500, null);
+        RetryingTransport transport = transport(new RetryPolicy(2));
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(500, response.getStatusCode());
+        }
+        assertEquals(3, scripted.numRequests);
+        assertEquals(Long.valueOf(1), transport.getExhaustedCounts().get("api.osv.dev/v1/query"));
+    }
+
+    @Test
+    public void testRetryAfter() throws IOException {
+        scripted.respond(429, "2").respond(200, null);
+        RetryingTransport transport = transport(new RetryPolicy());
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(200, response.getStatusCode());
+        }
+        assertEquals(Collections.singletonList(2000L), sleeps);
+        // longer than the maximum Retry-After is not retried
+        scripted.respond(503, "3600");
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(503, response.getStatusCode());
+        }
+        assertEquals(1, sleeps.size());
+    }
+
+    @Test
+    public void testRetryException() throws IOException {
+        scripted.fail(new SocketTimeoutException("timeout")).respond(200, null);
+        RetryingTransport transport = transport(new RetryPolicy());
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(200, response.getStatusCode());
+        }
+        scripted.fail(new UnknownHostException("api.osv.dev"));
+        try {
+            transport.get(url, "application/json");
+            fail("Expected exception");
+        } catch (UnknownHostException e) {
+            // expected - not retried
+        }
+        assertEquals(3, scripted.numRequests);
+        assertEquals(1, sleeps.size());
+    }
+
+    @Test
+    public void testBudget() throws IOException {
+        // budget for a single retry which is refilled after 2 requests
+        RetryingTransport transport = transport(new RetryPolicy(3, 10, 100, 1000, 0.5, 1));
+        scripted.respond(503, null).respond(503, null);
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(503, response.getStatusCode());
+        }
+        assertEquals(2, scripted.numRequests);
+        scripted.respond(503, null).respond(200, null);
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(503, response.getStatusCode());
+        }
+        scripted.script.clear();
+        scripted.respond(503, null).respond(200, null);
+        try (HttpResponse response = transport.get(url, "application/json")) {
+            assertEquals(200, response.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testEndpoint() throws IOException {
+        assertEquals("api.osv.dev/v1/querybatch", RetryingTransport.endpoint(new URL("https://api.osv.dev/v1/querybatch")));
+        assertEquals("api.osv.dev/v1/vulns", RetryingTransport.endpoint(new URL("https://api.osv.dev/v1/vulns/GHSA-1234")));
+        assertEquals("archive.softwareheritage.org/api/1/release", 
+                RetryingTransport.endpoint(new URL("https://archive.softwareheritage.org/api/1/release/abc123/")));
+    }
+
+    @Test
+    public void testPolicy() {
+        assertEquals(5000L, RetryPolicy.parseRetryAfter(" 5 ", 0).getAsLong());
+        assertEquals(30000L, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:28:30 GMT", 
+                ZonedDateTime.parse("2015-10-21T07:28:00Z").toInstant().toEpochMilli()).getAsLong());
+        assertFalse(RetryPolicy.parseRetryAfter("soon", 0).isPresent());
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 10000, 0.2, 10);
+        Random random = new Random(1);
+        for (int retry = 0; retry < 10; retry++) {
+            long backoff = policy.backoffMillis(retry, random);
+            long max = Math.min(1000, 100L << retry);
+            assertTrue(backoff >= max / 2 && backoff <= max);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class SingleFlightTest {
+
+    static final int NUM_CALLERS = 8;
+
+    ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(NUM_CALLERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start callers which all execute the call for the same key, waiting until all callers have joined the flight
+     */
+    private List<Future<String>> startCallers(SingleFlight<String, String> singleFlight, 
+            SingleFlight.Call<String> call, CountDownLatch release) throws InterruptedException {
+        List<Future<String>> retval = new ArrayList<>();
+        for (int i = 0; i < NUM_CALLERS; i++) {
+            retval.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                try {
+                    assertTrue(release.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return call.call();
+            })));
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (singleFlight.getCoalescedCount() < NUM_CALLERS - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return retval;
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger numCalls = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> futures = startCallers(singleFlight, () -> "result-" + numCalls.incrementAndGet(), release);
+        assertEquals(1, singleFlight.getInFlightCount());
+        release.countDown();
+        for (Future<String> future:futures) {
+            assertEquals("result-1", future.get());
+        }
+        assertEquals(1, numCalls.get());
+        assertEquals(NUM_CALLERS - 1, singleFlight.getCoalescedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+        // nothing is retained once the call completes
+        assertEquals("result-2", singleFlight.execute("key", () -> "result-" + numCalls.incrementAndGet()));
+    }
+
+    @Test
+    public void testException() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> futures = startCallers(singleFlight, () -> {
+            throw new IOException("failed");
+        }, release);
+        release.countDown();
+        for (Future<String> future:futures) {
+            try {
+                future.get();
+                fail("Expected exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testDifferentKeys() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        assertEquals("a", singleFlight.execute("a", () -> "a"));
+        assertEquals("b", singleFlight.execute("b", () -> "b"));
+        assertEquals(0, singleFlight.getCoalescedCount());
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.junit.Test;
+import org.spdx.library.InvalidSPDXAnalysisException;
+import org.spdx.spdx_to_osv.osvmodel.OsvPackage;
+import org.spdx.spdx_to_osv.osvmodel.OsvVulnerabilityRequest;
+import org.spdx.storage.ISerializableModelStore;
+import org.spdx.tools.SpdxToolsHelper;
+import org.spdx.tools.SpdxToolsHelper.SerFileType;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class SpdxJsonRequestExtractorTest {
+	
+	static final String JSON_FILE = "test-resources" + File.separator + "spdx-test-externalref.json";
+	
+	static final String RELATIONSHIPS_FIRST = "{\"relationships\":[" +
+			"{\"spdxElementId\":\"SPDXRef-DOCUMENT\",\"relationshipType\":\"DESCRIBES\",\"relatedSpdxElement\":\"SPDXRef-main\"}," +
+			"{\"spdxElementId\":\"SPDXRef-main\",\"relationshipType\":\"DEPENDS_ON\",\"relatedSpdxElement\":\"SPDXRef-dep\"}," +
+			"{\"spdxElementId\":\"SPDXRef-gen\",\"relationshipType\":\"GENERATES\",\"relatedSpdxElement\":\"SPDXRef-main\"}," +
+			"{\"spdxElementId\":\"SPDXRef-main\",\"relationshipType\":\"DEV_DEPENDENCY_OF\",\"relatedSpdxElement\":\"SPDXRef-dev\"}]," +
+			"\"files\":[{\"SPDXID\":\"SPDXRef-file\",\"fileName\":\"./a.c\"}]," +
+			"\"SPDXID\":\"SPDXRef-DOCUMENT\"," +
+			"\"packages\":[" +
+			"{\"SPDXID\":\"SPDXRef-main\",\"name\":\"main\"}," +
+			"{\"SPDXID\":\"SPDXRef-dep\",\"name\":\"dep\",\"externalRefs\":[{\"referenceCategory\":\"PACKAGE_MANAGER\",\"referenceType\":\"npm\",\"referenceLocator\":\"dep@1.0.0\"}]}," +
+			"{\"SPDXID\":\"SPDXRef-gen\",\"name\":\"gen\",\"versionInfo\":\"2.0\"}," +
+			"{\"SPDXID\":\"SPDXRef-dev\",\"name\":\"dev\",\"versionInfo\":\"3.0\"}]}";
+	
+	/**
+	 * The described package only reaches the library through a file it has which depends on the library
+	 */
+	static final String HAS_FILES = "{\"SPDXID\":\"SPDXRef-DOCUMENT\",\"spdxVersion\":\"SPDX-2.2\"," +
+			"\"name\":\"has-files\",\"dataLicense\":\"CC0-1.0\"," +
+			"\"documentNamespace\":\"https://example.com/spdx/has-files\"," +
+			"\"creationInfo\":{\"created\":\"2021-01-01T00:00:00Z\",\"creators\":[\"Tool: test\"]}," +
+			"\"documentDescribes\":[\"SPDXRef-main\"]," +
+			"\"packages\":[" +
+			"{\"SPDXID\":\"SPDXRef-main\",\"name\":\"main\",\"versionInfo\":\"1.0\",\"downloadLocation\":\"NOASSERTION\"," +
+			"\"hasFiles\":[\"SPDXRef-file\"]}," +
+			"{\"SPDXID\":\"SPDXRef-lib\",\"name\":\"lib\",\"versionInfo\":\"2.0\",\"downloadLocation\":\"NOASSERTION\"}," +
+			"{\"SPDXID\":\"SPDXRef-other\",\"name\":\"other\",\"versionInfo\":\"3.0\",\"downloadLocation\":\"NOASSERTION\"}]," +
+			"\"files\":[{\"SPDXID\":\"SPDXRef-file\",\"fileName\":\"./main.c\"," +
+			"\"checksums\":[{\"algorithm\":\"SHA1\",\"checksumValue\":\"d6a770ba38583ed4bb4525bd96e50461655d2758\"}]}]," +
+			"\"relationships\":[" +
+			"{\"spdxElementId\":\"SPDXRef-file\",\"relationshipType\":\"DEPENDS_ON\",\"relatedSpdxElement\":\"SPDXRef-lib\"}]}";
+	
+	private static Set<OsvVulnerabilityRequest> fromModelStore(boolean allPackages) throws IOException, InvalidSPDXAnalysisException {
+		try (InputStream is = new FileInputStream(JSON_FILE)) {
+			return fromModelStore(is, allPackages);
+		}
+	}
+	
+	private static Set<OsvVulnerabilityRequest> fromModelStore(InputStream is, boolean allPackages) throws IOException, InvalidSPDXAnalysisException {
+		ISerializableModelStore modelStore = SpdxToolsHelper.fileTypeToStore(SerFileType.JSON);
+		String documentUri = modelStore.deSerialize(is, false);
+		return Main.collectRequests(modelStore, documentUri, allPackages);
+	}
+	
+	private static Set<OsvVulnerabilityRequest> fromStream(boolean allPackages) throws IOException {
+		try (InputStream is = new FileInputStream(JSON_FILE)) {
+			return SpdxJsonRequestExtractor.extractRequests(is, allPackages);
+		}
+	}
+
+	@Test
+	public void testSameAsModelStoreAllPackages() throws IOException, InvalidSPDXAnalysisException {
+		Set<OsvVulnerabilityRequest> expected = fromModelStore(true);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, fromStream(true));
+	}
+	
+	@Test
+	public void testSameAsModelStoreRelevantPackages() throws IOException, InvalidSPDXAnalysisException {
+		Set<OsvVulnerabilityRequest> expected = fromModelStore(false);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, fromStream(false));
+	}
+	
+	@Test
+	public void testRelationshipsBeforePackages() throws IOException {
+		Set<OsvVulnerabilityRequest> result = SpdxJsonRequestExtractor.extractRequests(
+				new ByteArrayInputStream(RELATIONSHIPS_FIRST.getBytes(StandardCharsets.UTF_8)), false);
+		assertEquals(2, result.size());
+		assertTrue(result.contains(new OsvVulnerabilityRequest(new OsvPackage("dep", "npm", "pkg:npm/dep@1.0.0"), "1.0.0")));
+		assertTrue(result.contains(new OsvVulnerabilityRequest(new OsvPackage("gen", null, null), "2.0")));
+		result = SpdxJsonRequestExtractor.extractRequests(
+				new ByteArrayInputStream(RELATIONSHIPS_FIRST.getBytes(StandardCharsets.UTF_8)), true);
+		assertEquals(3, result.size());
+	}
+	
+	@Test
+	public void testHasFilesSameAsModelStore() throws IOException, InvalidSPDXAnalysisException {
+		Set<OsvVulnerabilityRequest> expected = fromModelStore(
+				new ByteArrayInputStream(HAS_FILES.getBytes(StandardCharsets.UTF_8)), false);
+		assertTrue(expected.contains(new OsvVulnerabilityRequest(new OsvPackage("lib", null, null), "2.0")));
+		assertFalse(expected.contains(new OsvVulnerabilityRequest(new OsvPackage("other", null, null), "3.0")));
+		assertEquals(expected, SpdxJsonRequestExtractor.extractRequests(
+				new ByteArrayInputStream(HAS_FILES.getBytes(StandardCharsets.UTF_8)), false));
+	}
+	
+	@Test
+	public void testInvalidJson() {
+		try {
+			SpdxJsonRequestExtractor.extractRequests(
+					new ByteArrayInputStream("{\"packages\":{\"SPDXID\":1}}".getBytes(StandardCharsets.UTF_8)), true);
+			fail("Expected an exception for invalid SPDX JSON");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
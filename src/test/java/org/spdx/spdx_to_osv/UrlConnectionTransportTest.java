@@ -0,0 +1,147 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class UrlConnectionTransportTest {
+	
+	HttpServer server;
+	String baseUrl;
+	Set<Integer> remotePorts;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		remotePorts = Collections.synchronizedSet(new HashSet<>());
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/echo", exchange -> {
+			remotePorts.add(exchange.getRemoteAddress().getPort());
+			byte[] body = readAll(exchange.getRequestBody());
+			exchange.getResponseHeaders().add("X-Method", exchange.getRequestMethod());
+			exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+			if (body.length > 0) {
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(body);
+				}
+			}
+			exchange.close();
+		});
+		server.createContext("/missing", exchange -> {
+			remotePorts.add(exchange.getRemoteAddress().getPort());
+			byte[] body = "{\"message\":\"not here\"}".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(404, body.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+			exchange.close();
+		});
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+	}
+	
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int len;
+		while ((len = is.read(buf)) >= 0) {
+			bos.write(buf, 0, len);
+		}
+		return bos.toByteArray();
+	}
+
+	@Test
+	public void testPost() throws IOException {
+		UrlConnectionTransport transport = new UrlConnectionTransport();
+		byte[] body = "{\"a\":\"b\"}".getBytes(StandardCharsets.UTF_8);
+		try (HttpResponse response = transport.post(new URL(baseUrl + "/echo"), "application/json", "application/json", body)) {
+			assertEquals(200, response.getStatusCode());
+			assertEquals("POST", response.getHeader("x-method").get());
+			assertArrayEquals(body, readAll(response.getBody()));
+		}
+	}
+	
+	@Test
+	public void testErrorBody() throws IOException {
+		UrlConnectionTransport transport = new UrlConnectionTransport();
+		try (HttpResponse response = transport.get(new URL(baseUrl + "/missing"), "application/json")) {
+			assertEquals(404, response.getStatusCode());
+			assertTrue(new String(readAll(response.getBody()), StandardCharsets.UTF_8).contains("not here"));
+		}
+	}
+	
+	@Test
+	public void testConnectionReuse() throws IOException {
+		UrlConnectionTransport transport = new UrlConnectionTransport();
+		byte[] body = "x".getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < 5; i++) {
+			try (HttpResponse response = transport.post(new URL(baseUrl + "/echo"), "text/plain", "text/plain", body)) {
+				assertEquals(200, response.getStatusCode());
+			}
+			try (HttpResponse response = transport.get(new URL(baseUrl + "/missing"), "application/json")) {
+				assertEquals(404, response.getStatusCode());
+			}
+		}
+		assertEquals(1, remotePorts.size());
+	}
+	
+	@Test
+	public void testCloseBodyBeforeResponse() throws IOException {
+		UrlConnectionTransport transport = new UrlConnectionTransport();
+		byte[] body = "0123456789".getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < 3; i++) {
+			try (HttpResponse response = transport.post(new URL(baseUrl + "/echo"), "text/plain", "text/plain", body)) {
+				assertEquals('0', response.getBody().read());
+				response.getBody().close();	// remaining body is drained
+			}
+		}
+		assertEquals(1, remotePorts.size());
+	}
+	
+	@Test
+	public void testTimeouts() {
+		UrlConnectionTransport transport = new UrlConnectionTransport(1000, 2000);
+		assertEquals(1000, transport.getConnectTimeoutMillis());
+		assertEquals(2000, transport.getReadTimeoutMillis());
+		try {
+			transport.setReadTimeoutMillis(-1);
+			fail("Negative timeout accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class VersionSchemeTest {
+
+	/**
+	 * Assert the versions are in ascending order by sorting them from descending order
+	 * @param scheme version scheme
+	 * @param versions versions in ascending order
+	 */
+	private static void assertOrder(VersionScheme scheme, String... versions) {
+		List<String> sorted = new ArrayList<>(Arrays.asList(versions));
+		Collections.reverse(sorted);
+		sorted.sort(scheme);
+		assertEquals(Arrays.asList(versions), sorted);
+		for (int i = 1; i < versions.length; i++) {
+			assertTrue(versions[i - 1] + " < " + versions[i], scheme.compare(versions[i - 1], versions[i]) < 0);
+		}
+	}
+
+	@Test
+	public void testForEcosystem() {
+		assertSame(VersionScheme.SEMVER, VersionScheme.forEcosystem("npm"));
+		assertSame(VersionScheme.SEMVER, VersionScheme.forEcosystem("Go"));
+		assertSame(VersionScheme.MAVEN, VersionScheme.forEcosystem("Maven"));
+		assertSame(VersionScheme.PYPI, VersionScheme.forEcosystem("PyPI"));
+		assertSame(VersionScheme.NUGET, VersionScheme.forEcosystem("NuGet"));
+		assertSame(VersionScheme.GENERIC, VersionScheme.forEcosystem("OSS-Fuzz"));
+		assertSame(VersionScheme.GENERIC, VersionScheme.forEcosystem("Debian:10"));
+		assertSame(VersionScheme.GENERIC, VersionScheme.forEcosystem(null));
+	}
+
+	@Test
+	public void testSemver() {
+		assertOrder(VersionScheme.SEMVER, "0.9.0", "1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-alpha.beta", "1.0.0-beta",
+				"1.0.0-beta.2", "1.0.0-beta.11", "1.0.0-rc.1", "1.0.0", "1.0.1", "1.10.0", "18446744073709551616.0.0");
+		// Go pseudo-versions and incompatible major versions
+		assertOrder(VersionScheme.SEMVER, "v0.0.0-20190101000000-abcdefabcdef", "v0.0.0-20210101000000-abcdefabcdef",
+				"v0.1.0", "v2.0.0+incompatible", "v2.1.0");
+		assertEquals(0, VersionScheme.SEMVER.compare("v1.2", "=1.2.0"));
+		assertEquals(0, VersionScheme.SEMVER.compare("1.2.3+build.1", "1.2.3"));
+		assertTrue(VersionScheme.SEMVER.compare("1.0.0-Alpha", "1.0.0-alpha") < 0);
+		assertTrue(VersionScheme.SEMVER.compare("1.0.0-alpha.0", "1.0.0-alpha") > 0);
+	}
+
+	@Test
+	public void testNuGet() {
+		assertOrder(VersionScheme.NUGET, "1.0.0-beta", "1.0.0-RC.2", "1.0.0-rc.10", "1.0.0", "1.0.0.1", "1.0.1");
+		assertEquals(0, VersionScheme.NUGET.compare("1.0", "1.0.0.0"));
+		assertEquals(0, VersionScheme.NUGET.compare("1.0.0-BETA", "1.0.0-beta"));
+	}
+
+	@Test
+	public void testPyPI() {
+		assertOrder(VersionScheme.PYPI, "1.0.dev0", "1.0a1.dev1", "1.0a1", "1.0a2", "1.0b1", "1.0rc1", "1.0",
+				"1.0+local.1", "1.0.post1.dev1", "1.0.post1", "1.0.1", "1.1", "2!0.1");
+		assertEquals(0, VersionScheme.PYPI.compare("1.0", "1.0.0"));
+		assertEquals(0, VersionScheme.PYPI.compare("1.0alpha1", "1.0.0a1"));
+		assertEquals(0, VersionScheme.PYPI.compare("1.0-1", "1.0.post1"));
+		assertEquals(0, VersionScheme.PYPI.compare("1.0c1", "1.0RC1"));
+		assertTrue(VersionScheme.PYPI.compare("1.0+abc", "1.0+5") < 0);
+	}
+
+	@Test
+	public void testMaven() {
+		assertOrder(VersionScheme.MAVEN, "1-alpha-1", "1.0-alpha-2", "1-beta", "1.0-M1", "1.0-rc-1", "1-SNAPSHOT",
+				"1", "1-sp", "1-sp2", "1-abc", "1.0.1", "1.1", "2.0.0.Beta1", "2.0");
+		assertEquals(0, VersionScheme.MAVEN.compare("1", "1.0.0"));
+		assertEquals(0, VersionScheme.MAVEN.compare("1.0.0.RELEASE", "1.0-ga"));
+		assertEquals(0, VersionScheme.MAVEN.compare("1.0-CR1", "1.0-rc1"));
+		assertEquals(0, VersionScheme.MAVEN.compare("1.0.0-alpha1", "1-a1"));
+	}
+
+	@Test
+	public void testGeneric() {
+		assertOrder(VersionScheme.GENERIC, "0.9.9", "1.0-beta", "1.0", "1.0.0.1", "1.0.1", "2.0a", "2.0", "10.0");
+		assertEquals(0, VersionScheme.GENERIC.compare("1.0", "1"));
+		assertEquals(0, VersionScheme.GENERIC.compare("1.0-BETA", "1-beta"));
+	}
+
+	@Test
+	public void testInvalidVersions() {
+		// versions which are not valid for the scheme are ordered by their leading numbers
+		assertOrder(VersionScheme.PYPI, "not a version", "0.9", "1.0rc1", "1.0.0-final", "1.0-foo", "1.0", "1.0.post1",
+				"2.0");
+		assertTrue(VersionScheme.PYPI.compare("2.0", "1.0-foo") > 0);
+		assertTrue(VersionScheme.PYPI.compare("2.0", "1.0.0-final") > 0);
+		assertTrue(VersionScheme.PYPI.compare("0.5-foo", "1.0") < 0);
+		assertOrder(VersionScheme.SEMVER, "0.9.0", "1.0.0-rc.1", "1.0.0.Final", "1.0.0", "1.0.0.0-foo", "1.0.0.1",
+				"1.0.1", "2.x", "2.0.0", "10.0.0");
+		assertOrder(VersionScheme.NUGET, "1.0.0-beta", "1.0.0", "1.0.0.1", "1.0.0.1.2", "1.0.0.2", "2.0.x", "2.0");
+		assertOrder(VersionScheme.MAVEN, "1.0-alpha", "1.0", "1.0.x", "2.0");
+		assertOrder(VersionScheme.GENERIC, "1.0-x", "1.0", "2.0");
+		// the order is consistent when valid and invalid versions are mixed
+		List<String> versions = Arrays.asList("1.0", "1.0.0", "1.0-foo", "1.0.0-final", "1.0.0.Final", "1.0.0.1",
+				"1.0.0-rc.1", "1.0rc1", "v2", "2.x", "2.0.0.0.1", "abc", "1.0.post1", "10");
+		for (VersionScheme scheme:Arrays.asList(VersionScheme.SEMVER, VersionScheme.NUGET, VersionScheme.PYPI,
+				VersionScheme.MAVEN, VersionScheme.GENERIC)) {
+			for (String a:versions) {
+				for (String b:versions) {
+					assertEquals(a + " " + b, Integer.signum(scheme.compare(a, b)), -Integer.signum(scheme.compare(b, a)));
+					for (String c:versions) {
+						if (scheme.compare(a, b) <= 0 && scheme.compare(b, c) <= 0) {
+							assertTrue(a + " " + b + " " + c, scheme.compare(a, c) <= 0);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testKeys() {
+		long[] key = VersionScheme.SEMVER.key("1.2.3-alpha");
+		assertSame(key, VersionScheme.SEMVER.key("1.2.3-alpha"));
+		assertTrue(VersionScheme.compareKeys(key, VersionScheme.SEMVER.key("1.2.3")) < 0);
+		// strings longer than a single chunk
+		assertOrder(VersionScheme.SEMVER, "1.0.0-abcdef", "1.0.0-abcdef.1", "1.0.0-abcdefg", "1.0.0-abcdefgh");
+		assertOrder(VersionScheme.GENERIC, "1.abcdefabcdef", "1.abcdefabcdefa", "1.abcdefabcdefa1", "1.abcdefb");
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (c) 2021 Source Auditor Inc.
+ */
+package org.spdx.spdx_to_osv.osvmodel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+/**
+ * @author Gary O'Neall
+ *
+ */
+public class CompactStringListTest {
+
+	private static List<String> versions(int count) {
+		List<String> retval = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			retval.add("2." + (i / 10) + "." + (i % 10));
+		}
+		return retval;
+	}
+
+	@Test
+	public void testGet() {
+		List<String> expected = versions(100);
+		expected.set(17, null);
+		expected.set(18, "");
+		expected.set(40, "2.4.0-été");
+		CompactStringList compact = new CompactStringList(expected);
+		assertEquals(expected.size(), compact.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), compact.get(i));
+		}
+		assertEquals(expected, compact);
+		assertEquals(compact, expected);
+		assertEquals(expected.hashCode(), compact.hashCode());
+		assertEquals(expected, new ArrayList<>(compact));
+		assertTrue(compact.getDataSize() < 400);
+		assertTrue(new CompactStringList(Collections.emptyList()).isEmpty());
+		try {
+			compact.get(100);
+			fail("Index past the end should fail");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+		try {
+			compact.add("3.0.0");
+			fail("List should be immutable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testContains() {
+		List<String> expected = versions(1000);
+		expected.add("2.5.5");
+		expected.add(null);
+		CompactStringList compact = new CompactStringList(expected);
+		assertTrue(compact.contains("2.0.0"));
+		assertTrue(compact.contains("2.99.9"));
+		assertFalse(compact.contains("2.100.0"));
+		assertFalse(compact.contains(Integer.valueOf(2)));
+		assertTrue(compact.contains(null));
+		assertEquals(55, compact.indexOf("2.5.5"));
+		assertEquals(1000, compact.lastIndexOf("2.5.5"));
+		assertEquals(-1, compact.lastIndexOf("missing"));
+		// strings with the same hash code
+		compact = new CompactStringList(Arrays.asList("Aa", "x", "BB", "Aa"));
+		assertEquals(2, compact.indexOf("BB"));
+		assertEquals(0, compact.indexOf("Aa"));
+		assertEquals(3, compact.lastIndexOf("Aa"));
+	}
+
+	@Test
+	public void testEncoded() {
+		List<String> expected = versions(100);
+		expected.set(17, null);
+		expected.set(40, "2.4.0-été");
+		CompactStringList compact = new CompactStringList(expected);
+		CompactStringList decoded = CompactStringList.fromEncoded(expected.size(), compact.getEncoded());
+		assertEquals(expected, decoded);
+		assertEquals(expected.get(40), decoded.get(40));
+		assertTrue(decoded.contains("2.9.9"));
+		assertEquals(0, CompactStringList.fromEncoded(0, new byte[0]).size());
+		byte[] encoded = compact.getEncoded();
+		try {
+			CompactStringList.fromEncoded(expected.size(), Arrays.copyOf(encoded, encoded.length - 1));
+			fail("Truncated encoding should fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			CompactStringList.fromEncoded(expected.size() - 1, encoded);
+			fail("Wrong number of strings should fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testGson() {
+		Gson gson = new Gson();
+		OsvAffected affected = gson.fromJson("{\"package\": {\"name\": \"jinja2\", \"ecosystem\": \"PyPI\"}, "
+				+ "\"versions\": [\"2.11.0\", \"2.11.1\", null]}", OsvAffected.class);
+		assertTrue(affected.getVersions() instanceof CompactStringList);
+		assertEquals(Arrays.asList("2.11.0", "2.11.1", null), affected.getVersions());
+		String json = gson.toJson(affected);
+		assertTrue(json.contains("\"versions\":[\"2.11.0\",\"2.11.1\",null]"));
+		assertNull(gson.fromJson("{\"versions\": null}", OsvAffected.class).getVersions());
+		assertFalse(gson.toJson(new OsvAffected()).contains("versions"));
+	}
+}